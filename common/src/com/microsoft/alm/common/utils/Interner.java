@@ -0,0 +1,41 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.common.utils;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Returns a shared instance for equal values, so large result sets that repeat the same project, collection or
+ * account name keep only one copy of it. Unlike String.intern the instances are weakly held and live on the
+ * normal heap, so they are collected once nothing uses them.
+ * <p/>
+ * Thread-safety: Thread safe
+ */
+public class Interner<T> {
+    private final Map<T, WeakReference<T>> instances = new WeakHashMap<T, WeakReference<T>>();
+
+    /**
+     * Returns the shared instance equal to the value (the value itself if there was none), or null for null.
+     */
+    public synchronized T intern(final T value) {
+        if (value == null) {
+            return null;
+        }
+
+        final WeakReference<T> reference = instances.get(value);
+        final T instance = reference != null ? reference.get() : null;
+        if (instance != null) {
+            return instance;
+        }
+
+        instances.put(value, new WeakReference<T>(value));
+        return value;
+    }
+
+    public synchronized int size() {
+        return instances.size();
+    }
+}
@@ -0,0 +1,74 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.actions;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.project.Project;
+import com.microsoft.alm.plugin.idea.resources.Icons;
+import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
+import com.microsoft.alm.plugin.idea.ui.pullrequest.BatchCreatePullRequestDialog;
+import com.microsoft.alm.plugin.idea.ui.pullrequest.BatchPullRequestCreator;
+import com.microsoft.alm.plugin.idea.utils.TfGitHelper;
+import git4idea.GitUtil;
+import git4idea.repo.GitRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class adds a "Create Pull Requests in All Repositories" menu item to git menu, for projects with more than
+ * one TF git repository.
+ */
+public class CreatePullRequestsAction extends InstrumentedAction {
+
+    public CreatePullRequestsAction() {
+        super(TfPluginBundle.message(TfPluginBundle.KEY_ACTIONS_CREATE_PULL_REQUESTS),
+                TfPluginBundle.message(TfPluginBundle.KEY_ACTIONS_CREATE_PULL_REQUESTS_MSG),
+                Icons.VSLogoSmall);
+    }
+
+    @Override
+    public void doUpdate(AnActionEvent anActionEvent) {
+        final Project project = anActionEvent.getData(CommonDataKeys.PROJECT);
+
+        if (project == null || project.isDefault() || getTfGitRepositories(project).size() < 2) {
+            anActionEvent.getPresentation().setVisible(false);
+            anActionEvent.getPresentation().setEnabled(false);
+        } else {
+            anActionEvent.getPresentation().setVisible(true);
+            anActionEvent.getPresentation().setEnabled(true);
+        }
+    }
+
+    @Override
+    public void doActionPerformed(AnActionEvent anActionEvent) {
+        final Project project = anActionEvent.getData(CommonDataKeys.PROJECT);
+        final List<GitRepository> repositories = getTfGitRepositories(project);
+
+        if (!repositories.isEmpty()) {
+            final BatchCreatePullRequestDialog dialog = new BatchCreatePullRequestDialog(project, repositories);
+            if (dialog.showAndGet()) {
+                new BatchPullRequestCreator(project).createPullRequests(dialog.getSelectedRepositories(),
+                        dialog.getTitleText(), dialog.getDescriptionText(), dialog.getTargetBranchPattern());
+            }
+        }
+    }
+
+    private List<GitRepository> getTfGitRepositories(final Project project) {
+        if (project == null) {
+            return Collections.emptyList();
+        }
+
+        final List<GitRepository> tfRepositories = new ArrayList<GitRepository>();
+        for (GitRepository repository : GitUtil.getRepositoryManager(project).getRepositories()) {
+            if (TfGitHelper.isTfGitRepository(repository)) {
+                tfRepositories.add(repository);
+            }
+        }
+        return tfRepositories;
+    }
+
+}
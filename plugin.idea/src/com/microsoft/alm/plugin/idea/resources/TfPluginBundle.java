@@ -73,6 +73,12 @@ public class TfPluginBundle {
     @NonNls
     public static final String KEY_OPERATION_ERRORS_LOOKUP_CANCELED = "Operation.Errors.LookupCanceled";
     @NonNls
+    public static final String KEY_OPERATION_LOOKUP_CATALOG_CACHED = "Operation.Lookup.CatalogCached";
+    @NonNls
+    public static final String KEY_OPERATION_LOOKUP_CATALOG_REFRESHED = "Operation.Lookup.CatalogRefreshed";
+    @NonNls
+    public static final String KEY_OPERATION_LOOKUP_CATALOG_OFFLINE = "Operation.Lookup.CatalogOffline";
+    @NonNls
     public static final String KEY_PAT_TOKEN_DESC = "PAT.TokenDesc";
 
     // Checkout dialog ui and models
@@ -159,6 +165,10 @@ public class TfPluginBundle {
     @NonNls
     public static final String KEY_IMPORT_SUCCEEDED_MESSAGE = "Import.Succeeded.Message";
     @NonNls
+    public static final String KEY_IMPORT_QUEUED = "Import.Queued";
+    @NonNls
+    public static final String KEY_IMPORT_QUEUED_MESSAGE = "Import.Queued.Message";
+    @NonNls
     public static final String KEY_IMPORT_IMPORTING_PROJECT = "Import.ImportingProject";
     @NonNls
     public static final String KEY_IMPORT_GIT_INIT = "Import.GitInit";
@@ -238,11 +248,69 @@ public class TfPluginBundle {
     @NonNls
     public static final String KEY_CREATE_PR_COMMITS_PANE_TITLE = "CreatePullRequestDialog.CommitsPane.Title";
     @NonNls
+    public static final String KEY_CREATE_PR_LOAD_MORE_COMMITS = "CreatePullRequestDialog.CommitsPane.LoadMore";
+    @NonNls
+    public static final String KEY_CREATE_PR_LARGE_DIFF_MESSAGE = "CreatePullRequestDialog.ChangesPane.LargeDiff";
+    @NonNls
+    public static final String KEY_CREATE_PR_LARGE_DIFF_FOLDER = "CreatePullRequestDialog.ChangesPane.Folder";
+    @NonNls
+    public static final String KEY_CREATE_PR_LARGE_DIFF_LOADING = "CreatePullRequestDialog.ChangesPane.LoadingFolder";
+    @NonNls
     public static final String KEY_CREATE_PR_DEFAULT_TITLE = "CreatePullRequestDialog.Default.Title";
     @NonNls
     public static final String KEY_CREATE_PR_SANITY_CHECK_FAILED_WARNING_TITLE = "CreatePullRequestDialog.SanityCheckFailed.Title";
     @NonNls
     public static final String KEY_CREATE_PR_NO_VALID_TARGET_WARNING_MESSAGE = "CreatePullRequestDialog.NoValidTargetWarning.Message";
+    @NonNls
+    public static final String KEY_BATCH_PR_DIALOG_TITLE = "BatchCreatePullRequestDialog.Title";
+    @NonNls
+    public static final String KEY_BATCH_PR_DIALOG_CREATE_BUTTON = "BatchCreatePullRequestDialog.CreateButton";
+    @NonNls
+    public static final String KEY_BATCH_PR_ERRORS_NO_REPOSITORIES = "BatchCreatePullRequestDialog.Errors.NoRepositories";
+    @NonNls
+    public static final String KEY_BATCH_PR_ERRORS_TARGET_EMPTY = "BatchCreatePullRequestDialog.Errors.TargetEmpty";
+    @NonNls
+    public static final String KEY_BATCH_PR_ERRORS_NO_TARGET = "BatchCreatePullRequestDialog.Errors.NoTarget";
+    @NonNls
+    public static final String KEY_BATCH_PR_ERRORS_AMBIGUOUS_TARGET = "BatchCreatePullRequestDialog.Errors.AmbiguousTarget";
+    @NonNls
+    public static final String KEY_BATCH_PR_ERRORS_CANCELED = "BatchCreatePullRequestDialog.Errors.Canceled";
+    @NonNls
+    public static final String KEY_BATCH_PR_PROGRESS = "BatchCreatePullRequestDialog.Progress";
+    @NonNls
+    public static final String KEY_BATCH_PR_RESULTS_TITLE = "BatchCreatePullRequestDialog.Results.Title";
+    @NonNls
+    public static final String KEY_BATCH_PR_RESULT_CREATED = "BatchCreatePullRequestDialog.Result.Created";
+    @NonNls
+    public static final String KEY_BATCH_PR_RESULT_ALREADY_EXISTS = "BatchCreatePullRequestDialog.Result.AlreadyExists";
+    @NonNls
+    public static final String KEY_BATCH_PR_RESULT_SKIPPED = "BatchCreatePullRequestDialog.Result.Skipped";
+    @NonNls
+    public static final String KEY_BATCH_PR_RESULT_FAILED = "BatchCreatePullRequestDialog.Result.Failed";
+
+    // Pull requests tool window
+    @NonNls
+    public static final String KEY_PR_TOOL_WINDOW_REFRESH = "PullRequestsToolWindow.Refresh";
+    @NonNls
+    public static final String KEY_PR_TOOL_WINDOW_EMPTY = "PullRequestsToolWindow.Empty";
+    @NonNls
+    public static final String KEY_PR_TOOL_WINDOW_TITLE_COLUMN = "PullRequestsToolWindow.TitleColumn";
+    @NonNls
+    public static final String KEY_PR_TOOL_WINDOW_REPOSITORY_COLUMN = "PullRequestsToolWindow.RepositoryColumn";
+    @NonNls
+    public static final String KEY_PR_TOOL_WINDOW_BRANCHES_COLUMN = "PullRequestsToolWindow.BranchesColumn";
+    @NonNls
+    public static final String KEY_PR_TOOL_WINDOW_CREATED_BY_COLUMN = "PullRequestsToolWindow.CreatedByColumn";
+    @NonNls
+    public static final String KEY_PR_TOOL_WINDOW_CREATED_COLUMN = "PullRequestsToolWindow.CreatedColumn";
+    @NonNls
+    public static final String KEY_PR_TOOL_WINDOW_ROLE_COLUMN = "PullRequestsToolWindow.RoleColumn";
+    @NonNls
+    public static final String KEY_PR_TOOL_WINDOW_BRANCHES = "PullRequestsToolWindow.Branches";
+    @NonNls
+    public static final String KEY_PR_TOOL_WINDOW_ROLE_CREATED = "PullRequestsToolWindow.Role.Created";
+    @NonNls
+    public static final String KEY_PR_TOOL_WINDOW_ROLE_REVIEWING = "PullRequestsToolWindow.Role.Reviewing";
 
 
     //actions
@@ -258,4 +326,8 @@ public class TfPluginBundle {
     public static final String KEY_ACTIONS_CREATE_PULL_REQUEST = "Actions.CreatePullRequest.Title";
     @NonNls
     public static final String KEY_ACTIONS_CREATE_PULL_REQUEST_MSG = "Actions.CreatePullRequest.Message";
+    @NonNls
+    public static final String KEY_ACTIONS_CREATE_PULL_REQUESTS = "Actions.CreatePullRequests.Title";
+    @NonNls
+    public static final String KEY_ACTIONS_CREATE_PULL_REQUESTS_MSG = "Actions.CreatePullRequests.Message";
 }
@@ -0,0 +1,183 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.services;
+
+import com.intellij.ide.PowerSaveMode;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.microsoft.alm.plugin.operations.CatalogPrefetchOperation;
+import com.microsoft.alm.plugin.operations.Operation;
+import com.microsoft.alm.plugin.services.PluginServiceProvider;
+import com.microsoft.alm.plugin.services.PropertyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This singleton runs the CatalogPrefetchOperation shortly after the IDE starts and then every so often, so the
+ * repository catalog is already filled in when the user opens the checkout or import dialog.
+ * <p/>
+ * The refresh only runs when the IDE is otherwise quiet: it is skipped in power save mode and while any project
+ * is indexing, and a running refresh is cancelled if indexing starts. Setting the catalogPrefetch property to
+ * "false" turns it off.
+ */
+public class RepositoryCatalogPrefetcher {
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryCatalogPrefetcher.class);
+
+    private static final long INITIAL_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final long REFRESH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // Each delay is moved by up to this fraction, so that IDEs started together don't refresh together
+    private static final double JITTER = 0.2;
+    private static final long BUSY_CHECK_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
+    private final Random random = new Random();
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> busyCheck;
+    private Operation activeOperation;
+
+    private static class Holder {
+        private static RepositoryCatalogPrefetcher INSTANCE = new RepositoryCatalogPrefetcher();
+    }
+
+    /**
+     * This constructor is protected to allow for testing
+     */
+    protected RepositoryCatalogPrefetcher() {
+    }
+
+    public static RepositoryCatalogPrefetcher getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "TFS repository catalog prefetch");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        schedule(INITIAL_DELAY_MILLIS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+
+        cancelActiveOperation();
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    protected boolean isEnabled() {
+        return !"false".equalsIgnoreCase(PluginServiceProvider.getInstance().getPropertyService()
+                .getProperty(PropertyService.PROP_CATALOG_PREFETCH));
+    }
+
+    /**
+     * Returns true if the IDE is doing work that the refresh should stay out of the way of.
+     */
+    protected boolean isIdeBusy() {
+        if (ApplicationManager.getApplication() == null) {
+            return false;
+        }
+        if (PowerSaveMode.isEnabled()) {
+            return true;
+        }
+        for (final Project project : ProjectManager.getInstance().getOpenProjects()) {
+            if (!project.isDisposed() && DumbService.isDumb(project)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void schedule(final long delayMillis) {
+        if (scheduler == null) {
+            return;
+        }
+
+        final long jitter = (long) (delayMillis * JITTER * (2 * random.nextDouble() - 1));
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runPrefetch();
+            }
+        }, delayMillis + jitter, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void runPrefetch() {
+        if (scheduler == null) {
+            return;
+        }
+        if (!PluginServiceProvider.getInstance().isInitialized() || !isEnabled() || isIdeBusy()) {
+            logger.debug("runPrefetch: skipping the refresh");
+            schedule(REFRESH_INTERVAL_MILLIS);
+            return;
+        }
+
+        final CatalogPrefetchOperation operation = new CatalogPrefetchOperation();
+        operation.addListener(new Operation.Listener() {
+            @Override
+            public void notifyLookupStarted() {
+                // nothing to do
+            }
+
+            @Override
+            public void notifyLookupCompleted() {
+                prefetchCompleted(operation);
+            }
+
+            @Override
+            public void notifyLookupResults(final Operation.Results results) {
+                // the operation only updates the catalog
+            }
+        });
+        activeOperation = operation;
+        busyCheck = scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (isIdeBusy()) {
+                    logger.debug("runPrefetch: the IDE is busy, cancelling the refresh");
+                    cancelActiveOperation();
+                }
+            }
+        }, BUSY_CHECK_MILLIS, BUSY_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        operation.doWorkAsync(Operation.EMPTY_INPUTS);
+    }
+
+    private synchronized void prefetchCompleted(final Operation operation) {
+        if (activeOperation != operation) {
+            return;
+        }
+
+        activeOperation = null;
+        if (busyCheck != null) {
+            busyCheck.cancel(false);
+            busyCheck = null;
+        }
+        schedule(REFRESH_INTERVAL_MILLIS);
+    }
+
+    private synchronized void cancelActiveOperation() {
+        if (activeOperation != null) {
+            activeOperation.cancel();
+        }
+    }
+}
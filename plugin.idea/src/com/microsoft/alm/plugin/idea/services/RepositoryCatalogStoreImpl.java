@@ -0,0 +1,129 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.services;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.util.io.FileUtil;
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
+import com.microsoft.alm.plugin.idea.settings.JsonHelper;
+import com.microsoft.alm.plugin.idea.settings.RepositoryCatalogState;
+import com.microsoft.alm.plugin.services.RepositoryCatalogStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This implementation of RepositoryCatalogStore keeps the catalog in a JSON file in the IDE's system directory.
+ * The catalog can get large and changes often, so it is not part of the settings that IntelliJ saves.
+ * Outside of IntelliJ (in tests) nothing is written to disk.
+ */
+public class RepositoryCatalogStoreImpl implements RepositoryCatalogStore {
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryCatalogStoreImpl.class);
+
+    private static final String CATALOG_DIRECTORY = "tfs";
+    private static final String CATALOG_FILE_NAME = "repository-catalog.json";
+
+    // The catalog restores its entries, accounts and collections separately; the parsed file is only kept
+    // until all three have been handed out, so it isn't held for the lifetime of the IDE
+    private RepositoryCatalogState restoredState;
+    private boolean entriesRestored = false;
+    private boolean accountsRestored = false;
+    private boolean collectionsRestored = false;
+
+    private static class Holder {
+        private static RepositoryCatalogStoreImpl INSTANCE = new RepositoryCatalogStoreImpl();
+    }
+
+    /**
+     * This constructor is protected to allow for testing
+     */
+    protected RepositoryCatalogStoreImpl() {
+    }
+
+    public static RepositoryCatalogStoreImpl getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    @Override
+    public synchronized Map<String, RepositoryCatalog.Entry> restoreEntries() {
+        final RepositoryCatalogState state = getRestoredState();
+        entriesRestored = true;
+        releaseRestoredState();
+        return state != null ? state.createEntries() : Collections.<String, RepositoryCatalog.Entry>emptyMap();
+    }
+
+    @Override
+    public synchronized Map<String, List<URI>> restoreAccounts() {
+        final RepositoryCatalogState state = getRestoredState();
+        accountsRestored = true;
+        releaseRestoredState();
+        return state != null ? state.createAccounts() : Collections.<String, List<URI>>emptyMap();
+    }
+
+    @Override
+    public synchronized Map<String, RepositoryCatalog.CollectionsEntry> restoreCollections() {
+        final RepositoryCatalogState state = getRestoredState();
+        collectionsRestored = true;
+        releaseRestoredState();
+        return state != null ? state.createCollections() : Collections.<String, RepositoryCatalog.CollectionsEntry>emptyMap();
+    }
+
+    @Override
+    public synchronized void save(final Map<String, RepositoryCatalog.Entry> entries, final Map<String, List<URI>> accounts,
+                                  final Map<String, RepositoryCatalog.CollectionsEntry> collections) {
+        final File catalogFile = getCatalogFile();
+        if (catalogFile == null) {
+            return;
+        }
+
+        final String json = JsonHelper.write(new RepositoryCatalogState(entries, accounts, collections));
+        if (json == null) {
+            return;
+        }
+        try {
+            // Write a temporary file first so that a crash can't leave half of the catalog behind
+            final File tempFile = new File(catalogFile.getParentFile(), catalogFile.getName() + ".tmp");
+            FileUtil.writeToFile(tempFile, json);
+            FileUtil.rename(tempFile, catalogFile);
+        } catch (IOException e) {
+            logger.warn("save: unable to write the repository catalog", e);
+        }
+    }
+
+    private void releaseRestoredState() {
+        if (entriesRestored && accountsRestored && collectionsRestored) {
+            restoredState = null;
+        }
+    }
+
+    private RepositoryCatalogState getRestoredState() {
+        if (restoredState == null && !(entriesRestored && accountsRestored && collectionsRestored)) {
+            final File catalogFile = getCatalogFile();
+            if (catalogFile == null || !catalogFile.exists()) {
+                return null;
+            }
+            try {
+                restoredState = JsonHelper.read(FileUtil.loadFile(catalogFile), RepositoryCatalogState.class);
+            } catch (IOException e) {
+                // The catalog is only a cache, it will be filled again by the next refresh
+                logger.warn("getRestoredState: unable to read the repository catalog", e);
+            }
+        }
+        return restoredState;
+    }
+
+    private File getCatalogFile() {
+        if (ApplicationManager.getApplication() == null) {
+            return null;
+        }
+        return new File(new File(PathManager.getSystemPath(), CATALOG_DIRECTORY), CATALOG_FILE_NAME);
+    }
+}
@@ -4,6 +4,7 @@
 package com.microsoft.alm.plugin.idea.settings;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +27,10 @@ public class JsonHelper {
         return json;
     }
 
+    public static JsonNode readTree(final String json) throws IOException {
+        return mapper.readTree(json);
+    }
+
     public static <T> T read(final String json, final Class<T> valueType) throws IOException {
         T object = null;
         if (json != null) {
@@ -0,0 +1,85 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.settings;
+
+import com.microsoft.alm.plugin.idea.ui.pullrequest.PullRequestSummary;
+import com.microsoft.alm.plugin.idea.ui.pullrequest.PullRequestsCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The form the pull requests cache of a project is written to disk in (as JSON).
+ */
+public class PullRequestsCacheState {
+    //fields have to be public, so they can be written to and read from JSON
+    public Map<String, QueryState> queries = new HashMap<String, QueryState>();
+
+    public static class QueryState {
+        public String etag;
+        public long syncedAt;
+        public List<PullRequestState> pullRequests = new ArrayList<PullRequestState>();
+    }
+
+    public static class PullRequestState {
+        public int pullRequestId;
+        public UUID repositoryId;
+        public String repositoryName;
+        public String repositoryRemoteUrl;
+        public String title;
+        public String sourceBranch;
+        public String targetBranch;
+        public String createdBy;
+        public long creationDate;
+        public String status;
+        public PullRequestSummary.Role role;
+        public String version;
+    }
+
+    public PullRequestsCacheState() {
+    }
+
+    public PullRequestsCacheState(final Map<String, PullRequestsCache.Query> cacheQueries) {
+        for (final Map.Entry<String, PullRequestsCache.Query> cacheQuery : cacheQueries.entrySet()) {
+            final QueryState queryState = new QueryState();
+            queryState.etag = cacheQuery.getValue().getETag();
+            queryState.syncedAt = cacheQuery.getValue().getSyncedAt();
+            for (final PullRequestSummary pullRequest : cacheQuery.getValue().getPullRequests()) {
+                final PullRequestState pullRequestState = new PullRequestState();
+                pullRequestState.pullRequestId = pullRequest.getPullRequestId();
+                pullRequestState.repositoryId = pullRequest.getRepositoryId();
+                pullRequestState.repositoryName = pullRequest.getRepositoryName();
+                pullRequestState.repositoryRemoteUrl = pullRequest.getRepositoryRemoteUrl();
+                pullRequestState.title = pullRequest.getTitle();
+                pullRequestState.sourceBranch = pullRequest.getSourceBranch();
+                pullRequestState.targetBranch = pullRequest.getTargetBranch();
+                pullRequestState.createdBy = pullRequest.getCreatedBy();
+                pullRequestState.creationDate = pullRequest.getCreationDate();
+                pullRequestState.status = pullRequest.getStatus();
+                pullRequestState.role = pullRequest.getRole();
+                pullRequestState.version = pullRequest.getVersion();
+                queryState.pullRequests.add(pullRequestState);
+            }
+            queries.put(cacheQuery.getKey(), queryState);
+        }
+    }
+
+    public Map<String, PullRequestsCache.Query> createQueries() {
+        final Map<String, PullRequestsCache.Query> cacheQueries = new HashMap<String, PullRequestsCache.Query>();
+        for (final Map.Entry<String, QueryState> queryState : queries.entrySet()) {
+            final List<PullRequestSummary> pullRequests = new ArrayList<PullRequestSummary>();
+            for (final PullRequestState state : queryState.getValue().pullRequests) {
+                pullRequests.add(new PullRequestSummary(state.pullRequestId, state.repositoryId, state.repositoryName,
+                        state.repositoryRemoteUrl, state.title, state.sourceBranch, state.targetBranch,
+                        state.createdBy, state.creationDate, state.status, state.role, state.version));
+            }
+            cacheQueries.put(queryState.getKey(), new PullRequestsCache.Query(
+                    queryState.getValue().etag, queryState.getValue().syncedAt, pullRequests));
+        }
+        return cacheQueries;
+    }
+}
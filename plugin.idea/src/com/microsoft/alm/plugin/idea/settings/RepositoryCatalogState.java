@@ -0,0 +1,151 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.settings;
+
+import com.microsoft.alm.common.utils.UrlHelper;
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
+import com.microsoft.teamfoundation.core.webapi.model.TeamProjectCollectionReference;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The form the repository catalog is written to disk in (as JSON).
+ */
+public class RepositoryCatalogState {
+    //fields have to be public, so they can be written to and read from JSON
+    public Map<String, EntryState> entries = new HashMap<String, EntryState>();
+    public Map<String, List<String>> accounts = new HashMap<String, List<String>>();
+    public Map<String, CollectionsState> collections = new HashMap<String, CollectionsState>();
+
+    public static class EntryState {
+        public long refreshedAt;
+        public long refreshDurationMillis;
+        public List<ItemState> items = new ArrayList<ItemState>();
+    }
+
+    public static class CollectionsState {
+        public long refreshedAt;
+        public List<TeamProjectCollectionReference> collections = new ArrayList<TeamProjectCollectionReference>();
+    }
+
+    public static class ItemState {
+        public TeamProjectCollectionReference collection;
+        public UUID repositoryId;
+        public String repositoryName;
+        public String remoteUrl;
+        public UUID projectId;
+        public String projectName;
+    }
+
+    public RepositoryCatalogState() {
+    }
+
+    public RepositoryCatalogState(final Map<String, RepositoryCatalog.Entry> catalogEntries, final Map<String, List<URI>> catalogAccounts,
+                                  final Map<String, RepositoryCatalog.CollectionsEntry> catalogCollections) {
+        for (final Map.Entry<String, RepositoryCatalog.Entry> catalogEntry : catalogEntries.entrySet()) {
+            final EntryState entryState = new EntryState();
+            entryState.refreshedAt = catalogEntry.getValue().getRefreshedAt();
+            entryState.refreshDurationMillis = catalogEntry.getValue().getRefreshDurationMillis();
+            for (final RepositoryCatalog.Item item : catalogEntry.getValue().getItems()) {
+                final ItemState itemState = new ItemState();
+                itemState.collection = restrict(item.getCollection());
+                itemState.repositoryId = item.getRepositoryId();
+                itemState.repositoryName = item.getRepositoryName();
+                itemState.remoteUrl = item.getRemoteUrl();
+                itemState.projectId = item.getProjectId();
+                itemState.projectName = item.getProjectName();
+                entryState.items.add(itemState);
+            }
+            entries.put(catalogEntry.getKey(), entryState);
+        }
+
+        for (final Map.Entry<String, List<URI>> catalogAccount : catalogAccounts.entrySet()) {
+            final List<String> accountUris = new ArrayList<String>(catalogAccount.getValue().size());
+            for (final URI accountUri : catalogAccount.getValue()) {
+                accountUris.add(UrlHelper.asString(accountUri));
+            }
+            accounts.put(catalogAccount.getKey(), accountUris);
+        }
+
+        for (final Map.Entry<String, RepositoryCatalog.CollectionsEntry> catalogCollection : catalogCollections.entrySet()) {
+            final CollectionsState collectionsState = new CollectionsState();
+            collectionsState.refreshedAt = catalogCollection.getValue().getRefreshedAt();
+            for (final TeamProjectCollectionReference collection : catalogCollection.getValue().getCollections()) {
+                collectionsState.collections.add(restrict(collection));
+            }
+            collections.put(catalogCollection.getKey(), collectionsState);
+        }
+    }
+
+    public Map<String, RepositoryCatalog.Entry> createEntries() {
+        final Map<String, RepositoryCatalog.Entry> catalogEntries = new HashMap<String, RepositoryCatalog.Entry>(entries.size());
+        for (final Map.Entry<String, EntryState> entryState : entries.entrySet()) {
+            final List<RepositoryCatalog.Item> items = new ArrayList<RepositoryCatalog.Item>(entryState.getValue().items.size());
+            // Each item was read with its own copy of the collection, share one per collection again
+            final Map<String, TeamProjectCollectionReference> collections = new HashMap<String, TeamProjectCollectionReference>();
+            for (final ItemState itemState : entryState.getValue().items) {
+                if (itemState.remoteUrl != null) {
+                    items.add(new RepositoryCatalog.Item(shared(collections, itemState.collection), itemState.repositoryId,
+                            itemState.repositoryName, itemState.remoteUrl, itemState.projectId, itemState.projectName));
+                }
+            }
+            catalogEntries.put(entryState.getKey(), new RepositoryCatalog.Entry(items,
+                    entryState.getValue().refreshedAt, entryState.getValue().refreshDurationMillis));
+        }
+        return catalogEntries;
+    }
+
+    public Map<String, List<URI>> createAccounts() {
+        final Map<String, List<URI>> catalogAccounts = new HashMap<String, List<URI>>(accounts.size());
+        for (final Map.Entry<String, List<String>> accountState : accounts.entrySet()) {
+            final List<URI> accountUris = new ArrayList<URI>(accountState.getValue().size());
+            for (final String accountUri : accountState.getValue()) {
+                accountUris.add(UrlHelper.createUri(accountUri));
+            }
+            catalogAccounts.put(accountState.getKey(), accountUris);
+        }
+        return catalogAccounts;
+    }
+
+    public Map<String, RepositoryCatalog.CollectionsEntry> createCollections() {
+        final Map<String, RepositoryCatalog.CollectionsEntry> catalogCollections = new HashMap<String, RepositoryCatalog.CollectionsEntry>(collections.size());
+        for (final Map.Entry<String, CollectionsState> collectionsState : collections.entrySet()) {
+            catalogCollections.put(collectionsState.getKey(), new RepositoryCatalog.CollectionsEntry(
+                    collectionsState.getValue().collections, collectionsState.getValue().refreshedAt));
+        }
+        return catalogCollections;
+    }
+
+    private static TeamProjectCollectionReference shared(final Map<String, TeamProjectCollectionReference> collections,
+                                                         final TeamProjectCollectionReference collection) {
+        if (collection == null) {
+            return null;
+        }
+        final String key = collection.getId() + "/" + collection.getName();
+        final TeamProjectCollectionReference sharedCollection = collections.get(key);
+        if (sharedCollection != null) {
+            return sharedCollection;
+        }
+        collection.setName(RepositoryCatalog.internName(collection.getName()));
+        collections.put(key, collection);
+        return collection;
+    }
+
+    // This method exists to make sure we can deserialize the collection reference.
+    private TeamProjectCollectionReference restrict(final TeamProjectCollectionReference reference) {
+        if (reference == null) {
+            return null;
+        }
+        final TeamProjectCollectionReference newReference = new TeamProjectCollectionReference();
+        newReference.setName(reference.getName());
+        newReference.setId(reference.getId());
+        newReference.setUrl(reference.getUrl());
+        return newReference;
+    }
+}
@@ -4,9 +4,12 @@
 package com.microsoft.alm.plugin.idea.setup;
 
 import com.intellij.openapi.components.ApplicationComponent;
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
 import com.microsoft.alm.plugin.idea.services.CredentialsPromptImpl;
 import com.microsoft.alm.plugin.idea.services.LocalizationServiceImpl;
 import com.microsoft.alm.plugin.idea.services.PropertyServiceImpl;
+import com.microsoft.alm.plugin.idea.services.RepositoryCatalogPrefetcher;
+import com.microsoft.alm.plugin.idea.services.RepositoryCatalogStoreImpl;
 import com.microsoft.alm.plugin.idea.services.ServerContextStoreImpl;
 import com.microsoft.alm.plugin.idea.services.TelemetryContextInitializer;
 import com.microsoft.alm.plugin.services.PluginServiceProvider;
@@ -32,12 +35,19 @@ public class ApplicationStartup implements ApplicationComponent {
                 new TelemetryContextInitializer(),
                 PropertyServiceImpl.getInstance(),
                 LocalizationServiceImpl.getInstance(),
+                RepositoryCatalogStoreImpl.getInstance(),
                 true);
 
+        // Fill in the repository catalog while the IDE is idle, so the checkout and import dialogs open quickly
+        RepositoryCatalogPrefetcher.getInstance().start();
+
         doOsSetup();
     }
 
     public void disposeComponent() {
+        RepositoryCatalogPrefetcher.getInstance().stop();
+        // The catalog is saved on a background thread, write what is still pending before the IDE exits
+        RepositoryCatalog.getInstance().flush();
     }
 
     @NotNull
@@ -51,6 +51,7 @@ public class CheckoutForm implements BasicForm {
     private TextFieldWithBrowseButton parentDirectory;
     private JButton refreshButton;
     private BusySpinnerPanel busySpinner;
+    private String refreshToolTip;
     private JScrollPane repositoryTableScrollPane;
     private boolean initialized = false;
     private Timer timer;
@@ -219,6 +220,22 @@ public class CheckoutForm implements BasicForm {
         }
     }
 
+    /**
+     * Shows how current the list is in the tool tips of the refresh button and the busy spinner.
+     */
+    public void setCatalogStatus(final String catalogStatus) {
+        if (refreshToolTip == null) {
+            refreshToolTip = refreshButton.getToolTipText();
+        }
+        if (StringUtils.isEmpty(catalogStatus)) {
+            refreshButton.setToolTipText(refreshToolTip);
+            busySpinner.setToolTipText(null);
+        } else {
+            refreshButton.setToolTipText(refreshToolTip + " - " + catalogStatus);
+            busySpinner.setToolTipText(catalogStatus);
+        }
+    }
+
     private void createUIComponents() {
         // Create user account panel
         userAccountPanel = new UserAccountPanel();
@@ -21,6 +21,8 @@ public interface CheckoutPage extends FocusableTabPage {
 
     void setLoading(boolean loading);
 
+    void setCatalogStatus(String catalogStatus);
+
     void setAuthenticating(boolean authenticating);
 
     void setRepositoryFilter(String filter);
@@ -3,6 +3,8 @@
 
 package com.microsoft.alm.plugin.idea.ui.checkout;
 
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
+import com.microsoft.alm.plugin.context.RepositoryLookupCache;
 import com.microsoft.alm.plugin.idea.ui.common.AbstractController;
 import com.microsoft.alm.plugin.idea.ui.common.LoginPageModel;
 import com.microsoft.alm.plugin.idea.ui.common.forms.LoginForm;
@@ -51,6 +53,9 @@ class CheckoutPageController extends AbstractController {
         if (arg == null || arg.equals(CheckoutPageModel.PROP_LOADING)) {
             page.setLoading(model.isLoading());
         }
+        if (arg == null || arg.equals(CheckoutPageModel.PROP_CATALOG_STATUS)) {
+            page.setCatalogStatus(model.getCatalogStatus());
+        }
         if (arg == null || arg.equals(LoginPageModel.PROP_AUTHENTICATING)) {
             page.setAuthenticating(model.isAuthenticating());
         }
@@ -87,6 +92,9 @@ class CheckoutPageController extends AbstractController {
             super.requestFocus(page);
         } else if (CheckoutForm.CMD_REFRESH.equals(e.getActionCommand())) {
             // Reload the table (the refresh button shouldn't be visible if the query is currently running)
+            // The user asked for a refresh, so don't reuse what other lookups have read from the server
+            RepositoryLookupCache.getInstance().clear();
+            RepositoryCatalog.getInstance().clearCollections();
             model.loadRepositories();
         } else if (UserAccountPanel.CMD_SIGN_OUT.equals(e.getActionCommand())) {
             // Go back to a disconnected state
@@ -70,6 +70,11 @@ class CheckoutPageImpl extends LoginPageImpl implements CheckoutPage {
         checkoutForm.setLoading(loading);
     }
 
+    @Override
+    public void setCatalogStatus(final String catalogStatus) {
+        checkoutForm.setCatalogStatus(catalogStatus);
+    }
+
     // Overrides of LoginPage //
 
     @Override
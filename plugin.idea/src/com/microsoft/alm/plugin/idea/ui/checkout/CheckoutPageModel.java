@@ -14,6 +14,7 @@ import javax.swing.ListSelectionModel;
  */
 public interface CheckoutPageModel extends LoginPageModel {
     String PROP_DIRECTORY_NAME = "directoryName";
+    String PROP_CATALOG_STATUS = "catalogStatus";
     String PROP_LOADING = "loading";
     String PROP_PARENT_DIR = "parentDirectory";
     String PROP_REPO_FILTER = "repositoryFilter";
@@ -37,6 +38,8 @@ public interface CheckoutPageModel extends LoginPageModel {
 
     void setLoading(boolean loading);
 
+    String getCatalogStatus();
+
     void setCloneEnabled(boolean cloneEnabled);
 
     ServerContextTableModel getTableModel();
@@ -8,8 +8,11 @@ import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
+import com.microsoft.alm.plugin.context.ConnectionWarmer;
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextRow;
 import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
+import com.microsoft.alm.plugin.idea.ui.common.DebouncedTableFilter;
 import com.microsoft.alm.plugin.idea.ui.common.LoginPageModelImpl;
 import com.microsoft.alm.plugin.idea.ui.common.ModelValidationInfo;
 import com.microsoft.alm.plugin.idea.ui.common.ServerContextLookupListener;
@@ -35,12 +38,14 @@ import java.util.List;
 public abstract class CheckoutPageModelImpl extends LoginPageModelImpl implements CheckoutPageModel, ServerContextLookupPageModel {
     private CheckoutModel parentModel;
     private boolean loading = false;
+    private String catalogStatus;
     private boolean cloneEnabled = false;
     //default values for Strings should be "" rather than null.
     private String parentDirectory = "";
     private String directoryName = "";
     private String repositoryFilter = "";
     private final ServerContextTableModel repositoryTableModel;
+    private final DebouncedTableFilter repositoryTableFilter;
     private final ServerContextLookupListener repositoryProvider;
 
     public CheckoutPageModelImpl(final CheckoutModel checkoutModel, final ServerContextTableModel.Column[] columns) {
@@ -49,6 +54,7 @@ public abstract class CheckoutPageModelImpl extends LoginPageModelImpl implement
 
         // Create table model (subclasses should modify the table model as needed)
         repositoryTableModel = new ServerContextTableModel(columns);
+        repositoryTableFilter = new DebouncedTableFilter(repositoryTableModel);
 
         // Attach listeners
         setupSelectionListener();
@@ -60,7 +66,13 @@ public abstract class CheckoutPageModelImpl extends LoginPageModelImpl implement
         }
 
         // Create the default repository provider
-        repositoryProvider = new ServerContextLookupListener(this);
+        repositoryProvider = new ServerContextLookupListener(this, repositoryTableModel.getRowComparator());
+
+        // Get the connections to the servers used last ready while the user signs in
+        // ApplicationManager is null if we are not in IntelliJ
+        if (ApplicationManager.getApplication() != null) {
+            ConnectionWarmer.getInstance().warmUpLastUsed();
+        }
     }
 
     /**
@@ -134,7 +146,7 @@ public abstract class CheckoutPageModelImpl extends LoginPageModelImpl implement
         if (!StringUtils.equals(this.repositoryFilter, repositoryFilter)) {
             this.repositoryFilter = repositoryFilter;
             setChangedAndNotify(PROP_REPO_FILTER);
-            repositoryTableModel.setFilter(repositoryFilter);
+            repositoryTableFilter.setFilter(repositoryFilter);
         }
     }
 
@@ -151,6 +163,19 @@ public abstract class CheckoutPageModelImpl extends LoginPageModelImpl implement
         }
     }
 
+    @Override
+    public String getCatalogStatus() {
+        return catalogStatus;
+    }
+
+    @Override
+    public void setCatalogStatus(final String catalogStatus) {
+        if (!StringUtils.equals(this.catalogStatus, catalogStatus)) {
+            this.catalogStatus = catalogStatus;
+            setChangedAndNotify(PROP_CATALOG_STATUS);
+        }
+    }
+
     @Override
     public void setCloneEnabled(final boolean cloneEnabled) {
         if (this.cloneEnabled != cloneEnabled) {
@@ -289,15 +314,23 @@ public abstract class CheckoutPageModelImpl extends LoginPageModelImpl implement
     /**
      * This method is provided to allow the listener to update the list of contexts.
      */
-    public void appendContexts(final List<ServerContext> serverContexts) {
-        repositoryTableModel.addServerContexts(serverContexts);
+    public void appendRows(final List<ServerContextRow> rows) {
+        repositoryTableModel.addRows(rows);
+    }
+
+    /**
+     * This method is provided to allow the listener to update the list of contexts.
+     */
+    @Override
+    public void removeRows(final List<ServerContextRow> rows) {
+        repositoryTableModel.removeRows(rows);
     }
 
     /**
      * This method is provided to allow the derived classes an easy way to add to the list of repositories.
      */
     protected void addContext(ServerContext serverContext) {
-        appendContexts(Collections.singletonList(serverContext));
+        repositoryTableModel.addServerContexts(Collections.singletonList(serverContext));
     }
 
     private void setupSelectionListener() {
@@ -319,5 +352,6 @@ public abstract class CheckoutPageModelImpl extends LoginPageModelImpl implement
     @Override
     public void dispose() {
         repositoryProvider.terminateActiveOperation();
+        repositoryTableFilter.dispose();
     }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.common;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.microsoft.alm.plugin.idea.utils.IdeaHelper;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filters a ServerContextTableModel as the user types without blocking the UI thread.
+ * <p/>
+ * Each call to setFilter waits for a short pause in typing and then evaluates the filter on a background
+ * thread. A newer filter cancels the one before it, so only the newest result is ever applied to the table.
+ * The table model keeps the selection when the result is applied. Call setFilter and dispose on the UI thread.
+ */
+public class DebouncedTableFilter {
+    public static final long DEFAULT_DELAY_MILLIS = 150L;
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "DebouncedTableFilter");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final ServerContextTableModel tableModel;
+    private final long delayMillis;
+    private volatile ServerContextTableModel.FilterRun pendingRun;
+
+    /**
+     * Outside of IntelliJ (in tests) there is no UI thread to protect, so the filter is applied right away.
+     */
+    public DebouncedTableFilter(final ServerContextTableModel tableModel) {
+        this(tableModel, ApplicationManager.getApplication() != null ? DEFAULT_DELAY_MILLIS : 0L);
+    }
+
+    /**
+     * @param delayMillis how long typing has to pause before the filter is evaluated. With a delay of 0 the filter
+     *                    is evaluated and applied on the calling thread.
+     */
+    public DebouncedTableFilter(final ServerContextTableModel tableModel, final long delayMillis) {
+        assert tableModel != null;
+        assert delayMillis >= 0;
+        this.tableModel = tableModel;
+        this.delayMillis = delayMillis;
+    }
+
+    public void setFilter(final String filter) {
+        cancelPending();
+
+        final ServerContextTableModel.FilterRun run = tableModel.prepareFilter(filter);
+        if (delayMillis == 0) {
+            run.run();
+            tableModel.applyFilter(run);
+            return;
+        }
+
+        pendingRun = run;
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (run.isCancelled()) {
+                    return;
+                }
+                run.run();
+                IdeaHelper.runOnUIThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (pendingRun == run) {
+                            pendingRun = null;
+                        }
+                        tableModel.applyFilter(run);
+                    }
+                });
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns true while a filter is waiting to be evaluated or applied.
+     */
+    public boolean isPending() {
+        return pendingRun != null;
+    }
+
+    public void dispose() {
+        cancelPending();
+    }
+
+    private void cancelPending() {
+        if (pendingRun != null) {
+            pendingRun.cancel();
+            pendingRun = null;
+        }
+    }
+}
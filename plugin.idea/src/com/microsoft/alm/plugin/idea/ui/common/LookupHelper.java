@@ -4,24 +4,33 @@
 package com.microsoft.alm.plugin.idea.ui.common;
 
 import com.microsoft.alm.common.utils.UrlHelper;
+import com.microsoft.alm.plugin.TeamServicesException;
 import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
 import com.microsoft.alm.plugin.authentication.AuthenticationListener;
 import com.microsoft.alm.plugin.authentication.AuthenticationProvider;
 import com.microsoft.alm.plugin.authentication.VsoAuthenticationProvider;
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextBuilder;
+import com.microsoft.alm.plugin.context.ServerReachability;
 import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.services.LocalizationServiceImpl;
 import com.microsoft.alm.plugin.idea.utils.IdeaHelper;
 import com.microsoft.alm.plugin.operations.AccountLookupOperation;
 import com.microsoft.alm.plugin.operations.Operation;
 import com.microsoft.alm.plugin.operations.ServerContextLookupOperation;
+import com.microsoft.alm.plugin.services.PluginServiceProvider;
+import com.microsoft.alm.plugin.services.PropertyService;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class LookupHelper {
     private static final Logger logger = LoggerFactory.getLogger(LookupHelper.class);
@@ -112,7 +121,7 @@ public class LookupHelper {
                 new ServerContextBuilder().type(ServerContext.Type.TFS)
                         .uri(serverUrl).authentication(authenticationProvider.getAuthenticationInfo()).build();
 
-        lookupListener.loadContexts(Collections.singletonList(context), scope);
+        loadContextsWithCatalog(lookupListener, Collections.singletonList(context), scope);
     }
 
     public static void authenticateAndLoadVsoContexts(final LoginPageModel loginPageModel,
@@ -173,6 +182,18 @@ public class LookupHelper {
         loginPageModel.setUserName(authenticationProvider.getAuthenticationInfo().getUserNameForDisplay());
         lookupPageModel.clearContexts();
 
+        // Start with the accounts found last time, so the cached repositories show up right away
+        final AuthenticationInfo authenticationInfo = authenticationProvider.getAuthenticationInfo();
+        final List<URI> cachedAccounts = RepositoryCatalog.getInstance().getAccounts(authenticationInfo.getUserName());
+        if (!cachedAccounts.isEmpty()) {
+            final List<ServerContext> accountContexts = new ArrayList<ServerContext>(cachedAccounts.size());
+            for (final URI accountUri : cachedAccounts) {
+                accountContexts.add(new ServerContextBuilder().type(ServerContext.Type.VSO)
+                        .uri(accountUri).authentication(authenticationInfo).build());
+            }
+            loadContextsWithCatalog(lookupListener, accountContexts, scope);
+        }
+
         final AccountLookupOperation accountLookupOperation = new AccountLookupOperation();
         accountLookupOperation.addListener(new Operation.Listener() {
             @Override
@@ -188,17 +209,29 @@ public class LookupHelper {
             @Override
             public void notifyLookupResults(final Operation.Results results) {
                 final ModelValidationInfo validationInfo;
-                if (results.hasError()) {
+                if (results.hasError() && !cachedAccounts.isEmpty() && isUnreachable(results.getError())) {
+                    // The lookup started with the cached accounts shows their saved repositories, so stay signed in
+                    logger.info("loadVsoContexts: the account list can't be read, using the cached accounts");
+                    validationInfo = ModelValidationInfo.NO_ERRORS;
+                } else if (results.hasError()) {
                     validationInfo = ModelValidationInfo.createWithMessage(
                             LocalizationServiceImpl.getInstance().getExceptionMessage(results.getError()));
                 } else if (results.isCancelled()) {
                     validationInfo = ModelValidationInfo.createWithResource(TfPluginBundle.KEY_OPERATION_ERRORS_LOOKUP_CANCELED);
                 } else {
                     validationInfo = ModelValidationInfo.NO_ERRORS;
+                    final List<ServerContext> accountContexts = accountLookupOperation.castResults(results).getServerContexts();
+                    final List<URI> accounts = new ArrayList<URI>(accountContexts.size());
+                    for (final ServerContext accountContext : accountContexts) {
+                        accounts.add(accountContext.getUri());
+                    }
+                    RepositoryCatalog.getInstance().putAccounts(authenticationInfo.getUserName(), accounts);
+
                     // Take the list of accounts and use them to query the team projects
-                    lookupListener.loadContexts(
-                            accountLookupOperation.castResults(results).getServerContexts(),
-                            ServerContextLookupOperation.ContextScope.PROJECT);
+                    // (unless the lookup started with the cached accounts already covers them)
+                    if (cachedAccounts.isEmpty() || !new HashSet<URI>(cachedAccounts).equals(new HashSet<URI>(accounts))) {
+                        loadContextsWithCatalog(lookupListener, accountContexts, scope);
+                    }
                 }
 
                 // If there was an error or cancellation message, send it back to the user
@@ -218,4 +251,56 @@ public class LookupHelper {
         accountLookupOperation.doWorkAsync(Operation.EMPTY_INPUTS);
     }
 
+    private static boolean isUnreachable(final Throwable error) {
+        return (error instanceof TeamServicesException
+                && TeamServicesException.KEY_SERVER_UNREACHABLE.equals(((TeamServicesException) error).getMessageKey()))
+                || ServerReachability.isConnectionFailure(error);
+    }
+
+    /**
+     * Shows the contexts cached in the repository catalog right away and then updates them from the server.
+     */
+    private static void loadContextsWithCatalog(final ServerContextLookupListener lookupListener,
+                                                final List<ServerContext> contexts,
+                                                final ServerContextLookupOperation.ContextScope scope) {
+        final ServerContextLookupOperation operation = new ServerContextLookupOperation(contexts, scope);
+        operation.setUseCatalog(true);
+        operation.setChunkSize(getLookupChunkSize());
+        operation.setCollectionsMaxAgeMillis(getCollectionsMaxAgeMillis());
+        lookupListener.loadContexts(operation);
+    }
+
+    /**
+     * Returns the chunk size set with the lookupChunkSize property (0 reports every result at once),
+     * or ServerContextLookupOperation.DEFAULT_CHUNK_SIZE if it isn't set.
+     */
+    private static int getLookupChunkSize() {
+        final String chunkSize = PluginServiceProvider.getInstance().getPropertyService()
+                .getProperty(PropertyService.PROP_LOOKUP_CHUNK_SIZE);
+        if (StringUtils.isNotEmpty(chunkSize)) {
+            try {
+                return Integer.parseInt(chunkSize.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("getLookupChunkSize: ignoring invalid chunk size " + chunkSize);
+            }
+        }
+        return ServerContextLookupOperation.DEFAULT_CHUNK_SIZE;
+    }
+
+    /**
+     * Returns how long the saved collections of a TFS server are used before they are read again, as set with the
+     * tfsCollectionsMaxAgeHours property, or ServerContextLookupOperation.DEFAULT_COLLECTIONS_MAX_AGE_MILLIS.
+     */
+    private static long getCollectionsMaxAgeMillis() {
+        final String maxAgeHours = PluginServiceProvider.getInstance().getPropertyService()
+                .getProperty(PropertyService.PROP_TFS_COLLECTIONS_MAX_AGE_HOURS);
+        if (StringUtils.isNotEmpty(maxAgeHours)) {
+            try {
+                return TimeUnit.HOURS.toMillis(Long.parseLong(maxAgeHours.trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("getCollectionsMaxAgeMillis: ignoring invalid max age " + maxAgeHours);
+            }
+        }
+        return ServerContextLookupOperation.DEFAULT_COLLECTIONS_MAX_AGE_MILLIS;
+    }
 }
@@ -3,23 +3,36 @@
 
 package com.microsoft.alm.plugin.idea.ui.common;
 
+import com.intellij.openapi.util.text.StringUtil;
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextRow;
 import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.services.LocalizationServiceImpl;
 import com.microsoft.alm.plugin.idea.utils.IdeaHelper;
 import com.microsoft.alm.plugin.operations.Operation;
 import com.microsoft.alm.plugin.operations.ServerContextLookupOperation;
 
+import java.util.Comparator;
 import java.util.List;
 
 public class ServerContextLookupListener implements Operation.Listener {
 
     private final ServerContextLookupPageModel pageModel;
+    private final ServerContextResultCoalescer coalescer;
     private ServerContextLookupOperation activeOperation;
 
     public ServerContextLookupListener(final ServerContextLookupPageModel pageModel) {
+        this(pageModel, null);
+    }
+
+    /**
+     * @param rowComparator the order the page model keeps its rows in. Results are sorted into this order
+     *                      before they are handed to the page model.
+     */
+    public ServerContextLookupListener(final ServerContextLookupPageModel pageModel, final Comparator<ServerContextRow> rowComparator) {
         assert pageModel != null;
         this.pageModel = pageModel;
+        this.coalescer = new ServerContextResultCoalescer(pageModel, rowComparator);
     }
 
     public void loadContexts(final List<ServerContext> contexts, final ServerContextLookupOperation.ContextScope resultScope) {
@@ -38,11 +51,13 @@ public class ServerContextLookupListener implements Operation.Listener {
 
     @Override
     public void notifyLookupStarted() {
+        coalescer.reset();
         IdeaHelper.runOnUIThread(new Runnable() {
             @Override
             public void run() {
                 pageModel.setLoading(true);
                 pageModel.clearContexts();
+                pageModel.setCatalogStatus(null);
             }
         });
     }
@@ -50,6 +65,8 @@ public class ServerContextLookupListener implements Operation.Listener {
     @Override
     public void notifyLookupCompleted() {
         operationDone();
+        // Deliver any buffered results before the page stops loading
+        coalescer.flush();
         IdeaHelper.runOnUIThread(new Runnable() {
             public void run() {
                 pageModel.setLoading(false);
@@ -62,6 +79,7 @@ public class ServerContextLookupListener implements Operation.Listener {
         final ServerContextLookupOperation.ServerContextLookupResults lookupResults = (ServerContextLookupOperation.ServerContextLookupResults) results;
         if (lookupResults.isCancelled()) {
             operationDone();
+            coalescer.reset();
             IdeaHelper.runOnUIThread(new Runnable() {
                 public void run() {
                     pageModel.addError(ModelValidationInfo.createWithResource(TfPluginBundle.KEY_OPERATION_ERRORS_LOOKUP_CANCELED));
@@ -69,17 +87,43 @@ public class ServerContextLookupListener implements Operation.Listener {
                 }
             });
         } else {
-            IdeaHelper.runOnUIThread(new Runnable() {
-                public void run() {
-                    pageModel.appendContexts(lookupResults.getServerContexts());
+            // Results are buffered and delivered to the page model in chunks, after anything they replace is removed
+            coalescer.remove(lookupResults.getRemovedRows());
+            coalescer.add(lookupResults.getRows());
+
+            if (lookupResults.hasCatalogStatus()) {
+                final String catalogStatus = getCatalogStatus(lookupResults);
+                IdeaHelper.runOnUIThread(new Runnable() {
+                    public void run() {
+                        pageModel.setCatalogStatus(catalogStatus);
+                    }
+                });
+            }
 
-                    if (lookupResults.hasError()) {
+            if (lookupResults.hasError()) {
+                // Make sure the results that came before the error are shown along with it
+                coalescer.flush();
+                IdeaHelper.runOnUIThread(new Runnable() {
+                    public void run() {
                         pageModel.addError(ModelValidationInfo.createWithMessage(
                                 LocalizationServiceImpl.getInstance().getExceptionMessage(results.getError())));
                     }
-                }
-            });
+                });
+            }
+        }
+    }
+
+    private static String getCatalogStatus(final ServerContextLookupOperation.ServerContextLookupResults lookupResults) {
+        final String refreshDuration = StringUtil.formatDuration(Math.max(0L, lookupResults.getRefreshDurationMillis()));
+        if (lookupResults.isOffline()) {
+            final long age = Math.max(0L, System.currentTimeMillis() - lookupResults.getCatalogTime());
+            return TfPluginBundle.message(TfPluginBundle.KEY_OPERATION_LOOKUP_CATALOG_OFFLINE, StringUtil.formatDuration(age));
+        }
+        if (lookupResults.isFromCatalog()) {
+            final long age = Math.max(0L, System.currentTimeMillis() - lookupResults.getCatalogTime());
+            return TfPluginBundle.message(TfPluginBundle.KEY_OPERATION_LOOKUP_CATALOG_CACHED, StringUtil.formatDuration(age), refreshDuration);
         }
+        return TfPluginBundle.message(TfPluginBundle.KEY_OPERATION_LOOKUP_CATALOG_REFRESHED, refreshDuration);
     }
 
     private void operationDone() {
@@ -88,6 +132,7 @@ public class ServerContextLookupListener implements Operation.Listener {
     }
 
     public void terminateActiveOperation() {
+        coalescer.reset();
         if (activeOperation != null) {
             activeOperation.removeListener(this);
             activeOperation.cancel();
@@ -3,7 +3,7 @@
 
 package com.microsoft.alm.plugin.idea.ui.common;
 
-import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextRow;
 
 import java.util.List;
 
@@ -16,7 +16,14 @@ public interface ServerContextLookupPageModel {
 
     void clearErrors();
 
-    void appendContexts(final List<ServerContext> serverContexts);
+    void appendRows(final List<ServerContextRow> rows);
+
+    void removeRows(final List<ServerContextRow> rows);
+
+    /**
+     * Tells the user how current the contexts are, or clears that message if the status is null.
+     */
+    void setCatalogStatus(final String catalogStatus);
 
     void clearContexts();
 }
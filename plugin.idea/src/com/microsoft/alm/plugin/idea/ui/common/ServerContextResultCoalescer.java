@@ -0,0 +1,164 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.common;
+
+import com.microsoft.alm.plugin.context.ServerContextRow;
+import com.microsoft.alm.plugin.idea.utils.IdeaHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers rows that arrive from a lookup operation and hands them to the page model in chunks.
+ * <p/>
+ * Lookups report results once per collection, which can mean hundreds of small batches. Instead of posting
+ * a runnable to the UI thread for each batch, results are collected here and delivered at most once per
+ * flush interval. Each chunk is sorted on the calling (background) thread, so the table model only has to
+ * merge it into its rows. Removals are delivered after everything buffered before them.
+ */
+public class ServerContextResultCoalescer {
+    // About 10 updates a second is plenty for a table that is still filling up
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100L;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "ServerContextResultCoalescer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final ServerContextLookupPageModel pageModel;
+    private final Comparator<ServerContextRow> comparator;
+    private final long flushIntervalMillis;
+
+    private final List<ServerContextRow> pending = new ArrayList<ServerContextRow>();
+    private boolean flushScheduled = false;
+    private long lastFlushTime = 0L;
+    // Incremented on reset so that chunks already posted to the UI thread can be recognized as stale
+    private int generation = 0;
+
+    public ServerContextResultCoalescer(final ServerContextLookupPageModel pageModel, final Comparator<ServerContextRow> comparator) {
+        this(pageModel, comparator, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param comparator the order the page model keeps its rows in; may be null if the chunks don't need sorting
+     */
+    public ServerContextResultCoalescer(final ServerContextLookupPageModel pageModel, final Comparator<ServerContextRow> comparator,
+                                        final long flushIntervalMillis) {
+        assert pageModel != null;
+        assert flushIntervalMillis >= 0;
+        this.pageModel = pageModel;
+        this.comparator = comparator;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Queues the rows for delivery. If nothing has been delivered for a full interval the rows are
+     * delivered right away, otherwise they go out with the next scheduled flush.
+     */
+    public void add(final List<ServerContextRow> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+
+        final boolean flushNow;
+        synchronized (this) {
+            pending.addAll(rows);
+            if (flushScheduled) {
+                return;
+            }
+
+            final long delay = lastFlushTime + flushIntervalMillis - System.currentTimeMillis();
+            flushNow = delay <= 0;
+            if (!flushNow) {
+                flushScheduled = true;
+                final int scheduledGeneration = generation;
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isCurrent(scheduledGeneration)) {
+                            flush();
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Delivers everything that is buffered. Call this before reporting that the lookup is complete.
+     */
+    public synchronized void flush() {
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+        final List<ServerContextRow> chunk = new ArrayList<ServerContextRow>(pending);
+        pending.clear();
+        lastFlushTime = System.currentTimeMillis();
+        final int chunkGeneration = generation;
+
+        if (comparator != null) {
+            Collections.sort(chunk, comparator);
+        }
+
+        // Posting while holding the lock keeps chunks and removals in the order they were buffered
+        IdeaHelper.runOnUIThread(new Runnable() {
+            @Override
+            public void run() {
+                if (isCurrent(chunkGeneration)) {
+                    pageModel.appendRows(chunk);
+                }
+            }
+        });
+    }
+
+    /**
+     * Delivers everything that is buffered and then removes the given rows from the page model.
+     */
+    public synchronized void remove(final List<ServerContextRow> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+
+        flush();
+        final List<ServerContextRow> removedRows = new ArrayList<ServerContextRow>(rows);
+        final int removalGeneration = generation;
+        IdeaHelper.runOnUIThread(new Runnable() {
+            @Override
+            public void run() {
+                if (isCurrent(removalGeneration)) {
+                    pageModel.removeRows(removedRows);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops anything buffered or already on its way to the UI thread.
+     */
+    public synchronized void reset() {
+        generation++;
+        pending.clear();
+        flushScheduled = false;
+        lastFlushTime = 0L;
+    }
+
+    private synchronized boolean isCurrent(final int expectedGeneration) {
+        return generation == expectedGeneration;
+    }
+}
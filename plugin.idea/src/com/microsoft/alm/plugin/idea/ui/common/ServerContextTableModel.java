@@ -4,22 +4,23 @@
 package com.microsoft.alm.plugin.idea.ui.common;
 
 
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextRow;
 import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
-import com.microsoft.teamfoundation.core.webapi.model.TeamProjectCollectionReference;
-import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository;
-import jersey.repackaged.com.google.common.base.Predicate;
-import jersey.repackaged.com.google.common.collect.Collections2;
-import jersey.repackaged.com.google.common.collect.Lists;
 import org.apache.commons.lang.StringUtils;
 
 import javax.swing.DefaultListSelectionModel;
 import javax.swing.ListSelectionModel;
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 public class ServerContextTableModel extends AbstractTableModel {
     public enum Column {REPOSITORY, PROJECT, COLLECTION, ACCOUNT}
@@ -40,11 +41,75 @@ public class ServerContextTableModel extends AbstractTableModel {
     };
 
     private ListSelectionModel selectionModel = new DefaultListSelectionModel();
-    private List<ServerContext> rows = new ArrayList<ServerContext>(1000);
-    private List<ServerContext> filteredRows = null;
+    // Both lists are kept sorted by ROW_ORDER; filteredRows is a subsequence of rows.
+    // The lists are replaced rather than changed, so a FilterRun can keep reading the ones it started with.
+    private List<Row> rows = new ArrayList<Row>(1000);
+    private List<Row> filteredRows = null;
     private String filter;
+    // Lowercased filter that filteredRows was computed for, used to narrow the result as the filter is refined
+    private String appliedFilter;
+    private final TrigramIndex<Row> searchIndex = new TrigramIndex<Row>();
+    // Every row gets the next sequence number, so a FilterRun can tell which rows were added after it started
+    private int nextSequence = 0;
+    // Incremented when the rows are cleared
+    private int generation = 0;
+    // Incremented when rows are removed, so a FilterRun can tell if its result may contain removed rows
+    private int removals = 0;
     private final Column[] columns;
     private TableModelSelectionConverter converter;
+    private final Comparator<ServerContextRow> rowComparator = new Comparator<ServerContextRow>() {
+        @Override
+        public int compare(ServerContextRow r1, ServerContextRow r2) {
+            final String name1 = getValueFor(r1, 0);
+            final String name2 = getValueFor(r2, 0);
+            return String.CASE_INSENSITIVE_ORDER.compare(name1, name2);
+        }
+    };
+    // The context created for the last row asked for, so asking for the selected context again returns the same one
+    private ServerContextRow materializedRow;
+    private ServerContext materializedContext;
+
+    /**
+     * A row of the table. The column values (and their lowercased form used for filtering) are computed once
+     * when the row is added, so sorting, filtering and painting never go back to the lookup result.
+     * The sort key is the value of the first column.
+     */
+    private static final class Row {
+        private final ServerContextRow contextRow;
+        private final String[] values;
+        private final String[] lowerValues;
+        private final String sortKey;
+        private final int sequence;
+        // Removed rows stay in the search index until the rows are cleared, so searches have to skip them
+        private volatile boolean removed = false;
+
+        private Row(final ServerContextRow contextRow, final String[] values, final String[] lowerValues, final int sequence) {
+            this.contextRow = contextRow;
+            this.sequence = sequence;
+            this.values = values;
+            this.lowerValues = lowerValues;
+            this.sortKey = values.length > 0 && values[0] != null ? values[0] : "";
+        }
+
+        /**
+         * Returns true if any column contains the lowercased filter.
+         */
+        private boolean contains(final String lowerFilter) {
+            for (final String value : lowerValues) {
+                if (value.contains(lowerFilter)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final static Comparator<Row> ROW_ORDER = new Comparator<Row>() {
+        @Override
+        public int compare(Row r1, Row r2) {
+            return String.CASE_INSENSITIVE_ORDER.compare(r1.sortKey, r2.sortKey);
+        }
+    };
 
     public ServerContextTableModel(Column[] columns) {
         assert columns != null;
@@ -56,47 +121,226 @@ public class ServerContextTableModel extends AbstractTableModel {
         return selectionModel;
     }
 
-    public ServerContext getServerContext(final int rowIndex) {
-        final List<ServerContext> localRows;
-        if (filteredRows != null) {
-            localRows = filteredRows;
-        } else {
-            localRows = rows;
-        }
+    private List<Row> getVisibleRows() {
+        return filteredRows != null ? filteredRows : rows;
+    }
 
+    public ServerContextRow getRow(final int rowIndex) {
+        final List<Row> localRows = getVisibleRows();
         if (rowIndex >= 0 && rowIndex < localRows.size()) {
-            return localRows.get(rowIndex);
+            return localRows.get(rowIndex).contextRow;
         }
 
         return null;
     }
 
+    /**
+     * Returns the full context for the row. The context is created when it is first asked for and kept
+     * until a context is asked for another row.
+     */
+    public ServerContext getServerContext(final int rowIndex) {
+        final ServerContextRow contextRow = getRow(rowIndex);
+        if (contextRow == null) {
+            return null;
+        }
+        if (contextRow != materializedRow) {
+            materializedContext = contextRow.toServerContext();
+            materializedRow = contextRow;
+        }
+        return materializedContext;
+    }
+
+    /**
+     * Returns the order rows are kept in (case insensitive on the first column).
+     * Lists sorted with this comparator are merged into the table without re-sorting it.
+     */
+    public Comparator<ServerContextRow> getRowComparator() {
+        return rowComparator;
+    }
+
     public void addServerContexts(final List<ServerContext> contexts) {
+        if (contexts == null || contexts.isEmpty()) {
+            return;
+        }
+
+        final List<ServerContextRow> contextRows = new ArrayList<ServerContextRow>(contexts.size());
+        for (final ServerContext context : contexts) {
+            contextRows.add(ServerContextRow.fromServerContext(context));
+        }
+        addRows(contextRows);
+    }
+
+    public void addRows(final List<ServerContextRow> contextRows) {
+        if (contextRows == null || contextRows.isEmpty()) {
+            return;
+        }
+
         // Remember selection
-        final ServerContext selectedContext = getSelectedContext();
-
-        // Add the new rows to the existing list
-        rows.addAll(contexts);
-        // Sort the rows by the first column
-        Collections.sort(rows, new Comparator<ServerContext>() {
-            @Override
-            public int compare(ServerContext c1, ServerContext c2) {
-                final String name1 = getValueFor(c1, 0);
-                final String name2 = getValueFor(c2, 0);
-                return String.CASE_INSENSITIVE_ORDER.compare(name1, name2);
-            }
-        });
+        final ServerContextRow selectedRow = getSelectedRow();
+
+        // Sort the new rows by the first column (this is linear if the caller already sorted them)
+        final List<Row> newRows = new ArrayList<Row>(contextRows.size());
+        for (final ServerContextRow contextRow : contextRows) {
+            final Row row = createRow(contextRow);
+            newRows.add(row);
+            searchIndex.add(row, row.lowerValues);
+        }
+        Collections.sort(newRows, ROW_ORDER);
+
+        // Merge the new rows into the existing sorted list
+        final List<Row> allRows = new ArrayList<Row>(Math.max(1000, rows.size() + newRows.size()));
+        final int[] insertedIndexes = merge(rows, newRows, allRows);
+        rows = allRows;
 
         if (hasFilter()) {
-            // re-apply the filter, this will fire its own event
-            applyFilter();
+            // Only the new rows need to be checked against the filter
+            final List<Row> matchingRows = new ArrayList<Row>();
+            for (final Row row : newRows) {
+                if (row.contains(appliedFilter)) {
+                    matchingRows.add(row);
+                }
+            }
+            final List<Row> allFilteredRows = new ArrayList<Row>(filteredRows.size() + matchingRows.size());
+            final int[] insertedFilteredIndexes = merge(filteredRows, matchingRows, allFilteredRows);
+            filteredRows = allFilteredRows;
+            fireRowsInserted(insertedFilteredIndexes);
+        } else {
+            fireRowsInserted(insertedIndexes);
+        }
+
+        // Attempt to restore the selection
+        select(selectedRow);
+    }
+
+    /**
+     * Removes the given rows (compared by identity) from the table.
+     */
+    public void removeRows(final Collection<ServerContextRow> contextRows) {
+        if (contextRows == null || contextRows.isEmpty()) {
+            return;
+        }
+
+        final Set<ServerContextRow> rowsToRemove = Collections.newSetFromMap(new IdentityHashMap<ServerContextRow, Boolean>());
+        rowsToRemove.addAll(contextRows);
+        boolean found = false;
+        for (final Row row : rows) {
+            if (rowsToRemove.contains(row.contextRow)) {
+                row.removed = true;
+                found = true;
+            }
+        }
+        if (!found) {
+            return;
+        }
+
+        // Remember selection
+        final ServerContextRow selectedRow = getSelectedRow();
+
+        removals++;
+        final List<Row> remainingRows = new ArrayList<Row>(Math.max(1000, rows.size()));
+        final int[] removedIndexes = copyRemainingRows(rows, remainingRows);
+        rows = remainingRows;
+        if (filteredRows != null) {
+            final List<Row> remainingFilteredRows = new ArrayList<Row>(filteredRows.size());
+            final int[] removedFilteredIndexes = copyRemainingRows(filteredRows, remainingFilteredRows);
+            filteredRows = remainingFilteredRows;
+            fireRowsDeleted(removedFilteredIndexes);
         } else {
-            // Fire an event letting callers know
-            super.fireTableDataChanged();
+            fireRowsDeleted(removedIndexes);
         }
 
         // Attempt to restore the selection
-        select(selectedContext);
+        if (selectedRow != null && rowsToRemove.contains(selectedRow)) {
+            selectionModel.clearSelection();
+        } else {
+            select(selectedRow);
+        }
+    }
+
+    /**
+     * Copies the rows that aren't removed into the (empty) target list.
+     *
+     * @return the indexes (ascending) the removed rows had in the source list
+     */
+    private static int[] copyRemainingRows(final List<Row> source, final List<Row> target) {
+        final int[] removedIndexes = new int[source.size()];
+        int removedCount = 0;
+        for (int i = 0; i < source.size(); i++) {
+            final Row row = source.get(i);
+            if (row.removed) {
+                removedIndexes[removedCount++] = i;
+            } else {
+                target.add(row);
+            }
+        }
+        final int[] result = new int[removedCount];
+        System.arraycopy(removedIndexes, 0, result, 0, removedCount);
+        return result;
+    }
+
+    private Row createRow(final ServerContextRow contextRow) {
+        final String[] values = new String[columns.length];
+        final String[] lowerValues = new String[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            values[c] = getValueFor(contextRow, c);
+            final String lowerValue = values[c].toLowerCase(Locale.ROOT);
+            // Project, collection and account names repeat from row to row, so their lowercased forms are shared
+            lowerValues[c] = columns[c] == Column.REPOSITORY ? lowerValue : RepositoryCatalog.internName(lowerValue);
+        }
+        return new Row(contextRow, values, lowerValues, nextSequence++);
+    }
+
+    /**
+     * Merges two sorted lists of rows into the (empty) target list.
+     * Existing rows stay ahead of new rows that compare equal to them.
+     *
+     * @return the indexes (ascending) of the new rows in the target list
+     */
+    private static int[] merge(final List<Row> existingRows, final List<Row> newRows, final List<Row> target) {
+        final int[] insertedIndexes = new int[newRows.size()];
+        int existingIndex = 0;
+        int newIndex = 0;
+        while (newIndex < newRows.size()) {
+            final Row newRow = newRows.get(newIndex);
+            if (existingIndex < existingRows.size() && ROW_ORDER.compare(existingRows.get(existingIndex), newRow) <= 0) {
+                target.add(existingRows.get(existingIndex++));
+            } else {
+                insertedIndexes[newIndex++] = target.size();
+                target.add(newRow);
+            }
+        }
+        if (existingIndex < existingRows.size()) {
+            target.addAll(existingRows.subList(existingIndex, existingRows.size()));
+        }
+        return insertedIndexes;
+    }
+
+    /**
+     * Fires one insert event per run of consecutive indexes. The indexes are ascending final positions,
+     * so each event is valid against the state left by the events before it.
+     */
+    private void fireRowsInserted(final int[] insertedIndexes) {
+        int runStart = 0;
+        for (int i = 1; i <= insertedIndexes.length; i++) {
+            if (i == insertedIndexes.length || insertedIndexes[i] != insertedIndexes[i - 1] + 1) {
+                super.fireTableRowsInserted(insertedIndexes[runStart], insertedIndexes[i - 1]);
+                runStart = i;
+            }
+        }
+    }
+
+    /**
+     * Fires one delete event per run of consecutive indexes. The indexes are ascending positions before any
+     * row was removed, so the runs are reported from the last to the first to keep each event valid.
+     */
+    private void fireRowsDeleted(final int[] removedIndexes) {
+        int runEnd = removedIndexes.length - 1;
+        for (int i = removedIndexes.length - 2; i >= -1; i--) {
+            if (i == -1 || removedIndexes[i] != removedIndexes[i + 1] - 1) {
+                super.fireTableRowsDeleted(removedIndexes[i + 1], removedIndexes[runEnd]);
+                runEnd = i;
+            }
+        }
     }
 
     public void setSelectionConverter(TableModelSelectionConverter converter) {
@@ -128,23 +372,53 @@ public class ServerContextTableModel extends AbstractTableModel {
         return selectedContext;
     }
 
-    private void select(final ServerContext context) {
-        final List<ServerContext> localRows;
-        if (filteredRows != null) {
-            localRows = filteredRows;
-        } else {
-            localRows = rows;
-        }
+    public ServerContextRow getSelectedRow() {
+        return getRow(getSelectedIndex());
+    }
 
-        final int index = localRows.indexOf(context);
+    private void select(final ServerContextRow contextRow) {
+        final int index = indexOf(contextRow);
         if (index >= 0) {
             selectionModel.setSelectionInterval(index, index);
         }
     }
 
+    /**
+     * Finds the visible index of the given row. The rows are sorted, so a binary search on the sort key
+     * narrows it down to the rows with the same first column and only those are compared by identity.
+     */
+    private int indexOf(final ServerContextRow contextRow) {
+        if (contextRow == null) {
+            return -1;
+        }
+
+        final List<Row> localRows = getVisibleRows();
+        final String sortKey = getValueFor(contextRow, 0);
+        int low = 0;
+        int high = localRows.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(localRows.get(middle).sortKey, sortKey) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < localRows.size() && String.CASE_INSENSITIVE_ORDER.compare(localRows.get(i).sortKey, sortKey) == 0; i++) {
+            if (localRows.get(i).contextRow == contextRow) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public void clearRows() {
-        filteredRows = null;
-        rows.clear();
+        filteredRows = hasFilter() ? new ArrayList<Row>() : null;
+        rows = new ArrayList<Row>(1000);
+        materializedRow = null;
+        materializedContext = null;
+        searchIndex.clear();
+        generation++;
         super.fireTableDataChanged();
     }
 
@@ -158,12 +432,15 @@ public class ServerContextTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(final int rowIndex, final int columnIndex) {
-        final ServerContext serverContext = getServerContext(rowIndex);
-        return getValueFor(serverContext, columnIndex);
+        final List<Row> localRows = getVisibleRows();
+        if (rowIndex >= 0 && rowIndex < localRows.size()) {
+            return localRows.get(rowIndex).values[columnIndex];
+        }
+        return getValueFor(null, columnIndex);
     }
 
-    private String getValueFor(final ServerContext serverContext, final int columnIndex) {
-        if (serverContext == null) {
+    private String getValueFor(final ServerContextRow contextRow, final int columnIndex) {
+        if (contextRow == null) {
             return "";
         }
 
@@ -171,20 +448,14 @@ public class ServerContextTableModel extends AbstractTableModel {
         Column column = columns[columnIndex];
 
         switch (column) {
-            case REPOSITORY: {
-                final GitRepository repository = serverContext.getGitRepository();
-                return repository != null ? repository.getName() : "";
-            }
-            case PROJECT: {
-                final GitRepository repository = serverContext.getGitRepository();
-                return (repository != null && repository.getProjectReference() != null) ? repository.getProjectReference().getName() : "";
-            }
-            case COLLECTION: {
-                final TeamProjectCollectionReference collection = serverContext.getTeamProjectCollectionReference();
-                return collection != null ? collection.getName() : "";
-            }
+            case REPOSITORY:
+                return StringUtils.defaultString(contextRow.getRepositoryName());
+            case PROJECT:
+                return StringUtils.defaultString(contextRow.getProjectName());
+            case COLLECTION:
+                return StringUtils.defaultString(contextRow.getCollectionName());
             case ACCOUNT:
-                return serverContext.getUri().getHost();
+                return StringUtils.defaultString(contextRow.getAccountName());
             default:
                 return "";
         }
@@ -223,42 +494,178 @@ public class ServerContextTableModel extends AbstractTableModel {
         return StringUtils.isNotEmpty(this.filter);
     }
 
+    /**
+     * Filters the rows right away. Use a DebouncedTableFilter to filter as the user types.
+     */
     public void setFilter(final String filter) {
-        this.filter = filter;
-
-        // Remember selection
-        final ServerContext selectedContext = getSelectedContext();
+        final FilterRun run = prepareFilter(filter);
+        run.run();
+        applyFilter(run);
+    }
 
-        applyFilter();
+    /**
+     * Captures what is needed to evaluate the filter. The returned run can be evaluated on any thread,
+     * but this method and applyFilter must be called on the UI thread.
+     */
+    public FilterRun prepareFilter(final String filter) {
+        return new FilterRun(filter);
+    }
 
-        // Attempt to restore the selection
-        select(selectedContext);
+    /**
+     * Shows the result of the run, unless the run was cancelled. Rows added after the run was prepared are
+     * checked here, so the result is complete even if the rows changed while it was being evaluated.
+     */
+    public void applyFilter(final FilterRun run) {
+        if (run.isCancelled() || run.matches == null) {
+            return;
+        }
+        if (run.generation != generation) {
+            // The rows were replaced while the run was evaluated, start over
+            setFilter(run.filter);
+            return;
+        }
 
-    }
+        // Remember selection
+        final ServerContextRow selectedRow = getSelectedRow();
 
-    private void applyFilter() {
+        this.filter = run.filter;
         if (!hasFilter()) {
             filteredRows = null;
+            appliedFilter = null;
         } else {
-            filteredRows = Lists.newArrayList(Collections2.filter(rows, new Predicate<ServerContext>() {
-                @Override
-                public boolean apply(ServerContext repositoryRow) {
-                    return rowContains(repositoryRow);
+            List<Row> matches = run.matches;
+            if (run.removals != removals) {
+                final List<Row> remainingMatches = new ArrayList<Row>(matches.size());
+                copyRemainingRows(matches, remainingMatches);
+                matches = remainingMatches;
+            }
+            if (run.firstUnseenSequence != nextSequence) {
+                final List<Row> lateMatches = new ArrayList<Row>();
+                for (final Row row : rows) {
+                    if (row.sequence >= run.firstUnseenSequence && row.contains(run.lowerFilter)) {
+                        lateMatches.add(row);
+                    }
                 }
-            }));
+                final List<Row> allMatches = new ArrayList<Row>(matches.size() + lateMatches.size());
+                merge(matches, lateMatches, allMatches);
+                matches = allMatches;
+            }
+            filteredRows = matches;
+            appliedFilter = run.lowerFilter;
         }
         super.fireTableDataChanged();
+
+        // Attempt to restore the selection
+        select(selectedRow);
     }
 
-    private boolean rowContains(ServerContext repositoryRow) {
-        // search for the string in a case insensitive way
-        // check each column for a match, if any column contains the string the result is true
-        for (int c = 0; c < columns.length; c++) {
-            if (StringUtils.containsIgnoreCase(getValueFor(repositoryRow, c), filter)) {
-                return true;
+    /**
+     * One evaluation of a filter against the rows as they were when the run was prepared.
+     */
+    public final class FilterRun implements Runnable {
+        // How many rows are checked between looks at the cancelled flag
+        private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+        private final String filter;
+        private final String lowerFilter;
+        private final List<Row> rowsSnapshot;
+        private final List<Row> previousMatches;
+        private final String previousFilter;
+        private final int firstUnseenSequence;
+        private final int generation;
+        private final int removals;
+        private volatile boolean cancelled = false;
+        private List<Row> matches;
+        // How many rows were checked against the filter
+        private int checkedRowCount = 0;
+
+        private FilterRun(final String filter) {
+            this.filter = filter;
+            this.lowerFilter = filter != null ? filter.toLowerCase(Locale.ROOT) : "";
+            this.rowsSnapshot = rows;
+            this.previousMatches = filteredRows;
+            this.previousFilter = appliedFilter;
+            this.firstUnseenSequence = nextSequence;
+            this.generation = ServerContextTableModel.this.generation;
+            this.removals = ServerContextTableModel.this.removals;
+        }
+
+        public String getFilter() {
+            return filter;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Get the number of rows the run checked against the filter
+         */
+        public int getCheckedRowCount() {
+            return checkedRowCount;
+        }
+
+        @Override
+        public void run() {
+            if (lowerFilter.length() == 0) {
+                matches = Collections.emptyList();
+            } else {
+                matches = findMatches();
             }
         }
 
-        return false;
+        /**
+         * Returns the rows (in sorted order) that contain the lowercased filter in any column, or null if the
+         * run was cancelled.
+         * <p/>
+         * If the filter refines the last one (it contains the previous filter, as it does while the user types),
+         * only the rows that matched before are checked. Otherwise the search index narrows the search down to
+         * the rows that contain the rarest trigram of the filter. Short filters, and filters whose trigrams are
+         * common, fall back to checking every row.
+         */
+        private List<Row> findMatches() {
+            if (previousMatches != null && previousFilter != null && lowerFilter.contains(previousFilter)) {
+                return filterRows(previousMatches);
+            }
+
+            // When most rows are candidates anyway, checking every row in order is cheaper than sorting the matches
+            final List<Row> candidates = searchIndex.getCandidates(lowerFilter, rowsSnapshot.size() / 4);
+            if (candidates == null) {
+                return filterRows(rowsSnapshot);
+            }
+
+            final List<Row> matches = new ArrayList<Row>();
+            for (final Row row : candidates) {
+                // Rows added after this run was prepared are checked when the result is applied
+                if (row.sequence < firstUnseenSequence && !row.removed) {
+                    checkedRowCount++;
+                    if (row.contains(lowerFilter)) {
+                        matches.add(row);
+                    }
+                }
+            }
+            // The index lists rows in the order they were added, so the matches have to be sorted
+            Collections.sort(matches, ROW_ORDER);
+            return cancelled ? null : matches;
+        }
+
+        private List<Row> filterRows(final List<Row> source) {
+            final List<Row> matches = new ArrayList<Row>();
+            for (int i = 0; i < source.size(); i++) {
+                if (i % CANCEL_CHECK_INTERVAL == 0 && cancelled) {
+                    return null;
+                }
+                final Row row = source.get(i);
+                checkedRowCount++;
+                if (row.contains(lowerFilter)) {
+                    matches.add(row);
+                }
+            }
+            return matches;
+        }
     }
 }
@@ -0,0 +1,141 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maps every three character substring of an item's (lowercased) values to the items that contain it.
+ * <p/>
+ * A substring search for a query of three or more characters only has to look at the items listed under
+ * the query's rarest trigram. Those items are candidates; the caller still has to check them against the
+ * full query. Trigrams that show up in a large share of the items can't narrow a search, so they stop being
+ * tracked once they get that common. The index can be searched on one thread while items are added on another.
+ */
+class TrigramIndex<T> {
+    static final int GRAM_LENGTH = 3;
+    // A trigram found in more than 1/COMMON_RATIO of the items (and at least MIN_COMMON_SIZE of them) is not tracked
+    private static final int COMMON_RATIO = 4;
+    private static final int MIN_COMMON_SIZE = 256;
+    private static final Object COMMON = new Object();
+    private static final long EMPTY_KEY = -1L;
+
+    // Open addressing hash table: trigrams are packed into a long (16 bits per char) so nothing is boxed
+    private long[] keys;
+    // Each value is either a List of items or COMMON
+    private Object[] values;
+    private int size;
+    private int itemCount;
+
+    TrigramIndex() {
+        clear();
+    }
+
+    /**
+     * Adds the item under every trigram of the given values. The values must already be lowercased.
+     */
+    public synchronized void add(final T item, final String[] lowerValues) {
+        itemCount++;
+        for (final String value : lowerValues) {
+            for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+                addPosting(gramAt(value, i), item);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the items that might contain the (lowercased) query, in the order they were added.
+     * Returns null if the index can't narrow the search down to maxCandidates items (the query is too short,
+     * only has common trigrams, or has too many candidates).
+     */
+    public synchronized List<T> getCandidates(final String lowerQuery, final int maxCandidates) {
+        List<T> smallest = null;
+        for (int i = 0; i + GRAM_LENGTH <= lowerQuery.length(); i++) {
+            final Object posting = values[slotOf(gramAt(lowerQuery, i))];
+            if (posting == null) {
+                // Nothing contains this part of the query
+                return Collections.emptyList();
+            }
+            if (posting != COMMON) {
+                @SuppressWarnings("unchecked")
+                final List<T> items = (List<T>) posting;
+                if (smallest == null || items.size() < smallest.size()) {
+                    smallest = items;
+                }
+            }
+        }
+        return smallest != null && smallest.size() <= maxCandidates ? new ArrayList<T>(smallest) : null;
+    }
+
+    public synchronized void clear() {
+        keys = new long[1024];
+        Arrays.fill(keys, EMPTY_KEY);
+        values = new Object[keys.length];
+        size = 0;
+        itemCount = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addPosting(final long gram, final T item) {
+        final int slot = slotOf(gram);
+        final Object posting = values[slot];
+        if (posting == null) {
+            final List<T> items = new ArrayList<T>(4);
+            items.add(item);
+            keys[slot] = gram;
+            values[slot] = items;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+        } else if (posting != COMMON) {
+            final List<T> items = (List<T>) posting;
+            // Skip the item if it already contains the trigram (items are added one at a time)
+            if (items.get(items.size() - 1) != item) {
+                items.add(item);
+                if (items.size() >= MIN_COMMON_SIZE && items.size() * COMMON_RATIO > itemCount) {
+                    values[slot] = COMMON;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the slot holding the trigram, or the empty slot where it would go.
+     */
+    private int slotOf(final long gram) {
+        final int mask = keys.length - 1;
+        int slot = hash(gram) & mask;
+        while (keys[slot] != EMPTY_KEY && keys[slot] != gram) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY_KEY);
+        values = new Object[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                final int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(final long gram) {
+        final long h = gram * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long gramAt(final String value, final int index) {
+        return ((long) value.charAt(index) << 32) | ((long) value.charAt(index + 1) << 16) | value.charAt(index + 2);
+    }
+}
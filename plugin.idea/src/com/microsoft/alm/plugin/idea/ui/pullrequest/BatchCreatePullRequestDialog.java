@@ -0,0 +1,94 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ValidationInfo;
+import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
+import com.microsoft.alm.plugin.idea.ui.common.BaseDialogImpl;
+import git4idea.repo.GitRepository;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.JComponent;
+import java.awt.Dimension;
+import java.util.List;
+
+/**
+ * UI class for the dialog that creates the same pull request in several repositories
+ */
+public class BatchCreatePullRequestDialog extends BaseDialogImpl {
+    public static final String DEFAULT_TARGET_BRANCH_PATTERN = "master";
+
+    private BatchCreatePullRequestForm batchCreatePullRequestForm;
+
+    public BatchCreatePullRequestDialog(final Project project, final List<GitRepository> repositories) {
+        super(project,
+                TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_DIALOG_TITLE),
+                TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_DIALOG_CREATE_BUTTON),
+                TfPluginBundle.KEY_BATCH_PR_DIALOG_TITLE);
+        batchCreatePullRequestForm.setRepositories(repositories);
+        batchCreatePullRequestForm.setTargetBranchPattern(DEFAULT_TARGET_BRANCH_PATTERN);
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        batchCreatePullRequestForm = new BatchCreatePullRequestForm();
+        final JComponent form = batchCreatePullRequestForm.getContentPanel();
+        form.setPreferredSize(new Dimension(600, 600));
+        return form;
+    }
+
+    @Override
+    public JComponent getPreferredFocusedComponent() {
+        return batchCreatePullRequestForm.getPreferredFocusedComponent();
+    }
+
+    public String getTitleText() {
+        return batchCreatePullRequestForm.getTitleText();
+    }
+
+    public String getDescriptionText() {
+        return batchCreatePullRequestForm.getDescriptionText();
+    }
+
+    public String getTargetBranchPattern() {
+        return batchCreatePullRequestForm.getTargetBranchPattern();
+    }
+
+    public List<GitRepository> getSelectedRepositories() {
+        return batchCreatePullRequestForm.getSelectedRepositories();
+    }
+
+    @Override
+    protected ValidationInfo doValidate() {
+        final String title = getTitleText();
+        if (StringUtils.isBlank(title)) {
+            return new ValidationInfo(TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_ERRORS_TITLE_EMPTY),
+                    batchCreatePullRequestForm.getTitleComponent());
+        }
+        if (title.length() > CreatePullRequestModel.MAX_SIZE_TITLE) {
+            return new ValidationInfo(TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_ERRORS_TITLE_TOO_LONG,
+                    CreatePullRequestModel.MAX_SIZE_TITLE), batchCreatePullRequestForm.getTitleComponent());
+        }
+
+        if (StringUtils.isBlank(getDescriptionText())) {
+            return new ValidationInfo(TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_ERRORS_DESCRIPTION_EMPTY),
+                    batchCreatePullRequestForm.getDescriptionComponent());
+        }
+
+        if (StringUtils.isBlank(StringUtils.remove(getTargetBranchPattern(), BatchPullRequestCreator.PATTERN_SEPARATOR))) {
+            return new ValidationInfo(TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_ERRORS_TARGET_EMPTY),
+                    batchCreatePullRequestForm.getTargetBranchComponent());
+        }
+
+        if (getSelectedRepositories().isEmpty()) {
+            return new ValidationInfo(TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_ERRORS_NO_REPOSITORIES),
+                    batchCreatePullRequestForm.getRepositoriesComponent());
+        }
+
+        return super.doValidate();
+    }
+}
@@ -0,0 +1,213 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.intellij.ui.CheckBoxList;
+import com.intellij.uiDesigner.core.GridConstraints;
+import com.intellij.uiDesigner.core.GridLayoutManager;
+import com.intellij.util.Function;
+import com.intellij.util.ui.JBUI;
+import com.microsoft.alm.plugin.idea.ui.common.SwingHelper;
+import git4idea.repo.GitRepository;
+
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import java.awt.Dimension;
+import java.awt.Insets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+
+/**
+ * This form asks for the title, description and target branch of the pull requests to create, and for the
+ * repositories to create them in.
+ */
+public class BatchCreatePullRequestForm {
+    private JPanel contentPanel;
+    private JTextField titleTextField;
+    private JScrollPane descriptionScrollPane;
+    private JTextArea descriptionTextArea;
+    private JTextField targetBranchTextField;
+    private JScrollPane repositoriesScrollPane;
+    private CheckBoxList<GitRepository> repositoryList;
+    private List<GitRepository> repositories = new ArrayList<GitRepository>();
+    private boolean initialized = false;
+
+    public JComponent getContentPanel() {
+        ensureInitialized();
+        return contentPanel;
+    }
+
+    private void ensureInitialized() {
+        if (!initialized) {
+            // Fix tab keys on text area
+            SwingHelper.fixTabKeys(descriptionTextArea);
+
+            SwingHelper.setPreferredHeight(descriptionScrollPane, 100);
+            SwingHelper.setPreferredHeight(repositoriesScrollPane, 150);
+            descriptionScrollPane.setMinimumSize(new Dimension(JBUI.scale(200), JBUI.scale(70)));
+            SwingHelper.copyFontAndMargins(descriptionTextArea, titleTextField);
+            SwingHelper.setMaxCharLimit(descriptionTextArea, CreatePullRequestModel.MAX_SIZE_DESCRIPTION);
+
+            initialized = true;
+        }
+    }
+
+    public JComponent getPreferredFocusedComponent() {
+        return titleTextField;
+    }
+
+    public JComponent getTitleComponent() {
+        return titleTextField;
+    }
+
+    public JComponent getDescriptionComponent() {
+        return descriptionTextArea;
+    }
+
+    public JComponent getTargetBranchComponent() {
+        return targetBranchTextField;
+    }
+
+    public JComponent getRepositoriesComponent() {
+        return repositoryList;
+    }
+
+    public String getTitleText() {
+        return titleTextField.getText();
+    }
+
+    public String getDescriptionText() {
+        return descriptionTextArea.getText();
+    }
+
+    public String getTargetBranchPattern() {
+        return targetBranchTextField.getText();
+    }
+
+    public void setTargetBranchPattern(final String pattern) {
+        targetBranchTextField.setText(pattern);
+    }
+
+    /**
+     * Show the repositories, all of them selected
+     */
+    public void setRepositories(final List<GitRepository> repositories) {
+        this.repositories = new ArrayList<GitRepository>(repositories);
+        repositoryList.setItems(this.repositories, new Function<GitRepository, String>() {
+            @Override
+            public String fun(final GitRepository repository) {
+                return repository.getRoot().getPresentableUrl();
+            }
+        });
+        for (final GitRepository repository : this.repositories) {
+            repositoryList.setItemSelected(repository, true);
+        }
+    }
+
+    public List<GitRepository> getSelectedRepositories() {
+        final List<GitRepository> selected = new ArrayList<GitRepository>();
+        for (final GitRepository repository : repositories) {
+            if (repositoryList.isItemSelected(repository)) {
+                selected.add(repository);
+            }
+        }
+        return selected;
+    }
+
+    private void createUIComponents() {
+        repositoryList = new CheckBoxList<GitRepository>();
+    }
+
+    {
+// GUI initializer generated by IntelliJ IDEA GUI Designer
+// >>> IMPORTANT!! <<<
+// DO NOT EDIT OR ADD ANY CODE HERE!
+        $$$setupUI$$$();
+    }
+
+    /**
+     * Method generated by IntelliJ IDEA GUI Designer
+     * >>> IMPORTANT!! <<<
+     * DO NOT edit this method OR call it in your code!
+     *
+     * @noinspection ALL
+     */
+    private void $$$setupUI$$$() {
+        createUIComponents();
+        contentPanel = new JPanel();
+        contentPanel.setLayout(new GridLayoutManager(9, 1, new Insets(0, 0, 0, 0), -1, -1));
+        final JLabel label1 = new JLabel();
+        this.$$$loadLabelText$$$(label1, ResourceBundle.getBundle("com/microsoft/alm/plugin/idea/ui/tfplugin").getString("CreatePullRequestDialog.TitleLabel"));
+        contentPanel.add(label1, new GridConstraints(0, 0, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_FIXED, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+        titleTextField = new JTextField();
+        contentPanel.add(titleTextField, new GridConstraints(1, 0, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_WANT_GROW, GridConstraints.SIZEPOLICY_FIXED, null, new Dimension(150, -1), null, 0, false));
+        final JLabel label2 = new JLabel();
+        this.$$$loadLabelText$$$(label2, ResourceBundle.getBundle("com/microsoft/alm/plugin/idea/ui/tfplugin").getString("CreatePullRequestDialog.DescriptionLabel"));
+        contentPanel.add(label2, new GridConstraints(2, 0, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_FIXED, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+        descriptionScrollPane = new JScrollPane();
+        contentPanel.add(descriptionScrollPane, new GridConstraints(3, 0, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_BOTH, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_WANT_GROW, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_WANT_GROW, null, null, null, 0, false));
+        descriptionTextArea = new JTextArea();
+        descriptionTextArea.setLineWrap(true);
+        descriptionTextArea.setWrapStyleWord(true);
+        descriptionScrollPane.setViewportView(descriptionTextArea);
+        final JLabel label3 = new JLabel();
+        this.$$$loadLabelText$$$(label3, ResourceBundle.getBundle("com/microsoft/alm/plugin/idea/ui/tfplugin").getString("BatchCreatePullRequestDialog.TargetBranchLabel"));
+        contentPanel.add(label3, new GridConstraints(4, 0, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_FIXED, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+        targetBranchTextField = new JTextField();
+        contentPanel.add(targetBranchTextField, new GridConstraints(5, 0, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_WANT_GROW, GridConstraints.SIZEPOLICY_FIXED, null, new Dimension(150, -1), null, 0, false));
+        final JLabel label4 = new JLabel();
+        label4.setEnabled(false);
+        this.$$$loadLabelText$$$(label4, ResourceBundle.getBundle("com/microsoft/alm/plugin/idea/ui/tfplugin").getString("BatchCreatePullRequestDialog.TargetBranchHint"));
+        contentPanel.add(label4, new GridConstraints(6, 0, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_FIXED, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+        final JLabel label5 = new JLabel();
+        this.$$$loadLabelText$$$(label5, ResourceBundle.getBundle("com/microsoft/alm/plugin/idea/ui/tfplugin").getString("BatchCreatePullRequestDialog.RepositoriesLabel"));
+        contentPanel.add(label5, new GridConstraints(7, 0, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_FIXED, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+        repositoriesScrollPane = new JScrollPane();
+        contentPanel.add(repositoriesScrollPane, new GridConstraints(8, 0, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_BOTH, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_WANT_GROW, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_WANT_GROW, null, null, null, 0, false));
+        repositoriesScrollPane.setViewportView(repositoryList);
+        label1.setLabelFor(titleTextField);
+        label2.setLabelFor(descriptionTextArea);
+        label3.setLabelFor(targetBranchTextField);
+        label5.setLabelFor(repositoryList);
+    }
+
+    /**
+     * @noinspection ALL
+     */
+    private void $$$loadLabelText$$$(JLabel component, String text) {
+        StringBuffer result = new StringBuffer();
+        boolean haveMnemonic = false;
+        char mnemonic = '\0';
+        int mnemonicIndex = -1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '&') {
+                i++;
+                if (i == text.length()) break;
+                if (!haveMnemonic && text.charAt(i) != '&') {
+                    haveMnemonic = true;
+                    mnemonic = text.charAt(i);
+                    mnemonicIndex = result.length();
+                }
+            }
+            result.append(text.charAt(i));
+        }
+        component.setText(result.toString());
+        if (haveMnemonic) {
+            component.setDisplayedMnemonic(mnemonic);
+            component.setDisplayedMnemonicIndex(mnemonicIndex);
+        }
+    }
+
+    /**
+     * @noinspection ALL
+     */
+    public JComponent $$$getRootComponent$$$() {
+        return contentPanel;
+    }
+}
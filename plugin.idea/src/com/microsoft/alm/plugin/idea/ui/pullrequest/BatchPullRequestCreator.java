@@ -0,0 +1,404 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.intellij.ide.BrowserUtil;
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationListener;
+import com.intellij.openapi.progress.PerformInBackgroundOption;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vcs.VcsNotifier;
+import com.microsoft.alm.common.utils.UrlHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
+import com.microsoft.alm.plugin.idea.utils.TfGitHelper;
+import com.microsoft.teamfoundation.sourcecontrol.webapi.GitHttpClient;
+import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitPullRequest;
+import git4idea.GitLocalBranch;
+import git4idea.GitRemoteBranch;
+import git4idea.commands.GitCommandResult;
+import git4idea.repo.GitRemote;
+import git4idea.repo.GitRepoInfo;
+import git4idea.repo.GitRepository;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.event.HyperlinkEvent;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static com.microsoft.alm.plugin.idea.ui.pullrequest.PullRequestHelper.PRCreateStatus;
+
+/**
+ * This class creates the same pull request in several TF git repositories of a project. Each repository pushes
+ * its current branch and creates a pull request to the first remote branch matching the target branch pattern.
+ * <p/>
+ * The server context of the first repository of each account is resolved first, one account at a time, so the user
+ * is asked to sign in at most once per account. Then up to MAX_PARALLEL repositories resolve their contexts with
+ * the credentials of their account, are pushed and get their pull request at the same time. The results are shown
+ * in one notification.
+ */
+public class BatchPullRequestCreator {
+    private static final Logger logger = LoggerFactory.getLogger(BatchPullRequestCreator.class);
+
+    public static final int MAX_PARALLEL = 4;
+    public static final String PATTERN_SEPARATOR = ",";
+    private static final String RESULT_SEPARATOR = "<br/>";
+
+    public enum Status {
+        CREATED,
+        ALREADY_EXISTS,
+        SKIPPED,
+        FAILED
+    }
+
+    /**
+     * The outcome for one repository; the message is a link to the pull request or the reason it wasn't created
+     */
+    public static class Result {
+        private final GitRepository gitRepository;
+        private final Status status;
+        private final String message;
+
+        public Result(final GitRepository gitRepository, final Status status, final String message) {
+            this.gitRepository = gitRepository;
+            this.status = status;
+            this.message = message;
+        }
+
+        public GitRepository getGitRepository() {
+            return gitRepository;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private final Project project;
+    private final PullRequestHelper pullRequestHelper;
+
+    public BatchPullRequestCreator(@NotNull final Project project) {
+        this.project = project;
+        this.pullRequestHelper = new PullRequestHelper();
+    }
+
+    /**
+     * Create the pull requests on a background task
+     *
+     * @param targetBranchPattern branch names to try in order, separated by commas; * matches any characters
+     */
+    public void createPullRequests(@NotNull final List<GitRepository> gitRepositories,
+                                   @NotNull final String title,
+                                   @NotNull final String description,
+                                   @NotNull final String targetBranchPattern) {
+        final Task.Backgroundable createPullRequestsTask = new Task.Backgroundable(project,
+                TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_DIALOG_TITLE),
+                true, PerformInBackgroundOption.DEAF) {
+            @Override
+            public void run(@NotNull final ProgressIndicator progressIndicator) {
+                final List<Result> results
+                        = doCreatePullRequests(gitRepositories, title, description, targetBranchPattern, progressIndicator);
+                notifyResults(results);
+            }
+        };
+
+        createPullRequestsTask.queue();
+    }
+
+    private List<Result> doCreatePullRequests(@NotNull final List<GitRepository> gitRepositories,
+                                              @NotNull final String title,
+                                              @NotNull final String description,
+                                              @NotNull final String targetBranchPattern,
+                                              @NotNull final ProgressIndicator progressIndicator) {
+        final Map<GitRepository, Result> results = new LinkedHashMap<GitRepository, Result>();
+        for (final GitRepository gitRepository : gitRepositories) {
+            results.put(gitRepository, null);
+        }
+
+        // resolve the context of the first repository of each account one at a time, so the user signs in to each
+        // account once; the other repositories of the account find its credentials in the parallel phase
+        final Map<String, Boolean> signedInAccounts = new HashMap<String, Boolean>();
+        final Map<GitRepository, ServerContext> contexts = new HashMap<GitRepository, ServerContext>();
+        final Map<GitRepository, String> remoteUrls = new HashMap<GitRepository, String>();
+        for (final GitRepository gitRepository : gitRepositories) {
+            if (progressIndicator.isCanceled()) {
+                break;
+            }
+            final GitRemote tfRemote = TfGitHelper.getTfGitRemote(gitRepository);
+            final String remoteUrl = tfRemote != null ? tfRemote.getFirstUrl() : null;
+            if (StringUtils.isEmpty(remoteUrl)) {
+                results.put(gitRepository, new Result(gitRepository, Status.SKIPPED, StringUtils.EMPTY));
+                continue;
+            }
+
+            final String account = getAccount(remoteUrl);
+            final Boolean signedIn = signedInAccounts.get(account);
+            if (signedIn == null) {
+                progressIndicator.setText(TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_PROGRESS, getName(gitRepository)));
+                final ServerContext context = ServerContextManager.getInstance().getAuthenticatedContext(remoteUrl, true);
+                signedInAccounts.put(account, context != null);
+                if (context != null) {
+                    contexts.put(gitRepository, context);
+                } else {
+                    results.put(gitRepository, getAuthFailedResult(gitRepository, remoteUrl));
+                }
+            } else if (signedIn) {
+                remoteUrls.put(gitRepository, remoteUrl);
+            } else {
+                // don't ask again for an account the user didn't sign in to
+                results.put(gitRepository, getAuthFailedResult(gitRepository, remoteUrl));
+            }
+        }
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(MAX_PARALLEL, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NotNull final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "TFS batch pull request " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            final CompletionService<Result> completionService = new ExecutorCompletionService<Result>(executorService);
+            int submitted = 0;
+            for (final Map.Entry<GitRepository, Result> entry : results.entrySet()) {
+                if (entry.getValue() != null) {
+                    continue;
+                }
+                final GitRepository gitRepository = entry.getKey();
+                final ServerContext resolvedContext = contexts.get(gitRepository);
+                final String remoteUrl = remoteUrls.get(gitRepository);
+                if (resolvedContext == null && remoteUrl == null) {
+                    // canceled before its account was resolved
+                    continue;
+                }
+                completionService.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() throws Exception {
+                        if (progressIndicator.isCanceled()) {
+                            return new Result(gitRepository, Status.SKIPPED,
+                                    TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_ERRORS_CANCELED));
+                        }
+                        final ServerContext context = resolvedContext != null ? resolvedContext
+                                : ServerContextManager.getInstance().getAuthenticatedContext(remoteUrl, true);
+                        if (context == null) {
+                            return getAuthFailedResult(gitRepository, remoteUrl);
+                        }
+                        return createPullRequest(gitRepository, context, title, description, targetBranchPattern);
+                    }
+                });
+                submitted++;
+            }
+
+            for (int done = 0; done < submitted; done++) {
+                final Result result = completionService.take().get();
+                results.put(result.getGitRepository(), result);
+                progressIndicator.setFraction((double) (done + 1) / submitted);
+                progressIndicator.setText(TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_PROGRESS, getName(result.getGitRepository())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // createPullRequest catches everything, so this shouldn't happen
+            logger.warn("Create pull requests failed", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        final List<Result> resultList = new ArrayList<Result>();
+        for (final Map.Entry<GitRepository, Result> entry : results.entrySet()) {
+            resultList.add(entry.getValue() != null ? entry.getValue()
+                    : new Result(entry.getKey(), Status.SKIPPED, TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_ERRORS_CANCELED)));
+        }
+        return resultList;
+    }
+
+    private static Result getAuthFailedResult(final GitRepository gitRepository, final String remoteUrl) {
+        return new Result(gitRepository, Status.FAILED,
+                TfPluginBundle.message(TfPluginBundle.KEY_ERRORS_AUTH_NOT_SUCCESSFUL, remoteUrl));
+    }
+
+    private Result createPullRequest(@NotNull final GitRepository gitRepository,
+                                     @NotNull final ServerContext context,
+                                     @NotNull final String title,
+                                     @NotNull final String description,
+                                     @NotNull final String targetBranchPattern) {
+        final GitRepoInfo gitRepoInfo = gitRepository.getInfo();
+        final GitLocalBranch sourceBranch = gitRepoInfo != null ? gitRepoInfo.getCurrentBranch() : null;
+        if (sourceBranch == null) {
+            return new Result(gitRepository, Status.SKIPPED,
+                    TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_ERRORS_SOURCE_EMPTY));
+        }
+
+        final GitRemoteBranch trackingBranch = sourceBranch.findTrackedBranch(gitRepository);
+        final List<GitRemoteBranch> targetBranches = findTargetBranches(CreatePullRequestModel.getTargetBranches(
+                gitRepoInfo, TfGitHelper.getTfGitRemotes(gitRepository), trackingBranch), targetBranchPattern);
+        if (targetBranches.isEmpty()) {
+            return new Result(gitRepository, Status.SKIPPED,
+                    TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_ERRORS_NO_TARGET, targetBranchPattern));
+        }
+        if (targetBranches.size() > 1) {
+            final List<String> names = new ArrayList<String>();
+            for (final GitRemoteBranch targetBranch : targetBranches) {
+                names.add(targetBranch.getName());
+            }
+            return new Result(gitRepository, Status.SKIPPED, TfPluginBundle.message(
+                    TfPluginBundle.KEY_BATCH_PR_ERRORS_AMBIGUOUS_TARGET, targetBranchPattern, StringUtils.join(names, ", ")));
+        }
+        final GitRemoteBranch targetBranch = targetBranches.get(0);
+
+        final String branchNameOnRemoteServer;
+        try {
+            final Pair<String, GitCommandResult> pushResult
+                    = CreatePullRequestModel.doPushCommits(gitRepository, sourceBranch, targetBranch.getRemote()).get();
+            branchNameOnRemoteServer = pushResult.getFirst();
+        } catch (ExecutionException e) {
+            return new Result(gitRepository, Status.FAILED, e.getCause().getLocalizedMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(gitRepository, Status.SKIPPED,
+                    TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_ERRORS_CANCELED));
+        }
+
+        final GitHttpClient gitClient = context.getGitHttpClient();
+        try {
+            final UUID repositoryId = context.getGitRepository().getId();
+            final UUID projectId = context.getTeamProjectReference().getId();
+
+            final GitPullRequest gitPullRequest = gitClient.createPullRequest(
+                    pullRequestHelper.generateGitPullRequest(title, description, branchNameOnRemoteServer, targetBranch),
+                    projectId, repositoryId);
+
+            return new Result(gitRepository, Status.CREATED, pullRequestHelper.getHtmlMsg(
+                    context.getGitRepository().getRemoteUrl(), gitPullRequest.getPullRequestId()));
+        } catch (Throwable t) {
+            // catch everything so one repository doesn't stop the others
+            final Pair<PRCreateStatus, String> parsed
+                    = pullRequestHelper.parseException(t, branchNameOnRemoteServer, targetBranch, context, gitClient);
+            if (parsed.getFirst() == PRCreateStatus.DUPLICATE) {
+                return new Result(gitRepository, Status.ALREADY_EXISTS, parsed.getSecond());
+            }
+
+            logger.warn("Create pull request failed in " + getName(gitRepository), t);
+            return new Result(gitRepository, Status.FAILED, parsed.getSecond());
+        }
+    }
+
+    /**
+     * Find the remote branches matching the pattern. The branch names in the pattern are tried in order, and the
+     * matches of the first one that matches any branch are returned.
+     */
+    static List<GitRemoteBranch> findTargetBranches(@NotNull final Collection<GitRemoteBranch> remoteBranches,
+                                                    @NotNull final String targetBranchPattern) {
+        for (final String namePattern : StringUtils.split(targetBranchPattern, PATTERN_SEPARATOR)) {
+            if (StringUtils.isBlank(namePattern)) {
+                continue;
+            }
+
+            final Pattern pattern = toRegex(namePattern.trim());
+            final List<GitRemoteBranch> matches = new ArrayList<GitRemoteBranch>();
+            for (final GitRemoteBranch remoteBranch : remoteBranches) {
+                if (pattern.matcher(remoteBranch.getNameForRemoteOperations()).matches()) {
+                    matches.add(remoteBranch);
+                }
+            }
+            if (!matches.isEmpty()) {
+                return matches;
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    private static Pattern toRegex(final String namePattern) {
+        final List<String> parts = new ArrayList<String>();
+        for (final String part : StringUtils.splitPreserveAllTokens(namePattern, '*')) {
+            parts.add(Pattern.quote(part));
+        }
+        return Pattern.compile(StringUtils.join(parts, ".*"));
+    }
+
+    private void notifyResults(final List<Result> results) {
+        final int[] counts = new int[Status.values().length];
+        final List<String> lines = new ArrayList<String>();
+        for (final Result result : results) {
+            counts[result.getStatus().ordinal()]++;
+            lines.add(TfPluginBundle.message(getResultKey(result.getStatus()), getName(result.getGitRepository()),
+                    StringUtils.defaultString(result.getMessage())));
+        }
+
+        final String title = TfPluginBundle.message(TfPluginBundle.KEY_BATCH_PR_RESULTS_TITLE,
+                counts[Status.CREATED.ordinal()], counts[Status.ALREADY_EXISTS.ordinal()],
+                counts[Status.SKIPPED.ordinal()], counts[Status.FAILED.ordinal()]);
+        final String message = StringUtils.join(lines, RESULT_SEPARATOR);
+        final NotificationListener listener = new NotificationListener() {
+            @Override
+            public void hyperlinkUpdate(@NotNull final Notification n, @NotNull final HyperlinkEvent e) {
+                BrowserUtil.browse(e.getURL());
+            }
+        };
+
+        if (counts[Status.FAILED.ordinal()] > 0) {
+            VcsNotifier.getInstance(project).notifyError(title, message, listener);
+        } else {
+            VcsNotifier.getInstance(project).notifyImportantInfo(title, message, listener);
+        }
+    }
+
+    private static String getResultKey(final Status status) {
+        switch (status) {
+            case CREATED:
+                return TfPluginBundle.KEY_BATCH_PR_RESULT_CREATED;
+            case ALREADY_EXISTS:
+                return TfPluginBundle.KEY_BATCH_PR_RESULT_ALREADY_EXISTS;
+            case SKIPPED:
+                return TfPluginBundle.KEY_BATCH_PR_RESULT_SKIPPED;
+            default:
+                return TfPluginBundle.KEY_BATCH_PR_RESULT_FAILED;
+        }
+    }
+
+    /**
+     * Repositories of one account share their credentials
+     */
+    private static String getAccount(final String remoteUrl) {
+        final URI remoteUri = UrlHelper.createUri(remoteUrl);
+        return remoteUri != null ? StringUtils.defaultString(remoteUri.getAuthority()).toLowerCase(Locale.ROOT)
+                : remoteUrl;
+    }
+
+    static String getName(final GitRepository gitRepository) {
+        return gitRepository.getRoot().getName();
+    }
+}
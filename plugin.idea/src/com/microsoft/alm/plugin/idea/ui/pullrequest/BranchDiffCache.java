@@ -0,0 +1,150 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vcs.changes.Change;
+import git4idea.GitCommit;
+import git4idea.repo.GitRepository;
+import git4idea.util.GitCommitCompareInfo;
+import org.apache.commons.lang.StringUtils;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * This class is a singleton that caches the branch diffs calculated for the Create Pull Request dialog.
+ * Entries are keyed by the repository root and the commit hashes of the source and target branches, so every
+ * dialog (in any project) comparing the same commits shares them. After a fetch or a new commit the hashes
+ * change, so a stale diff is never returned; the old entry just ages out.
+ * <p/>
+ * The cache is bounded by the number of changes it holds, and its values are softly referenced so they can
+ * be reclaimed when memory runs low. The diffs (their changes and commits, and the compare info itself) refer to
+ * the project they were calculated in, so the entries of a project's repositories are removed when it closes
+ * (see removeRepositories).
+ * <p/>
+ * Thread-safety: Thread safe
+ */
+public class BranchDiffCache {
+    // Total number of changed files kept across all entries
+    public static final long MAX_CHANGES = 20000;
+    private static final String KEY_SEPARATOR = "|";
+
+    private final Cache<String, CacheEntry> cache;
+
+    private static class CacheEntry {
+        // The repository the diff was calculated in, only used to make copies for other repositories
+        private final WeakReference<GitRepository> gitRepository;
+        private final GitCommitCompareInfo compareInfo;
+
+        CacheEntry(final GitRepository gitRepository, final GitCommitCompareInfo compareInfo) {
+            this.gitRepository = new WeakReference<GitRepository>(gitRepository);
+            this.compareInfo = compareInfo;
+        }
+
+        /**
+         * GitCommitCompareInfo is keyed by repository object, so a repository of another project needs its own copy
+         */
+        GitCommitCompareInfo getCompareInfo(final GitRepository repository) {
+            final GitRepository calculatedIn = gitRepository.get();
+            if (calculatedIn == null || repository == calculatedIn) {
+                return compareInfo;
+            }
+
+            final GitCommitCompareInfo copy = LargeDiffCompareInfo.createLike(compareInfo);
+            copy.put(repository, compareInfo.getTotalDiff());
+            copy.put(repository, new Pair<List<GitCommit>, List<GitCommit>>(
+                    compareInfo.getHeadToBranchCommits(calculatedIn), compareInfo.getBranchToHeadCommits(calculatedIn)));
+            return copy;
+        }
+    }
+
+    private static class Holder {
+        private static BranchDiffCache INSTANCE = new BranchDiffCache();
+    }
+
+    public static BranchDiffCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Only tests should create their own cache.
+     */
+    protected BranchDiffCache() {
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(MAX_CHANGES)
+                .weigher(new Weigher<String, CacheEntry>() {
+                    @Override
+                    public int weigh(final String key, final CacheEntry entry) {
+                        final Collection<Change> diff = entry.compareInfo.getTotalDiff();
+                        int weight = diff != null ? diff.size() + 1 : 1;
+                        if (entry.compareInfo instanceof LargeDiffCompareInfo) {
+                            // a path is much smaller than a change
+                            weight += ((LargeDiffCompareInfo) entry.compareInfo).getChangedPaths().size() / 10;
+                        }
+                        return weight;
+                    }
+                })
+                .softValues()
+                .build();
+    }
+
+    /**
+     * Returns the diff between the two commits, calling the loader only if it isn't cached yet
+     */
+    public GitCommitCompareInfo get(final GitRepository gitRepository, final String sourceHash, final String targetHash,
+                                    final Callable<GitCommitCompareInfo> loader) throws ExecutionException {
+        final CacheEntry entry = cache.get(getKey(gitRepository, sourceHash, targetHash), new Callable<CacheEntry>() {
+            @Override
+            public CacheEntry call() throws Exception {
+                return new CacheEntry(gitRepository, loader.call());
+            }
+        });
+        return entry.getCompareInfo(gitRepository);
+    }
+
+    /**
+     * Returns true if the diff between the two commits is cached, false if it is missing or still being calculated
+     */
+    public boolean contains(final GitRepository gitRepository, final String sourceHash, final String targetHash) {
+        return cache.getIfPresent(getKey(gitRepository, sourceHash, targetHash)) != null;
+    }
+
+    /**
+     * Removes the diffs of the repositories, called when their project closes
+     */
+    public void removeRepositories(final Collection<GitRepository> gitRepositories) {
+        final Set<String> roots = new HashSet<String>();
+        for (final GitRepository gitRepository : gitRepositories) {
+            roots.add(getRoot(gitRepository));
+        }
+        final Iterator<String> keys = cache.asMap().keySet().iterator();
+        while (keys.hasNext()) {
+            if (roots.contains(StringUtils.substringBeforeLast(keys.next(), KEY_SEPARATOR))) {
+                keys.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    private static String getKey(final GitRepository gitRepository, final String sourceHash, final String targetHash) {
+        return getRoot(gitRepository) + KEY_SEPARATOR + sourceHash + ".." + targetHash;
+    }
+
+    private static String getRoot(final GitRepository gitRepository) {
+        return gitRepository.getRoot() != null ? gitRepository.getRoot().getPath() : "";
+    }
+}
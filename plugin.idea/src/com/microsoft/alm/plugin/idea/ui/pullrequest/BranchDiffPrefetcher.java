@@ -0,0 +1,179 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.intellij.ide.PowerSaveMode;
+import com.intellij.openapi.components.ProjectComponent;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.Alarm;
+import com.intellij.util.messages.MessageBusConnection;
+import com.microsoft.alm.plugin.idea.utils.TfGitHelper;
+import git4idea.GitUtil;
+import git4idea.GitLocalBranch;
+import git4idea.GitRemoteBranch;
+import git4idea.repo.GitRepository;
+import git4idea.repo.GitRepositoryChangeListener;
+import git4idea.util.GitCommitCompareInfo;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * This project component calculates the diff the Create Pull Request dialog will show before the dialog is opened.
+ * Whenever a TF git repository changes (the current branch is switched, a commit is made, or a push or fetch
+ * moves a remote branch), it compares the current branch with the default target branch on the project's
+ * PullRequestDiffExecutor and puts the result in the BranchDiffCache. A newer change cancels the prefetch that is
+ * still running, since its branches have moved on. Opening the dialog on the same commits then skips the loading spinner.
+ * If the dialog asks for the diff while it is still being calculated, the cache makes it wait for that result
+ * instead of starting over.
+ * <p/>
+ * Nothing is calculated in power save mode.
+ */
+public class BranchDiffPrefetcher implements ProjectComponent {
+    private static final Logger logger = LoggerFactory.getLogger(BranchDiffPrefetcher.class);
+
+    // Several change events usually come together (e.g. a fetch moves many refs), so wait for them to settle
+    private static final int DELAY_MILLIS = 2000;
+
+    private final Project project;
+    private final Set<GitRepository> changedRepositories = new LinkedHashSet<GitRepository>();
+    private Alarm alarm;
+    private final Object prefetchLock = new Object();
+    private Future<?> prefetchFuture;
+    private MessageBusConnection connection;
+
+    public BranchDiffPrefetcher(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void projectOpened() {
+        alarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, project);
+        connection = project.getMessageBus().connect();
+        connection.subscribe(GitRepository.GIT_REPO_CHANGE, new GitRepositoryChangeListener() {
+            @Override
+            public void repositoryChanged(@NotNull final GitRepository repository) {
+                if (TfGitHelper.isTfGitRepository(repository)) {
+                    scheduleFor(repository);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void projectClosed() {
+        if (connection != null) {
+            connection.disconnect();
+            connection = null;
+        }
+        // the cached diffs refer to the project, don't keep it around
+        BranchDiffCache.getInstance().removeRepositories(GitUtil.getRepositoryManager(project).getRepositories());
+    }
+
+    @Override
+    public void initComponent() {
+        // nothing to do until the project is opened
+    }
+
+    @Override
+    public void disposeComponent() {
+        // the alarm is disposed with the project
+    }
+
+    @NotNull
+    @Override
+    public String getComponentName() {
+        return "BranchDiffPrefetcher";
+    }
+
+    private void scheduleFor(final GitRepository repository) {
+        synchronized (changedRepositories) {
+            changedRepositories.add(repository);
+        }
+        if (alarm == null || alarm.isDisposed()) {
+            return;
+        }
+        alarm.cancelAllRequests();
+        alarm.addRequest(new Runnable() {
+            @Override
+            public void run() {
+                submitPrefetch();
+            }
+        }, DELAY_MILLIS);
+    }
+
+    private synchronized void submitPrefetch() {
+        if (project.isDisposed()) {
+            return;
+        }
+        if (prefetchFuture != null) {
+            prefetchFuture.cancel(true);
+        }
+        prefetchFuture = PullRequestDiffExecutor.getInstance(project).submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                // wait for the cancelled prefetch to hand back the repositories it didn't finish
+                synchronized (prefetchLock) {
+                    final List<GitRepository> repositories;
+                    synchronized (changedRepositories) {
+                        repositories = new ArrayList<GitRepository>(changedRepositories);
+                        changedRepositories.clear();
+                    }
+                    for (int i = 0; i < repositories.size(); i++) {
+                        prefetch(repositories.get(i));
+                        if (Thread.currentThread().isInterrupted()) {
+                            // a newer prefetch cancelled this one, it takes over the rest
+                            synchronized (changedRepositories) {
+                                changedRepositories.addAll(repositories.subList(i, repositories.size()));
+                            }
+                            return null;
+                        }
+                    }
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Calculates the diff between the current branch and the default target branch, unless it is cached already
+     */
+    void prefetch(final GitRepository repository) {
+        if (project.isDisposed() || PowerSaveMode.isEnabled()) {
+            return;
+        }
+
+        final GitLocalBranch sourceBranch = repository.getCurrentBranch();
+        final GitRemoteBranch targetBranch = CreatePullRequestModel.getDefaultTargetBranch(repository);
+        if (sourceBranch == null || targetBranch == null) {
+            return;
+        }
+
+        final String sourceHash = sourceBranch.getHash().asString();
+        final String targetHash = targetBranch.getHash().asString();
+        try {
+            BranchDiffCache.getInstance().get(repository, sourceHash, targetHash, new Callable<GitCommitCompareInfo>() {
+                @Override
+                public GitCommitCompareInfo call() throws Exception {
+                    logger.info("prefetch: calculating the diff of {} against {}", sourceBranch.getName(), targetBranch.getName());
+                    return new DiffCompareInfoProvider(PullRequestDiffExecutor.getInstance(project).getHelperExecutor())
+                            .getBranchCompareInfo(project, repository, sourceHash, targetHash);
+                }
+            });
+        } catch (ExecutionException e) {
+            // the dialog will try again and show the error
+            logger.warn("prefetch: failed to calculate the diff", e.getCause());
+        } catch (RuntimeException e) {
+            logger.warn("prefetch: failed to calculate the diff", e);
+        }
+    }
+}
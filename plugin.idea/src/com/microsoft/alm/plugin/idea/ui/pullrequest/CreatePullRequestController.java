@@ -70,6 +70,10 @@ public class CreatePullRequestController implements Observer, ActionListener {
         if (CreatePullRequestForm.CMD_TARGET_BRANCH_UPDATED.equals(e.getActionCommand())) {
             this.createModel.setTargetBranch(this.createDialog.getSelectedTargetBranch());
             this.createModel.loadDiff();
+        } else if (CreatePullRequestForm.CMD_LOAD_MORE_COMMITS.equals(e.getActionCommand())) {
+            this.createModel.loadMoreCommits();
+        } else if (CreatePullRequestForm.CMD_FOLDER_SELECTED.equals(e.getActionCommand())) {
+            this.createModel.loadFolderDiff(this.createDialog.getSelectedFolder());
         } else if (BaseDialog.CMD_OK.equals(e.getActionCommand())) {
             this.createModel.createPullRequest();
         }
@@ -105,6 +109,10 @@ public class CreatePullRequestController implements Observer, ActionListener {
             this.createDialog.populateDiff(this.createModel.getProject(), this.createModel.getLocalBranchChanges());
         }
 
+        if (CreatePullRequestModel.PROP_FOLDER_DIFF.equals(arg)) {
+            this.createDialog.setFolderChanges(this.createModel.getProject(), this.createModel.getFolderChanges());
+        }
+
     }
 
     private boolean sanityCheckOnModel() {
@@ -4,6 +4,7 @@
 package com.microsoft.alm.plugin.idea.ui.pullrequest;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.changes.Change;
 import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.ui.common.BaseDialogImpl;
 import git4idea.GitBranch;
@@ -16,6 +17,7 @@ import javax.swing.JComponent;
 import javax.swing.JPanel;
 import java.awt.Dimension;
 import java.awt.event.ActionListener;
+import java.util.Collection;
 
 /**
  * UI class for pull request creation dialog
@@ -23,6 +25,7 @@ import java.awt.event.ActionListener;
 public class CreatePullRequestDialog extends BaseDialogImpl {
 
     private CreatePullRequestForm createPullRequestForm;
+    private GitChangesContainer shownChanges;
 
     public CreatePullRequestDialog(final Project project) {
         super(project,
@@ -64,9 +67,36 @@ public class CreatePullRequestDialog extends BaseDialogImpl {
 
     public void populateDiff(final Project project, final GitChangesContainer changesContainer) {
         if (project != null && changesContainer != null) {
-            this.createPullRequestForm.populateDiffPane(project, changesContainer.getGitRepository(),
-                    changesContainer.getSourceBranchName(), changesContainer.getTargetBranchName(),
-                    changesContainer.getGitCommitCompareInfo());
+            if (isSameDiff(this.shownChanges, changesContainer)) {
+                // another page of commits was loaded, the changes are the same
+                this.createPullRequestForm.populateCommitsPane(project, changesContainer.getGitRepository(),
+                        changesContainer.getSourceBranchName(), changesContainer.getTargetBranchName(),
+                        changesContainer.getGitCommitCompareInfo(), changesContainer.hasMoreCommits());
+            } else {
+                this.createPullRequestForm.populateDiffPane(project, changesContainer.getGitRepository(),
+                        changesContainer.getSourceBranchName(), changesContainer.getTargetBranchName(),
+                        changesContainer.getGitCommitCompareInfo(), changesContainer.hasMoreCommits());
+            }
+            this.shownChanges = changesContainer;
+        }
+    }
+
+    private static boolean isSameDiff(final GitChangesContainer shown, final GitChangesContainer changes) {
+        return shown != null && shown.getGitRepository() == changes.getGitRepository()
+                && StringUtils.equals(shown.getSourceBranchName(), changes.getSourceBranchName())
+                && StringUtils.equals(shown.getTargetBranchName(), changes.getTargetBranchName())
+                && shown.getSourceBranchHash() != null && shown.getTargetBranchHash() != null
+                && StringUtils.equals(shown.getSourceBranchHash(), changes.getSourceBranchHash())
+                && StringUtils.equals(shown.getTargetBranchHash(), changes.getTargetBranchHash());
+    }
+
+    public String getSelectedFolder() {
+        return this.createPullRequestForm.getSelectedFolder();
+    }
+
+    public void setFolderChanges(final Project project, final Collection<Change> changes) {
+        if (project != null) {
+            this.createPullRequestForm.setFolderChanges(project, changes);
         }
     }
 
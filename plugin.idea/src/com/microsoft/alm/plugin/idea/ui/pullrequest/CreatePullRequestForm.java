@@ -6,7 +6,10 @@ package com.microsoft.alm.plugin.idea.ui.pullrequest;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.ui.Splitter;
 import com.intellij.openapi.vcs.changes.ui.ChangesBrowser;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
 import com.intellij.util.ui.JBUI;
@@ -14,6 +17,7 @@ import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.ui.common.SwingHelper;
 import com.microsoft.alm.plugin.idea.ui.common.forms.BasicForm;
 import com.microsoft.alm.plugin.idea.ui.controls.BusySpinnerPanel;
+import com.microsoft.alm.plugin.idea.ui.controls.Hyperlink;
 import git4idea.GitBranch;
 import git4idea.GitRemoteBranch;
 import git4idea.repo.GitRepository;
@@ -34,17 +38,27 @@ import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Insets;
+import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 public class CreatePullRequestForm implements BasicForm {
     /* commands */
     public static final String CMD_TARGET_BRANCH_UPDATED = "cmdTargetBranchDropDownChanged";
+    public static final String CMD_LOAD_MORE_COMMITS = "cmdLoadMoreCommits";
+    public static final String CMD_FOLDER_SELECTED = "cmdFolderSelected";
 
     private JComboBox targetBranchDropdown;
     private JLabel sourceBranch;
@@ -61,6 +75,11 @@ public class CreatePullRequestForm implements BasicForm {
     private JPanel spinnerPanel;
     private JScrollPane descriptionScrollPane;
     private JSplitPane splitPane;
+    private Hyperlink loadMoreCommitsLink;
+    /* only used for large diffs, see LargeDiffCompareInfo */
+    private JBList folderList;
+    private JPanel folderChangesPanel;
+    private final List<ActionListener> actionListeners = new ArrayList<ActionListener>();
 
     private boolean initialized = false;
 
@@ -104,6 +123,8 @@ public class CreatePullRequestForm implements BasicForm {
     @Override
     public void addActionListener(final ActionListener listener) {
         this.targetBranchDropdown.addActionListener(listener);
+        this.loadMoreCommitsLink.addActionListener(listener);
+        this.actionListeners.add(listener);
     }
 
     public void setTargetBranchDropdownModel(ComboBoxModel model) {
@@ -188,38 +209,160 @@ public class CreatePullRequestForm implements BasicForm {
                                               @NotNull final GitRepository gitRepository,
                                               @NotNull final String sourceBranchBeingCompared,
                                               @NotNull final String targetBranchBeingCompared,
-                                              @NotNull final GitCommitCompareInfo myCompareInfo) {
+                                              @NotNull final GitCommitCompareInfo myCompareInfo,
+                                              final boolean moreCommits) {
         final GitRemoteBranch gitRemoteBranch = this.getSelectedRemoteBranch();
         final String currBranch = this.sourceBranch.getText();
 
         if (gitRemoteBranch != null && StringUtils.equals(gitRemoteBranch.getName(), targetBranchBeingCompared)
                 && StringUtils.isNotEmpty(currBranch) && StringUtils.equals(currBranch, sourceBranchBeingCompared)) {
 
+            // keep the user on the same tab when the diff is reloaded
+            final int selectedTab = this.quickDiffPane.getSelectedIndex();
             this.quickDiffPane.removeAll();
 
             JComponent myDiffPanel = createDiffPaneBrowser(project, myCompareInfo);
             this.quickDiffPane.addTab(TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_CHANGES_PANE_TITLE),
                     AllIcons.Actions.Diff, myDiffPanel);
 
-            JComponent myCommitsPanel = createCommitsListPane(project, gitRepository, myCompareInfo);
+            JComponent myCommitsPanel = createCommitsListPane(project, gitRepository, myCompareInfo, moreCommits);
             this.quickDiffPane.addTab(TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_COMMITS_PANE_TITLE),
                     AllIcons.Actions.Commit, myCommitsPanel);
+
+            if (selectedTab >= 0 && selectedTab < this.quickDiffPane.getTabCount()) {
+                this.quickDiffPane.setSelectedIndex(selectedTab);
+            }
+        }
+    }
+
+    /**
+     * Replace only the Commits tab, so the Changes tab keeps its selected folder and loaded changes
+     * when another page of commits is loaded
+     */
+    public synchronized void populateCommitsPane(@NotNull final Project project,
+                                                 @NotNull final GitRepository gitRepository,
+                                                 @NotNull final String sourceBranchBeingCompared,
+                                                 @NotNull final String targetBranchBeingCompared,
+                                                 @NotNull final GitCommitCompareInfo myCompareInfo,
+                                                 final boolean moreCommits) {
+        if (this.quickDiffPane.getTabCount() != 2) {
+            // the tabs were cleared while loading, so there are no changes to keep
+            populateDiffPane(project, gitRepository, sourceBranchBeingCompared, targetBranchBeingCompared,
+                    myCompareInfo, moreCommits);
+            return;
+        }
+
+        final GitRemoteBranch gitRemoteBranch = this.getSelectedRemoteBranch();
+        final String currBranch = this.sourceBranch.getText();
+
+        if (gitRemoteBranch != null && StringUtils.equals(gitRemoteBranch.getName(), targetBranchBeingCompared)
+                && StringUtils.isNotEmpty(currBranch) && StringUtils.equals(currBranch, sourceBranchBeingCompared)) {
+            this.quickDiffPane.setComponentAt(1, createCommitsListPane(project, gitRepository, myCompareInfo, moreCommits));
         }
     }
 
     private JComponent createCommitsListPane(final Project project, final GitRepository gitRepository,
-                                             final GitCommitCompareInfo compareInfo) {
-        return new GitCommitListWithDiffPanel(project, compareInfo.getBranchToHeadCommits(gitRepository));
+                                             final GitCommitCompareInfo compareInfo, final boolean moreCommits) {
+        final JComponent commitsList
+                = new GitCommitListWithDiffPanel(project, compareInfo.getBranchToHeadCommits(gitRepository));
+        if (!moreCommits) {
+            return commitsList;
+        }
+
+        // only the first pages of commits are loaded, the link at the bottom loads the next one
+        final JPanel commitsPanel = new JPanel(new BorderLayout());
+        commitsPanel.add(commitsList, BorderLayout.CENTER);
+        commitsPanel.add(this.loadMoreCommitsLink, BorderLayout.SOUTH);
+        return commitsPanel;
     }
 
     private JComponent createDiffPaneBrowser(final Project project, final GitCommitCompareInfo compareInfo) {
-        List<Change> diff = compareInfo.getTotalDiff();
+        if (compareInfo instanceof LargeDiffCompareInfo) {
+            return createLargeDiffPane((LargeDiffCompareInfo) compareInfo);
+        }
+
+        this.folderList = null;
+        this.folderChangesPanel = null;
+        return createChangesBrowser(project, compareInfo.getTotalDiff());
+    }
+
+    private JComponent createChangesBrowser(final Project project, final List<Change> diff) {
         final ChangesBrowser changesBrowser = new ChangesBrowser(project, null, diff, null, false, true,
                 null, ChangesBrowser.MyUseCase.COMMITTED_CHANGES, null);
         changesBrowser.setChangesToDisplay(diff);
         return changesBrowser;
     }
 
+    /**
+     * Too many files changed to show them all, so list the folders and show the changes of the selected one
+     */
+    private JComponent createLargeDiffPane(final LargeDiffCompareInfo compareInfo) {
+        final Map<String, List<String>> pathsByFolder = compareInfo.getPathsByFolder();
+        this.folderList = new JBList(pathsByFolder.keySet().toArray());
+        this.folderList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        this.folderList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList list,
+                                                          Object folder,
+                                                          int index,
+                                                          boolean isSelected,
+                                                          boolean cellHasFocus) {
+                final String folderName = StringUtils.isEmpty((String) folder) ? "/" : (String) folder;
+                return super.getListCellRendererComponent(list,
+                        TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_LARGE_DIFF_FOLDER,
+                                folderName, pathsByFolder.get(folder).size()),
+                        index,
+                        isSelected,
+                        cellHasFocus);
+            }
+        });
+        this.folderList.addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(final ListSelectionEvent e) {
+                if (!e.getValueIsAdjusting()) {
+                    final ActionEvent event = new ActionEvent(folderList, ActionEvent.ACTION_PERFORMED, CMD_FOLDER_SELECTED);
+                    for (final ActionListener listener : actionListeners) {
+                        listener.actionPerformed(event);
+                    }
+                }
+            }
+        });
+        this.folderChangesPanel = new JPanel(new BorderLayout());
+
+        final Splitter splitter = new Splitter(false, 0.3f);
+        splitter.setFirstComponent(new JBScrollPane(this.folderList));
+        splitter.setSecondComponent(this.folderChangesPanel);
+
+        final JPanel largeDiffPanel = new JPanel(new BorderLayout());
+        largeDiffPanel.add(new JLabel(TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_LARGE_DIFF_MESSAGE,
+                compareInfo.getChangedPaths().size())), BorderLayout.NORTH);
+        largeDiffPanel.add(splitter, BorderLayout.CENTER);
+        return largeDiffPanel;
+    }
+
+    public String getSelectedFolder() {
+        return this.folderList != null ? (String) this.folderList.getSelectedValue() : null;
+    }
+
+    /**
+     * Show the changes of the selected folder of a large diff, or that they are loading if changes is null
+     */
+    public void setFolderChanges(@NotNull final Project project, final Collection<Change> changes) {
+        if (this.folderChangesPanel == null) {
+            return;
+        }
+
+        this.folderChangesPanel.removeAll();
+        if (changes != null) {
+            this.folderChangesPanel.add(createChangesBrowser(project, new ArrayList<Change>(changes)), BorderLayout.CENTER);
+        } else {
+            this.folderChangesPanel.add(new JLabel(TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_LARGE_DIFF_LOADING)),
+                    BorderLayout.NORTH);
+        }
+        this.folderChangesPanel.revalidate();
+        this.folderChangesPanel.repaint();
+    }
+
     private void createUIComponents() {
         this.targetBranchDropdown = new JComboBox();
         this.targetBranchDropdown.setRenderer(new DefaultListCellRenderer() {
@@ -238,6 +381,9 @@ public class CreatePullRequestForm implements BasicForm {
         });
         this.targetBranchDropdown.setActionCommand(CMD_TARGET_BRANCH_UPDATED);
 
+        this.loadMoreCommitsLink = new Hyperlink();
+        this.loadMoreCommitsLink.setText(TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_LOAD_MORE_COMMITS));
+        this.loadMoreCommitsLink.setActionCommand(CMD_LOAD_MORE_COMMITS);
     }
 
     {
@@ -4,15 +4,10 @@
 package com.microsoft.alm.plugin.idea.ui.pullrequest;
 
 import com.google.common.base.Predicate;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Collections2;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import com.intellij.ide.BrowserUtil;
 import com.intellij.notification.Notification;
@@ -29,6 +24,7 @@ import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.VcsNotifier;
+import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.ui.SortedComboBoxModel;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextManager;
@@ -36,6 +32,7 @@ import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.ui.common.AbstractModel;
 import com.microsoft.alm.plugin.idea.ui.common.ModelValidationInfo;
 import com.microsoft.alm.plugin.idea.utils.TfGitHelper;
+import com.microsoft.alm.plugin.telemetry.TfsTelemetryHelper;
 import com.microsoft.teamfoundation.sourcecontrol.webapi.GitHttpClient;
 import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitPullRequest;
 import git4idea.GitBranch;
@@ -58,13 +55,18 @@ import org.slf4j.LoggerFactory;
 import javax.swing.ComboBoxModel;
 import javax.swing.event.HyperlinkEvent;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.microsoft.alm.plugin.idea.ui.pullrequest.PullRequestHelper.PRCreateStatus;
 
@@ -77,6 +79,13 @@ public class CreatePullRequestModel extends AbstractModel {
     public static final int MAX_SIZE_TITLE = 400;
     public static final int MAX_SIZE_DESCRIPTION = 4000;
 
+    /* telemetry */
+    public static final String PUSH_SKIPPED_ACTION = "create-pull-request-push-skipped";
+    public static final String PUSH_SKIPPED_SAVED_MILLIS = "create-pull-request-push-saved-millis";
+
+    /* How long the last push took, an estimate of the time saved when one is skipped */
+    private static volatile long lastPushMillis = 0;
+
     /**
      * Property names
      */
@@ -87,6 +96,7 @@ public class CreatePullRequestModel extends AbstractModel {
     public static final String PROP_DESCRIPTION = "description";
     public static final String PROP_LOADING = "loading";
     public static final String PROP_DIFF_MODEL = "diffModel";
+    public static final String PROP_FOLDER_DIFF = "folderDiff";
 
     private Project project;
     private GitRepository gitRepository;
@@ -103,11 +113,18 @@ public class CreatePullRequestModel extends AbstractModel {
     /* UI properties */
     private boolean loading = false;
     private GitChangesContainer localBranchChanges;
+    private String selectedFolder;
+    private Collection<Change> folderChanges;
+    /* changes already loaded for the folders of a large diff */
+    private final Map<String, Collection<Change>> loadedFolderChanges = new HashMap<String, Collection<Change>>();
 
-    private final LoadingCache<Pair<String, String>, GitCommitCompareInfo> diffCache;
+    /* Branch diffs shared by all dialogs, non-final for unit test */
+    private BranchDiffCache diffCache;
 
-    /* Executor service for running diff calculating Futures */
-    private final ListeningExecutorService executorService;
+    /* Bounded executor shared by the dialogs of the project for running diff calculating Futures */
+    private final PullRequestDiffExecutor diffExecutor;
+    /* the diff being calculated for the current selection, cancelled when the selection changes */
+    private ListenableFuture<GitChangesContainer> diffFuture;
 
     private ApplicationProvider applicationProvider;
 
@@ -125,29 +142,10 @@ public class CreatePullRequestModel extends AbstractModel {
         this.applicationProvider = new ApplicationProvider();
         this.pullRequestHelper = new PullRequestHelper();
 
-        this.diffCompareInfoProvider = new DiffCompareInfoProvider();
-        this.diffCache = CacheBuilder.newBuilder().maximumSize(20)
-                .build(
-                        new CacheLoader<Pair<String, String>, GitCommitCompareInfo>() {
-                            @Override
-                            public GitCommitCompareInfo load(Pair<String, String> key) throws Exception {
-                                // if we missed the cache, then show the loading spinner, otherwise
-                                // just switch to the diff we have to avoid flickering the screen
-                                applicationProvider.invokeAndWaitWithAnyModality(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        // set the view to show loading
-                                        setLoading(true);
-                                    }
-                                });
-
-                                return getDiffCompareInfoProvider()
-                                        .getBranchCompareInfo(project, gitRepository, key.getFirst(), key.getSecond());
-                            }
-                        }
-                );
+        this.diffExecutor = PullRequestDiffExecutor.getInstance(project);
 
-        this.executorService = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+        this.diffCompareInfoProvider = new DiffCompareInfoProvider(this.diffExecutor.getHelperExecutor());
+        this.diffCache = BranchDiffCache.getInstance();
     }
 
     public Project getProject() {
@@ -210,6 +208,28 @@ public class CreatePullRequestModel extends AbstractModel {
         }
     }
 
+    public synchronized String getSelectedFolder() {
+        return selectedFolder;
+    }
+
+    /**
+     * Get the changes of the selected folder of a large diff, null until they are loaded
+     */
+    public synchronized Collection<Change> getFolderChanges() {
+        return folderChanges;
+    }
+
+    private void setFolderChanges(final String folder, final Collection<Change> folderChanges) {
+        synchronized (this) {
+            if (!StringUtils.equals(this.selectedFolder, folder)) {
+                // the user selected another folder while this one was loading
+                return;
+            }
+            this.folderChanges = folderChanges;
+        }
+        setChangedAndNotify(PROP_FOLDER_DIFF);
+    }
+
     /**
      * Get current branch
      *
@@ -258,26 +278,50 @@ public class CreatePullRequestModel extends AbstractModel {
         final GitRepoInfo gitRepoInfo = this.getInfo();
 
         assert gitRepoInfo != null;
-        final GitRemoteBranch remoteTrackingBranch = this.getRemoteTrackingBranch();
+        sortedRemoteBranches.addAll(getTargetBranches(gitRepoInfo, this.tfGitRemotes, this.getRemoteTrackingBranch()));
+
+        sortedRemoteBranches.setSelectedItem(getDefaultBranch(sortedRemoteBranches.getItems(), this.tfGitRemotes));
 
+        return sortedRemoteBranches;
+    }
+
+    /**
+     * Get the branch the dialog selects as the target when it opens for the repository
+     *
+     * @return the default target branch, or null if there is no current branch or no valid remote branch
+     */
+    @Nullable
+    static GitRemoteBranch getDefaultTargetBranch(@NotNull final GitRepository gitRepository) {
+        final GitRepoInfo gitRepoInfo = gitRepository.getInfo();
+        final GitLocalBranch localBranch = gitRepoInfo != null ? gitRepoInfo.getCurrentBranch() : null;
+        if (localBranch == null) {
+            return null;
+        }
+
+        final Collection<GitRemote> tfGitRemotes = TfGitHelper.getTfGitRemotes(gitRepository);
+        final List<GitRemoteBranch> remoteBranches = new ArrayList<GitRemoteBranch>(
+                getTargetBranches(gitRepoInfo, tfGitRemotes, localBranch.findTrackedBranch(gitRepository)));
+        Collections.sort(remoteBranches, new BranchComparator());
+
+        return getDefaultBranch(remoteBranches, tfGitRemotes);
+    }
+
+    static Collection<GitRemoteBranch> getTargetBranches(@NotNull final GitRepoInfo gitRepoInfo,
+                                                         @NotNull final Collection<GitRemote> tfGitRemotes,
+                                                         @Nullable final GitRemoteBranch remoteTrackingBranch) {
         // only show valid remote branches
-        sortedRemoteBranches.addAll(Collections2.filter(gitRepoInfo.getRemoteBranches(),
-                        new Predicate<GitRemoteBranch>() {
-                            @Override
-                            public boolean apply(final GitRemoteBranch remoteBranch) {
+        return Collections2.filter(gitRepoInfo.getRemoteBranches(),
+                new Predicate<GitRemoteBranch>() {
+                    @Override
+                    public boolean apply(final GitRemoteBranch remoteBranch) {
                         /* two conditions:
                          *   1. remote must be a vso/tfs remote
                          *   2. this isn't the remote tracking branch of current local branch
                          */
-                                return tfGitRemotes.contains(remoteBranch.getRemote())
-                                        && !remoteBranch.equals(remoteTrackingBranch);
-                            }
-                        })
-        );
-
-        sortedRemoteBranches.setSelectedItem(getDefaultBranch(sortedRemoteBranches.getItems()));
-
-        return sortedRemoteBranches;
+                        return tfGitRemotes.contains(remoteBranch.getRemote())
+                                && !remoteBranch.equals(remoteTrackingBranch);
+                    }
+                });
     }
 
     @Nullable
@@ -296,13 +340,14 @@ public class CreatePullRequestModel extends AbstractModel {
      * We should get the default branch from TF if necessary, but that's a server call
      */
     @Nullable
-    private GitRemoteBranch getDefaultBranch(@NotNull final List<GitRemoteBranch> remoteBranches) {
+    private static GitRemoteBranch getDefaultBranch(@NotNull final List<GitRemoteBranch> remoteBranches,
+                                                    @NotNull final Collection<GitRemote> tfGitRemotes) {
         assert remoteBranches != null;
-        if (remoteBranches.isEmpty() || this.tfGitRemotes.isEmpty()) {
+        if (remoteBranches.isEmpty() || tfGitRemotes.isEmpty()) {
             return null;
         }
 
-        final GitRemote firstTfRemote = this.tfGitRemotes.iterator().next();
+        final GitRemote firstTfRemote = tfGitRemotes.iterator().next();
 
         final String masterBranchName = String.format("%s/master", firstTfRemote.getName());
         for (GitRemoteBranch remoteBranch : remoteBranches) {
@@ -321,7 +366,7 @@ public class CreatePullRequestModel extends AbstractModel {
      * If there is no common parent (two branches are parallel), return an empty GitCommitCompareInfo
      * <p/>
      * This is potentially an expensive calculation, probably should do it on a background thread.
-     * We will also attempt to cache the result
+     * The result is cached by the commit hashes compared, so other dialogs can reuse it
      * <p/>
      * default access for testing so we bypass UI code,
      * TODO: reevaluate the testing to properly shutoff the access level
@@ -343,9 +388,38 @@ public class CreatePullRequestModel extends AbstractModel {
         final String remoteBranchHash = selectedRemoteBranch.getHash().asString();
         final String currBranchHash = currBranch.getHash().asString();
 
+        // if we missed the cache, then show the loading spinner, otherwise
+        // just switch to the diff we have to avoid flickering the screen
+        if (!this.diffCache.contains(this.gitRepository, currBranchHash, remoteBranchHash)) {
+            applicationProvider.invokeAndWaitWithAnyModality(new Runnable() {
+                @Override
+                public void run() {
+                    // set the view to show loading
+                    setLoading(true);
+                }
+            });
+        }
+
         try {
-            GitCommitCompareInfo changes
-                    = this.diffCache.get(new Pair<String, String>(currBranchHash, remoteBranchHash));
+            GitCommitCompareInfo changes;
+            final AtomicBoolean loadedHere = new AtomicBoolean();
+            final Callable<GitCommitCompareInfo> loader = new Callable<GitCommitCompareInfo>() {
+                @Override
+                public GitCommitCompareInfo call() throws Exception {
+                    loadedHere.set(true);
+                    return getDiffCompareInfoProvider()
+                            .getBranchCompareInfo(project, gitRepository, currBranchHash, remoteBranchHash);
+                }
+            };
+            try {
+                changes = this.diffCache.get(this.gitRepository, currBranchHash, remoteBranchHash, loader);
+            } catch (ExecutionException e) {
+                // we waited for the prefetcher, which failed or was cancelled because the branches moved again
+                if (loadedHere.get() || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                changes = this.diffCache.get(this.gitRepository, currBranchHash, remoteBranchHash, loader);
+            }
 
             return GitChangesContainer.createChangesContainer(currBranch.getName(), selectedRemoteBranch.getName(),
                     currBranchHash, remoteBranchHash, changes, this.gitRepository);
@@ -361,13 +435,21 @@ public class CreatePullRequestModel extends AbstractModel {
      */
     public void loadDiff() {
         if (this.getSourceBranch() != null && this.getTargetBranch() != null) {
-            ListenableFuture<GitChangesContainer> diffFuture = this.executorService.submit(new Callable<GitChangesContainer>() {
-                @Override
-                public GitChangesContainer call() throws Exception {
-                    // calculate the diffs
-                    return getMyChangesCompareInfo();
+            final ListenableFuture<GitChangesContainer> diffFuture;
+            synchronized (this) {
+                // the user picked another branch, the diff we were calculating isn't needed anymore
+                if (this.diffFuture != null) {
+                    this.diffFuture.cancel(true);
                 }
-            });
+                diffFuture = this.diffExecutor.submit(new Callable<GitChangesContainer>() {
+                    @Override
+                    public GitChangesContainer call() throws Exception {
+                        // calculate the diffs
+                        return getMyChangesCompareInfo();
+                    }
+                });
+                this.diffFuture = diffFuture;
+            }
 
             Futures.addCallback(diffFuture, new FutureCallback<GitChangesContainer>() {
                 public void onSuccess(final GitChangesContainer changesContainer) {
@@ -384,6 +466,9 @@ public class CreatePullRequestModel extends AbstractModel {
                                 if (compareInfo != null) {
                                     List<GitCommit> commits
                                             = compareInfo.getBranchToHeadCommits(changesContainer.getGitRepository());
+                                    // a full page means there may be more commits to load
+                                    changesContainer.setMoreCommits(commits != null
+                                            && commits.size() >= DiffCompareInfoProvider.COMMITS_PAGE_SIZE);
 
                                     final GitLocalBranch sourceBranch = getSourceBranch();
                                     final GitRemoteBranch targetBranch = getTargetBranch();
@@ -408,6 +493,10 @@ public class CreatePullRequestModel extends AbstractModel {
                 }
 
                 public void onFailure(final Throwable thrown) {
+                    if (thrown instanceof CancellationException) {
+                        // a newer diff has replaced this one
+                        return;
+                    }
                     logger.warn("onFailure in loadDiff", thrown);
 
                     applicationProvider.invokeAndWaitWithAnyModality(new Runnable() {
@@ -434,6 +523,131 @@ public class CreatePullRequestModel extends AbstractModel {
         }
     }
 
+    /**
+     * This method loads the next page of commits on a background thread and adds it to the current diff
+     */
+    public void loadMoreCommits() {
+        final GitChangesContainer changesContainer = this.getLocalBranchChanges();
+        if (changesContainer == null || !changesContainer.hasMoreCommits()
+                || changesContainer.getSourceBranchHash() == null || changesContainer.getTargetBranchHash() == null) {
+            return;
+        }
+
+        final GitRepository repository = changesContainer.getGitRepository();
+        final GitCommitCompareInfo compareInfo = changesContainer.getGitCommitCompareInfo();
+        final List<GitCommit> loadedCommits = compareInfo.getBranchToHeadCommits(repository);
+
+        // don't show the link again while the page loads
+        changesContainer.setMoreCommits(false);
+        ListenableFuture<List<GitCommit>> pageFuture = this.diffExecutor.submit(new Callable<List<GitCommit>>() {
+            @Override
+            public List<GitCommit> call() throws Exception {
+                return getDiffCompareInfoProvider().getBranchToHeadCommits(project, repository,
+                        changesContainer.getSourceBranchHash(), changesContainer.getTargetBranchHash(), loadedCommits.size());
+            }
+        });
+
+        Futures.addCallback(pageFuture, new FutureCallback<List<GitCommit>>() {
+            public void onSuccess(final List<GitCommit> page) {
+                applicationProvider.invokeAndWaitWithAnyModality(new Runnable() {
+                    @Override
+                    public void run() {
+                        // the user may have picked another branch while we were loading
+                        if (getLocalBranchChanges() != changesContainer) {
+                            return;
+                        }
+
+                        final List<GitCommit> commits = new ArrayList<GitCommit>(loadedCommits);
+                        commits.addAll(page);
+                        final GitCommitCompareInfo pagedInfo = LargeDiffCompareInfo.createLike(compareInfo);
+                        pagedInfo.put(repository, compareInfo.getTotalDiff());
+                        pagedInfo.put(repository, new Pair<List<GitCommit>, List<GitCommit>>(
+                                compareInfo.getHeadToBranchCommits(repository), commits));
+
+                        final GitChangesContainer pagedContainer = GitChangesContainer.createChangesContainer(
+                                changesContainer.getSourceBranchName(), changesContainer.getTargetBranchName(),
+                                changesContainer.getSourceBranchHash(), changesContainer.getTargetBranchHash(),
+                                pagedInfo, repository);
+                        pagedContainer.setMoreCommits(page.size() >= DiffCompareInfoProvider.COMMITS_PAGE_SIZE);
+                        setLocalBranchChanges(pagedContainer);
+                    }
+                });
+            }
+
+            public void onFailure(final Throwable thrown) {
+                logger.warn("onFailure in loadMoreCommits", thrown);
+                // let the user try again
+                changesContainer.setMoreCommits(true);
+                applicationProvider.invokeAndWaitWithAnyModality(new Runnable() {
+                    public void run() {
+                        notifyDiffFailedError(getProject(),
+                                TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_ERRORS_DIFF_FAILED_MSG,
+                                        changesContainer.getSourceBranchName(), changesContainer.getTargetBranchName()));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * This method loads the changes of one folder of a large diff (see LargeDiffCompareInfo) on a background thread
+     */
+    public void loadFolderDiff(final String folder) {
+        final GitChangesContainer changesContainer = this.getLocalBranchChanges();
+        if (folder == null || changesContainer == null
+                || !(changesContainer.getGitCommitCompareInfo() instanceof LargeDiffCompareInfo)) {
+            return;
+        }
+
+        final LargeDiffCompareInfo compareInfo = (LargeDiffCompareInfo) changesContainer.getGitCommitCompareInfo();
+        if (!compareInfo.getPathsByFolder().containsKey(folder)) {
+            return;
+        }
+
+        final String loadedKey = compareInfo.getBaseRevision() + ".." + compareInfo.getSourceRevision() + ":" + folder;
+        final Collection<Change> loaded;
+        synchronized (this) {
+            this.selectedFolder = folder;
+            loaded = loadedFolderChanges.get(loadedKey);
+        }
+        setFolderChanges(folder, loaded);
+        if (loaded != null) {
+            return;
+        }
+
+        ListenableFuture<Collection<Change>> folderFuture = this.diffExecutor.submit(new Callable<Collection<Change>>() {
+            @Override
+            public Collection<Change> call() throws Exception {
+                return getDiffCompareInfoProvider().getDiff(project, changesContainer.getGitRepository(), compareInfo, folder);
+            }
+        });
+
+        Futures.addCallback(folderFuture, new FutureCallback<Collection<Change>>() {
+            public void onSuccess(final Collection<Change> changes) {
+                synchronized (CreatePullRequestModel.this) {
+                    loadedFolderChanges.put(loadedKey, changes);
+                }
+                applicationProvider.invokeAndWaitWithAnyModality(new Runnable() {
+                    @Override
+                    public void run() {
+                        setFolderChanges(folder, changes);
+                    }
+                });
+            }
+
+            public void onFailure(final Throwable thrown) {
+                logger.warn("onFailure in loadFolderDiff", thrown);
+                applicationProvider.invokeAndWaitWithAnyModality(new Runnable() {
+                    public void run() {
+                        notifyDiffFailedError(getProject(),
+                                TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_ERRORS_DIFF_FAILED_MSG,
+                                        changesContainer.getSourceBranchName(), changesContainer.getTargetBranchName()));
+                    }
+                });
+            }
+        });
+    }
+
     /**
      * Create pull request on a background thread
      * <p/>
@@ -446,7 +660,9 @@ public class CreatePullRequestModel extends AbstractModel {
      * <p/>
      * If push fails for whatever reason, stop and show an error message
      * <p/>
-     * After we push the local branch, then create the pull request.  Pull request link should be returned
+     * While the commits are pushed, the server context is resolved and the server is searched for an active pull
+     * request between the branches. As soon as the push is done we create the pull request, unless the search
+     * already found one, in which case we link to it instead.  Pull request link should be returned
      * in a notification bubble
      */
     public void createPullRequest() {
@@ -483,27 +699,47 @@ public class CreatePullRequestModel extends AbstractModel {
                 true, PerformInBackgroundOption.DEAF) {
             @Override
             public void run(@NotNull ProgressIndicator progressIndicator) {
-                // get context from manager, and store in active context
-                final ServerContext context = ServerContextManager.getInstance().getAuthenticatedContext(
-                        gitRemoteUrl, true);
+                final String branchNameOnRemoteServer
+                        = getBranchNameOnRemoteServer(gitRepository, sourceBranch, targetBranch.getRemote());
 
-                if (context == null) {
-                    notifyCreateFailedError(project, TfPluginBundle.message(TfPluginBundle.KEY_ERRORS_AUTH_NOT_SUCCESSFUL, gitRemoteUrl));
-                    return;
-                }
+                // resolve the context and look for an existing pull request while the commits are pushed
+                final SettableFuture<ServerContext> contextFuture = SettableFuture.create();
+                final SettableFuture<GitPullRequest> existingPullRequestFuture = SettableFuture.create();
+                ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        doPreChecks(gitRemoteUrl, branchNameOnRemoteServer, targetBranch,
+                                contextFuture, existingPullRequestFuture);
+                    }
+                });
 
+                progressIndicator.setText(TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_PUSH_TITLE));
                 ListenableFuture<Pair<String, GitCommandResult>> pushResult
-                        = doPushCommits(gitRepository, sourceBranch, targetBranch.getRemote(), progressIndicator);
+                        = doPushCommits(gitRepository, sourceBranch, targetBranch.getRemote());
 
                 Futures.addCallback(pushResult, new FutureCallback<Pair<String, GitCommandResult>>() {
                     @Override
                     public void onSuccess(@Nullable Pair<String, GitCommandResult> result) {
                         if (result != null && StringUtils.isNotEmpty(result.getFirst())) {
+                            final ServerContext context = getQuietly(contextFuture);
+                            if (context == null) {
+                                notifyCreateFailedError(project, TfPluginBundle.message(TfPluginBundle.KEY_ERRORS_AUTH_NOT_SUCCESSFUL, gitRemoteUrl));
+                                return;
+                            }
+
+                            // don't wait for the search, but if it already found the pull request we are done
+                            final GitPullRequest existingPullRequest = existingPullRequestFuture.isDone()
+                                    ? getQuietly(existingPullRequestFuture) : null;
+                            if (existingPullRequest != null) {
+                                notifyAlreadyExists(project, context, existingPullRequest);
+                                return;
+                            }
+
                             final String title = createModel.getTitle();
                             final String description = createModel.getDescription();
-                            final String branchNameOnRemoteServer = result.getFirst();
 
-                            doCreatePullRequest(project, context, title, description, branchNameOnRemoteServer, targetBranch);
+                            doCreatePullRequest(project, context, title, description, result.getFirst(), targetBranch,
+                                    existingPullRequestFuture);
                         } else {
                             // I really don't have anything else to say, push failed, the title says it all
                             // I have no error message to be more specific
@@ -522,35 +758,41 @@ public class CreatePullRequestModel extends AbstractModel {
         createPullRequestTask.queue();
     }
 
-    private ListenableFuture<Pair<String, GitCommandResult>> doPushCommits(@NotNull final GitRepository gitRepository,
-                                                                           @NotNull final GitLocalBranch localBranch,
-                                                                           @NotNull final GitRemote gitRemote,
-                                                                           @NotNull final ProgressIndicator indicator) {
+    /**
+     * Push the local branch to the remote, unless the remote branch is already at its head. The result holds the
+     * name of the branch on the server.
+     */
+    static ListenableFuture<Pair<String, GitCommandResult>> doPushCommits(@NotNull final GitRepository gitRepository,
+                                                                          @NotNull final GitLocalBranch localBranch,
+                                                                          @NotNull final GitRemote gitRemote) {
         // just set the result without going off to another thread, we should already be in a background task
         SettableFuture<Pair<String, GitCommandResult>> pushResult
                 = SettableFuture.<Pair<String, GitCommandResult>>create();
 
-        indicator.setText(TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_PUSH_TITLE));
-        final Git git = ServiceManager.getService(Git.class);
+        final String createdBranchNameOnServer = getBranchNameOnRemoteServer(gitRepository, localBranch, gitRemote);
 
-        final GitRemoteBranch trackingBranch = localBranch.findTrackedBranch(gitRepository);
+        if (!isPushNeeded(gitRepository.getInfo(), localBranch, gitRemote, createdBranchNameOnServer)) {
+            // the remote branch already points at our head, there is nothing to send
+            logger.info("Skipping the push, {} is already at {}", createdBranchNameOnServer, localBranch.getHash().asString());
+            sendPushSkippedTelemetry();
+            pushResult.set(Pair.<String, GitCommandResult>create(createdBranchNameOnServer, null));
+            return pushResult;
+        }
 
-        final String createdBranchNameOnServer;
+        final Git git = ServiceManager.getService(Git.class);
         final StringBuilder pushSpec = new StringBuilder(localBranch.getName());
-        if (trackingBranch != null && trackingBranch.getRemote().equals(gitRemote)) {
-            // if the tracking branch is on the same remote, we should update that
-            pushSpec.append(":").append(trackingBranch.getNameForRemoteOperations());
-            createdBranchNameOnServer = trackingBranch.getNameForRemoteOperations();
-        } else {
-            createdBranchNameOnServer = localBranch.getName();
+        if (!StringUtils.equals(createdBranchNameOnServer, localBranch.getName())) {
+            pushSpec.append(":").append(createdBranchNameOnServer);
         }
 
         final String fetchUrl = getFetchUrl(gitRemote);
         final String pushSpecStr = pushSpec.toString();
         final String gitRemoteName = gitRemote.getName();
         logger.debug("Pushing {} to {}: {}", pushSpecStr, gitRemoteName, fetchUrl);
+        final long pushStart = System.currentTimeMillis();
         final GitCommandResult result
                 = git.push(gitRepository, gitRemoteName, fetchUrl, pushSpecStr, true);
+        lastPushMillis = System.currentTimeMillis() - pushStart;
 
         if (result.success()) {
             pushResult.set(Pair.create(createdBranchNameOnServer, result));
@@ -562,12 +804,124 @@ public class CreatePullRequestModel extends AbstractModel {
         return pushResult;
     }
 
+    /**
+     * The push can be skipped if the remote branch we would push to is known to be at the head of the local branch.
+     * The remote branches come from the repository info git4idea keeps, which is refreshed after every fetch or push.
+     */
+    static boolean isPushNeeded(@Nullable final GitRepoInfo gitRepoInfo,
+                                @NotNull final GitLocalBranch localBranch,
+                                @NotNull final GitRemote gitRemote,
+                                @NotNull final String branchNameOnRemoteServer) {
+        if (gitRepoInfo == null) {
+            return true;
+        }
+
+        for (final GitRemoteBranch remoteBranch : gitRepoInfo.getRemoteBranches()) {
+            if (gitRemote.equals(remoteBranch.getRemote())
+                    && branchNameOnRemoteServer.equals(remoteBranch.getNameForRemoteOperations())) {
+                return !localBranch.getHash().equals(remoteBranch.getHash());
+            }
+        }
+
+        // the branch isn't on the remote yet
+        return true;
+    }
+
+    /**
+     * Records that a push was skipped, with the time the last push we timed took as the time saved
+     */
+    private static void sendPushSkippedTelemetry() {
+        final TfsTelemetryHelper.PropertyMapBuilder builder = new TfsTelemetryHelper.PropertyMapBuilder()
+                .actionName(PUSH_SKIPPED_ACTION)
+                .success(true);
+        final long savedMillis = lastPushMillis;
+        if (savedMillis > 0) {
+            builder.pair(PUSH_SKIPPED_SAVED_MILLIS, String.valueOf(savedMillis));
+            TfsTelemetryHelper.getInstance().sendMetric(PUSH_SKIPPED_SAVED_MILLIS, savedMillis);
+        }
+        TfsTelemetryHelper.getInstance().sendEvent(PUSH_SKIPPED_ACTION, builder.build());
+    }
+
+    /**
+     * Get the name of the branch the local branch is pushed to: its tracking branch if that is on the given remote,
+     * otherwise a branch of the same name
+     */
+    static String getBranchNameOnRemoteServer(@NotNull final GitRepository gitRepository,
+                                              @NotNull final GitLocalBranch localBranch,
+                                              @NotNull final GitRemote gitRemote) {
+        final GitRemoteBranch trackingBranch = localBranch.findTrackedBranch(gitRepository);
+        if (trackingBranch != null && trackingBranch.getRemote().equals(gitRemote)) {
+            // if the tracking branch is on the same remote, we should update that
+            return trackingBranch.getNameForRemoteOperations();
+        }
+        return localBranch.getName();
+    }
+
+    /**
+     * Resolves the context of the remote and then looks for an active pull request between the branches. This runs
+     * while the commits are pushed; the search never fails, it only sets a null pull request.
+     */
+    private void doPreChecks(@NotNull final String gitRemoteUrl,
+                             @NotNull final String branchNameOnRemoteServer,
+                             @NotNull final GitRemoteBranch targetBranch,
+                             @NotNull final SettableFuture<ServerContext> contextFuture,
+                             @NotNull final SettableFuture<GitPullRequest> existingPullRequestFuture) {
+        final ServerContext context;
+        try {
+            // get context from manager, and store in active context
+            context = ServerContextManager.getInstance().getAuthenticatedContext(gitRemoteUrl, true);
+            contextFuture.set(context);
+        } catch (Throwable t) {
+            logger.warn("Failed to get the context of " + gitRemoteUrl, t);
+            contextFuture.set(null);
+            existingPullRequestFuture.set(null);
+            return;
+        }
+
+        if (context == null) {
+            existingPullRequestFuture.set(null);
+            return;
+        }
+
+        try {
+            existingPullRequestFuture.set(pullRequestHelper.findActivePullRequest(
+                    branchNameOnRemoteServer, targetBranch, context, context.getGitHttpClient()));
+        } catch (Throwable t) {
+            // the branch may not be on the server yet; creating the pull request will tell
+            logger.info("Failed to look for an existing pull request", t);
+            existingPullRequestFuture.set(null);
+        }
+    }
+
+    /**
+     * Waits for the future, returning null if it failed
+     */
+    private static <T> T getQuietly(final ListenableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private void notifyAlreadyExists(@NotNull final Project project,
+                                     @NotNull final ServerContext context,
+                                     @NotNull final GitPullRequest existingPullRequest) {
+        final String repositoryRemoteUrl = context.getGitRepository().getRemoteUrl();
+        notifySuccess(project, TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_ALREADY_EXISTS_TITLE),
+                pullRequestHelper.getHtmlMsg(repositoryRemoteUrl, existingPullRequest.getPullRequestId()));
+    }
+
     private void doCreatePullRequest(@NotNull final Project project,
                                      @NotNull final ServerContext context,
                                      @NotNull final String title,
                                      @NotNull final String description,
                                      @NotNull final String branchNameOnRemoteServer,
-                                     @NotNull final GitRemoteBranch targetBranch) {
+                                     @NotNull final GitRemoteBranch targetBranch,
+                                     @NotNull final ListenableFuture<GitPullRequest> existingPullRequestFuture) {
         final GitHttpClient gitClient = context.getGitHttpClient();
 
         try {
@@ -586,6 +940,14 @@ public class CreatePullRequestModel extends AbstractModel {
 
         } catch (Throwable t) {
             // catch everything so we don't bubble up to Intellij
+            // the search that ran during the push may have found the pull request that is in the way
+            final GitPullRequest existingPullRequest = getQuietly(existingPullRequestFuture);
+            if (existingPullRequest != null
+                    && StringUtils.indexOf(t.getMessage(), PullRequestHelper.PR_EXISTS_EXEPTION_NAME) > -1) {
+                notifyAlreadyExists(project, context, existingPullRequest);
+                return;
+            }
+
             final Pair<PRCreateStatus, String> parsed
                     = pullRequestHelper.parseException(t, branchNameOnRemoteServer, targetBranch, context, gitClient);
 
@@ -599,7 +961,7 @@ public class CreatePullRequestModel extends AbstractModel {
         }
     }
 
-    private String getFetchUrl(@NotNull final GitRemote gitRemote) {
+    private static String getFetchUrl(@NotNull final GitRemote gitRemote) {
         return gitRemote.getFirstUrl();
     }
 
@@ -708,6 +1070,11 @@ public class CreatePullRequestModel extends AbstractModel {
         }
     }
 
+    /* default */
+    void setDiffCache(final BranchDiffCache diffCache) {
+        this.diffCache = diffCache;
+    }
+
     /* default */
     void setApplicationProvider(final ApplicationProvider applicationProvider) {
         this.applicationProvider = applicationProvider;
@@ -3,40 +3,87 @@
 
 package com.microsoft.alm.plugin.idea.ui.pullrequest;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ChangesUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.vcsUtil.VcsUtil;
 import git4idea.GitCommit;
 import git4idea.GitRevisionNumber;
 import git4idea.changes.GitChangeUtils;
+import git4idea.commands.GitCommand;
+import git4idea.commands.GitSimpleHandler;
 import git4idea.history.GitHistoryUtils;
 import git4idea.repo.GitRepository;
 import git4idea.util.GitCommitCompareInfo;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Compare information provider
  * <p/>
  * Calculate commits and diff information from git4idea utilities
+ * <p/>
+ * Once the merge base is known, the two history walks and the diff don't depend on each other, so the
+ * history walks run on the executor given to the constructor (the helper pool of the project's
+ * PullRequestDiffExecutor) while the diff runs on the calling thread. Without one they all run on the calling
+ * thread. The time each git call takes is logged.
+ * <p/>
+ * Only the first page of commits is loaded with the diff; it is enough for the default title and description.
+ * Later pages are loaded with getBranchToHeadCommits when the user asks for them.
+ * <p/>
+ * The diff starts with a cheap pass that only lists the changed files. If there are more than
+ * LARGE_DIFF_FILE_COUNT of them, a LargeDiffCompareInfo with just the paths is returned, and the changes of each
+ * folder are loaded with getDiff as the user looks at them.
  */
 public class DiffCompareInfoProvider {
+    private static final Logger logger = LoggerFactory.getLogger(DiffCompareInfoProvider.class);
+
+    public static final int COMMITS_PAGE_SIZE = 100;
+    // Above this many changed files, changes are only loaded for the folder the user selects
+    public static final int LARGE_DIFF_FILE_COUNT = 2000;
+    // Keeps the git command line short when a folder's files are listed one by one
+    public static final int PATHS_PER_CALL = 100;
+
+    /* Runs the git calls that run next to the diff */
+    private final ExecutorService gitExecutor;
 
     private GitUtilWrapper utilWrapper;
 
     public DiffCompareInfoProvider() {
+        this(MoreExecutors.sameThreadExecutor());
+    }
+
+    public DiffCompareInfoProvider(final ExecutorService gitExecutor) {
+        this.gitExecutor = gitExecutor;
         this.utilWrapper = new GitUtilWrapper();
     }
 
     public GitCommitCompareInfo getBranchCompareInfo(final Project project, final GitRepository gitRepository,
                                                      final String source, final String target)
             throws VcsException {
+        final long mergeBaseStart = System.currentTimeMillis();
         final GitRevisionNumber commonParentRevision = getUtilWrapper().getMergeBase(project,
                 gitRepository.getRoot(), target, source);
+        logger.info("getBranchCompareInfo: merge base took {} ms", System.currentTimeMillis() - mergeBaseStart);
 
         final String commonParentHash = (commonParentRevision != null) ? commonParentRevision.getRev() : null;
 
@@ -51,11 +98,54 @@ public class DiffCompareInfoProvider {
                                                 final String source, final String target)
             throws VcsException {
         final VirtualFile root = gitRepository.getRoot();
-        final List<GitCommit> commits1 = getUtilWrapper().history(project, root, ".." + target);
-        final List<GitCommit> commits2 = getUtilWrapper().history(project, root, target + "..");
+        final TimedCall<List<GitCommit>> history1 = new TimedCall<List<GitCommit>>() {
+            @Override
+            protected List<GitCommit> doCall() throws VcsException {
+                return getUtilWrapper().history(project, root, ".." + target, 0, COMMITS_PAGE_SIZE);
+            }
+        };
+        final TimedCall<List<GitCommit>> history2 = new TimedCall<List<GitCommit>>() {
+            @Override
+            protected List<GitCommit> doCall() throws VcsException {
+                return getUtilWrapper().history(project, root, target + "..", 0, COMMITS_PAGE_SIZE);
+            }
+        };
+        final TimedCall<List<String>> pathsCall = new TimedCall<List<String>>() {
+            @Override
+            protected List<String> doCall() throws VcsException {
+                return getUtilWrapper().getChangedPaths(project, root, target, source);
+            }
+        };
+        final TimedCall<Collection<Change>> diffCall = new TimedCall<Collection<Change>>() {
+            @Override
+            protected Collection<Change> doCall() throws VcsException {
+                return getUtilWrapper().getDiff(project, root, target, source);
+            }
+        };
+
+        final Future<List<GitCommit>> commits1Future = gitExecutor.submit(history1);
+        final Future<List<GitCommit>> commits2Future = gitExecutor.submit(history2);
+        final List<GitCommit> commits1;
+        final List<GitCommit> commits2;
+        final List<String> changedPaths;
+        final Collection<Change> diff;
+        try {
+            changedPaths = pathsCall.call();
+            diff = changedPaths.size() > LARGE_DIFF_FILE_COUNT ? Collections.<Change>emptyList() : diffCall.call();
+            commits1 = getResult(commits1Future);
+            commits2 = getResult(commits2Future);
+        } finally {
+            // if one of the calls failed, don't wait for the others
+            commits1Future.cancel(true);
+            commits2Future.cancel(true);
+        }
+        logger.info("getCompareInfo: history took {} ms and {} ms, listing {} changed files took {} ms, diff took {} ms",
+                history1.getElapsedMillis(), history2.getElapsedMillis(), changedPaths.size(),
+                pathsCall.getElapsedMillis(), diffCall.getElapsedMillis());
 
-        final Collection<Change> diff = getUtilWrapper().getDiff(project, root, target, source);
-        final GitCommitCompareInfo info = new GitCommitCompareInfo(GitCommitCompareInfo.InfoType.BRANCH_TO_HEAD);
+        final GitCommitCompareInfo info = changedPaths.size() > LARGE_DIFF_FILE_COUNT
+                ? new LargeDiffCompareInfo(target, source, changedPaths)
+                : new GitCommitCompareInfo(GitCommitCompareInfo.InfoType.BRANCH_TO_HEAD);
 
         info.put(gitRepository, diff);
         info.put(gitRepository, new Pair<List<GitCommit>, List<GitCommit>>(commits1, commits2));
@@ -63,6 +153,115 @@ public class DiffCompareInfoProvider {
         return info;
     }
 
+    /**
+     * Get the changes to the files of one folder of a large diff
+     * <p/>
+     * git is given the folder rather than its files, so the command line stays short, and the changes in its
+     * subfolders are filtered out. The root folder, or a folder with more than LARGE_DIFF_FILE_COUNT changed files
+     * below it, lists its own files instead, at most PATHS_PER_CALL per git call.
+     *
+     * @param folder the folder to load, relative to the repository root (empty for the root)
+     */
+    public Collection<Change> getDiff(final Project project, final GitRepository gitRepository,
+                                      final LargeDiffCompareInfo compareInfo, final String folder)
+            throws VcsException {
+        final List<String> paths = compareInfo.getPathsByFolder().get(folder);
+        if (paths == null || paths.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final long start = System.currentTimeMillis();
+        final VirtualFile root = gitRepository.getRoot();
+        final List<Change> diff = new ArrayList<Change>();
+        int calls = 0;
+        if (StringUtils.isNotEmpty(folder) && countPathsBelow(compareInfo, folder) <= LARGE_DIFF_FILE_COUNT) {
+            diff.addAll(getUtilWrapper().getDiff(project, root, compareInfo.getBaseRevision(),
+                    compareInfo.getSourceRevision(), Collections.singletonList(folder)));
+            calls++;
+        } else {
+            for (int i = 0; i < paths.size(); i += PATHS_PER_CALL) {
+                diff.addAll(getUtilWrapper().getDiff(project, root, compareInfo.getBaseRevision(),
+                        compareInfo.getSourceRevision(), paths.subList(i, Math.min(i + PATHS_PER_CALL, paths.size()))));
+                calls++;
+            }
+        }
+
+        final Set<String> folderPaths = new HashSet<String>(paths);
+        final String rootPath = StringUtils.removeEnd(root.getPath(), "/") + "/";
+        final Iterator<Change> changes = diff.iterator();
+        while (changes.hasNext()) {
+            final String path = ChangesUtil.getFilePath(changes.next()).getPath();
+            if (!path.startsWith(rootPath) || !folderPaths.contains(path.substring(rootPath.length()))) {
+                changes.remove();
+            }
+        }
+        logger.info("getDiff: {} files in {} git calls took {} ms", diff.size(), calls, System.currentTimeMillis() - start);
+        return diff;
+    }
+
+    private static int countPathsBelow(final LargeDiffCompareInfo compareInfo, final String folder) {
+        final String prefix = folder + "/";
+        int count = 0;
+        for (final String path : compareInfo.getChangedPaths()) {
+            if (path.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get a later page of the commits on the source branch that are not on the target branch
+     *
+     * @param skip the number of commits already loaded
+     * @return up to COMMITS_PAGE_SIZE commits, fewer if this is the last page
+     */
+    public List<GitCommit> getBranchToHeadCommits(final Project project, final GitRepository gitRepository,
+                                                  final String source, final String target, final int skip)
+            throws VcsException {
+        final long start = System.currentTimeMillis();
+        final List<GitCommit> commits = getUtilWrapper().history(project, gitRepository.getRoot(),
+                target + ".." + source, skip, COMMITS_PAGE_SIZE);
+        logger.info("getBranchToHeadCommits: {} commits after {} took {} ms",
+                commits.size(), skip, System.currentTimeMillis() - start);
+        return commits;
+    }
+
+    private static <T> T getResult(final Future<T> future) throws VcsException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VcsException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof VcsException) {
+                throw (VcsException) e.getCause();
+            }
+            throw new VcsException(e.getCause());
+        }
+    }
+
+    /* a git call that remembers how long it took */
+    private static abstract class TimedCall<T> implements Callable<T> {
+        private volatile long elapsedMillis;
+
+        protected abstract T doCall() throws VcsException;
+
+        @Override
+        public T call() throws VcsException {
+            final long start = System.currentTimeMillis();
+            try {
+                return doCall();
+            } finally {
+                elapsedMillis = System.currentTimeMillis() - start;
+            }
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
     /**
      * Return zero-length list of commits and diffs
      * <p/>
@@ -84,9 +283,10 @@ public class DiffCompareInfoProvider {
     /* wrap around static method for better unit testing */
     /* default */
     static class GitUtilWrapper {
-        public List<GitCommit> history(final Project project, final VirtualFile root, String parameters)
+        public List<GitCommit> history(final Project project, final VirtualFile root, String range,
+                                       int skip, int maxCount)
                 throws VcsException {
-            return GitHistoryUtils.history(project, root, parameters);
+            return GitHistoryUtils.history(project, root, range, "--skip=" + skip, "--max-count=" + maxCount);
         }
 
         public GitRevisionNumber getMergeBase(final Project project, final VirtualFile root,
@@ -100,6 +300,34 @@ public class DiffCompareInfoProvider {
                 throws VcsException {
             return GitChangeUtils.getDiff(project, root, target, source, null);
         }
+
+        /* the paths are relative to the root and may be files or folders */
+        public Collection<Change> getDiff(final Project project, final VirtualFile root,
+                                          String target, String source, List<String> paths)
+                throws VcsException {
+            final List<FilePath> filePaths = new ArrayList<FilePath>(paths.size());
+            for (final String path : paths) {
+                filePaths.add(VcsUtil.getFilePath(new File(root.getPath(), path)));
+            }
+            return GitChangeUtils.getDiff(project, root, target, source, filePaths);
+        }
+
+        /* lists the changed files only, which is much cheaper than loading the changes */
+        public List<String> getChangedPaths(final Project project, final VirtualFile root,
+                                            String target, String source)
+                throws VcsException {
+            final GitSimpleHandler handler = new GitSimpleHandler(project, root, GitCommand.DIFF);
+            handler.addParameters("--name-only", "-z", target, source);
+            handler.setSilent(true);
+            handler.setStdoutSuppressed(true);
+            final List<String> paths = new ArrayList<String>();
+            for (final String path : StringUtils.split(handler.run(), '\0')) {
+                if (StringUtils.isNotBlank(path)) {
+                    paths.add(path);
+                }
+            }
+            return paths;
+        }
     }
 
     public GitUtilWrapper getUtilWrapper() {
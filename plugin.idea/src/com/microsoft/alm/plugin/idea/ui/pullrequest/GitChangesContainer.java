@@ -18,6 +18,7 @@ public class GitChangesContainer {
     private String targetBranchHash;
     private GitCommitCompareInfo gitCommitCompareInfo;
     private GitRepository gitRepository;
+    private boolean moreCommits;
 
     public static GitChangesContainer createChangesContainer(final String sourceBranchName, final String targetBranchName,
                                                              final String sourceBranchHash, final String targetBranchHash,
@@ -74,6 +75,17 @@ public class GitChangesContainer {
         this.gitCommitCompareInfo = gitCommitCompareInfo;
     }
 
+    /**
+     * True if only some of the commits have been loaded, see DiffCompareInfoProvider.COMMITS_PAGE_SIZE
+     */
+    public boolean hasMoreCommits() {
+        return moreCommits;
+    }
+
+    public void setMoreCommits(final boolean moreCommits) {
+        this.moreCommits = moreCommits;
+    }
+
     public GitRepository getGitRepository() {
         return gitRepository;
     }
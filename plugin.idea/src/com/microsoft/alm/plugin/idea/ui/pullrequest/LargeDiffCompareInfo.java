@@ -0,0 +1,81 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import git4idea.util.GitCommitCompareInfo;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class is the compare info for a diff that touches too many files to load all the changes up front
+ * (see DiffCompareInfoProvider.LARGE_DIFF_FILE_COUNT). It only holds the paths of the changed files, relative to
+ * the repository root, and the revisions compared; its total diff is empty. The changes of one folder at a time
+ * are loaded with DiffCompareInfoProvider.getDiff when the user selects it.
+ */
+public class LargeDiffCompareInfo extends GitCommitCompareInfo {
+    private final String baseRevision;
+    private final String sourceRevision;
+    private final List<String> changedPaths;
+    private Map<String, List<String>> pathsByFolder;
+
+    public LargeDiffCompareInfo(final String baseRevision, final String sourceRevision, final List<String> changedPaths) {
+        super(InfoType.BRANCH_TO_HEAD);
+        this.baseRevision = baseRevision;
+        this.sourceRevision = sourceRevision;
+        this.changedPaths = Collections.unmodifiableList(new ArrayList<String>(changedPaths));
+    }
+
+    /**
+     * Create an empty compare info of the same kind as the one given, to copy it into
+     */
+    public static GitCommitCompareInfo createLike(final GitCommitCompareInfo compareInfo) {
+        if (compareInfo instanceof LargeDiffCompareInfo) {
+            final LargeDiffCompareInfo largeDiff = (LargeDiffCompareInfo) compareInfo;
+            return new LargeDiffCompareInfo(largeDiff.getBaseRevision(), largeDiff.getSourceRevision(),
+                    largeDiff.getChangedPaths());
+        }
+        return new GitCommitCompareInfo(InfoType.BRANCH_TO_HEAD);
+    }
+
+    /**
+     * The commit the changes are compared against (the merge base of the two branches)
+     */
+    public String getBaseRevision() {
+        return baseRevision;
+    }
+
+    public String getSourceRevision() {
+        return sourceRevision;
+    }
+
+    public List<String> getChangedPaths() {
+        return changedPaths;
+    }
+
+    /**
+     * Get the changed files grouped by the folder that contains them, sorted by folder.
+     * Files at the root of the repository are under the empty string.
+     */
+    public synchronized Map<String, List<String>> getPathsByFolder() {
+        if (pathsByFolder == null) {
+            final Map<String, List<String>> folders = new TreeMap<String, List<String>>();
+            for (final String path : changedPaths) {
+                final String folder = path.contains("/") ? StringUtils.substringBeforeLast(path, "/") : StringUtils.EMPTY;
+                List<String> paths = folders.get(folder);
+                if (paths == null) {
+                    paths = new ArrayList<String>();
+                    folders.put(folder, paths);
+                }
+                paths.add(path);
+            }
+            pathsByFolder = Collections.unmodifiableMap(folders);
+        }
+        return pathsByFolder;
+    }
+}
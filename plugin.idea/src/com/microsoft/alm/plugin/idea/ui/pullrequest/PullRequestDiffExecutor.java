@@ -0,0 +1,121 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This project service runs the git work of the Create Pull Request dialogs of a project (diffs, commit pages and
+ * folder changes) and of the BranchDiffPrefetcher on a small pool of threads, so that switching branches quickly can't start an unbounded number
+ * of git processes. Jobs beyond MAX_THREADS wait in the queue; callers cancel jobs that are no longer needed.
+ * The history walks a diff job runs next to its diff (see DiffCompareInfoProvider) go to a second pool of at most
+ * MAX_HELPER_THREADS threads; when it is busy they run on the job's own thread instead of waiting.
+ * Both pools are shut down when the project is disposed.
+ * <p/>
+ * Thread-safety: Thread safe
+ */
+public class PullRequestDiffExecutor implements Disposable {
+    private static final Logger logger = LoggerFactory.getLogger(PullRequestDiffExecutor.class);
+
+    public static final int MAX_THREADS = 2;
+    // Each diff job walks the history of both branches next to its diff
+    public static final int MAX_HELPER_THREADS = 2 * MAX_THREADS;
+    private static final long THREAD_IDLE_SECONDS = 60L;
+
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+    private final ThreadPoolExecutor threadPoolExecutor;
+    private final ListeningExecutorService executorService;
+    private final ThreadPoolExecutor helperExecutor;
+
+    public static PullRequestDiffExecutor getInstance(@NotNull final Project project) {
+        // ApplicationManager is null if we are not in IntelliJ
+        if (ApplicationManager.getApplication() == null) {
+            return new PullRequestDiffExecutor();
+        }
+        return ServiceManager.getService(project, PullRequestDiffExecutor.class);
+    }
+
+    /**
+     * Only IntelliJ (once per project) and tests should create an executor.
+     */
+    public PullRequestDiffExecutor() {
+        threadPoolExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, THREAD_IDLE_SECONDS, TimeUnit.SECONDS,
+                queue, createThreadFactory("TFS pull request diff "));
+        // idle dialogs shouldn't keep threads around
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        executorService = MoreExecutors.listeningDecorator(threadPoolExecutor);
+
+        // a helper task must never wait behind the job that needs it, so it runs on the caller's thread if all are busy
+        helperExecutor = new ThreadPoolExecutor(0, MAX_HELPER_THREADS, THREAD_IDLE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), createThreadFactory("TFS pull request diff helper "),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static ThreadFactory createThreadFactory(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NotNull final Runnable runnable) {
+                final Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public <T> ListenableFuture<T> submit(final Callable<T> job) {
+        final ListenableFuture<T> future = executorService.submit(job);
+        logger.debug("submit: {} diff jobs running, {} queued", getRunningCount(), getQueuedCount());
+        return future;
+    }
+
+    /**
+     * Get the executor for the git calls a job runs next to its own (see DiffCompareInfoProvider)
+     */
+    public ExecutorService getHelperExecutor() {
+        return helperExecutor;
+    }
+
+    /**
+     * Get the number of jobs running right now
+     */
+    public int getRunningCount() {
+        return threadPoolExecutor.getActiveCount();
+    }
+
+    /**
+     * Get the number of jobs waiting for a thread, not counting the cancelled ones
+     */
+    public int getQueuedCount() {
+        // cancelled jobs stay in the queue until a thread takes them
+        threadPoolExecutor.purge();
+        return queue.size();
+    }
+
+    @Override
+    public void dispose() {
+        executorService.shutdownNow();
+        helperExecutor.shutdownNow();
+    }
+}
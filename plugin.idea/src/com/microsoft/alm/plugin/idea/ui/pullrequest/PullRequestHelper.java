@@ -130,8 +130,14 @@ public class PullRequestHelper {
      */
     public String getHtmlMsg(final String repositoryRemoteUrl, final int id) {
         final String text = TfPluginBundle.message(TfPluginBundle.KEY_CREATE_PR_CREATED_MESSAGE, String.valueOf(id));
-        final String webAccessUrl = String.format(WEB_ACCESS_PR_FORMAT, repositoryRemoteUrl, id);
-        return String.format(UrlHelper.SHORT_HTTP_LINK_FORMATTER, webAccessUrl, text);
+        return String.format(UrlHelper.SHORT_HTTP_LINK_FORMATTER, getWebAccessUrl(repositoryRemoteUrl, id), text);
+    }
+
+    /**
+     * Get the url of the pull request page in web access
+     */
+    public static String getWebAccessUrl(final String repositoryRemoteUrl, final int id) {
+        return String.format(WEB_ACCESS_PR_FORMAT, repositoryRemoteUrl, id);
     }
 
     public GitPullRequest generateGitPullRequest(@NotNull final String title,
@@ -165,17 +171,12 @@ public class PullRequestHelper {
         if (StringUtils.indexOf(t.getMessage(), PR_EXISTS_EXEPTION_NAME) > -1) {
             try {
                 // look for the existing PR
-                final UUID repoId = context.getGitRepository().getId();
-                final GitPullRequestSearchCriteria searchCriteria = new GitPullRequestSearchCriteria();
-                searchCriteria.setRepositoryId(repoId);
-                searchCriteria.setStatus(PullRequestStatus.ACTIVE);
-                searchCriteria.setSourceRefName(getVSORefName(sourceBranch));
-                searchCriteria.setTargetRefName(getVSORefName(targetBranch.getNameForRemoteOperations()));
-                List<GitPullRequest> pullRequests = gitClient.getPullRequests(repoId, searchCriteria, null, 0, 1);
-
-                if (pullRequests != null && pullRequests.size() > 0) {
+                final GitPullRequest existingPullRequest
+                        = findActivePullRequest(sourceBranch, targetBranch, context, gitClient);
+
+                if (existingPullRequest != null) {
                     final String repositoryRemoteUrl = context.getGitRepository().getRemoteUrl();
-                    final String notifyMsgInHtml = getHtmlMsg(repositoryRemoteUrl, pullRequests.get(0).getPullRequestId());
+                    final String notifyMsgInHtml = getHtmlMsg(repositoryRemoteUrl, existingPullRequest.getPullRequestId());
 
                     return Pair.create(PRCreateStatus.DUPLICATE, notifyMsgInHtml);
                 }
@@ -191,6 +192,24 @@ public class PullRequestHelper {
         return Pair.create(PRCreateStatus.FAILED, t.getMessage());
     }
 
+    /**
+     * Look for an active pull request from the source branch to the target branch
+     *
+     * @return the first one found, or null if there is none
+     */
+    public GitPullRequest findActivePullRequest(final String sourceBranch, final GitRemoteBranch targetBranch,
+                                                final ServerContext context, final GitHttpClient gitClient) {
+        final UUID repoId = context.getGitRepository().getId();
+        final GitPullRequestSearchCriteria searchCriteria = new GitPullRequestSearchCriteria();
+        searchCriteria.setRepositoryId(repoId);
+        searchCriteria.setStatus(PullRequestStatus.ACTIVE);
+        searchCriteria.setSourceRefName(getVSORefName(sourceBranch));
+        searchCriteria.setTargetRefName(getVSORefName(targetBranch.getNameForRemoteOperations()));
+        final List<GitPullRequest> pullRequests = gitClient.getPullRequests(repoId, searchCriteria, null, 0, 1);
+
+        return pullRequests != null && pullRequests.size() > 0 ? pullRequests.get(0) : null;
+    }
+
     private String getVSORefName(final String name) {
         return String.format(TF_REF_FORMATTER, name);
     }
@@ -0,0 +1,170 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.lang.StringUtils;
+
+import javax.xml.bind.DatatypeConverter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This class holds what the pull requests tool window shows about one pull request. It is read from the JSON the
+ * server returns, and only the fields the tool window uses are kept.
+ * <p/>
+ * The version changes whenever anything the user would care about changes (title, status, merge status, the
+ * commit being merged or a vote), so comparing versions tells which pull requests changed since the last sync.
+ */
+public class PullRequestSummary {
+    private static final String REFS_HEADS = "refs/heads/";
+
+    public enum Role {
+        CREATED,
+        REVIEWING
+    }
+
+    private final int pullRequestId;
+    private final UUID repositoryId;
+    private final String repositoryName;
+    private final String repositoryRemoteUrl;
+    private final String title;
+    private final String sourceBranch;
+    private final String targetBranch;
+    private final String createdBy;
+    private final long creationDate;
+    private final String status;
+    private final Role role;
+    private final String version;
+
+    public PullRequestSummary(final int pullRequestId, final UUID repositoryId, final String repositoryName,
+                              final String repositoryRemoteUrl, final String title, final String sourceBranch,
+                              final String targetBranch, final String createdBy, final long creationDate,
+                              final String status, final Role role, final String version) {
+        this.pullRequestId = pullRequestId;
+        this.repositoryId = repositoryId;
+        this.repositoryName = repositoryName;
+        this.repositoryRemoteUrl = repositoryRemoteUrl;
+        this.title = title;
+        this.sourceBranch = sourceBranch;
+        this.targetBranch = targetBranch;
+        this.createdBy = createdBy;
+        this.creationDate = creationDate;
+        this.status = status;
+        this.role = role;
+        this.version = version;
+    }
+
+    /**
+     * Reads a pull request from the JSON of the pull requests REST api
+     *
+     * @param repositoryRemoteUrl the remote url of the repository the pull request is in, for its web access link
+     * @return null if the JSON isn't a pull request
+     */
+    public static PullRequestSummary fromJson(final JsonNode pullRequest, final Role role, final String repositoryRemoteUrl) {
+        final int pullRequestId = pullRequest.path("pullRequestId").asInt(0);
+        final String repositoryId = pullRequest.path("repository").path("id").asText();
+        if (pullRequestId <= 0 || StringUtils.isEmpty(repositoryId)) {
+            return null;
+        }
+
+        long creationDate = 0;
+        final String creationDateText = pullRequest.path("creationDate").asText();
+        if (StringUtils.isNotEmpty(creationDateText)) {
+            try {
+                creationDate = DatatypeConverter.parseDateTime(creationDateText).getTimeInMillis();
+            } catch (IllegalArgumentException e) {
+                // keep 0, the pull request is just sorted last
+            }
+        }
+
+        final String title = pullRequest.path("title").asText();
+        final String status = pullRequest.path("status").asText();
+
+        // the votes are sorted so that the order the server lists reviewers in doesn't matter
+        final List<String> votes = new ArrayList<String>();
+        for (final JsonNode reviewer : pullRequest.path("reviewers")) {
+            votes.add(reviewer.path("id").asText() + "=" + reviewer.path("vote").asInt(0));
+        }
+        Collections.sort(votes);
+        final String version = StringUtils.join(new Object[]{title, status,
+                pullRequest.path("mergeStatus").asText(),
+                pullRequest.path("lastMergeSourceCommit").path("commitId").asText(),
+                StringUtils.join(votes, ",")}, "|");
+
+        return new PullRequestSummary(pullRequestId,
+                UUID.fromString(repositoryId),
+                pullRequest.path("repository").path("name").asText(),
+                repositoryRemoteUrl,
+                title,
+                getBranchName(pullRequest.path("sourceRefName").asText()),
+                getBranchName(pullRequest.path("targetRefName").asText()),
+                pullRequest.path("createdBy").path("displayName").asText(),
+                creationDate,
+                status,
+                role,
+                version);
+    }
+
+    private static String getBranchName(final String refName) {
+        return StringUtils.removeStart(refName, REFS_HEADS);
+    }
+
+    public int getPullRequestId() {
+        return pullRequestId;
+    }
+
+    public UUID getRepositoryId() {
+        return repositoryId;
+    }
+
+    public String getRepositoryName() {
+        return repositoryName;
+    }
+
+    public String getRepositoryRemoteUrl() {
+        return repositoryRemoteUrl;
+    }
+
+    public String getWebAccessUrl() {
+        return PullRequestHelper.getWebAccessUrl(repositoryRemoteUrl, pullRequestId);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getSourceBranch() {
+        return sourceBranch;
+    }
+
+    public String getTargetBranch() {
+        return targetBranch;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    /**
+     * The time (in milliseconds since the epoch) the pull request was created
+     */
+    public long getCreationDate() {
+        return creationDate;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+}
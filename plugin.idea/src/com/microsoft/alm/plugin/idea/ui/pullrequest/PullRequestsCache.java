@@ -0,0 +1,303 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.microsoft.alm.plugin.idea.settings.JsonHelper;
+import com.microsoft.alm.plugin.idea.settings.PullRequestsCacheState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This project service keeps the active pull requests the user created or is reviewing, as the last sync with each
+ * server found them, so the pull requests tool window can show them as soon as it opens. The pull requests are kept
+ * per query (one per team project and role, see PullRequestsSync) along with the ETag the server returned for it.
+ * The cache is saved to a JSON file in the IDE's system directory whenever it changes and is read back the first
+ * time it is used. Outside of IntelliJ (in tests) nothing is written to disk.
+ * <p/>
+ * Listeners are called (on the thread that changed the cache) only when a pull request was added, removed or changed.
+ * <p/>
+ * Thread-safety: Thread safe
+ */
+public class PullRequestsCache {
+    private static final Logger logger = LoggerFactory.getLogger(PullRequestsCache.class);
+
+    private static final String CACHE_DIRECTORY = "tfs";
+    private static final String CACHE_FILE_FORMAT = "pull-requests-%s.json";
+
+    /**
+     * The pull requests one query returned by the last sync
+     */
+    public static class Query {
+        private final String etag;
+        private final long syncedAt;
+        private final List<PullRequestSummary> pullRequests;
+
+        public Query(final String etag, final long syncedAt, final List<PullRequestSummary> pullRequests) {
+            this.etag = etag;
+            this.syncedAt = syncedAt;
+            this.pullRequests = Collections.unmodifiableList(new ArrayList<PullRequestSummary>(pullRequests));
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        /**
+         * The time (in milliseconds since the epoch) the server last answered the query
+         */
+        public long getSyncedAt() {
+            return syncedAt;
+        }
+
+        public List<PullRequestSummary> getPullRequests() {
+            return pullRequests;
+        }
+    }
+
+    // Newest first
+    private static final Comparator<PullRequestSummary> PULL_REQUEST_ORDER = new Comparator<PullRequestSummary>() {
+        @Override
+        public int compare(final PullRequestSummary pr1, final PullRequestSummary pr2) {
+            if (pr1.getCreationDate() != pr2.getCreationDate()) {
+                return pr1.getCreationDate() > pr2.getCreationDate() ? -1 : 1;
+            }
+            return pr2.getPullRequestId() - pr1.getPullRequestId();
+        }
+    };
+
+    private final File cacheFile;
+    private final Map<String, Query> queries = new HashMap<String, Query>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<Runnable>();
+    private boolean restored = false;
+    // Held while saving so that a newer copy of the cache is never overwritten by an older one
+    private final Object saveLock = new Object();
+
+    public static PullRequestsCache getInstance(@NotNull final Project project) {
+        // ApplicationManager is null if we are not in IntelliJ
+        if (ApplicationManager.getApplication() == null) {
+            return new PullRequestsCache((File) null);
+        }
+        return ServiceManager.getService(project, PullRequestsCache.class);
+    }
+
+    /**
+     * Only IntelliJ (once per project) should create a cache this way.
+     */
+    public PullRequestsCache(@NotNull final Project project) {
+        this(new File(new File(PathManager.getSystemPath(), CACHE_DIRECTORY),
+                String.format(CACHE_FILE_FORMAT, project.getLocationHash())));
+    }
+
+    /**
+     * Tests create a cache without a file.
+     */
+    protected PullRequestsCache(@Nullable final File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Get the pull requests of all queries, newest first. A pull request the user created and is also reviewing is
+     * only listed once, as created.
+     */
+    public synchronized List<PullRequestSummary> getPullRequests() {
+        ensureRestored();
+        final Map<String, PullRequestSummary> pullRequests = new LinkedHashMap<String, PullRequestSummary>();
+        for (final Query query : queries.values()) {
+            for (final PullRequestSummary pullRequest : query.getPullRequests()) {
+                final String key = pullRequest.getRepositoryId() + "/" + pullRequest.getPullRequestId();
+                final PullRequestSummary existing = pullRequests.get(key);
+                if (existing == null || pullRequest.getRole() == PullRequestSummary.Role.CREATED) {
+                    pullRequests.put(key, pullRequest);
+                }
+            }
+        }
+
+        final List<PullRequestSummary> sorted = new ArrayList<PullRequestSummary>(pullRequests.values());
+        Collections.sort(sorted, PULL_REQUEST_ORDER);
+        return sorted;
+    }
+
+    /**
+     * Get the ETag to send with the query, or null if it hasn't been synced
+     */
+    public synchronized String getETag(final String queryKey) {
+        ensureRestored();
+        final Query query = queries.get(queryKey);
+        return query != null ? query.getETag() : null;
+    }
+
+    /**
+     * Records that the server said the result of the query hasn't changed
+     */
+    public synchronized void markSynced(final String queryKey) {
+        final Query query = queries.get(queryKey);
+        if (query != null) {
+            queries.put(queryKey, new Query(query.getETag(), System.currentTimeMillis(), query.getPullRequests()));
+        }
+    }
+
+    /**
+     * Replaces the result of the query
+     *
+     * @return true if a pull request was added, removed or changed
+     */
+    public boolean update(final String queryKey, final String etag, final List<PullRequestSummary> pullRequests) {
+        final boolean changed;
+        synchronized (this) {
+            ensureRestored();
+            final Query query = queries.get(queryKey);
+            changed = isChanged(query != null ? query.getPullRequests() : Collections.<PullRequestSummary>emptyList(),
+                    pullRequests);
+            queries.put(queryKey, new Query(etag, System.currentTimeMillis(), pullRequests));
+        }
+
+        if (changed) {
+            save();
+            notifyListeners();
+        }
+        return changed;
+    }
+
+    /**
+     * Drops the queries that aren't synced any more (e.g. a repository was removed from the project)
+     *
+     * @return true if a pull request was removed
+     */
+    public boolean retainQueries(final Collection<String> queryKeys) {
+        return retainQueries(queryKeys, Collections.<String>emptySet());
+    }
+
+    /**
+     * Drops the queries that aren't synced any more, except the ones with pull requests of the given repositories
+     * (e.g. their server can't be reached right now, so the keys of their queries aren't known)
+     *
+     * @return true if a pull request was removed
+     */
+    public boolean retainQueries(final Collection<String> queryKeys, final Collection<String> keptRemoteUrls) {
+        boolean changed = false;
+        synchronized (this) {
+            ensureRestored();
+            for (final String queryKey : new ArrayList<String>(queries.keySet())) {
+                if (!queryKeys.contains(queryKey) && !hasPullRequestsOf(queries.get(queryKey), keptRemoteUrls)) {
+                    changed |= !queries.remove(queryKey).getPullRequests().isEmpty();
+                }
+            }
+        }
+
+        if (changed) {
+            save();
+            notifyListeners();
+        }
+        return changed;
+    }
+
+    public void addListener(final Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Compares the pull requests of two results of the same query by id and version
+     */
+    static boolean isChanged(final List<PullRequestSummary> oldPullRequests, final List<PullRequestSummary> newPullRequests) {
+        if (oldPullRequests.size() != newPullRequests.size()) {
+            return true;
+        }
+
+        final Set<String> oldVersions = new HashSet<String>();
+        for (final PullRequestSummary pullRequest : oldPullRequests) {
+            oldVersions.add(pullRequest.getRepositoryId() + "/" + pullRequest.getPullRequestId() + "/" + pullRequest.getVersion());
+        }
+        for (final PullRequestSummary pullRequest : newPullRequests) {
+            if (!oldVersions.contains(pullRequest.getRepositoryId() + "/" + pullRequest.getPullRequestId() + "/" + pullRequest.getVersion())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasPullRequestsOf(final Query query, final Collection<String> remoteUrls) {
+        for (final PullRequestSummary pullRequest : query.getPullRequests()) {
+            if (remoteUrls.contains(pullRequest.getRepositoryRemoteUrl())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void notifyListeners() {
+        for (final Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    private void ensureRestored() {
+        if (restored) {
+            return;
+        }
+        restored = true;
+
+        if (cacheFile == null || !cacheFile.exists()) {
+            return;
+        }
+        try {
+            final PullRequestsCacheState state = JsonHelper.read(FileUtil.loadFile(cacheFile), PullRequestsCacheState.class);
+            if (state != null) {
+                queries.putAll(state.createQueries());
+            }
+        } catch (IOException e) {
+            // The cache will be filled again by the next sync
+            logger.warn("ensureRestored: unable to read the pull requests cache", e);
+        }
+    }
+
+    private void save() {
+        if (cacheFile == null) {
+            return;
+        }
+
+        synchronized (saveLock) {
+            final PullRequestsCacheState state;
+            synchronized (this) {
+                state = new PullRequestsCacheState(queries);
+            }
+            final String json = JsonHelper.write(state);
+            if (json == null) {
+                return;
+            }
+            try {
+                // Write a temporary file first so that a crash can't leave half of the cache behind
+                final File tempFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+                FileUtil.writeToFile(tempFile, json);
+                FileUtil.rename(tempFile, cacheFile);
+            } catch (IOException e) {
+                logger.warn("save: unable to write the pull requests cache", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.ide.BrowserUtil;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.SimpleToolWindowPanel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.ListSelectionModel;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The content of the pull requests tool window. It shows what the PullRequestsCache has as soon as it is read,
+ * and again whenever a sync changes it. Double clicking a pull request opens it in the browser.
+ */
+public class PullRequestsPanel extends SimpleToolWindowPanel implements Disposable {
+    private static final String TOOLBAR_PLACE = "TFS.PullRequests";
+
+    private final Project project;
+    private final PullRequestsTableModel tableModel = new PullRequestsTableModel();
+    private final JBTable table = new JBTable(tableModel);
+    // Only the latest refresh is shown, an older one may finish later
+    private final AtomicInteger refreshCount = new AtomicInteger();
+    private final Runnable cacheListener = new Runnable() {
+        @Override
+        public void run() {
+            refreshFromCache();
+        }
+    };
+
+    public PullRequestsPanel(@NotNull final Project project) {
+        super(true, true);
+        this.project = project;
+
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getEmptyText().setText(TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_EMPTY));
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(final MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    openPullRequest(table.rowAtPoint(e.getPoint()));
+                }
+            }
+        });
+        setContent(new JBScrollPane(table));
+
+        final DefaultActionGroup group = new DefaultActionGroup();
+        group.add(new DumbAwareAction(TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_REFRESH),
+                TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_REFRESH), AllIcons.Actions.Refresh) {
+            @Override
+            public void actionPerformed(final AnActionEvent anActionEvent) {
+                PullRequestsSync.getInstance(project).syncNow();
+            }
+        });
+        setToolbar(ActionManager.getInstance().createActionToolbar(TOOLBAR_PLACE, group, true).getComponent());
+
+        PullRequestsCache.getInstance(project).addListener(cacheListener);
+        refreshFromCache();
+    }
+
+    /**
+     * Reads the cache on a pooled thread, the first read loads it from disk, and shows it on the UI thread
+     */
+    private void refreshFromCache() {
+        final int refresh = refreshCount.incrementAndGet();
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                if (project.isDisposed()) {
+                    return;
+                }
+                final List<PullRequestSummary> pullRequests = PullRequestsCache.getInstance(project).getPullRequests();
+                ApplicationManager.getApplication().invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!project.isDisposed() && refresh == refreshCount.get()) {
+                            tableModel.setPullRequests(pullRequests);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void openPullRequest(final int viewRowIndex) {
+        if (viewRowIndex < 0) {
+            return;
+        }
+        final PullRequestSummary pullRequest = tableModel.getPullRequest(table.convertRowIndexToModel(viewRowIndex));
+        if (pullRequest != null && StringUtils.isNotEmpty(pullRequest.getRepositoryRemoteUrl())) {
+            BrowserUtil.browse(pullRequest.getWebAccessUrl());
+        }
+    }
+
+    @Override
+    public void dispose() {
+        PullRequestsCache.getInstance(project).removeListener(cacheListener);
+    }
+}
@@ -0,0 +1,430 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.intellij.ide.PowerSaveMode;
+import com.intellij.openapi.components.ProjectComponent;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.Alarm;
+import com.microsoft.alm.common.utils.UrlHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.plugin.idea.settings.JsonHelper;
+import com.microsoft.alm.plugin.idea.utils.TfGitHelper;
+import git4idea.GitUtil;
+import git4idea.repo.GitRemote;
+import git4idea.repo.GitRepository;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This project component keeps the PullRequestsCache up to date while the project is open.
+ * <p/>
+ * The TF git repositories of the project are grouped by team project, and the server is asked for the active pull
+ * requests the user created and the ones the user is reviewing in each team project, so the number of requests
+ * doesn't grow with the number of repositories. The pull requests of the other repositories of the team project are
+ * dropped. Servers that can't search a whole team project (older TFS) are asked per repository.
+ * <p/>
+ * The requests are conditional: the ETag of the last answer is sent along, and a 304 (not modified) answer leaves
+ * the cache as it is. Since the cached result is filtered by the project's repositories, the ETag is only sent if
+ * the repositories are the ones the result was filtered by, so the first sync after the IDE starts, or after a
+ * repository was added, gets the whole answer.
+ * <p/>
+ * Repositories whose server can't be reached keep their cached pull requests until it can.
+ * <p/>
+ * The sync runs every minute while pull requests change, and then twice as long after each sync that found no
+ * change, up to MAX_INTERVAL_MILLIS. Only repositories whose server the user is already signed in to are synced,
+ * the user is never prompted. Nothing is synced in power save mode.
+ */
+public class PullRequestsSync implements ProjectComponent {
+    private static final Logger logger = LoggerFactory.getLogger(PullRequestsSync.class);
+
+    public static final long MIN_INTERVAL_MILLIS = 60 * 1000;
+    public static final long MAX_INTERVAL_MILLIS = 16 * MIN_INTERVAL_MILLIS;
+    // Give the project time to open before the first sync
+    private static final long INITIAL_DELAY_MILLIS = 10 * 1000;
+
+    private static final String API_VERSION = "3.0";
+    private static final String FALLBACK_API_VERSION = "1.0";
+    private static final String CONNECTION_DATA_PATH = "/_apis/connectionData";
+    private static final String TEAM_PROJECT_PULL_REQUESTS_FORMAT = "%s/%s/_apis/git/pullrequests?searchCriteria.status=active&searchCriteria.%s=%s&api-version=%s";
+    private static final String REPOSITORY_PULL_REQUESTS_FORMAT = "%s/_apis/git/repositories/%s/pullrequests?status=active&%s=%s&api-version=%s";
+
+    private final Project project;
+    private Alarm alarm;
+    private volatile long intervalMillis = MIN_INTERVAL_MILLIS;
+    private volatile boolean syncRequested = false;
+    // Contexts are kept so that the server isn't asked about every repository on every sync
+    private final Map<String, ServerContext> contexts = new ConcurrentHashMap<String, ServerContext>();
+    private final Map<URI, String> userIds = new ConcurrentHashMap<URI, String>();
+    // The repositories the cached result of each query was filtered by, its ETag is only valid for them
+    private final Map<String, Map<UUID, String>> queryRepositories = new HashMap<String, Map<UUID, String>>();
+    // Collections of servers that can only list the pull requests of one repository at a time
+    private final Set<URI> perRepositoryCollections = new HashSet<URI>();
+    private final Object syncLock = new Object();
+
+    private final Runnable syncRequest = new Runnable() {
+        @Override
+        public void run() {
+            syncRequested = false;
+            boolean changed = false;
+            try {
+                if (!project.isDisposed() && !PowerSaveMode.isEnabled()) {
+                    changed = sync(PullRequestsCache.getInstance(project));
+                }
+            } catch (RuntimeException e) {
+                logger.warn("syncRequest: failed to sync the pull requests", e);
+            } finally {
+                intervalMillis = nextIntervalMillis(intervalMillis, changed);
+                schedule(syncRequested ? 0 : intervalMillis);
+            }
+        }
+    };
+
+    /**
+     * The repositories of a team project that are synced together
+     */
+    static class TeamProjectRepositories {
+        private final ServerContext context;
+        private final URI collectionUri;
+        private final UUID teamProjectId;
+        private final Map<UUID, String> remoteUrls = new LinkedHashMap<UUID, String>();
+
+        TeamProjectRepositories(final ServerContext context, final URI collectionUri, final UUID teamProjectId) {
+            this.context = context;
+            this.collectionUri = collectionUri;
+            this.teamProjectId = teamProjectId;
+        }
+
+        void addRepository(final UUID repositoryId, final String remoteUrl) {
+            remoteUrls.put(repositoryId, remoteUrl);
+        }
+    }
+
+    /**
+     * The answer to a GET request
+     */
+    static class Response {
+        private final int statusCode;
+        private final String etag;
+        private final String body;
+
+        Response(final int statusCode, final String etag, final String body) {
+            this.statusCode = statusCode;
+            this.etag = etag;
+            this.body = body;
+        }
+    }
+
+    public static PullRequestsSync getInstance(@NotNull final Project project) {
+        return project.getComponent(PullRequestsSync.class);
+    }
+
+    public PullRequestsSync(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void projectOpened() {
+        alarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, project);
+        schedule(INITIAL_DELAY_MILLIS);
+    }
+
+    @Override
+    public void projectClosed() {
+        // the alarm is disposed with the project
+    }
+
+    @Override
+    public void initComponent() {
+        // nothing to do until the project is opened
+    }
+
+    @Override
+    public void disposeComponent() {
+        // the alarm is disposed with the project
+    }
+
+    @NotNull
+    @Override
+    public String getComponentName() {
+        return "PullRequestsSync";
+    }
+
+    /**
+     * Sync as soon as possible (e.g. the user asked to refresh), and poll often again
+     */
+    public void syncNow() {
+        syncRequested = true;
+        intervalMillis = MIN_INTERVAL_MILLIS;
+        schedule(0);
+    }
+
+    /**
+     * Get the time to wait before the next sync: the shortest interval after a change, otherwise twice the last one
+     */
+    public static long nextIntervalMillis(final long intervalMillis, final boolean changed) {
+        if (changed) {
+            return MIN_INTERVAL_MILLIS;
+        }
+        return Math.max(MIN_INTERVAL_MILLIS, Math.min(MAX_INTERVAL_MILLIS, intervalMillis * 2));
+    }
+
+    /**
+     * Get the key the cache keeps the result of a query under
+     */
+    public static String getQueryKey(final URI collectionUri, final UUID scopeId, final PullRequestSummary.Role role) {
+        return UrlHelper.asString(collectionUri).toLowerCase() + "/" + scopeId + "/" + role;
+    }
+
+    private void schedule(final long delayMillis) {
+        if (alarm == null || alarm.isDisposed()) {
+            return;
+        }
+        alarm.cancelAllRequests();
+        alarm.addRequest(syncRequest, (int) delayMillis);
+    }
+
+    /**
+     * Asks the servers for the pull requests of the project's repositories and updates the cache
+     *
+     * @return true if a pull request was added, removed or changed
+     */
+    boolean sync(final PullRequestsCache cache) {
+        synchronized (syncLock) {
+            final Set<String> queryKeys = new HashSet<String>();
+            final Set<String> unresolvedRemoteUrls = new HashSet<String>();
+            boolean changed = false;
+
+            for (final TeamProjectRepositories teamProject : getTeamProjects(unresolvedRemoteUrls)) {
+                final String userId = getUserId(teamProject);
+                if (userId == null) {
+                    // keep what the cache has until the server can be reached
+                    addQueryKeys(teamProject, queryKeys);
+                    continue;
+                }
+
+                for (final PullRequestSummary.Role role : PullRequestSummary.Role.values()) {
+                    if (!perRepositoryCollections.contains(teamProject.collectionUri)) {
+                        final String queryKey = getQueryKey(teamProject.collectionUri, teamProject.teamProjectId, role);
+                        final String url = String.format(TEAM_PROJECT_PULL_REQUESTS_FORMAT,
+                                UrlHelper.asString(teamProject.collectionUri), teamProject.teamProjectId,
+                                getSearchCriteria(role), userId, API_VERSION);
+                        final Boolean queryChanged = syncQuery(cache, teamProject, queryKey, url, role);
+                        if (queryChanged != null) {
+                            queryKeys.add(queryKey);
+                            changed |= queryChanged;
+                            continue;
+                        }
+                        logger.info("sync: {} can't search a team project, asking each repository", teamProject.collectionUri);
+                        perRepositoryCollections.add(teamProject.collectionUri);
+                    }
+
+                    for (final UUID repositoryId : teamProject.remoteUrls.keySet()) {
+                        final String queryKey = getQueryKey(teamProject.collectionUri, repositoryId, role);
+                        final String url = String.format(REPOSITORY_PULL_REQUESTS_FORMAT,
+                                UrlHelper.asString(teamProject.collectionUri), repositoryId,
+                                getSearchCriteria(role), userId, FALLBACK_API_VERSION);
+                        final Boolean queryChanged = syncQuery(cache, teamProject, queryKey, url, role);
+                        queryKeys.add(queryKey);
+                        changed |= queryChanged != null && queryChanged;
+                    }
+                }
+            }
+
+            // the queries of the repositories we have no context for are unknown, keep their pull requests
+            changed |= cache.retainQueries(queryKeys, unresolvedRemoteUrls);
+            return changed;
+        }
+    }
+
+    /**
+     * Sends one query and puts its result in the cache
+     *
+     * @return whether the cache changed, or null if the server doesn't know the query
+     */
+    private Boolean syncQuery(final PullRequestsCache cache, final TeamProjectRepositories teamProject,
+                              final String queryKey, final String url, final PullRequestSummary.Role role) {
+        // the cached result was filtered by other repositories, don't let the server say it is still valid
+        final boolean sameRepositories = teamProject.remoteUrls.equals(queryRepositories.get(queryKey));
+        try {
+            final Response response = get(teamProject.context, url, sameRepositories ? cache.getETag(queryKey) : null);
+            if (response == null) {
+                return false;
+            }
+            if (response.statusCode == HttpStatus.SC_NOT_MODIFIED) {
+                cache.markSynced(queryKey);
+                return false;
+            }
+            if (response.statusCode == HttpStatus.SC_NOT_FOUND || response.statusCode == HttpStatus.SC_BAD_REQUEST) {
+                return null;
+            }
+            if (response.statusCode != HttpStatus.SC_OK) {
+                logger.warn("syncQuery: {} returned {}", url, response.statusCode);
+                return false;
+            }
+
+            final List<PullRequestSummary> pullRequests = new ArrayList<PullRequestSummary>();
+            for (final JsonNode node : JsonHelper.readTree(response.body).path("value")) {
+                final PullRequestSummary pullRequest = PullRequestSummary.fromJson(node, role,
+                        teamProject.remoteUrls.get(getRepositoryId(node)));
+                // Only keep the pull requests of the project's repositories
+                if (pullRequest != null && teamProject.remoteUrls.containsKey(pullRequest.getRepositoryId())) {
+                    pullRequests.add(pullRequest);
+                }
+            }
+            queryRepositories.put(queryKey, new HashMap<UUID, String>(teamProject.remoteUrls));
+            return cache.update(queryKey, response.etag, pullRequests);
+        } catch (IOException e) {
+            // the cache keeps the last result
+            logger.warn("syncQuery: failed to get " + url, e);
+            return false;
+        }
+    }
+
+    /**
+     * Groups the TF git repositories of the project by team project. Repositories on servers the user isn't
+     * signed in to, or that can't be reached, are left out and their remote urls are added to unresolvedRemoteUrls.
+     */
+    List<TeamProjectRepositories> getTeamProjects(final Set<String> unresolvedRemoteUrls) {
+        final Map<String, TeamProjectRepositories> teamProjects = new LinkedHashMap<String, TeamProjectRepositories>();
+        for (final GitRepository repository : GitUtil.getRepositoryManager(project).getRepositories()) {
+            if (!TfGitHelper.isTfGitRepository(repository)) {
+                continue;
+            }
+            final GitRemote tfRemote = TfGitHelper.getTfGitRemote(repository);
+            final String remoteUrl = tfRemote != null ? tfRemote.getFirstUrl() : null;
+            if (StringUtils.isEmpty(remoteUrl)) {
+                continue;
+            }
+
+            final ServerContext context = getContext(remoteUrl);
+            final URI collectionUri = context != null ? context.getCollectionURI() : null;
+            if (collectionUri == null || context.getTeamProjectReference() == null || context.getGitRepository() == null) {
+                unresolvedRemoteUrls.add(remoteUrl);
+                continue;
+            }
+
+            final UUID teamProjectId = context.getTeamProjectReference().getId();
+            final String key = UrlHelper.asString(collectionUri).toLowerCase() + "/" + teamProjectId;
+            TeamProjectRepositories teamProject = teamProjects.get(key);
+            if (teamProject == null) {
+                teamProject = new TeamProjectRepositories(context, collectionUri, teamProjectId);
+                teamProjects.put(key, teamProject);
+            }
+            teamProject.addRepository(context.getGitRepository().getId(), remoteUrl);
+        }
+        return new ArrayList<TeamProjectRepositories>(teamProjects.values());
+    }
+
+    private ServerContext getContext(final String remoteUrl) {
+        final ServerContext cachedContext = contexts.get(remoteUrl);
+        if (cachedContext != null && !cachedContext.isDisposed()) {
+            return cachedContext;
+        }
+
+        // Don't prompt, the user may not use this server any more
+        if (ServerContextManager.getInstance().getAuthenticationInfo(remoteUrl, false) == null) {
+            return null;
+        }
+        final ServerContext context = ServerContextManager.getInstance().getAuthenticatedContext(remoteUrl, false);
+        if (context != null) {
+            contexts.put(remoteUrl, context);
+        }
+        return context;
+    }
+
+    private String getUserId(final TeamProjectRepositories teamProject) {
+        final String cachedUserId = userIds.get(teamProject.collectionUri);
+        if (cachedUserId != null) {
+            return cachedUserId;
+        }
+
+        final String url = UrlHelper.asString(teamProject.collectionUri) + CONNECTION_DATA_PATH;
+        try {
+            final Response response = get(teamProject.context, url, null);
+            if (response == null || response.statusCode != HttpStatus.SC_OK) {
+                logger.warn("getUserId: {} returned {}", url, response != null ? response.statusCode : null);
+                return null;
+            }
+            final String userId = JsonHelper.readTree(response.body).path("authenticatedUser").path("id").asText();
+            if (StringUtils.isEmpty(userId)) {
+                return null;
+            }
+            userIds.put(teamProject.collectionUri, userId);
+            return userId;
+        } catch (IOException e) {
+            logger.warn("getUserId: failed to get " + url, e);
+            return null;
+        }
+    }
+
+    /* default */
+    Response get(final ServerContext context, final String url, final String etag) throws IOException {
+        final HttpClient httpClient = context.getHttpClient();
+        if (httpClient == null) {
+            logger.warn("get: context.getHttpClient() is null");
+            return null;
+        }
+
+        final HttpGet httpGet = new HttpGet(url);
+        httpGet.addHeader(new BasicHeader("Accept", "application/json")); //$NON-NLS-1$ //$NON-NLS-2$
+        if (etag != null) {
+            httpGet.addHeader(new BasicHeader("If-None-Match", etag)); //$NON-NLS-1$
+        }
+        try {
+            final HttpResponse httpResponse = httpClient.execute(httpGet);
+            final int statusCode = httpResponse.getStatusLine().getStatusCode();
+            final Header etagHeader = httpResponse.getFirstHeader("ETag"); //$NON-NLS-1$
+            final String body = statusCode == HttpStatus.SC_OK && httpResponse.getEntity() != null
+                    ? EntityUtils.toString(httpResponse.getEntity(), "UTF-8") : null; //$NON-NLS-1$
+            return new Response(statusCode, etagHeader != null ? etagHeader.getValue() : null, body);
+        } finally {
+            httpGet.releaseConnection();
+        }
+    }
+
+    private static void addQueryKeys(final TeamProjectRepositories teamProject, final Set<String> queryKeys) {
+        for (final PullRequestSummary.Role role : PullRequestSummary.Role.values()) {
+            queryKeys.add(getQueryKey(teamProject.collectionUri, teamProject.teamProjectId, role));
+            for (final UUID repositoryId : teamProject.remoteUrls.keySet()) {
+                queryKeys.add(getQueryKey(teamProject.collectionUri, repositoryId, role));
+            }
+        }
+    }
+
+    private static String getSearchCriteria(final PullRequestSummary.Role role) {
+        return role == PullRequestSummary.Role.CREATED ? "creatorId" : "reviewerId"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private static UUID getRepositoryId(final JsonNode pullRequest) {
+        try {
+            return UUID.fromString(pullRequest.path("repository").path("id").asText());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
+
+import javax.swing.table.AbstractTableModel;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The rows of the pull requests tool window, one per pull request, in the order the cache returns them.
+ */
+public class PullRequestsTableModel extends AbstractTableModel {
+    public enum Column {TITLE, REPOSITORY, BRANCHES, CREATED_BY, CREATED, ROLE}
+
+    private final DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+    private List<PullRequestSummary> pullRequests = Collections.emptyList();
+
+    public void setPullRequests(final List<PullRequestSummary> pullRequests) {
+        this.pullRequests = new ArrayList<PullRequestSummary>(pullRequests);
+        fireTableDataChanged();
+    }
+
+    public PullRequestSummary getPullRequest(final int rowIndex) {
+        return rowIndex >= 0 && rowIndex < pullRequests.size() ? pullRequests.get(rowIndex) : null;
+    }
+
+    @Override
+    public int getRowCount() {
+        return pullRequests.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return Column.values().length;
+    }
+
+    @Override
+    public String getColumnName(final int columnIndex) {
+        switch (Column.values()[columnIndex]) {
+            case TITLE:
+                return TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_TITLE_COLUMN);
+            case REPOSITORY:
+                return TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_REPOSITORY_COLUMN);
+            case BRANCHES:
+                return TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_BRANCHES_COLUMN);
+            case CREATED_BY:
+                return TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_CREATED_BY_COLUMN);
+            case CREATED:
+                return TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_CREATED_COLUMN);
+            case ROLE:
+                return TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_ROLE_COLUMN);
+            default:
+                return "";
+        }
+    }
+
+    @Override
+    public Object getValueAt(final int rowIndex, final int columnIndex) {
+        final PullRequestSummary pullRequest = pullRequests.get(rowIndex);
+        switch (Column.values()[columnIndex]) {
+            case TITLE:
+                return pullRequest.getTitle();
+            case REPOSITORY:
+                return pullRequest.getRepositoryName();
+            case BRANCHES:
+                return TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_BRANCHES,
+                        pullRequest.getSourceBranch(), pullRequest.getTargetBranch());
+            case CREATED_BY:
+                return pullRequest.getCreatedBy();
+            case CREATED:
+                return pullRequest.getCreationDate() > 0 ? dateFormat.format(new Date(pullRequest.getCreationDate())) : "";
+            case ROLE:
+                return pullRequest.getRole() == PullRequestSummary.Role.CREATED
+                        ? TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_ROLE_CREATED)
+                        : TfPluginBundle.message(TfPluginBundle.KEY_PR_TOOL_WINDOW_ROLE_REVIEWING);
+            default:
+                return "";
+        }
+    }
+}
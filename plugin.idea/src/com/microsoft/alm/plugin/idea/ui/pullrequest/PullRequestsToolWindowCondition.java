@@ -0,0 +1,39 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.vcs.ProjectLevelVcsManager;
+import com.microsoft.alm.plugin.idea.utils.TfGitHelper;
+import git4idea.GitUtil;
+import git4idea.GitVcs;
+import git4idea.repo.GitRepository;
+
+import java.util.List;
+
+/**
+ * The Pull Requests tool window is only shown in projects with a TF git repository. The condition is checked as
+ * the project opens, when git may not have found the repositories yet; then a project that uses git is enough.
+ */
+public class PullRequestsToolWindowCondition implements Condition<Project> {
+
+    @Override
+    public boolean value(final Project project) {
+        if (project == null || project.isDisposed()) {
+            return false;
+        }
+
+        final List<GitRepository> repositories = GitUtil.getRepositoryManager(project).getRepositories();
+        if (repositories.isEmpty()) {
+            return ProjectLevelVcsManager.getInstance(project).checkVcsIsActive(GitVcs.NAME);
+        }
+        for (final GitRepository repository : repositories) {
+            if (TfGitHelper.isTfGitRepository(repository)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
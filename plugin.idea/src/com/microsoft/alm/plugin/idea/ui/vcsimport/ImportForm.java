@@ -46,6 +46,7 @@ public class ImportForm implements BasicForm {
     private JTextField repositoryName;
     private JButton refreshButton;
     private BusySpinnerPanel busySpinner;
+    private String refreshToolTip;
     private JScrollPane teamProjectScrollPane;
 
     private boolean initialized = false;
@@ -198,6 +199,22 @@ public class ImportForm implements BasicForm {
         }
     }
 
+    /**
+     * Shows how current the list is in the tool tips of the refresh button and the busy spinner.
+     */
+    public void setCatalogStatus(final String catalogStatus) {
+        if (refreshToolTip == null) {
+            refreshToolTip = refreshButton.getToolTipText();
+        }
+        if (StringUtils.isEmpty(catalogStatus)) {
+            refreshButton.setToolTipText(refreshToolTip);
+            busySpinner.setToolTipText(null);
+        } else {
+            refreshButton.setToolTipText(refreshToolTip + " - " + catalogStatus);
+            busySpinner.setToolTipText(catalogStatus);
+        }
+    }
+
     private void createUIComponents() {
         userAccountPanel = new UserAccountPanel();
 
@@ -20,6 +20,8 @@ public interface ImportPage extends FocusableTabPage {
 
     void setLoading(final boolean loading);
 
+    void setCatalogStatus(final String catalogStatus);
+
     void setAuthenticating(final boolean authenticating);
 
     void setTeamProjectFilter(final String filter);
@@ -3,6 +3,8 @@
 
 package com.microsoft.alm.plugin.idea.ui.vcsimport;
 
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
+import com.microsoft.alm.plugin.context.RepositoryLookupCache;
 import com.microsoft.alm.plugin.idea.ui.common.AbstractController;
 import com.microsoft.alm.plugin.idea.ui.common.LoginPageModel;
 import com.microsoft.alm.plugin.idea.ui.common.forms.LoginForm;
@@ -51,6 +53,9 @@ public class ImportPageController extends AbstractController {
         if (arg == null || arg.equals(ImportPageModel.PROP_LOADING)) {
             page.setLoading(pageModel.isLoading());
         }
+        if (arg == null || arg.equals(ImportPageModel.PROP_CATALOG_STATUS)) {
+            page.setCatalogStatus(pageModel.getCatalogStatus());
+        }
         if (arg == null || arg.equals(LoginPageModel.PROP_AUTHENTICATING)) {
             page.setAuthenticating(pageModel.isAuthenticating());
         }
@@ -89,6 +94,9 @@ public class ImportPageController extends AbstractController {
             super.requestFocus(page);
         } else if (ImportForm.CMD_REFRESH.equals(e.getActionCommand())) {
             // Reload the table (the refresh button shouldn't be visible if the query is currently running)
+            // The user asked for a refresh, so don't reuse what other lookups have read from the server
+            RepositoryLookupCache.getInstance().clear();
+            RepositoryCatalog.getInstance().clearCollections();
             pageModel.loadTeamProjects();
         } else if (UserAccountPanel.CMD_SIGN_OUT.equals(e.getActionCommand())) {
             // Go back to a disconnected state
@@ -28,6 +28,11 @@ public class ImportPageImpl extends LoginPageImpl implements ImportPage {
         importForm.setLoading(loading);
     }
 
+    @Override
+    public void setCatalogStatus(final String catalogStatus) {
+        importForm.setCatalogStatus(catalogStatus);
+    }
+
     @Override
     public void setTeamProjectFilter(final String filter) {
         importForm.setTeamProjectFilter(filter);
@@ -9,6 +9,7 @@ import com.microsoft.alm.plugin.idea.ui.common.ServerContextTableModel;
 import javax.swing.ListSelectionModel;
 
 public interface ImportPageModel extends LoginPageModel {
+    String PROP_CATALOG_STATUS = "catalogStatus";
     String PROP_LOADING = "loading";
     String PROP_PROJECT_FILTER = "teamProjectFilter";
     String PROP_REPO_NAME = "repositoryName";
@@ -26,6 +27,8 @@ public interface ImportPageModel extends LoginPageModel {
 
     void setLoading(final boolean loading);
 
+    String getCatalogStatus();
+
     void setImportEnabled(final boolean importEnabled);
 
     ServerContextTableModel getTableModel();
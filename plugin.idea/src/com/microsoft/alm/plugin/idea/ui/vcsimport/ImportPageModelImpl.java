@@ -6,6 +6,7 @@ package com.microsoft.alm.plugin.idea.ui.vcsimport;
 import com.intellij.notification.NotificationListener;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.PerformInBackgroundOption;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Task;
@@ -26,17 +27,22 @@ import com.intellij.vcsUtil.VcsFileUtil;
 import com.intellij.vcsUtil.VcsUtil;
 import com.microsoft.alm.common.utils.UrlHelper;
 import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
+import com.microsoft.alm.plugin.context.ConnectionWarmer;
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextRow;
 import com.microsoft.alm.plugin.context.ServerContextBuilder;
 import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.plugin.context.ServerReachability;
 import com.microsoft.alm.plugin.idea.resources.Icons;
 import com.microsoft.alm.plugin.idea.resources.TfPluginBundle;
+import com.microsoft.alm.plugin.idea.ui.common.DebouncedTableFilter;
 import com.microsoft.alm.plugin.idea.ui.common.LoginPageModelImpl;
 import com.microsoft.alm.plugin.idea.ui.common.ModelValidationInfo;
 import com.microsoft.alm.plugin.idea.ui.common.ServerContextLookupListener;
 import com.microsoft.alm.plugin.idea.ui.common.ServerContextLookupPageModel;
 import com.microsoft.alm.plugin.idea.ui.common.ServerContextTableModel;
 import com.microsoft.alm.plugin.idea.utils.IdeaHelper;
+import com.microsoft.alm.plugin.operations.PendingMutationQueue;
 import com.microsoft.alm.plugin.telemetry.TfsTelemetryHelper;
 import com.microsoft.teamfoundation.sourcecontrol.webapi.GitHttpClient;
 import com.microsoft.vss.client.core.model.VssServiceException;
@@ -59,6 +65,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.ListSelectionModel;
+import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -73,11 +80,13 @@ public abstract class ImportPageModelImpl extends LoginPageModelImpl implements
 
     private ImportModel parentDialogModel;
     private boolean loading = false;
+    private String catalogStatus;
     private boolean importEnabled = false;
     //default values for Strings should be "" rather than null.
     private String teamProjectFilter = "";
     private String repositoryName = "";
     private final ServerContextTableModel teamProjectTableModel;
+    private final DebouncedTableFilter teamProjectTableFilter;
     private final ServerContextLookupListener teamProjectProvider;
 
     private final static String ACTION_NAME = "import";
@@ -89,9 +98,16 @@ public abstract class ImportPageModelImpl extends LoginPageModelImpl implements
 
         // Create table model (subclasses should modify the table model as needed)
         teamProjectTableModel = new ServerContextTableModel(columns);
+        teamProjectTableFilter = new DebouncedTableFilter(teamProjectTableModel);
 
         // Create the default teamProject provider
-        teamProjectProvider = new ServerContextLookupListener(this);
+        teamProjectProvider = new ServerContextLookupListener(this, teamProjectTableModel.getRowComparator());
+
+        // Get the connections to the servers used last ready while the user signs in
+        // ApplicationManager is null if we are not in IntelliJ
+        if (ApplicationManager.getApplication() != null) {
+            ConnectionWarmer.getInstance().warmUpLastUsed();
+        }
 
         // Set default repository name
         // We test this method and so we need to check to see if we are in IntelliJ
@@ -155,7 +171,7 @@ public abstract class ImportPageModelImpl extends LoginPageModelImpl implements
         if (!StringUtils.equals(this.teamProjectFilter, teamProjectFilter)) {
             this.teamProjectFilter = teamProjectFilter;
             setChangedAndNotify(PROP_PROJECT_FILTER);
-            teamProjectTableModel.setFilter(teamProjectFilter);
+            teamProjectTableFilter.setFilter(teamProjectFilter);
         }
     }
 
@@ -172,6 +188,19 @@ public abstract class ImportPageModelImpl extends LoginPageModelImpl implements
         }
     }
 
+    @Override
+    public String getCatalogStatus() {
+        return catalogStatus;
+    }
+
+    @Override
+    public void setCatalogStatus(final String catalogStatus) {
+        if (!StringUtils.equals(this.catalogStatus, catalogStatus)) {
+            this.catalogStatus = catalogStatus;
+            setChangedAndNotify(PROP_CATALOG_STATUS);
+        }
+    }
+
     @Override
     public void setImportEnabled(final boolean importEnabled) {
         if (this.importEnabled != importEnabled) {
@@ -208,79 +237,142 @@ public abstract class ImportPageModelImpl extends LoginPageModelImpl implements
         new Task.Backgroundable(project, TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_IMPORTING_PROJECT), true, PerformInBackgroundOption.DEAF) {
             @Override
             public void run(@NotNull final ProgressIndicator indicator) {
-                // Local context can change if the creation of the repo succeeds
-                ServerContext localContext = context;
-                String remoteUrlForDisplay = "";
-
-                try {
-                    final GitRepository repo = getRepositoryForProject(project);
-                    final VirtualFile rootVirtualFile = repo != null ? repo.getRoot() : project.getBaseDir();
-
-                    final GitRepository localRepository = repo != null ? repo :
-                            setupGitRepositoryForProject(project, rootVirtualFile, localContext, indicator);
-                    if (localRepository == null) {
-                        logger.error("doImport: current project {} is not in a Git repository", project.getName());
-                        return;
-                    }
+                importProject(project, context, repositoryName, indicator, true);
+            }
 
-                    if (!doFirstCommitIfRequired(project, localRepository, rootVirtualFile, localContext, indicator)) {
-                        logger.error("doImport: failed to do first commit on the local repository at: {}", localRepository.getRoot().getUrl());
-                        return;
-                    }
+        }.queue();
 
-                    final com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository remoteRepository =
-                            createRemoteGitRepo(project, context, localContext, indicator);
-                    if (remoteRepository != null) {
-                        //remote repo creation succeeded, save active context with the repository information
-                        localContext = new ServerContextBuilder(localContext).repository(remoteRepository).build();
-                        ServerContextManager.getInstance().add(localContext);
-                    } else {
-                        logger.error("doImport: failed to create remote repository with name: {} on server: {}, collection: {}",
-                                repositoryName, localContext.getUri(), localContext.getTeamProjectCollectionReference().getName());
-                        return;
-                    }
+    }
 
-                    if (!setupRemoteOnLocalRepo(project, localRepository, remoteRepository, localContext, indicator)) {
-                        logger.error("doImport: failed to setup remote origin on local repository at: {} to point to remote repository: {}",
-                                localRepository.getRoot().getUrl(), remoteRepository.getRemoteUrl());
-                        return;
-                    }
+    /**
+     * Runs the import on the current thread and tells the user how it went.
+     *
+     * @param queueIfUnreachable queue the rest of the import if the server can't be reached, rather than trying anyway
+     * @return false if a step of the import failed (the user has been told already)
+     */
+    private boolean importProject(final Project project, final ServerContext context, final String repositoryName,
+                                  final ProgressIndicator indicator, final boolean queueIfUnreachable) {
+        // Local context can change if the creation of the repo succeeds
+        ServerContext localContext = context;
+        String remoteUrlForDisplay = "";
 
-                    if (!pushChangesToRemoteRepo(project, localRepository, remoteRepository, localContext, indicator)) {
-                        logger.error("doImport: failed to push changes to remote repository: {}", remoteRepository.getRemoteUrl());
-                        return;
-                    }
+        try {
+            final GitRepository repo = getRepositoryForProject(project);
+            final VirtualFile rootVirtualFile = repo != null ? repo.getRoot() : project.getBaseDir();
 
-                    //all steps completed successfully
-                    remoteUrlForDisplay = remoteRepository.getRemoteUrl();
-
-                } catch (Throwable unexpectedError) {
-                    remoteUrlForDisplay = "";
-                    logger.error("doImport: Unexpected error during import");
-                    logger.warn("doImport", unexpectedError);
-                    notifyImportError(project, TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_ERRORS_UNEXPECTED, unexpectedError.getLocalizedMessage()),
-                            TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_FAILED), localContext);
-
-                } finally {
-                    if (StringUtils.isNotEmpty(remoteUrlForDisplay)) {
-                        // Notify the user that we are done and provide a link to the repo
-                        VcsNotifier.getInstance(project).notifyImportantInfo(TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_SUCCEEDED),
-                                TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_SUCCEEDED_MESSAGE, project.getName(), remoteUrlForDisplay, repositoryName),
-                                NotificationListener.URL_OPENING_LISTENER);
-
-                        // Add Telemetry for a successful import
-                        TfsTelemetryHelper.getInstance().sendEvent(ACTION_NAME,
-                                new TfsTelemetryHelper.PropertyMapBuilder()
-                                        .currentOrActiveContext(localContext)
-                                        .actionName(ACTION_NAME)
-                                        .success(true)
-                                        .build());
-                    }
-                }
+            final GitRepository localRepository = repo != null ? repo :
+                    setupGitRepositoryForProject(project, rootVirtualFile, localContext, indicator);
+            if (localRepository == null) {
+                logger.error("doImport: current project {} is not in a Git repository", project.getName());
+                return false;
             }
 
-        }.queue();
+            if (!doFirstCommitIfRequired(project, localRepository, rootVirtualFile, localContext, indicator)) {
+                logger.error("doImport: failed to do first commit on the local repository at: {}", localRepository.getRoot().getUrl());
+                return false;
+            }
+
+            if (queueIfUnreachable && !ServerReachability.getInstance().isReachable(context.getUri())) {
+                // Everything else needs the server, so finish the import when it can be reached again
+                queueImport(project, context, repositoryName);
+                return true;
+            }
+
+            final com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository remoteRepository =
+                    createRemoteGitRepo(project, context, localContext, indicator);
+            if (remoteRepository != null) {
+                //remote repo creation succeeded, save active context with the repository information
+                localContext = new ServerContextBuilder(localContext).repository(remoteRepository).build();
+                ServerContextManager.getInstance().add(localContext);
+            } else {
+                logger.error("doImport: failed to create remote repository with name: {} on server: {}, collection: {}",
+                        repositoryName, localContext.getUri(), localContext.getTeamProjectCollectionReference().getName());
+                return false;
+            }
+
+            if (!setupRemoteOnLocalRepo(project, localRepository, remoteRepository, localContext, indicator)) {
+                logger.error("doImport: failed to setup remote origin on local repository at: {} to point to remote repository: {}",
+                        localRepository.getRoot().getUrl(), remoteRepository.getRemoteUrl());
+                return false;
+            }
 
+            if (!pushChangesToRemoteRepo(project, localRepository, remoteRepository, localContext, indicator)) {
+                logger.error("doImport: failed to push changes to remote repository: {}", remoteRepository.getRemoteUrl());
+                return false;
+            }
+
+            //all steps completed successfully
+            remoteUrlForDisplay = remoteRepository.getRemoteUrl();
+
+        } catch (Throwable unexpectedError) {
+            remoteUrlForDisplay = "";
+            logger.error("doImport: Unexpected error during import");
+            logger.warn("doImport", unexpectedError);
+            notifyImportError(project, TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_ERRORS_UNEXPECTED, unexpectedError.getLocalizedMessage()),
+                    TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_FAILED), localContext);
+
+        } finally {
+            if (StringUtils.isNotEmpty(remoteUrlForDisplay)) {
+                // Notify the user that we are done and provide a link to the repo
+                VcsNotifier.getInstance(project).notifyImportantInfo(TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_SUCCEEDED),
+                        TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_SUCCEEDED_MESSAGE, project.getName(), remoteUrlForDisplay, repositoryName),
+                        NotificationListener.URL_OPENING_LISTENER);
+
+                // Add Telemetry for a successful import
+                TfsTelemetryHelper.getInstance().sendEvent(ACTION_NAME,
+                        new TfsTelemetryHelper.PropertyMapBuilder()
+                                .currentOrActiveContext(localContext)
+                                .actionName(ACTION_NAME)
+                                .success(true)
+                                .build());
+            }
+        }
+        return StringUtils.isNotEmpty(remoteUrlForDisplay);
+    }
+
+    /**
+     * Runs the import again once the server can be reached. The local repository and its first commit already
+     * exist by then, so only the remote repository is created and pushed to. The import runs on the queue's
+     * thread, so the queue knows whether it worked: it stays queued if the server still can't be reached.
+     */
+    private void queueImport(final Project project, final ServerContext context, final String repositoryName) {
+        logger.info("queueImport: {} can't be reached, the import of project {} is queued", context.getUri(), project.getName());
+        PendingMutationQueue.getInstance().enqueue(context.getUri(),
+                TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_IMPORTING_PROJECT),
+                new PendingMutationQueue.Mutation() {
+                    @Override
+                    public void run() throws Exception {
+                        if (project.isDisposed()) {
+                            throw new ImportFailedException();
+                        }
+                        if (!ServerReachability.getInstance().isReachable(context.getUri())) {
+                            // Keep it queued until the server is back
+                            throw new ConnectException(context.getUri() + " can't be reached");
+                        }
+                        if (!importProject(project, context, repositoryName, new EmptyProgressIndicator(), false)) {
+                            throw new ImportFailedException();
+                        }
+                    }
+                },
+                new PendingMutationQueue.MutationListener() {
+                    @Override
+                    public void confirmed(final String description) {
+                        // importProject has told the user
+                    }
+
+                    @Override
+                    public void failed(final String description, final Throwable throwable) {
+                        if (throwable instanceof ImportFailedException || project.isDisposed()) {
+                            // Either the user has been told already or there is no one to tell
+                            return;
+                        }
+                        notifyImportError(project, TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_ERRORS_UNEXPECTED, throwable.getLocalizedMessage()),
+                                TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_FAILED), context);
+                    }
+                });
+
+        VcsNotifier.getInstance(project).notifyImportantInfo(TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_QUEUED),
+                TfPluginBundle.message(TfPluginBundle.KEY_IMPORT_QUEUED_MESSAGE, project.getName(), context.getUri(), repositoryName));
     }
 
     private GitRepository getRepositoryForProject(final Project project) {
@@ -570,8 +662,13 @@ public abstract class ImportPageModelImpl extends LoginPageModelImpl implements
     }
 
     @Override
-    public void appendContexts(List<ServerContext> serverContexts) {
-        teamProjectTableModel.addServerContexts(serverContexts);
+    public void appendRows(final List<ServerContextRow> rows) {
+        teamProjectTableModel.addRows(rows);
+    }
+
+    @Override
+    public void removeRows(final List<ServerContextRow> rows) {
+        teamProjectTableModel.removeRows(rows);
     }
 
     /**
@@ -632,5 +729,12 @@ public abstract class ImportPageModelImpl extends LoginPageModelImpl implements
     @Override
     public void dispose() {
         teamProjectProvider.terminateActiveOperation();
+        teamProjectTableFilter.dispose();
+    }
+
+    /**
+     * Thrown by a queued import that failed in a way the user has already been told about.
+     */
+    private static class ImportFailedException extends Exception {
     }
 }
@@ -7,6 +7,7 @@ import com.microsoft.alm.plugin.AbstractTest;
 import com.microsoft.alm.plugin.idea.services.CredentialsPromptImpl;
 import com.microsoft.alm.plugin.idea.services.LocalizationServiceImpl;
 import com.microsoft.alm.plugin.idea.services.PropertyServiceImpl;
+import com.microsoft.alm.plugin.idea.services.RepositoryCatalogStoreImpl;
 import com.microsoft.alm.plugin.idea.services.ServerContextStoreImpl;
 import com.microsoft.alm.plugin.idea.services.TelemetryContextInitializer;
 import com.microsoft.alm.plugin.services.PluginServiceProvider;
@@ -22,6 +23,7 @@ public class IdeaAbstractTest extends AbstractTest {
                 new TelemetryContextInitializer(),
                 PropertyServiceImpl.getInstance(),
                 LocalizationServiceImpl.getInstance(),
+                RepositoryCatalogStoreImpl.getInstance(),
                 false);
     }
 }
@@ -34,6 +34,10 @@ public class MockCheckoutPage implements CheckoutPage {
     public void setLoading(boolean loading) {
     }
 
+    @Override
+    public void setCatalogStatus(String catalogStatus) {
+    }
+
     @Override
     public void setAuthenticating(final boolean authenticating) {
     }
@@ -0,0 +1,125 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.common;
+
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
+import com.microsoft.alm.plugin.idea.ui.common.mocks.MockServerContext;
+import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DebouncedTableFilterTest extends IdeaAbstractTest {
+    private static final long DELAY = 20;
+
+    @Test
+    public void zeroDelayFiltersImmediately() {
+        final ServerContextTableModel model = createModel("alpha", "beta");
+        final DebouncedTableFilter filter = new DebouncedTableFilter(model, 0);
+
+        filter.setFilter("alp");
+        Assert.assertFalse(filter.isPending());
+        Assert.assertEquals(1, model.getRowCount());
+    }
+
+    @Test
+    public void onlyTheNewestFilterIsApplied() throws Exception {
+        final ServerContextTableModel model = createModel("alpha", "alpine", "beta");
+        final List<TableModelEvent> events = recordEvents(model);
+        final DebouncedTableFilter filter = new DebouncedTableFilter(model, DELAY);
+
+        // Typing faster than the delay
+        filter.setFilter("a");
+        filter.setFilter("al");
+        filter.setFilter("alp");
+        filter.setFilter("alpi");
+        Assert.assertTrue(filter.isPending());
+        Assert.assertEquals(3, model.getRowCount());
+
+        waitForFilter(filter);
+        Assert.assertEquals(1, model.getRowCount());
+        Assert.assertEquals("alpine", model.getValueAt(0, 0));
+        // The table was only updated once
+        Assert.assertEquals(1, events.size());
+    }
+
+    @Test
+    public void rowsAddedWhileFilteringAreIncluded() throws Exception {
+        final ServerContextTableModel model = createModel("alpha", "beta");
+        final DebouncedTableFilter filter = new DebouncedTableFilter(model, DELAY);
+
+        filter.setFilter("alp");
+        model.addServerContexts(contexts("alpaca", "gamma"));
+
+        waitForFilter(filter);
+        Assert.assertEquals(2, model.getRowCount());
+        Assert.assertEquals("alpaca", model.getValueAt(0, 0));
+        Assert.assertEquals("alpha", model.getValueAt(1, 0));
+    }
+
+    @Test
+    public void selectionIsKept() throws Exception {
+        final ServerContextTableModel model = createModel("alpha", "alpine", "beta");
+        model.getSelectionModel().setSelectionInterval(1, 1);
+        final ServerContext selected = model.getSelectedContext();
+        final DebouncedTableFilter filter = new DebouncedTableFilter(model, DELAY);
+
+        filter.setFilter("alpi");
+        waitForFilter(filter);
+        Assert.assertSame(selected, model.getSelectedContext());
+    }
+
+    @Test
+    public void disposeCancelsPendingFilter() throws Exception {
+        final ServerContextTableModel model = createModel("alpha", "beta");
+        final DebouncedTableFilter filter = new DebouncedTableFilter(model, DELAY);
+
+        filter.setFilter("alp");
+        filter.dispose();
+        Assert.assertFalse(filter.isPending());
+        Thread.sleep(DELAY * 5);
+        Assert.assertEquals(2, model.getRowCount());
+    }
+
+    private static void waitForFilter(final DebouncedTableFilter filter) throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        while (filter.isPending() && System.currentTimeMillis() - start < 5000) {
+            Thread.sleep(5);
+        }
+        Assert.assertFalse(filter.isPending());
+    }
+
+    private static ServerContextTableModel createModel(final String... repoNames) {
+        final ServerContextTableModel model = new ServerContextTableModel(ServerContextTableModel.TFS_REPO_COLUMNS);
+        model.addServerContexts(contexts(repoNames));
+        return model;
+    }
+
+    private static List<TableModelEvent> recordEvents(final ServerContextTableModel model) {
+        final List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+        model.addTableModelListener(new TableModelListener() {
+            @Override
+            public void tableChanged(TableModelEvent e) {
+                events.add(e);
+            }
+        });
+        return events;
+    }
+
+    private static List<ServerContext> contexts(final String... repoNames) {
+        final List<ServerContext> contexts = new ArrayList<ServerContext>();
+        for (final String repoName : repoNames) {
+            final GitRepository repo = new GitRepository();
+            repo.setName(repoName);
+            contexts.add(new MockServerContext(ServerContext.Type.TFS, null, URI.create("http://server/tfs"), null, null, repo));
+        }
+        return contexts;
+    }
+}
@@ -4,6 +4,7 @@
 package com.microsoft.alm.plugin.idea.ui.common;
 
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextRow;
 import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
 import com.microsoft.alm.plugin.idea.ui.common.mocks.MockServerContext;
 import com.microsoft.alm.plugin.idea.ui.common.mocks.MockServerContextLookupOperation;
@@ -77,10 +78,10 @@ public class ServerContextLookupListenerTest extends IdeaAbstractTest {
         contexts.add(new MockServerContext(ServerContext.Type.TFS, null, URI.create("http://notanurl0"), null, null, null));
         assertEquals(1, contexts.size());
 
-        // Add some existing contexts to the page model so the clear has something to do
-        pageModel.contexts.add(new MockServerContext(ServerContext.Type.TFS, null, URI.create("http://notanurl1"), null, null, null));
-        pageModel.contexts.add(new MockServerContext(ServerContext.Type.TFS, null, URI.create("http://notanurl2"), null, null, null));
-        assertEquals(2, pageModel.contexts.size());
+        // Add some existing rows to the page model so the clear has something to do
+        pageModel.rows.add(ServerContextRow.fromServerContext(new MockServerContext(ServerContext.Type.TFS, null, URI.create("http://notanurl1"), null, null, null)));
+        pageModel.rows.add(ServerContextRow.fromServerContext(new MockServerContext(ServerContext.Type.TFS, null, URI.create("http://notanurl2"), null, null, null)));
+        assertEquals(2, pageModel.rows.size());
 
         MockServerContextLookupOperation operation = new MockServerContextLookupOperation(
                 contexts, ServerContextLookupOperation.ContextScope.REPOSITORY);
@@ -88,14 +89,14 @@ public class ServerContextLookupListenerTest extends IdeaAbstractTest {
         // Validate that the on started event prepares the page
         operation.onLookupStarted();
         assertTrue(pageModel.loading);
-        assertEquals(0, pageModel.contexts.size());
+        assertEquals(0, pageModel.rows.size());
         // Validate that the on results event updates the page (but keeps it loading)
         operation.onLookupResults(contexts);
-        assertEquals(contexts.size(), pageModel.contexts.size());
+        assertEquals(contexts.size(), pageModel.rows.size());
         assertTrue(pageModel.loading);
         // Validate that the on completed event updates the page
         operation.onLookupCompleted();
         assertFalse(pageModel.loading);
-        assertEquals(contexts.size(), pageModel.contexts.size());
+        assertEquals(contexts.size(), pageModel.rows.size());
     }
 }
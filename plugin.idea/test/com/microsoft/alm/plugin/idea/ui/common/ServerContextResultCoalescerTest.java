@@ -0,0 +1,100 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.common;
+
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextRow;
+import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
+import com.microsoft.alm.plugin.idea.ui.common.mocks.MockServerContext;
+import com.microsoft.alm.plugin.idea.ui.common.mocks.MockServerContextLookupPageModel;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ServerContextResultCoalescerTest extends IdeaAbstractTest {
+    private static final Comparator<ServerContextRow> URI_ORDER = new Comparator<ServerContextRow>() {
+        @Override
+        public int compare(ServerContextRow r1, ServerContextRow r2) {
+            return r1.toServerContext().getUri().toString().compareTo(r2.toServerContext().getUri().toString());
+        }
+    };
+
+    @Test
+    public void firstBatchIsDeliveredImmediately() {
+        final MockServerContextLookupPageModel pageModel = new MockServerContextLookupPageModel();
+        final ServerContextResultCoalescer coalescer = new ServerContextResultCoalescer(pageModel, URI_ORDER, 10000);
+
+        coalescer.add(contexts(3, 0));
+        assertEquals(1, pageModel.appendCount);
+        assertEquals(3, pageModel.rows.size());
+    }
+
+    @Test
+    public void batchesWithinIntervalAreCoalescedAndSorted() {
+        final MockServerContextLookupPageModel pageModel = new MockServerContextLookupPageModel();
+        final ServerContextResultCoalescer coalescer = new ServerContextResultCoalescer(pageModel, URI_ORDER, 10000);
+
+        coalescer.add(contexts(1, 99));
+        // These arrive within the interval, so they are held back until the next flush
+        for (int i = 9; i >= 0; i--) {
+            coalescer.add(contexts(1, i));
+        }
+        assertEquals(1, pageModel.appendCount);
+
+        coalescer.flush();
+        assertEquals(2, pageModel.appendCount);
+        assertEquals(11, pageModel.rows.size());
+        final List<ServerContextRow> secondChunk = pageModel.rows.subList(1, 11);
+        final List<ServerContextRow> sorted = new ArrayList<ServerContextRow>(secondChunk);
+        Collections.sort(sorted, URI_ORDER);
+        assertEquals(sorted, secondChunk);
+    }
+
+    @Test
+    public void scheduledFlushDeliversPendingResults() throws Exception {
+        final MockServerContextLookupPageModel pageModel = new MockServerContextLookupPageModel();
+        final ServerContextResultCoalescer coalescer = new ServerContextResultCoalescer(pageModel, URI_ORDER, 20);
+
+        coalescer.add(contexts(1, 0));
+        coalescer.add(contexts(5, 1));
+        final long start = System.currentTimeMillis();
+        while (pageModel.appendCount < 2 && System.currentTimeMillis() - start < 5000) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, pageModel.appendCount);
+        assertEquals(6, pageModel.rows.size());
+    }
+
+    @Test
+    public void resetDropsPendingResults() {
+        final MockServerContextLookupPageModel pageModel = new MockServerContextLookupPageModel();
+        final ServerContextResultCoalescer coalescer = new ServerContextResultCoalescer(pageModel, URI_ORDER, 10000);
+
+        coalescer.add(contexts(1, 0));
+        coalescer.add(contexts(4, 1));
+        coalescer.reset();
+        coalescer.flush();
+        assertEquals(1, pageModel.appendCount);
+
+        // After a reset the next batch goes out right away again
+        coalescer.add(contexts(2, 10));
+        assertEquals(2, pageModel.appendCount);
+        assertEquals(3, pageModel.rows.size());
+    }
+
+    private List<ServerContextRow> contexts(final int count, final int firstId) {
+        final List<ServerContextRow> rows = new ArrayList<ServerContextRow>();
+        for (int i = firstId; i < firstId + count; i++) {
+            rows.add(ServerContextRow.fromServerContext(
+                    new MockServerContext(ServerContext.Type.TFS, null, URI.create(String.format("http://server%03d", i)), null, null, null)));
+        }
+        return rows;
+    }
+}
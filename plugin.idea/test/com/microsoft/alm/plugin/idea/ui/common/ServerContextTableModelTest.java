@@ -0,0 +1,323 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.common;
+
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextRow;
+import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
+import com.microsoft.alm.plugin.idea.ui.common.mocks.MockServerContext;
+import com.microsoft.teamfoundation.core.webapi.model.TeamProjectCollectionReference;
+import com.microsoft.teamfoundation.core.webapi.model.TeamProjectReference;
+import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class ServerContextTableModelTest extends IdeaAbstractTest {
+    @Test
+    public void rowsStaySortedAcrossBatches() {
+        final ServerContextTableModel model = new ServerContextTableModel(ServerContextTableModel.TFS_REPO_COLUMNS);
+        model.addServerContexts(contexts("delta", "Alpha", "echo"));
+        model.addServerContexts(contexts("charlie", "bravo", "Foxtrot"));
+
+        final String[] expected = new String[]{"Alpha", "bravo", "charlie", "delta", "echo", "Foxtrot"};
+        Assert.assertEquals(expected.length, model.getRowCount());
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], model.getValueAt(i, 0));
+        }
+    }
+
+    @Test
+    public void addFiresRowInsertedEvents() {
+        final ServerContextTableModel model = new ServerContextTableModel(ServerContextTableModel.TFS_REPO_COLUMNS);
+        model.addServerContexts(contexts("b", "d"));
+
+        final List<TableModelEvent> events = recordEvents(model);
+        model.addServerContexts(contexts("a", "c", "e", "f"));
+
+        // a goes to 0, c to 2, e and f to 4-5
+        Assert.assertEquals(3, events.size());
+        assertInserted(events.get(0), 0, 0);
+        assertInserted(events.get(1), 2, 2);
+        assertInserted(events.get(2), 4, 5);
+    }
+
+    @Test
+    public void filteredAddOnlyInsertsMatchingRows() {
+        final ServerContextTableModel model = new ServerContextTableModel(ServerContextTableModel.TFS_REPO_COLUMNS);
+        model.addServerContexts(contexts("app-web", "tools"));
+        model.setFilter("app");
+        Assert.assertEquals(1, model.getRowCount());
+
+        final List<TableModelEvent> events = recordEvents(model);
+        model.addServerContexts(contexts("app-api", "docs", "mobile-app"));
+
+        Assert.assertEquals(3, model.getRowCount());
+        Assert.assertEquals("app-api", model.getValueAt(0, 0));
+        Assert.assertEquals("app-web", model.getValueAt(1, 0));
+        Assert.assertEquals("mobile-app", model.getValueAt(2, 0));
+        Assert.assertEquals(2, events.size());
+        assertInserted(events.get(0), 0, 0);
+        assertInserted(events.get(1), 2, 2);
+
+        // Removing the filter shows every row
+        model.setFilter("");
+        Assert.assertEquals(5, model.getRowCount());
+    }
+
+    @Test
+    public void removeFiresRowDeletedEvents() {
+        final ServerContextTableModel model = new ServerContextTableModel(ServerContextTableModel.TFS_REPO_COLUMNS);
+        final List<ServerContextRow> added = rows(contexts("a", "b", "c", "d", "e", "f"));
+        model.addRows(added);
+        model.getSelectionModel().setSelectionInterval(4, 4);
+
+        final List<TableModelEvent> events = recordEvents(model);
+        model.removeRows(Arrays.asList(added.get(0), added.get(2), added.get(3)));
+
+        // The runs are reported last to first: c-d (2-3), then a (0)
+        Assert.assertEquals(2, events.size());
+        assertDeleted(events.get(0), 2, 3);
+        assertDeleted(events.get(1), 0, 0);
+        Assert.assertEquals(3, model.getRowCount());
+        Assert.assertEquals("b", model.getValueAt(0, 0));
+        Assert.assertEquals("e", model.getValueAt(1, 0));
+        Assert.assertEquals("f", model.getValueAt(2, 0));
+        Assert.assertSame(added.get(4), model.getSelectedRow());
+
+        // Removing the selected row clears the selection
+        model.removeRows(Collections.singletonList(added.get(4)));
+        Assert.assertNull(model.getSelectedRow());
+        Assert.assertNull(model.getSelectedContext());
+    }
+
+    @Test
+    public void removedRowsStayOutOfFilterResults() {
+        final ServerContextTableModel model = new ServerContextTableModel(ServerContextTableModel.TFS_REPO_COLUMNS);
+        final List<ServerContextRow> added = rows(contexts("app-api", "app-web", "tools"));
+        model.addRows(added);
+        model.setFilter("app");
+        Assert.assertEquals(2, model.getRowCount());
+
+        model.removeRows(Collections.singletonList(added.get(0)));
+        Assert.assertEquals(1, model.getRowCount());
+        Assert.assertEquals("app-web", model.getValueAt(0, 0));
+
+        // A run prepared before the removal doesn't bring the row back, and neither does a new search
+        final ServerContextTableModel.FilterRun run = model.prepareFilter("app-");
+        model.removeRows(Collections.singletonList(added.get(1)));
+        run.run();
+        model.applyFilter(run);
+        Assert.assertEquals(0, model.getRowCount());
+        model.setFilter("");
+        model.setFilter("app");
+        Assert.assertEquals(0, model.getRowCount());
+        model.setFilter("");
+        Assert.assertEquals(1, model.getRowCount());
+    }
+
+    @Test
+    public void selectionFollowsTheSelectedContext() {
+        final ServerContextTableModel model = new ServerContextTableModel(ServerContextTableModel.TFS_REPO_COLUMNS);
+        // Two rows with the same name, so the selection has to be found by identity
+        model.addServerContexts(contexts("m", "same", "same"));
+        model.getSelectionModel().setSelectionInterval(2, 2);
+        final ServerContext selected = model.getSelectedContext();
+
+        model.addServerContexts(contexts("a", "b", "same", "z"));
+        Assert.assertSame(selected, model.getSelectedContext());
+        Assert.assertEquals(4, model.getSelectedIndex());
+    }
+
+    @Test
+    public void clearRowsKeepsFilter() {
+        final ServerContextTableModel model = new ServerContextTableModel(ServerContextTableModel.TFS_REPO_COLUMNS);
+        model.setFilter("x");
+        model.addServerContexts(contexts("x1", "y1"));
+        model.clearRows();
+        Assert.assertEquals(0, model.getRowCount());
+        model.addServerContexts(contexts("x2", "y2"));
+        Assert.assertEquals(1, model.getRowCount());
+    }
+
+    @Test
+    public void addingBatchesOnlyInsertsTheNewRows() {
+        final int batches = 100;
+        final int batchSize = 100;
+        final Random random = new Random(42);
+        final ServerContextTableModel model = new ServerContextTableModel(ServerContextTableModel.TFS_REPO_COLUMNS);
+        model.getSelectionModel().setSelectionInterval(0, 0);
+        final List<TableModelEvent> events = recordEvents(model);
+
+        for (int b = 0; b < batches; b++) {
+            final List<String> names = new ArrayList<String>();
+            for (int i = 0; i < batchSize; i++) {
+                names.add("repo" + random.nextInt(1000000));
+            }
+            Collections.sort(names, String.CASE_INSENSITIVE_ORDER);
+            final List<ServerContextRow> existingRows = getRows(model);
+            events.clear();
+            model.addServerContexts(contexts(names.toArray(new String[names.size()])));
+
+            // Only insert events, at most one per new row, covering exactly the new rows
+            final Set<Integer> insertedIndexes = new HashSet<Integer>();
+            Assert.assertTrue(events.size() <= batchSize);
+            for (final TableModelEvent event : events) {
+                Assert.assertEquals(TableModelEvent.INSERT, event.getType());
+                for (int i = event.getFirstRow(); i <= event.getLastRow(); i++) {
+                    insertedIndexes.add(i);
+                }
+            }
+            Assert.assertEquals(batchSize, insertedIndexes.size());
+
+            // The existing rows are the same objects, in the same order, around the inserted ones
+            final List<ServerContextRow> remainingRows = new ArrayList<ServerContextRow>();
+            for (int i = 0; i < model.getRowCount(); i++) {
+                if (!insertedIndexes.contains(i)) {
+                    remainingRows.add(model.getRow(i));
+                }
+            }
+            Assert.assertEquals(existingRows.size(), remainingRows.size());
+            for (int i = 0; i < existingRows.size(); i++) {
+                Assert.assertSame(existingRows.get(i), remainingRows.get(i));
+            }
+        }
+
+        Assert.assertEquals(batches * batchSize, model.getRowCount());
+        for (int i = 1; i < model.getRowCount(); i++) {
+            Assert.assertTrue(String.CASE_INSENSITIVE_ORDER.compare((String) model.getValueAt(i - 1, 0), (String) model.getValueAt(i, 0)) <= 0);
+        }
+    }
+
+    @Test
+    public void filterMatchesAnyColumnIgnoringCase() {
+        final ServerContextTableModel model = new ServerContextTableModel(ServerContextTableModel.TFS_REPO_COLUMNS);
+        model.addServerContexts(contexts("WebApp", "tools", "webhooks", "ab"));
+
+        // Refining narrows the previous result
+        model.setFilter("w");
+        Assert.assertEquals(2, model.getRowCount());
+        model.setFilter("web");
+        Assert.assertEquals(2, model.getRowCount());
+        model.setFilter("weba");
+        Assert.assertEquals(1, model.getRowCount());
+        Assert.assertEquals("WebApp", model.getValueAt(0, 0));
+
+        // Going back (not a refinement) widens it again
+        model.setFilter("we");
+        Assert.assertEquals(2, model.getRowCount());
+        // Indexed search for a query without a match
+        model.setFilter("xyz");
+        Assert.assertEquals(0, model.getRowCount());
+        // Short filters are checked against every column (the collection name here)
+        model.setFilter("ab");
+        Assert.assertEquals(1, model.getRowCount());
+        model.setFilter("COLLECT");
+        Assert.assertEquals(4, model.getRowCount());
+        Assert.assertEquals("ab", model.getValueAt(0, 0));
+    }
+
+    @Test
+    public void refiningTheFilterOnlyChecksThePreviousMatches() {
+        final Random random = new Random(7);
+        final ServerContextTableModel model = new ServerContextTableModel(ServerContextTableModel.TFS_REPO_COLUMNS);
+        for (int b = 0; b < 50; b++) {
+            final String[] names = new String[1000];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = "service-" + Integer.toString(random.nextInt(Integer.MAX_VALUE), 36);
+            }
+            model.addServerContexts(contexts(names));
+        }
+        Assert.assertEquals(50000, model.getRowCount());
+
+        // Each keystroke that extends the filter only checks the rows the previous one matched
+        final String[] keystrokes = new String[]{"s", "se", "ser", "serv", "servi", "servic", "service", "service-", "service-a", "service-ab"};
+        model.setFilter(keystrokes[0]);
+        for (int i = 1; i < keystrokes.length; i++) {
+            final int previousMatches = model.getRowCount();
+            final ServerContextTableModel.FilterRun run = model.prepareFilter(keystrokes[i]);
+            run.run();
+            model.applyFilter(run);
+            Assert.assertEquals(keystrokes[i], previousMatches, run.getCheckedRowCount());
+        }
+        final int refinedMatches = model.getRowCount();
+
+        // A filter that isn't a refinement uses the index instead of checking every row
+        final ServerContextTableModel.FilterRun indexedRun = model.prepareFilter("ce-ab");
+        indexedRun.run();
+        model.applyFilter(indexedRun);
+        Assert.assertEquals(refinedMatches, model.getRowCount());
+        Assert.assertTrue("checked " + indexedRun.getCheckedRowCount() + " rows",
+                indexedRun.getCheckedRowCount() <= 50000 / 4);
+
+        final ServerContextTableModel.FilterRun missRun = model.prepareFilter("q-");
+        missRun.run();
+        model.applyFilter(missRun);
+        Assert.assertEquals(0, model.getRowCount());
+    }
+
+    private static void assertInserted(final TableModelEvent event, final int firstRow, final int lastRow) {
+        Assert.assertEquals(TableModelEvent.INSERT, event.getType());
+        Assert.assertEquals(firstRow, event.getFirstRow());
+        Assert.assertEquals(lastRow, event.getLastRow());
+    }
+
+    private static void assertDeleted(final TableModelEvent event, final int firstRow, final int lastRow) {
+        Assert.assertEquals(TableModelEvent.DELETE, event.getType());
+        Assert.assertEquals(firstRow, event.getFirstRow());
+        Assert.assertEquals(lastRow, event.getLastRow());
+    }
+
+    private static List<TableModelEvent> recordEvents(final ServerContextTableModel model) {
+        final List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+        model.addTableModelListener(new TableModelListener() {
+            @Override
+            public void tableChanged(TableModelEvent e) {
+                events.add(e);
+            }
+        });
+        return events;
+    }
+
+    private static List<ServerContextRow> getRows(final ServerContextTableModel model) {
+        final List<ServerContextRow> rows = new ArrayList<ServerContextRow>(model.getRowCount());
+        for (int i = 0; i < model.getRowCount(); i++) {
+            rows.add(model.getRow(i));
+        }
+        return rows;
+    }
+
+    private static List<ServerContextRow> rows(final List<ServerContext> contexts) {
+        final List<ServerContextRow> rows = new ArrayList<ServerContextRow>();
+        for (final ServerContext context : contexts) {
+            rows.add(ServerContextRow.fromServerContext(context));
+        }
+        return rows;
+    }
+
+    private static List<ServerContext> contexts(final String... repoNames) {
+        final List<ServerContext> contexts = new ArrayList<ServerContext>();
+        for (final String repoName : repoNames) {
+            final TeamProjectCollectionReference collection = new TeamProjectCollectionReference();
+            collection.setName("collection");
+            final TeamProjectReference project = new TeamProjectReference();
+            project.setName("project");
+            final GitRepository repo = new GitRepository();
+            repo.setName(repoName);
+            repo.setProjectReference(project);
+            contexts.add(new MockServerContext(ServerContext.Type.TFS, null, URI.create("http://server/tfs"), collection, project, repo));
+        }
+        return contexts;
+    }
+}
@@ -4,6 +4,7 @@
 package com.microsoft.alm.plugin.idea.ui.common.mocks;
 
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextRow;
 import com.microsoft.alm.plugin.operations.ServerContextLookupOperation;
 
 import java.util.ArrayList;
@@ -13,15 +14,17 @@ import java.util.List;
 public class MockServerContextLookupOperation extends ServerContextLookupOperation {
 
     public class MockServerContextLookupResults extends ServerContextLookupResults {
-        private final List<ServerContext> serverContexts = new ArrayList<ServerContext>();
+        private final List<ServerContextRow> rows = new ArrayList<ServerContextRow>();
 
         @Override
-        public List<ServerContext> getServerContexts() {
-            return Collections.unmodifiableList(serverContexts);
+        public List<ServerContextRow> getRows() {
+            return Collections.unmodifiableList(rows);
         }
 
         public MockServerContextLookupResults(List<ServerContext> contexts) {
-            serverContexts.addAll(contexts);
+            for (final ServerContext context : contexts) {
+                rows.add(ServerContextRow.fromServerContext(context));
+            }
         }
     }
 
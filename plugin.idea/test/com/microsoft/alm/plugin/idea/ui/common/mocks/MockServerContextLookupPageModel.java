@@ -3,7 +3,7 @@
 
 package com.microsoft.alm.plugin.idea.ui.common.mocks;
 
-import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextRow;
 import com.microsoft.alm.plugin.idea.ui.common.ModelValidationInfo;
 import com.microsoft.alm.plugin.idea.ui.common.ServerContextLookupPageModel;
 
@@ -13,7 +13,9 @@ import java.util.List;
 public class MockServerContextLookupPageModel implements ServerContextLookupPageModel {
     public boolean loading;
     public List<ModelValidationInfo> errors = new ArrayList<ModelValidationInfo>();
-    public List<ServerContext> contexts = new ArrayList<ServerContext>();
+    public List<ServerContextRow> rows = new ArrayList<ServerContextRow>();
+    public int appendCount;
+    public String catalogStatus;
 
     @Override
     public void setLoading(boolean loading) {
@@ -36,12 +38,25 @@ public class MockServerContextLookupPageModel implements ServerContextLookupPage
     }
 
     @Override
-    public void appendContexts(List<ServerContext> serverContexts) {
-        contexts.addAll(serverContexts);
+    public void appendRows(List<ServerContextRow> rows) {
+        appendCount++;
+        this.rows.addAll(rows);
+    }
+
+    @Override
+    public void removeRows(List<ServerContextRow> rows) {
+        for (final ServerContextRow row : rows) {
+            this.rows.remove(row);
+        }
+    }
+
+    @Override
+    public void setCatalogStatus(String catalogStatus) {
+        this.catalogStatus = catalogStatus;
     }
 
     @Override
     public void clearContexts() {
-        contexts.clear();
+        rows.clear();
     }
 }
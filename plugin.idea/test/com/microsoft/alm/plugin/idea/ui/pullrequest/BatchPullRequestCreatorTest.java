@@ -0,0 +1,69 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.intellij.vcs.log.impl.HashImpl;
+import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
+import git4idea.GitRemoteBranch;
+import git4idea.GitStandardRemoteBranch;
+import git4idea.repo.GitRemote;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchPullRequestCreatorTest extends IdeaAbstractTest {
+    private GitRemoteBranch master;
+    private GitRemoteBranch test1;
+    private GitRemoteBranch test2;
+    private List<GitRemoteBranch> remoteBranches;
+
+    @Before
+    public void setUp() {
+        final GitRemote tfsRemote = new GitRemote("origin",
+                Arrays.asList("https://mytest.visualstudio.com/DefaultCollection/_git/testrepo"),
+                Arrays.asList("https://pushurl"), Collections.<String>emptyList(), Collections.<String>emptyList());
+        // the patterns are matched against the name on the remote, like git4idea returns it
+        master = new GitStandardRemoteBranch(tfsRemote, "master", HashImpl.build("9afa081effdaeafdff089b2aa3543415f6cdb1fb"));
+        test1 = new GitStandardRemoteBranch(tfsRemote, "test1", HashImpl.build("cfd40ea42910161c368956a93b623b1a8a519241"));
+        test2 = new GitStandardRemoteBranch(tfsRemote, "test2", HashImpl.build("935b168d0601bd05d57489fae04d5c6ec439cfea"));
+        remoteBranches = Arrays.asList(master, test1, test2);
+    }
+
+    @Test
+    public void exactNameMatchesOneBranch() {
+        assertEquals(Collections.singletonList(master),
+                BatchPullRequestCreator.findTargetBranches(remoteBranches, "master"));
+        assertTrue(BatchPullRequestCreator.findTargetBranches(remoteBranches, "origin/master").isEmpty());
+    }
+
+    @Test
+    public void defaultPatternMatchesMaster() {
+        assertEquals(Collections.singletonList(master), BatchPullRequestCreator.findTargetBranches(remoteBranches,
+                BatchCreatePullRequestDialog.DEFAULT_TARGET_BRANCH_PATTERN));
+    }
+
+    @Test
+    public void wildcardMatchesSeveralBranches() {
+        assertEquals(Arrays.asList(test1, test2),
+                BatchPullRequestCreator.findTargetBranches(remoteBranches, "test*"));
+        assertEquals(remoteBranches, BatchPullRequestCreator.findTargetBranches(remoteBranches, "*"));
+        assertEquals(Collections.singletonList(test2),
+                BatchPullRequestCreator.findTargetBranches(remoteBranches, "*2"));
+    }
+
+    @Test
+    public void namesAreTriedInOrder() {
+        assertEquals(Collections.singletonList(master),
+                BatchPullRequestCreator.findTargetBranches(remoteBranches, "develop, master, test1"));
+        assertEquals(Collections.singletonList(test1),
+                BatchPullRequestCreator.findTargetBranches(remoteBranches, " ,test1,master"));
+        assertTrue(BatchPullRequestCreator.findTargetBranches(remoteBranches, "develop").isEmpty());
+    }
+}
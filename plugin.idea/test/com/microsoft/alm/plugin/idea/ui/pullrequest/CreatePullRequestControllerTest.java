@@ -19,6 +19,7 @@ import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class CreatePullRequestControllerTest extends IdeaAbstractTest {
 
@@ -47,6 +48,22 @@ public class CreatePullRequestControllerTest extends IdeaAbstractTest {
         verify(modelMock).loadDiff();
     }
 
+    @Test
+    public void loadMoreCommitsIsPassedToTheModel() throws Exception {
+        underTest.actionPerformed(new ActionEvent(this, 1, CreatePullRequestForm.CMD_LOAD_MORE_COMMITS));
+
+        verify(modelMock).loadMoreCommits();
+        verify(modelMock, never()).loadDiff();
+    }
+
+    @Test
+    public void selectingAFolderLoadsItsChanges() throws Exception {
+        when(dialogMock.getSelectedFolder()).thenReturn("src");
+        underTest.actionPerformed(new ActionEvent(this, 1, CreatePullRequestForm.CMD_FOLDER_SELECTED));
+
+        verify(modelMock).loadFolderDiff("src");
+    }
+
     @Test
     public void whenSourceOfUpdateIsNotSetUpdateAll() throws Exception {
         underTest.update(null, null);
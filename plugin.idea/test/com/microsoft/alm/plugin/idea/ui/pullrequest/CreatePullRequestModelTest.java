@@ -21,9 +21,11 @@ import java.util.Collections;
 import java.util.Observer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -102,6 +104,40 @@ public class CreatePullRequestModelTest extends IdeaAbstractTest {
 
     }
 
+    @Test
+    public void pushIsSkippedWhenTheRemoteBranchIsAtTheLocalHead() {
+        GitRemoteBranch master = PRGitObjectMockHelper.createRemoteBranch("origin/master", tfsRemote);
+        when(gitRepoInfoMock.getRemoteBranches()).thenReturn(Arrays.asList(master));
+
+        // same commit on the remote
+        assertFalse(CreatePullRequestModel.isPushNeeded(gitRepoInfoMock,
+                PRGitObjectMockHelper.createLocalBranch("origin/master"), tfsRemote, "origin/master"));
+
+        // new local commits
+        assertTrue(CreatePullRequestModel.isPushNeeded(gitRepoInfoMock,
+                PRGitObjectMockHelper.createLocalBranch("local"), tfsRemote, "origin/master"));
+
+        // the branch isn't on the remote yet
+        assertTrue(CreatePullRequestModel.isPushNeeded(gitRepoInfoMock,
+                PRGitObjectMockHelper.createLocalBranch("origin/master"), tfsRemote, "origin/test1"));
+    }
+
+    @Test
+    public void defaultTargetBranchMatchesTheDialog() {
+        GitRemoteBranch first = PRGitObjectMockHelper.createRemoteBranch("origin/test1", tfsRemote);
+        GitRemoteBranch master = PRGitObjectMockHelper.createRemoteBranch("origin/master", tfsRemote);
+        when(gitRepoInfoMock.getRemoteBranches()).thenReturn(Arrays.asList(first, master));
+
+        // the prefetcher calculates the diff for the branch the dialog will select
+        assertEquals(master, CreatePullRequestModel.getDefaultTargetBranch(gitRepositoryMock));
+        underTest = new CreatePullRequestModel(projectMock, gitRepositoryMock);
+        assertEquals(underTest.getTargetBranch(), CreatePullRequestModel.getDefaultTargetBranch(gitRepositoryMock));
+
+        // nothing to compare without a current branch
+        when(gitRepoInfoMock.getCurrentBranch()).thenReturn(null);
+        assertNull(CreatePullRequestModel.getDefaultTargetBranch(gitRepositoryMock));
+    }
+
     @Test
     public void targetDropDownOnlyShowsTfRemoteBranches() {
         GitRemoteBranch first = PRGitObjectMockHelper.createRemoteBranch("origin/test1", tfsRemote);
@@ -152,6 +188,7 @@ public class CreatePullRequestModelTest extends IdeaAbstractTest {
         underTest = new CreatePullRequestModel(projectMock, gitRepositoryMock);
         underTest.setDiffCompareInfoProvider(diffProviderMock);
         underTest.setApplicationProvider(applicationProviderMock);
+        underTest.setDiffCache(new BranchDiffCache());
 
         GitCommitCompareInfo compareInfo = new GitCommitCompareInfo();
         when(diffProviderMock.getBranchCompareInfo(projectMock, gitRepositoryMock,
@@ -175,6 +212,50 @@ public class CreatePullRequestModelTest extends IdeaAbstractTest {
 
     }
 
+    @Test
+    public void cacheIsSharedAcrossDialogsByCommit() throws Exception {
+        GitRemoteBranch master = PRGitObjectMockHelper.createRemoteBranch("origin/master", tfsRemote);
+        GitRemoteBranch test1 = PRGitObjectMockHelper.createRemoteBranch("origin/test1", tfsRemote);
+        when(gitRepoInfoMock.getRemoteBranches()).thenReturn(Arrays.asList(master, test1));
+        final BranchDiffCache diffCache = new BranchDiffCache();
+
+        GitCommitCompareInfo compareInfo = new GitCommitCompareInfo();
+        when(diffProviderMock.getBranchCompareInfo(Mockito.eq(projectMock), Mockito.eq(gitRepositoryMock),
+                Mockito.anyString(), Mockito.anyString())).thenReturn(compareInfo);
+
+        // the first dialog calculates the diff
+        CreatePullRequestModel firstDialog = new CreatePullRequestModel(projectMock, gitRepositoryMock);
+        firstDialog.setDiffCompareInfoProvider(diffProviderMock);
+        firstDialog.setApplicationProvider(applicationProviderMock);
+        firstDialog.setDiffCache(diffCache);
+        firstDialog.getMyChangesCompareInfo();
+
+        // a dialog opened later on the same commits reuses it
+        underTest = new CreatePullRequestModel(projectMock, gitRepositoryMock);
+        underTest.setDiffCompareInfoProvider(diffProviderMock);
+        underTest.setApplicationProvider(applicationProviderMock);
+        underTest.setDiffCache(diffCache);
+        assertEquals(compareInfo, underTest.getMyChangesCompareInfo().getGitCommitCompareInfo());
+        verify(diffProviderMock, times(1)).getBranchCompareInfo(Mockito.eq(projectMock), Mockito.eq(gitRepositoryMock),
+                Mockito.anyString(), Mockito.anyString());
+        // only the first dialog showed the loading spinner
+        verify(applicationProviderMock, times(1)).invokeAndWaitWithAnyModality(Mockito.any(Runnable.class));
+
+        // another target commit is calculated again
+        underTest.setTargetBranch(test1);
+        underTest.getMyChangesCompareInfo();
+        verify(diffProviderMock).getBranchCompareInfo(projectMock, gitRepositoryMock,
+                "935b168d0601bd05d57489fae04d5c6ec439cfea", "cfd40ea42910161c368956a93b623b1a8a519241");
+        verify(diffProviderMock, times(2)).getBranchCompareInfo(Mockito.eq(projectMock), Mockito.eq(gitRepositoryMock),
+                Mockito.anyString(), Mockito.anyString());
+
+        // closing the project drops the diffs of its repositories
+        diffCache.removeRepositories(Collections.singletonList(gitRepositoryMock));
+        underTest.getMyChangesCompareInfo();
+        verify(diffProviderMock, times(3)).getBranchCompareInfo(Mockito.eq(projectMock), Mockito.eq(gitRepositoryMock),
+                Mockito.anyString(), Mockito.anyString());
+    }
+
     @Test
     public void whenWeSetModelWeShouldBeNotified() throws VcsException {
         GitRemoteBranch first = PRGitObjectMockHelper.createRemoteBranch("origin/test1", tfsRemote);
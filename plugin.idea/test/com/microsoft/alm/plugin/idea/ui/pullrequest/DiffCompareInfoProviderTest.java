@@ -4,8 +4,10 @@
 package com.microsoft.alm.plugin.idea.ui.pullrequest;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ContentRevision;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
 import git4idea.GitCommit;
@@ -16,17 +18,26 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DiffCompareInfoProviderTest extends IdeaAbstractTest {
@@ -82,11 +93,13 @@ public class DiffCompareInfoProviderTest extends IdeaAbstractTest {
                 .thenReturn(new GitRevisionNumber("myparent"));
 
         GitCommit commitMock1 = PRGitObjectMockHelper.getCommit(projectMock, fileMock);
-        when(gitUtilWrapperMock.history(any(Project.class), any(VirtualFile.class), eq("myparent..")))
+        when(gitUtilWrapperMock.history(any(Project.class), any(VirtualFile.class), eq("myparent.."),
+                eq(0), eq(DiffCompareInfoProvider.COMMITS_PAGE_SIZE)))
                 .thenReturn(Collections.singletonList(commitMock1));
 
         GitCommit commitMock2 = PRGitObjectMockHelper.getCommit(projectMock, fileMock);
-        when(gitUtilWrapperMock.history(any(Project.class), any(VirtualFile.class), eq("..myparent")))
+        when(gitUtilWrapperMock.history(any(Project.class), any(VirtualFile.class), eq("..myparent"),
+                eq(0), eq(DiffCompareInfoProvider.COMMITS_PAGE_SIZE)))
                 .thenReturn(Collections.singletonList(commitMock2));
 
         Change diff = Mockito.mock(Change.class);
@@ -109,5 +122,151 @@ public class DiffCompareInfoProviderTest extends IdeaAbstractTest {
         assertEquals(diff, new LinkedList<Change>(diffs).get(0));
     }
 
+    @Test
+    public void laterCommitPagesSkipTheLoadedCommits() throws VcsException {
+        GitCommit commitMock = PRGitObjectMockHelper.getCommit(projectMock, fileMock);
+        when(gitUtilWrapperMock.history(any(Project.class), any(VirtualFile.class), eq("test2..test1"),
+                eq(100), eq(DiffCompareInfoProvider.COMMITS_PAGE_SIZE)))
+                .thenReturn(Collections.singletonList(commitMock));
+
+        List<GitCommit> page = underTest.getBranchToHeadCommits(projectMock, gitRepositoryMock, "test1", "test2", 100);
+        assertEquals(1, page.size());
+        assertEquals(commitMock, page.get(0));
+    }
+
+    @Test
+    public void largeDiffsOnlyListTheChangedFiles() throws VcsException {
+        when(gitUtilWrapperMock.getMergeBase(any(Project.class), any(VirtualFile.class), eq("test2"), eq("test1")))
+                .thenReturn(new GitRevisionNumber("myparent"));
+        final List<String> paths = new ArrayList<String>();
+        for (int i = 0; i <= DiffCompareInfoProvider.LARGE_DIFF_FILE_COUNT; i++) {
+            paths.add("src/file" + i + ".java");
+        }
+        paths.add("README.md");
+        when(gitUtilWrapperMock.getChangedPaths(any(Project.class), any(VirtualFile.class), eq("myparent"), eq("test1")))
+                .thenReturn(paths);
+
+        final GitCommitCompareInfo compareInfo
+                = underTest.getBranchCompareInfo(projectMock, gitRepositoryMock, "test1", "test2");
+
+        assertTrue(compareInfo instanceof LargeDiffCompareInfo);
+        assertTrue(compareInfo.getTotalDiff().isEmpty());
+        verify(gitUtilWrapperMock, never()).getDiff(any(Project.class), any(VirtualFile.class), anyString(), anyString());
+
+        final LargeDiffCompareInfo largeDiff = (LargeDiffCompareInfo) compareInfo;
+        assertEquals("myparent", largeDiff.getBaseRevision());
+        assertEquals(Arrays.asList("", "src"), new ArrayList<String>(largeDiff.getPathsByFolder().keySet()));
+        assertEquals(DiffCompareInfoProvider.LARGE_DIFF_FILE_COUNT + 1, largeDiff.getPathsByFolder().get("src").size());
+    }
+
+    @Test
+    public void historyFailureFailsTheCompareAndCancelsTheOtherWalk() throws Exception {
+        final CountDownLatch otherWalkStarted = new CountDownLatch(1);
+        final CountDownLatch otherWalkInterrupted = new CountDownLatch(1);
+        final AtomicReference<Thread> failedWalkThread = new AtomicReference<Thread>();
+        final PullRequestDiffExecutor diffExecutor = new PullRequestDiffExecutor();
+        try {
+            // the walks run on the helper threads, as they do for the create pull request dialog
+            final DiffCompareInfoProvider provider = new DiffCompareInfoProvider(diffExecutor.getHelperExecutor());
+            provider.setUtilWrapper(new DiffCompareInfoProvider.GitUtilWrapper() {
+                @Override
+                public GitRevisionNumber getMergeBase(final Project project, final VirtualFile root,
+                                                      final String target, final String source) {
+                    return new GitRevisionNumber("myparent");
+                }
+
+                @Override
+                public List<GitCommit> history(final Project project, final VirtualFile root, final String range,
+                                               final int skip, final int maxCount) throws VcsException {
+                    if (range.equals("..myparent")) {
+                        failedWalkThread.set(Thread.currentThread());
+                        awaitQuietly(otherWalkStarted);
+                        throw new VcsException("git log failed");
+                    }
+                    // the other walk only ends when it is cancelled
+                    otherWalkStarted.countDown();
+                    try {
+                        new CountDownLatch(1).await();
+                    } catch (InterruptedException e) {
+                        otherWalkInterrupted.countDown();
+                    }
+                    return Collections.emptyList();
+                }
 
-}
\ No newline at end of file
+                @Override
+                public List<String> getChangedPaths(final Project project, final VirtualFile root,
+                                                    final String target, final String source) {
+                    return Collections.emptyList();
+                }
+
+                @Override
+                public Collection<Change> getDiff(final Project project, final VirtualFile root,
+                                                  final String target, final String source) {
+                    return Collections.emptyList();
+                }
+            });
+
+            try {
+                provider.getBranchCompareInfo(projectMock, gitRepositoryMock, "test1", "test2");
+                fail("the history failure should fail the compare");
+            } catch (VcsException e) {
+                assertEquals("git log failed", e.getMessage());
+            }
+            assertNotSame(Thread.currentThread(), failedWalkThread.get());
+            assertTrue(otherWalkInterrupted.await(5, TimeUnit.SECONDS));
+        } finally {
+            diffExecutor.dispose();
+        }
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void folderDiffPassesTheFolderAndDropsItsSubfolders() throws VcsException {
+        when(fileMock.getPath()).thenReturn("/repo");
+        final LargeDiffCompareInfo compareInfo = new LargeDiffCompareInfo("myparent", "test1",
+                Arrays.asList("a.txt", "src/A.java", "src/B.java", "src/sub/C.java"));
+        final Change changeA = createChange("/repo/src/A.java");
+        when(gitUtilWrapperMock.getDiff(projectMock, fileMock, "myparent", "test1", Collections.singletonList("src")))
+                .thenReturn(Arrays.asList(changeA, createChange("/repo/src/sub/C.java")));
+
+        assertEquals(Collections.singletonList(changeA), underTest.getDiff(projectMock, gitRepositoryMock, compareInfo, "src"));
+    }
+
+    @Test
+    public void rootFolderDiffListsItsFilesInBatches() throws VcsException {
+        when(fileMock.getPath()).thenReturn("/repo");
+        final List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < DiffCompareInfoProvider.PATHS_PER_CALL + 1; i++) {
+            paths.add("file" + i + ".txt");
+        }
+        paths.add("src/A.java");
+        final LargeDiffCompareInfo compareInfo = new LargeDiffCompareInfo("myparent", "test1", paths);
+        final Change change0 = createChange("/repo/file0.txt");
+        when(gitUtilWrapperMock.getDiff(projectMock, fileMock, "myparent", "test1",
+                paths.subList(0, DiffCompareInfoProvider.PATHS_PER_CALL)))
+                .thenReturn(Collections.singletonList(change0));
+        final Change lastChange = createChange("/repo/file" + DiffCompareInfoProvider.PATHS_PER_CALL + ".txt");
+        when(gitUtilWrapperMock.getDiff(projectMock, fileMock, "myparent", "test1",
+                Collections.singletonList("file" + DiffCompareInfoProvider.PATHS_PER_CALL + ".txt")))
+                .thenReturn(Collections.singletonList(lastChange));
+
+        assertEquals(Arrays.asList(change0, lastChange), underTest.getDiff(projectMock, gitRepositoryMock, compareInfo, ""));
+    }
+
+    private static Change createChange(final String path) {
+        final FilePath filePath = Mockito.mock(FilePath.class);
+        when(filePath.getPath()).thenReturn(path);
+        final ContentRevision revision = Mockito.mock(ContentRevision.class);
+        when(revision.getFile()).thenReturn(filePath);
+        final Change change = Mockito.mock(Change.class);
+        when(change.getAfterRevision()).thenReturn(revision);
+        return change;
+    }
+}
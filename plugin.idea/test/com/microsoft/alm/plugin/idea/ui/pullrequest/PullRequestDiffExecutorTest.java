@@ -0,0 +1,97 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PullRequestDiffExecutorTest extends IdeaAbstractTest {
+
+    PullRequestDiffExecutor underTest;
+
+    @Before
+    public void setUp() {
+        underTest = new PullRequestDiffExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        underTest.dispose();
+    }
+
+    @Test
+    public void jobsBeyondTheLimitAreQueued() throws Exception {
+        final CountDownLatch started = new CountDownLatch(PullRequestDiffExecutor.MAX_THREADS);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<ListenableFuture<Boolean>> futures = new ArrayList<ListenableFuture<Boolean>>();
+        for (int i = 0; i < PullRequestDiffExecutor.MAX_THREADS + 1; i++) {
+            futures.add(underTest.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    started.countDown();
+                    return release.await(10, TimeUnit.SECONDS);
+                }
+            }));
+        }
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(PullRequestDiffExecutor.MAX_THREADS, underTest.getRunningCount());
+        assertEquals(1, underTest.getQueuedCount());
+
+        // a cancelled job never starts
+        futures.get(PullRequestDiffExecutor.MAX_THREADS).cancel(true);
+        assertEquals(0, underTest.getQueuedCount());
+        release.countDown();
+        for (int i = 0; i < PullRequestDiffExecutor.MAX_THREADS; i++) {
+            assertTrue(futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+        assertTrue(futures.get(PullRequestDiffExecutor.MAX_THREADS).isCancelled());
+    }
+
+    @Test
+    public void helperTasksRunOnTheCallerWhenAllHelpersAreBusy() throws Exception {
+        final CountDownLatch started = new CountDownLatch(PullRequestDiffExecutor.MAX_HELPER_THREADS);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < PullRequestDiffExecutor.MAX_HELPER_THREADS; i++) {
+            futures.add(underTest.getHelperExecutor().submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    started.countDown();
+                    return release.await(10, TimeUnit.SECONDS);
+                }
+            }));
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        final Thread caller = Thread.currentThread();
+        final Future<Thread> extra = underTest.getHelperExecutor().submit(new Callable<Thread>() {
+            @Override
+            public Thread call() {
+                return Thread.currentThread();
+            }
+        });
+        assertTrue(extra.isDone());
+        assertSame(caller, extra.get());
+
+        release.countDown();
+        for (final Future<Boolean> future : futures) {
+            assertTrue(future.get(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
@@ -150,4 +151,26 @@ public class PullRequestHelperTest extends IdeaAbstractTest {
         assertEquals(PRCreateStatus.DUPLICATE, parsed.getFirst());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void findActivePullRequestSearchesBetweenTheBranches() {
+        final ServerContext context = Mockito.mock(ServerContext.class);
+        when(context.getGitRepository()).thenReturn(gitRepositoryMock);
+
+        final UUID repoId = UUID.randomUUID();
+        when(gitRepositoryMock.getId()).thenReturn(repoId);
+
+        final GitRemoteBranch targetBranch = PRGitObjectMockHelper.createRemoteBranch("target", null);
+        final GitHttpClient gitClient = Mockito.mock(GitHttpClient.class);
+        when(gitClient.getPullRequests(eq(repoId), any(GitPullRequestSearchCriteria.class), anyInt(), eq(0), eq(1)))
+                .thenReturn(Collections.<GitPullRequest>emptyList());
+
+        assertNull(underTest.findActivePullRequest("source", targetBranch, context, gitClient));
+
+        final GitPullRequest pr = new GitPullRequest();
+        pr.setPullRequestId(100);
+        when(gitClient.getPullRequests(eq(repoId), any(GitPullRequestSearchCriteria.class), anyInt(), eq(0), eq(1)))
+                .thenReturn(Collections.singletonList(pr));
+
+        assertEquals(pr, underTest.findActivePullRequest("source", targetBranch, context, gitClient));
+    }
+}
@@ -0,0 +1,146 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
+import com.microsoft.alm.plugin.idea.settings.JsonHelper;
+import com.microsoft.alm.plugin.idea.settings.PullRequestsCacheState;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PullRequestsCacheTest extends IdeaAbstractTest {
+    private static final UUID REPOSITORY_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final String REMOTE_URL = "https://mytest.visualstudio.com/DefaultCollection/_git/testrepo";
+
+    private PullRequestsCache cache;
+    private int notifications;
+
+    @Before
+    public void setUp() {
+        cache = new PullRequestsCache((File) null);
+        notifications = 0;
+        cache.addListener(new Runnable() {
+            @Override
+            public void run() {
+                notifications++;
+            }
+        });
+    }
+
+    @Test
+    public void updateReportsOnlyChangedPullRequests() {
+        assertNull(cache.getETag("created"));
+        assertTrue(cache.update("created", "etag1", Arrays.asList(pullRequest(1, 100, PullRequestSummary.Role.CREATED, "v1"))));
+        assertEquals("etag1", cache.getETag("created"));
+        assertEquals(1, notifications);
+
+        // the same pull requests with a new ETag aren't a change
+        assertFalse(cache.update("created", "etag2", Arrays.asList(pullRequest(1, 100, PullRequestSummary.Role.CREATED, "v1"))));
+        assertEquals("etag2", cache.getETag("created"));
+        assertEquals(1, notifications);
+
+        assertTrue(cache.update("created", "etag3", Arrays.asList(pullRequest(1, 100, PullRequestSummary.Role.CREATED, "v2"))));
+        assertTrue(cache.update("created", "etag4", Collections.<PullRequestSummary>emptyList()));
+        assertEquals(3, notifications);
+        assertTrue(cache.getPullRequests().isEmpty());
+    }
+
+    @Test
+    public void pullRequestsOfAllQueriesAreListedOnceNewestFirst() {
+        cache.update("created", null, Arrays.asList(
+                pullRequest(1, 100, PullRequestSummary.Role.CREATED, "v1"),
+                pullRequest(2, 300, PullRequestSummary.Role.CREATED, "v1")));
+        cache.update("reviewing", null, Arrays.asList(
+                pullRequest(1, 100, PullRequestSummary.Role.REVIEWING, "v1"),
+                pullRequest(3, 200, PullRequestSummary.Role.REVIEWING, "v1")));
+
+        final List<PullRequestSummary> pullRequests = cache.getPullRequests();
+        assertEquals(3, pullRequests.size());
+        assertEquals(2, pullRequests.get(0).getPullRequestId());
+        assertEquals(3, pullRequests.get(1).getPullRequestId());
+        assertEquals(1, pullRequests.get(2).getPullRequestId());
+        assertEquals(PullRequestSummary.Role.CREATED, pullRequests.get(2).getRole());
+    }
+
+    @Test
+    public void retainQueriesDropsTheOtherQueries() {
+        cache.update("created", "etag1", Arrays.asList(pullRequest(1, 100, PullRequestSummary.Role.CREATED, "v1")));
+        cache.update("reviewing", "etag2", Arrays.asList(pullRequest(2, 200, PullRequestSummary.Role.REVIEWING, "v1")));
+
+        assertFalse(cache.retainQueries(Arrays.asList("created", "reviewing")));
+        assertTrue(cache.retainQueries(Arrays.asList("created")));
+        assertNull(cache.getETag("reviewing"));
+        assertEquals(1, cache.getPullRequests().size());
+        assertEquals(3, notifications);
+    }
+
+    @Test
+    public void stateKeepsTheQueries() throws Exception {
+        cache.update("created", "etag1", Arrays.asList(pullRequest(1, 100, PullRequestSummary.Role.CREATED, "v1")));
+        final PullRequestsCacheState state = JsonHelper.read(JsonHelper.write(new PullRequestsCacheState(
+                Collections.singletonMap("created", new PullRequestsCache.Query("etag1", 5,
+                        cache.getPullRequests())))), PullRequestsCacheState.class);
+
+        final Map<String, PullRequestsCache.Query> queries = state.createQueries();
+        assertEquals("etag1", queries.get("created").getETag());
+        assertEquals(5, queries.get("created").getSyncedAt());
+        final PullRequestSummary pullRequest = queries.get("created").getPullRequests().get(0);
+        assertEquals(REPOSITORY_ID, pullRequest.getRepositoryId());
+        assertEquals(PullRequestSummary.Role.CREATED, pullRequest.getRole());
+        assertEquals("v1", pullRequest.getVersion());
+        assertFalse(PullRequestsCache.isChanged(cache.getPullRequests(), queries.get("created").getPullRequests()));
+    }
+
+    @Test
+    public void fromJsonReadsThePullRequest() throws Exception {
+        final String json = "{\"pullRequestId\":42,\"repository\":{\"id\":\"" + REPOSITORY_ID + "\",\"name\":\"testrepo\"}," +
+                "\"title\":\"My PR\",\"status\":\"active\",\"mergeStatus\":\"succeeded\"," +
+                "\"sourceRefName\":\"refs/heads/feature\",\"targetRefName\":\"refs/heads/master\"," +
+                "\"createdBy\":{\"displayName\":\"Test User\"},\"creationDate\":\"2016-03-01T10:00:00Z\"," +
+                "\"reviewers\":[{\"id\":\"b\",\"vote\":10},{\"id\":\"a\",\"vote\":0}]}";
+        final PullRequestSummary pullRequest = PullRequestSummary.fromJson(JsonHelper.readTree(json),
+                PullRequestSummary.Role.REVIEWING, REMOTE_URL);
+
+        assertEquals(42, pullRequest.getPullRequestId());
+        assertEquals(REPOSITORY_ID, pullRequest.getRepositoryId());
+        assertEquals("testrepo", pullRequest.getRepositoryName());
+        assertEquals("feature", pullRequest.getSourceBranch());
+        assertEquals("master", pullRequest.getTargetBranch());
+        assertEquals("Test User", pullRequest.getCreatedBy());
+        assertEquals(1456826400000L, pullRequest.getCreationDate());
+        assertEquals("My PR|active|succeeded||a=0,b=10", pullRequest.getVersion());
+        assertEquals(REMOTE_URL + "/pullrequest/42#view=discussion", pullRequest.getWebAccessUrl());
+
+        assertNull(PullRequestSummary.fromJson(JsonHelper.readTree("{\"title\":\"no id\"}"),
+                PullRequestSummary.Role.CREATED, REMOTE_URL));
+    }
+
+    @Test
+    public void retainQueriesKeepsTheQueriesOfUnreachableRepositories() {
+        cache.update("created", "etag1", Arrays.asList(pullRequest(1, 100, PullRequestSummary.Role.CREATED, "v1")));
+        cache.update("reviewing", "etag2", Collections.<PullRequestSummary>emptyList());
+
+        assertFalse(cache.retainQueries(Collections.<String>emptyList(), Collections.singletonList(REMOTE_URL)));
+        assertEquals("etag1", cache.getETag("created"));
+        assertNull(cache.getETag("reviewing"));
+    }
+
+    private static PullRequestSummary pullRequest(final int id, final long creationDate,
+                                                  final PullRequestSummary.Role role, final String version) {
+        return new PullRequestSummary(id, REPOSITORY_ID, "testrepo", REMOTE_URL, "PR " + id, "feature", "master",
+                "Test User", creationDate, "active", role, version);
+    }
+}
@@ -0,0 +1,218 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.ui.pullrequest;
+
+import com.intellij.openapi.project.Project;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
+import org.apache.http.HttpStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PullRequestsSyncTest extends IdeaAbstractTest {
+    private static final URI COLLECTION_URI = URI.create("https://mytest.visualstudio.com/DefaultCollection");
+    private static final UUID TEAM_PROJECT_ID = UUID.fromString("00000000-0000-0000-0000-000000000010");
+    private static final UUID REPOSITORY_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID OTHER_REPOSITORY_ID = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final String REMOTE_URL = "https://mytest.visualstudio.com/DefaultCollection/_git/testrepo";
+    private static final String OTHER_REMOTE_URL = "https://mytest.visualstudio.com/DefaultCollection/_git/otherrepo";
+    private static final String TEAM_PROJECT_QUERY = "/" + TEAM_PROJECT_ID + "/_apis/git/pullrequests?";
+
+    private PullRequestsCache cache;
+    private TestSync underTest;
+
+    /**
+     * Answers the requests like a server whose pull requests were all created by the user
+     */
+    private static class TestSync extends PullRequestsSync {
+        private final List<TeamProjectRepositories> teamProjects = new ArrayList<TeamProjectRepositories>();
+        private final Set<String> unresolvedRemoteUrls = new HashSet<String>();
+        // The pull requests on the server, as JSON, by repository
+        private final Map<UUID, String> pullRequests = new LinkedHashMap<UUID, String>();
+        // The requests of the last sync, with the ETag they sent
+        private final Map<String, String> requests = new LinkedHashMap<String, String>();
+        private boolean canSearchTeamProjects = true;
+        private String userId = "me";
+
+        TestSync() {
+            super(Mockito.mock(Project.class));
+        }
+
+        @Override
+        boolean sync(final PullRequestsCache cache) {
+            requests.clear();
+            return super.sync(cache);
+        }
+
+        @Override
+        List<TeamProjectRepositories> getTeamProjects(final Set<String> unresolvedRemoteUrls) {
+            unresolvedRemoteUrls.addAll(this.unresolvedRemoteUrls);
+            return teamProjects;
+        }
+
+        @Override
+        Response get(final ServerContext context, final String url, final String etag) {
+            requests.put(url, etag);
+            if (url.endsWith("/_apis/connectionData")) {
+                return userId != null
+                        ? new Response(HttpStatus.SC_OK, null, "{\"authenticatedUser\":{\"id\":\"" + userId + "\"}}")
+                        : new Response(HttpStatus.SC_UNAUTHORIZED, null, null);
+            }
+            if (url.contains(TEAM_PROJECT_QUERY) && !canSearchTeamProjects) {
+                return new Response(HttpStatus.SC_NOT_FOUND, null, null);
+            }
+
+            final List<String> found = new ArrayList<String>();
+            if (url.contains("creatorId=" + userId)) {
+                for (final Map.Entry<UUID, String> entry : pullRequests.entrySet()) {
+                    if (url.contains(TEAM_PROJECT_QUERY) || url.contains("/repositories/" + entry.getKey() + "/")) {
+                        found.add(entry.getValue());
+                    }
+                }
+            }
+            final String body = "{\"value\":[" + join(found) + "]}";
+            final String bodyETag = "\"" + body.hashCode() + "\"";
+            return bodyETag.equals(etag) ? new Response(HttpStatus.SC_NOT_MODIFIED, bodyETag, null)
+                    : new Response(HttpStatus.SC_OK, bodyETag, body);
+        }
+
+        private static String join(final List<String> values) {
+            final StringBuilder builder = new StringBuilder();
+            for (final String value : values) {
+                builder.append(builder.length() > 0 ? "," : "").append(value);
+            }
+            return builder.toString();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        cache = new PullRequestsCache((File) null);
+        underTest = new TestSync();
+        underTest.pullRequests.put(REPOSITORY_ID, pullRequestJson(1, REPOSITORY_ID));
+        underTest.pullRequests.put(OTHER_REPOSITORY_ID, pullRequestJson(2, OTHER_REPOSITORY_ID));
+        underTest.teamProjects.add(teamProject(Collections.singletonMap(REPOSITORY_ID, REMOTE_URL)));
+    }
+
+    @Test
+    public void unchangedQueriesAreAnsweredByTheETag() {
+        assertTrue(underTest.sync(cache));
+        // the pull requests of repositories outside the project are dropped
+        assertEquals(1, cache.getPullRequests().size());
+        assertEquals(REMOTE_URL, cache.getPullRequests().get(0).getRepositoryRemoteUrl());
+        assertTrue(underTest.requests.containsKey(teamProjectQuery()));
+        assertNull(underTest.requests.get(teamProjectQuery()));
+
+        assertFalse(underTest.sync(cache));
+        assertEquals(1, cache.getPullRequests().size());
+        assertEquals(cache.getETag(PullRequestsSync.getQueryKey(COLLECTION_URI, TEAM_PROJECT_ID, PullRequestSummary.Role.CREATED)),
+                underTest.requests.get(teamProjectQuery()));
+    }
+
+    @Test
+    public void eTagIsNotSentWhenTheRepositoriesChange() {
+        assertTrue(underTest.sync(cache));
+
+        // the cached result was filtered without the new repository, so it needs the whole answer
+        underTest.teamProjects.clear();
+        final Map<UUID, String> remoteUrls = new LinkedHashMap<UUID, String>();
+        remoteUrls.put(REPOSITORY_ID, REMOTE_URL);
+        remoteUrls.put(OTHER_REPOSITORY_ID, OTHER_REMOTE_URL);
+        underTest.teamProjects.add(teamProject(remoteUrls));
+        assertTrue(underTest.sync(cache));
+        assertNull(underTest.requests.get(teamProjectQuery()));
+        assertEquals(2, cache.getPullRequests().size());
+    }
+
+    @Test
+    public void serversThatCantSearchTeamProjectsAreAskedPerRepository() {
+        underTest.canSearchTeamProjects = false;
+        assertTrue(underTest.sync(cache));
+        assertEquals(1, cache.getPullRequests().size());
+        assertTrue(underTest.requests.containsKey(teamProjectQuery()));
+
+        // the team project isn't asked again, the repository query is conditional
+        assertFalse(underTest.sync(cache));
+        assertEquals(1, cache.getPullRequests().size());
+        for (final Map.Entry<String, String> request : underTest.requests.entrySet()) {
+            assertFalse(request.getKey().contains(TEAM_PROJECT_QUERY));
+            if (request.getKey().contains("/repositories/" + REPOSITORY_ID + "/pullrequests?status=active&creatorId=")) {
+                assertEquals(cache.getETag(PullRequestsSync.getQueryKey(COLLECTION_URI, REPOSITORY_ID,
+                        PullRequestSummary.Role.CREATED)), request.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void unreachableRepositoriesKeepTheirPullRequests() {
+        assertTrue(underTest.sync(cache));
+
+        // the server of the repository can't be reached, so its queries aren't known
+        underTest.teamProjects.clear();
+        underTest.unresolvedRemoteUrls.add(REMOTE_URL);
+        assertFalse(underTest.sync(cache));
+        assertEquals(1, cache.getPullRequests().size());
+
+        // the server doesn't tell who the user is
+        final TestSync offline = new TestSync();
+        offline.userId = null;
+        offline.teamProjects.add(teamProject(Collections.singletonMap(REPOSITORY_ID, REMOTE_URL)));
+        assertFalse(offline.sync(cache));
+        assertEquals(1, cache.getPullRequests().size());
+
+        // the repository was removed from the project
+        underTest.unresolvedRemoteUrls.clear();
+        assertTrue(underTest.sync(cache));
+        assertTrue(cache.getPullRequests().isEmpty());
+    }
+
+    @Test
+    public void syncIntervalBacksOffUntilSomethingChanges() {
+        long interval = PullRequestsSync.MIN_INTERVAL_MILLIS;
+        for (int i = 0; i < 10; i++) {
+            interval = PullRequestsSync.nextIntervalMillis(interval, false);
+        }
+        assertEquals(PullRequestsSync.MAX_INTERVAL_MILLIS, interval);
+        assertEquals(2 * PullRequestsSync.MIN_INTERVAL_MILLIS,
+                PullRequestsSync.nextIntervalMillis(PullRequestsSync.MIN_INTERVAL_MILLIS, false));
+        assertEquals(PullRequestsSync.MIN_INTERVAL_MILLIS, PullRequestsSync.nextIntervalMillis(interval, true));
+    }
+
+    private static PullRequestsSync.TeamProjectRepositories teamProject(final Map<UUID, String> remoteUrls) {
+        final PullRequestsSync.TeamProjectRepositories teamProject
+                = new PullRequestsSync.TeamProjectRepositories(null, COLLECTION_URI, TEAM_PROJECT_ID);
+        for (final Map.Entry<UUID, String> entry : remoteUrls.entrySet()) {
+            teamProject.addRepository(entry.getKey(), entry.getValue());
+        }
+        return teamProject;
+    }
+
+    private static String teamProjectQuery() {
+        return COLLECTION_URI + TEAM_PROJECT_QUERY + "searchCriteria.status=active&searchCriteria.creatorId=me&api-version=3.0";
+    }
+
+    private static String pullRequestJson(final int id, final UUID repositoryId) {
+        return "{\"pullRequestId\":" + id + ",\"repository\":{\"id\":\"" + repositoryId + "\",\"name\":\"repo" + id + "\"}," +
+                "\"title\":\"PR " + id + "\",\"status\":\"active\",\"sourceRefName\":\"refs/heads/feature\"," +
+                "\"targetRefName\":\"refs/heads/master\",\"createdBy\":{\"displayName\":\"Test User\"}," +
+                "\"creationDate\":\"2016-03-0" + id + "T10:00:00Z\"}";
+    }
+}
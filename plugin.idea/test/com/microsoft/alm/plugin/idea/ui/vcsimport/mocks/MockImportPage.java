@@ -37,6 +37,11 @@ public class MockImportPage implements ImportPage {
 
     }
 
+    @Override
+    public void setCatalogStatus(final String catalogStatus) {
+
+    }
+
     @Override
     public void setAuthenticating(final boolean authenticating) {
 
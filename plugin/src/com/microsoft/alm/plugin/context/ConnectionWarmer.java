@@ -0,0 +1,185 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context;
+
+import com.microsoft.alm.common.utils.UrlHelper;
+import com.microsoft.alm.plugin.authentication.VsoAuthenticationProvider;
+import com.microsoft.alm.plugin.operations.Operation;
+import com.microsoft.alm.plugin.operations.OperationExecutor;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a singleton that gets the servers used last ready before the first request is made to them. When
+ * a dialog opens, it looks up the host names and does the TLS handshake with each server on a background task,
+ * while the user is still signing in. The TLS session is kept by the SSL context all clients share (see
+ * ServerContext.getSharedSslContext), so the first real request resumes it instead of doing a full handshake.
+ * <p/>
+ * Plain http servers are only probed. Either way, the result is recorded in ServerReachability. Servers reached
+ * through a proxy are left alone: the clients don't share the SSL context then, and a direct connection could fail
+ * where the proxied requests would not.
+ * <p/>
+ * Thread-safety: Thread safe
+ */
+public class ConnectionWarmer {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionWarmer.class);
+
+    public static final int MAX_HOSTS = 4;
+    public static final int CONNECT_TIMEOUT_MILLIS = 3000;
+    // Servers usually keep TLS sessions for a few minutes at least
+    public static final long WARM_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final ServerReachability reachability;
+    // When each host was last warmed up
+    private final Map<String, Long> warmedAt = new HashMap<String, Long>();
+
+    private static class Holder {
+        private static ConnectionWarmer INSTANCE = new ConnectionWarmer(ServerReachability.getInstance());
+    }
+
+    public static ConnectionWarmer getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Only tests should create their own instance.
+     */
+    protected ConnectionWarmer(final ServerReachability reachability) {
+        this.reachability = reachability;
+    }
+
+    /**
+     * Warms up the servers of the last used context and of the other saved contexts.
+     */
+    public void warmUpLastUsed() {
+        final List<URI> serverUris = new ArrayList<URI>();
+        final ServerContextManager manager = ServerContextManager.getInstance();
+        final ServerContext lastUsedContext = manager.getLastUsedContext();
+        if (lastUsedContext != null) {
+            serverUris.add(lastUsedContext.getUri());
+            if (lastUsedContext.getType() != ServerContext.Type.TFS) {
+                // Signing in to Team Services starts with the account list
+                serverUris.add(UrlHelper.createUri(VsoAuthenticationProvider.VSO_AUTH_URL));
+            }
+        }
+        for (final ServerContext context : manager.getAllServerContexts()) {
+            serverUris.add(context.getUri());
+        }
+        warmUp(serverUris);
+    }
+
+    /**
+     * Warms up the hosts of the uris (in order, up to MAX_HOSTS of them) that haven't been warmed up recently.
+     */
+    public void warmUp(final List<URI> serverUris) {
+        final Map<String, URI> hosts = new LinkedHashMap<String, URI>();
+        for (final URI serverUri : serverUris) {
+            if (serverUri == null || StringUtils.isEmpty(serverUri.getHost())) {
+                continue;
+            }
+            final String hostKey = serverUri.getHost().toLowerCase(Locale.ROOT) + ":" + getPort(serverUri);
+            if (!hosts.containsKey(hostKey) && hosts.size() < MAX_HOSTS) {
+                hosts.put(hostKey, serverUri);
+            }
+        }
+
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<String, URI> host : hosts.entrySet()) {
+            synchronized (this) {
+                final Long lastWarmed = warmedAt.get(host.getKey());
+                if (lastWarmed != null && now - lastWarmed < WARM_INTERVAL_MILLIS) {
+                    continue;
+                }
+                warmedAt.put(host.getKey(), now);
+            }
+
+            final URI serverUri = host.getValue();
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    warmUpHost(serverUri);
+                }
+            });
+        }
+    }
+
+    /**
+     * Submits the task that warms up a host. Tests override this to run it right away.
+     */
+    protected void submit(final Runnable task) {
+        OperationExecutor.getInstance().submitOperationTask(task, Operation.Priority.BACKGROUND);
+    }
+
+    protected void warmUpHost(final URI serverUri) {
+        if (!reachability.wasReachable(serverUri)) {
+            // Leave it to the circuit in ServerReachability to decide when to try again
+            return;
+        }
+
+        if (reachability.usesProxy(serverUri)) {
+            return;
+        }
+
+        if (!"https".equalsIgnoreCase(serverUri.getScheme())) {
+            reachability.isReachable(serverUri);
+            return;
+        }
+
+        final SSLContext sslContext = ServerContext.getSharedSslContext();
+        if (sslContext == null || reachability.isOfflineMode()) {
+            return;
+        }
+
+        try {
+            handshake(sslContext, serverUri.getHost(), getPort(serverUri));
+            reachability.markReachable(serverUri);
+            logger.info("warmUp: TLS session ready for " + serverUri.getHost());
+        } catch (IOException e) {
+            reachability.recordFailure(serverUri, e);
+            logger.info("warmUp: unable to warm up " + serverUri.getHost(), e);
+        }
+    }
+
+    /**
+     * Does the TLS handshake with the host. The session is cached by the SSL context under the host name and
+     * port, the same way the clients will look it up.
+     */
+    protected void handshake(final SSLContext sslContext, final String host, final int port) throws IOException {
+        final Socket plainSocket = new Socket();
+        try {
+            plainSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            plainSocket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            final SSLSocket socket = (SSLSocket) sslContext.getSocketFactory().createSocket(plainSocket, host, port, true);
+            try {
+                socket.startHandshake();
+            } finally {
+                socket.close();
+            }
+        } finally {
+            plainSocket.close();
+        }
+    }
+
+    private static int getPort(final URI serverUri) {
+        if (serverUri.getPort() > 0) {
+            return serverUri.getPort();
+        }
+        return "http".equalsIgnoreCase(serverUri.getScheme()) ? 80 : 443;
+    }
+}
@@ -0,0 +1,427 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context;
+
+import com.microsoft.alm.common.utils.Interner;
+import com.microsoft.alm.plugin.services.PluginServiceProvider;
+import com.microsoft.alm.plugin.services.RepositoryCatalogStore;
+import com.microsoft.teamfoundation.core.webapi.model.TeamProjectCollectionReference;
+import com.microsoft.teamfoundation.core.webapi.model.TeamProjectReference;
+import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a singleton that keeps a local copy of the collections and Git repositories found on each
+ * server or account, of the accounts each user has access to, and of the project collections each user can see on
+ * a TFS server. Dialogs show the cached copy right away and refresh it in the background. The catalog is loaded
+ * from the RepositoryCatalogStore the first time it is used and saved back to it after it changes. Saves are done
+ * on a background thread and changes made within SAVE_DELAY_MILLIS of each other are written together.
+ * <p/>
+ * Repositories and collections are kept per user and server, since two accounts on the same server may not see
+ * the same repositories.
+ * <p/>
+ * Thread-safety: Thread safe
+ */
+public class RepositoryCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryCatalog.class);
+
+    // Lookups change the catalog in bursts (one put per server or collection), so wait for the burst to end
+    static final long SAVE_DELAY_MILLIS = 1000L;
+
+    private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "RepositoryCatalog writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // Shared by all items, so a name or id repeated across repositories is only kept once
+    private static final Interner<String> NAMES = new Interner<String>();
+    private static final Interner<UUID> IDS = new Interner<UUID>();
+
+    /**
+     * Returns the shared instance of a project, collection or account name.
+     */
+    public static String internName(final String name) {
+        return NAMES.intern(name);
+    }
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private final Map<String, List<URI>> accounts = new HashMap<String, List<URI>>();
+    private final Map<String, CollectionsEntry> collections = new HashMap<String, CollectionsEntry>();
+    private boolean restored = false;
+    private boolean savePending = false;
+    // Held while saving so that a newer copy of the catalog is never overwritten by an older one
+    private final Object saveLock = new Object();
+
+    /**
+     * A Git repository and the collection it was found in. Only the fields the plugin uses are kept, and the
+     * project and collection names are interned, because there can be tens of thousands of items.
+     * Use createRepository to get a GitRepository for the item.
+     */
+    public static class Item {
+        private final TeamProjectCollectionReference collection;
+        private final UUID repositoryId;
+        private final String repositoryName;
+        private final String remoteUrl;
+        private final UUID projectId;
+        private final String projectName;
+
+        public Item(final TeamProjectCollectionReference collection, final GitRepository repository) {
+            this(collection,
+                    repository != null ? repository.getId() : null,
+                    repository != null ? repository.getName() : null,
+                    repository != null ? repository.getRemoteUrl() : null,
+                    repository != null && repository.getProjectReference() != null ? repository.getProjectReference().getId() : null,
+                    repository != null && repository.getProjectReference() != null ? repository.getProjectReference().getName() : null);
+        }
+
+        public Item(final TeamProjectCollectionReference collection, final UUID repositoryId, final String repositoryName,
+                    final String remoteUrl, final UUID projectId, final String projectName) {
+            this.collection = collection;
+            this.repositoryId = repositoryId;
+            this.repositoryName = repositoryName;
+            this.remoteUrl = remoteUrl;
+            this.projectId = IDS.intern(projectId);
+            this.projectName = NAMES.intern(projectName);
+        }
+
+        public TeamProjectCollectionReference getCollection() {
+            return collection;
+        }
+
+        public String getCollectionName() {
+            return collection != null ? collection.getName() : null;
+        }
+
+        public UUID getRepositoryId() {
+            return repositoryId;
+        }
+
+        public String getRepositoryName() {
+            return repositoryName;
+        }
+
+        public String getRemoteUrl() {
+            return remoteUrl;
+        }
+
+        public UUID getProjectId() {
+            return projectId;
+        }
+
+        public String getProjectName() {
+            return projectName;
+        }
+
+        /**
+         * Returns a new GitRepository (and project reference) with the fields kept by this item.
+         */
+        public GitRepository createRepository() {
+            final TeamProjectReference project = new TeamProjectReference();
+            project.setId(projectId);
+            project.setName(projectName);
+
+            final GitRepository repository = new GitRepository();
+            repository.setId(repositoryId);
+            repository.setName(repositoryName);
+            repository.setRemoteUrl(remoteUrl);
+            repository.setProjectReference(project);
+            return repository;
+        }
+    }
+
+    /**
+     * Everything found on one server or account by the last successful refresh.
+     */
+    public static class Entry {
+        private final List<Item> items;
+        private final long refreshedAt;
+        private final long refreshDurationMillis;
+
+        public Entry(final List<Item> items, final long refreshedAt, final long refreshDurationMillis) {
+            assert items != null;
+            this.items = Collections.unmodifiableList(new ArrayList<Item>(items));
+            this.refreshedAt = refreshedAt;
+            this.refreshDurationMillis = refreshDurationMillis;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        /**
+         * The time (in milliseconds since the epoch) the items were read from the server
+         */
+        public long getRefreshedAt() {
+            return refreshedAt;
+        }
+
+        /**
+         * How long it took to read the items from the server
+         */
+        public long getRefreshDurationMillis() {
+            return refreshDurationMillis;
+        }
+
+        public long getAgeMillis() {
+            return Math.max(0L, System.currentTimeMillis() - refreshedAt);
+        }
+    }
+
+    /**
+     * The project collections a user can see on a TFS server.
+     */
+    public static class CollectionsEntry {
+        private final List<TeamProjectCollectionReference> collections;
+        private final long refreshedAt;
+
+        public CollectionsEntry(final List<TeamProjectCollectionReference> collections, final long refreshedAt) {
+            assert collections != null;
+            this.collections = Collections.unmodifiableList(new ArrayList<TeamProjectCollectionReference>(collections));
+            this.refreshedAt = refreshedAt;
+        }
+
+        public List<TeamProjectCollectionReference> getCollections() {
+            return collections;
+        }
+
+        /**
+         * The time (in milliseconds since the epoch) the collections were read from the server
+         */
+        public long getRefreshedAt() {
+            return refreshedAt;
+        }
+
+        public long getAgeMillis() {
+            return Math.max(0L, System.currentTimeMillis() - refreshedAt);
+        }
+    }
+
+    private static class Holder {
+        private static RepositoryCatalog INSTANCE = new RepositoryCatalog();
+    }
+
+    public static RepositoryCatalog getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Only tests should create their own catalog.
+     */
+    protected RepositoryCatalog() {
+    }
+
+    /**
+     * Returns the cached entry for the server or account the context points to and the user of the context, or null
+     * if it was never refreshed.
+     */
+    public synchronized Entry get(final ServerContext context) {
+        assert context != null;
+        ensureRestored();
+        return entries.get(getUserServerKey(context));
+    }
+
+    /**
+     * Replaces the cached entry for the server or account the context points to and the user of the context.
+     */
+    public void put(final ServerContext context, final List<Item> items, final long refreshDurationMillis) {
+        assert context != null;
+        synchronized (this) {
+            ensureRestored();
+            entries.put(getUserServerKey(context), new Entry(items, System.currentTimeMillis(), refreshDurationMillis));
+        }
+        save();
+    }
+
+    public void remove(final ServerContext context) {
+        assert context != null;
+        synchronized (this) {
+            ensureRestored();
+            if (entries.remove(getUserServerKey(context)) == null) {
+                return;
+            }
+        }
+        save();
+    }
+
+    /**
+     * Returns the cached repository with the remote url, or null if no cached entry has it.
+     */
+    public synchronized Item findItem(final String remoteUrl) {
+        assert remoteUrl != null;
+        ensureRestored();
+        for (final Entry entry : entries.values()) {
+            for (final Item item : entry.getItems()) {
+                if (StringUtils.equalsIgnoreCase(item.getRemoteUrl(), remoteUrl)) {
+                    return item;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the account URIs last found for the user, or an empty list.
+     */
+    public synchronized List<URI> getAccounts(final String user) {
+        ensureRestored();
+        final List<URI> accountUris = StringUtils.isEmpty(user) ? null : accounts.get(user.toLowerCase(Locale.ROOT));
+        return accountUris != null ? accountUris : Collections.<URI>emptyList();
+    }
+
+    public void putAccounts(final String user, final List<URI> accountUris) {
+        if (StringUtils.isEmpty(user)) {
+            return;
+        }
+        synchronized (this) {
+            ensureRestored();
+            accounts.put(user.toLowerCase(Locale.ROOT), Collections.unmodifiableList(new ArrayList<URI>(accountUris)));
+        }
+        save();
+    }
+
+    /**
+     * Returns the project collections last read from the TFS server the context points to for the user of the
+     * context, or null if they were never read (or have been removed).
+     */
+    public synchronized CollectionsEntry getCollections(final ServerContext context) {
+        assert context != null;
+        ensureRestored();
+        return collections.get(getUserServerKey(context));
+    }
+
+    public void putCollections(final ServerContext context, final List<TeamProjectCollectionReference> projectCollections) {
+        assert context != null;
+        synchronized (this) {
+            ensureRestored();
+            collections.put(getUserServerKey(context), new CollectionsEntry(projectCollections, System.currentTimeMillis()));
+        }
+        save();
+    }
+
+    public void removeCollections(final ServerContext context) {
+        assert context != null;
+        synchronized (this) {
+            ensureRestored();
+            if (collections.remove(getUserServerKey(context)) == null) {
+                return;
+            }
+        }
+        save();
+    }
+
+    /**
+     * Forgets the project collections of every server, so they are read from the servers again.
+     */
+    public void clearCollections() {
+        synchronized (this) {
+            ensureRestored();
+            if (collections.isEmpty()) {
+                return;
+            }
+            collections.clear();
+        }
+        save();
+    }
+
+    private static String getUserServerKey(final ServerContext context) {
+        final String userName = context.getAuthenticationInfo() != null ? context.getAuthenticationInfo().getUserName() : null;
+        return StringUtils.defaultString(userName).toLowerCase(Locale.ROOT) + "@" + context.getKey();
+    }
+
+    private void ensureRestored() {
+        if (restored) {
+            return;
+        }
+        restored = true;
+
+        final RepositoryCatalogStore store = getStore();
+        if (store == null) {
+            return;
+        }
+        try {
+            entries.putAll(store.restoreEntries());
+            accounts.putAll(store.restoreAccounts());
+            collections.putAll(store.restoreCollections());
+        } catch (Throwable t) {
+            // The catalog is only a cache, start over with an empty one
+            logger.warn("ensureRestored: unable to restore the repository catalog", t);
+        }
+    }
+
+    /**
+     * Schedules a save on the writer thread, unless one is already scheduled
+     */
+    private void save() {
+        if (getStore() == null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (savePending) {
+                return;
+            }
+            savePending = true;
+        }
+        writer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the catalog to the store now if it has changes that weren't saved yet
+     */
+    public void flush() {
+        final RepositoryCatalogStore store = getStore();
+        if (store == null) {
+            return;
+        }
+
+        synchronized (saveLock) {
+            final Map<String, Entry> entriesCopy;
+            final Map<String, List<URI>> accountsCopy;
+            final Map<String, CollectionsEntry> collectionsCopy;
+            synchronized (this) {
+                if (!savePending) {
+                    return;
+                }
+                savePending = false;
+                entriesCopy = new HashMap<String, Entry>(entries);
+                accountsCopy = new HashMap<String, List<URI>>(accounts);
+                collectionsCopy = new HashMap<String, CollectionsEntry>(collections);
+            }
+            try {
+                store.save(entriesCopy, accountsCopy, collectionsCopy);
+            } catch (Throwable t) {
+                logger.warn("save: unable to save the repository catalog", t);
+            }
+        }
+    }
+
+    private RepositoryCatalogStore getStore() {
+        return PluginServiceProvider.getInstance().isInitialized() ?
+                PluginServiceProvider.getInstance().getRepositoryCatalogStore() : null;
+    }
+}
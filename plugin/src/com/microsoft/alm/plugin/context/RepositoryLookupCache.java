@@ -0,0 +1,183 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context;
+
+import com.microsoft.teamfoundation.core.webapi.model.TeamProjectCollectionReference;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a singleton that shares what the server returned for the collections of an account or server,
+ * and for the Git repositories of each collection, between lookups. The checkout dialog (which shows
+ * repositories) and the import dialog (which shows team projects) read the same data, so whichever dialog is
+ * opened second uses what the first one read instead of asking the server again. Lookups that start while the
+ * same data is being read wait for that request instead of making their own.
+ * <p/>
+ * Results are kept for MAX_AGE_MILLIS. Failed requests are not kept.
+ * <p/>
+ * Thread-safety: Thread safe
+ */
+public class RepositoryLookupCache {
+    public static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final Map<String, Slot> slots = new HashMap<String, Slot>();
+
+    /**
+     * A request for one result, and the time it completed.
+     */
+    private static class Slot {
+        private final FutureTask<Object> task;
+        private volatile long loadedAt = 0L;
+
+        Slot(final Callable<?> loader) {
+            this.task = new FutureTask<Object>(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return loader.call();
+                }
+            });
+        }
+
+        boolean isExpired(final long now) {
+            return task.isDone() && now - loadedAt > MAX_AGE_MILLIS;
+        }
+    }
+
+    private static class Holder {
+        private static RepositoryLookupCache INSTANCE = new RepositoryLookupCache();
+    }
+
+    public static RepositoryLookupCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Only tests should create their own cache.
+     */
+    protected RepositoryLookupCache() {
+    }
+
+    /**
+     * Returns the collections of the account or server the context points to, calling the loader only if they
+     * are not cached.
+     */
+    public List<TeamProjectCollectionReference> getCollections(final ServerContext context,
+                                                               final Callable<List<TeamProjectCollectionReference>> loader) {
+        return load(getContextKey(context), loader);
+    }
+
+    /**
+     * Returns the collections of the account or server the context points to if they have been read and are
+     * still current, or null. Never calls the server.
+     */
+    public List<TeamProjectCollectionReference> getCachedCollections(final ServerContext context) {
+        return getCached(getContextKey(context));
+    }
+
+    /**
+     * Returns the Git repositories of the collection, calling the loader only if they are not cached.
+     */
+    public List<RepositoryCatalog.Item> getRepositories(final ServerContext context,
+                                                        final TeamProjectCollectionReference collection,
+                                                        final Callable<List<RepositoryCatalog.Item>> loader) {
+        assert collection != null;
+        return load(getContextKey(context) + "/" + StringUtils.lowerCase(collection.getName()), loader);
+    }
+
+    /**
+     * Forgets everything cached for the account or server the context points to.
+     */
+    public synchronized void remove(final ServerContext context) {
+        final String contextKey = getContextKey(context);
+        final Iterator<String> iterator = slots.keySet().iterator();
+        while (iterator.hasNext()) {
+            final String key = iterator.next();
+            if (key.equals(contextKey) || key.startsWith(contextKey + "/")) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        slots.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getCached(final String key) {
+        final Slot slot;
+        synchronized (this) {
+            slot = slots.get(key);
+        }
+        if (slot == null || !slot.task.isDone() || slot.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+
+        try {
+            return (T) slot.task.get();
+        } catch (ExecutionException e) {
+            // The request failed, the next load will remove the slot and try again
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T load(final String key, final Callable<T> loader) {
+        final Slot slot;
+        final boolean owner;
+        synchronized (this) {
+            final Slot cachedSlot = slots.get(key);
+            if (cachedSlot == null || cachedSlot.isExpired(System.currentTimeMillis())) {
+                slot = new Slot(loader);
+                slots.put(key, slot);
+                owner = true;
+            } else {
+                slot = cachedSlot;
+                owner = false;
+            }
+        }
+
+        if (owner) {
+            slot.task.run();
+            slot.loadedAt = System.currentTimeMillis();
+        }
+
+        try {
+            return (T) slot.task.get();
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                if (slots.get(key) == slot) {
+                    slots.remove(key);
+                }
+            }
+            // Rethrow what the loader threw, so callers can handle it as if they had made the request
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String getContextKey(final ServerContext context) {
+        assert context != null;
+        final String userName = context.getAuthenticationInfo() != null ? context.getAuthenticationInfo().getUserName() : null;
+        return StringUtils.lowerCase(StringUtils.defaultString(userName)) + "@" + context.getKey();
+    }
+}
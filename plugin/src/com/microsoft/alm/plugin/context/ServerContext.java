@@ -26,18 +26,24 @@ import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.ClientProperties;
 import org.glassfish.jersey.client.RequestEntityProcessing;
 import org.glassfish.jersey.client.spi.ConnectorProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.net.ssl.SSLContext;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * This class holds all information needed to contact a TFS/VSO server except for
  * authentication details. Those must be provided to certain methods as needed.
  */
 public class ServerContext {
+    private static final Logger logger = LoggerFactory.getLogger(ServerContext.class);
+
     public enum Type {VSO_DEPLOYMENT, VSO, TFS}
 
     private final Type type;
@@ -135,10 +141,35 @@ public class ServerContext {
     }
 
     public static Client getClient(final Type type, final AuthenticationInfo authenticationInfo) {
-        final ClientConfig clientConfig = getClientConfig(type, authenticationInfo,
-                System.getProperty("proxySet") != null && System.getProperty("proxySet").equals("true"));
-        final Client localClient = ClientBuilder.newClient(clientConfig);
-        return localClient;
+        final boolean includeProxySettings = isProxyConfigured();
+        final ClientConfig clientConfig = getClientConfig(type, authenticationInfo, includeProxySettings);
+        final SSLContext sslContext = includeProxySettings ? null : getSharedSslContext();
+        if (sslContext == null) {
+            return ClientBuilder.newClient(clientConfig);
+        }
+        // All clients share one SSL context, so a TLS session set up by one of them (or by the ConnectionWarmer)
+        // is resumed by the others instead of doing a full handshake
+        return ClientBuilder.newBuilder().withConfig(clientConfig).sslContext(sslContext).build();
+    }
+
+    /**
+     * Returns true if the clients send their requests through the proxy set with the proxySet, proxyHost and
+     * proxyPort system properties (see getClientConfig)
+     */
+    public static boolean isProxyConfigured() {
+        return "true".equals(System.getProperty("proxySet"));
+    }
+
+    /**
+     * Returns the SSL context shared by all clients, or null if the default context isn't available
+     */
+    public static SSLContext getSharedSslContext() {
+        try {
+            return SSLContext.getDefault();
+        } catch (NoSuchAlgorithmException e) {
+            logger.warn("getSharedSslContext: the default SSL context is not available", e);
+            return null;
+        }
     }
 
     protected static ClientConfig getClientConfig(final Type type, final AuthenticationInfo authenticationInfo, final boolean includeProxySettings) {
@@ -210,17 +241,34 @@ public class ServerContext {
             final Credentials credentials = AuthHelper.getCredentials(type, authenticationInfo);
             final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
             credentialsProvider.setCredentials(AuthScope.ANY, credentials);
-            httpClient = HttpClientBuilder.create().setDefaultCredentialsProvider(credentialsProvider).build();
+            final HttpClientBuilder builder = HttpClientBuilder.create().setDefaultCredentialsProvider(credentialsProvider);
+            final SSLContext sslContext = getSharedSslContext();
+            if (sslContext != null) {
+                builder.setSslcontext(sslContext);
+            }
+            httpClient = builder.build();
         }
         return httpClient;
     }
 
     public synchronized GitHttpClient getGitHttpClient() {
-        if (teamProjectCollectionReference == null) {
+        final URI collectionUri = getCollectionURI();
+        if (collectionUri == null) {
             // We don't have enough context to create a GitHttpClient
             return null;
         }
 
+        return new GitHttpClient(getClient(), collectionUri);
+    }
+
+    /**
+     * Get the uri of the collection the context is in, or null if the context doesn't know its collection
+     */
+    public URI getCollectionURI() {
+        if (teamProjectCollectionReference == null) {
+            return null;
+        }
+
         // Get the collection name. Find it in the uri. Use that as the collection URI.
         final String collectionName = teamProjectCollectionReference.getName().toLowerCase();
         final String uri = UrlHelper.asString(getUri()).toLowerCase();
@@ -230,9 +278,7 @@ public class ServerContext {
             final int endIndex = index + 1 + collectionName.length();
             // Make sure the collection name is terminated by the end of the uri or a uri separator
             if (endIndex == uri.length() || uri.charAt(endIndex) == UrlHelper.URL_SEPARATOR.charAt(0)) {
-                final String collectionUri = uri.substring(0, endIndex);
-                final GitHttpClient gitClient = new GitHttpClient(getClient(), UrlHelper.createUri(collectionUri));
-                return gitClient;
+                return UrlHelper.createUri(uri.substring(0, endIndex));
             }
         }
 
@@ -187,6 +187,11 @@ public class ServerContextManager {
             context = null;
         }
 
+        if (context == null && !ServerReachability.getInstance().isReachable(UrlHelper.createUri(gitRemoteUrl))) {
+            // The server can't validate the url, so use what the repository catalog saved about it
+            return createContextFromCatalog(gitRemoteUrl);
+        }
+
         if (context == null) {
             // Manager didn't have a matching context, so try to look up the auth info
             final AuthenticationInfo authenticationInfo = getAuthenticationInfo(gitRemoteUrl, true);
@@ -199,6 +204,25 @@ public class ServerContextManager {
         return context;
     }
 
+    /**
+     * Creates a context for the remote url from the repository catalog without calling the server, or returns null
+     * if the repository or the credentials for its server aren't known.
+     */
+    private ServerContext createContextFromCatalog(final String gitRemoteUrl) {
+        final RepositoryCatalog.Item item = RepositoryCatalog.getInstance().findItem(gitRemoteUrl);
+        final AuthenticationInfo authenticationInfo = item != null ? getAuthenticationInfo(gitRemoteUrl, false) : null;
+        if (authenticationInfo == null) {
+            logger.info("createContextFromCatalog: no saved repository for " + gitRemoteUrl);
+            return null;
+        }
+
+        final ServerContext.Type type = UrlHelper.isVSO(UrlHelper.createUri(gitRemoteUrl))
+                ? ServerContext.Type.VSO : ServerContext.Type.TFS;
+        final ServerContext rootContext = new ServerContextBuilder().type(type)
+                .uri(gitRemoteUrl).authentication(authenticationInfo).build();
+        return new ServerContextRow(rootContext, item).toServerContext();
+    }
+
     /**
      * This method tries to find existing authentication info for a given git url.
      * If the auth info cannot be found and the prompt flag is true, the user will be prompted.
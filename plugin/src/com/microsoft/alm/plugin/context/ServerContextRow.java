@@ -0,0 +1,90 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context;
+
+import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository;
+
+import java.net.URI;
+
+/**
+ * One result of a ServerContextLookupOperation: a Git repository (or, for the PROJECT scope, a repository of the
+ * team project) on the account or server that was searched.
+ * <p/>
+ * A row only points to the context that was searched and to the RepositoryCatalog item of the repository, both of
+ * which are shared with the other rows. Call toServerContext to get the full context for a row, which should only
+ * be done for the row the user picks.
+ * <p/>
+ * Thread-safety: Immutable
+ */
+public final class ServerContextRow {
+    private final ServerContext rootContext;
+    private final RepositoryCatalog.Item item;
+    private final String accountName;
+    // Only set for rows created from a full context
+    private final ServerContext context;
+
+    public ServerContextRow(final ServerContext rootContext, final RepositoryCatalog.Item item) {
+        this(rootContext, item, null);
+    }
+
+    private ServerContextRow(final ServerContext rootContext, final RepositoryCatalog.Item item, final ServerContext context) {
+        assert rootContext != null;
+        assert item != null;
+        this.rootContext = rootContext;
+        this.item = item;
+        this.context = context;
+        final URI uri = rootContext.getUri();
+        this.accountName = uri != null ? RepositoryCatalog.internName(uri.getHost()) : null;
+    }
+
+    /**
+     * Returns a row for a context that was already created. toServerContext returns that context.
+     */
+    public static ServerContextRow fromServerContext(final ServerContext context) {
+        assert context != null;
+        return new ServerContextRow(context,
+                new RepositoryCatalog.Item(context.getTeamProjectCollectionReference(), context.getGitRepository()), context);
+    }
+
+    public RepositoryCatalog.Item getItem() {
+        return item;
+    }
+
+    public String getRepositoryName() {
+        return item.getRepositoryName();
+    }
+
+    public String getProjectName() {
+        return item.getProjectName();
+    }
+
+    public String getCollectionName() {
+        return item.getCollectionName();
+    }
+
+    /**
+     * The host name of the account or server
+     */
+    public String getAccountName() {
+        return accountName;
+    }
+
+    /**
+     * Creates the context for this row. Each call returns a new context (unless the row was created from one),
+     * so keep the result rather than calling this repeatedly.
+     */
+    public ServerContext toServerContext() {
+        if (context != null) {
+            return context;
+        }
+
+        final GitRepository gitRepository = item.createRepository();
+        return new ServerContextBuilder(rootContext)
+                .uri(item.getRemoteUrl())
+                .repository(gitRepository)
+                .teamProject(gitRepository.getProjectReference())
+                .collection(item.getCollection())
+                .build();
+    }
+}
@@ -0,0 +1,279 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context;
+
+import com.microsoft.alm.plugin.services.PluginServiceProvider;
+import com.microsoft.alm.plugin.services.PropertyService;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a singleton that keeps track of which servers can be reached, so lookups don't have to wait out
+ * the timeouts of the REST and SOAP clients when the network or a server is down.
+ * <p/>
+ * Each host works like a circuit breaker. The first time a host is needed it is probed by opening a connection with
+ * a short timeout. Hosts reached through a proxy can't be probed that way, so they are taken to be reachable until
+ * a request fails to connect. Once a host is known to be unreachable (from a probe or because a request failed to connect),
+ * it is reported as unreachable without probing until RETRY_INTERVAL_MILLIS have passed. A host that was reachable
+ * is trusted for REACHABLE_INTERVAL_MILLIS. Setting the offlineMode property to true reports every host as
+ * unreachable.
+ * <p/>
+ * Thread-safety: Thread safe
+ */
+public class ServerReachability {
+    private static final Logger logger = LoggerFactory.getLogger(ServerReachability.class);
+
+    public static final int PROBE_TIMEOUT_MILLIS = 1500;
+    public static final long RETRY_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    public static final long REACHABLE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private final Map<String, HostState> hosts = new HashMap<String, HostState>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    public interface Listener {
+        /**
+         * Called when a host that was unreachable can be reached again
+         *
+         * @param serverUri a uri on the host
+         */
+        void reachable(URI serverUri);
+    }
+
+    private static class HostState {
+        private final boolean reachable;
+        private final long checkedAt;
+
+        HostState(final boolean reachable, final long checkedAt) {
+            this.reachable = reachable;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private static class Holder {
+        private static ServerReachability INSTANCE = new ServerReachability();
+    }
+
+    public static ServerReachability getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Only tests should create their own instance.
+     */
+    protected ServerReachability() {
+    }
+
+    public void addListener(final Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns true in offline mode (see PropertyService.PROP_OFFLINE_MODE)
+     */
+    public boolean isOfflineMode() {
+        return Boolean.parseBoolean(getProperty(PropertyService.PROP_OFFLINE_MODE));
+    }
+
+    /**
+     * Returns false if the host of the uri is known to be unreachable. If the state of the host isn't known or is
+     * out of date the host is probed, so this should be called on a background thread.
+     */
+    public boolean isReachable(final URI serverUri) {
+        if (isOfflineMode()) {
+            return false;
+        }
+
+        final String hostKey = getHostKey(serverUri);
+        if (hostKey == null) {
+            // Let the caller fail the way it always has
+            return true;
+        }
+
+        synchronized (this) {
+            final HostState state = hosts.get(hostKey);
+            if (state != null) {
+                final long age = System.currentTimeMillis() - state.checkedAt;
+                if (age < (state.reachable ? REACHABLE_INTERVAL_MILLIS : RETRY_INTERVAL_MILLIS)) {
+                    return state.reachable;
+                }
+            }
+        }
+
+        final boolean reachable = usesProxy(serverUri)
+                || probe(serverUri.getHost(), getPort(serverUri), PROBE_TIMEOUT_MILLIS);
+        setState(serverUri, reachable);
+        return reachable;
+    }
+
+    /**
+     * Returns the last known state of the host without probing it, or true if it isn't known.
+     */
+    public synchronized boolean wasReachable(final URI serverUri) {
+        if (isOfflineMode()) {
+            return false;
+        }
+        final String hostKey = getHostKey(serverUri);
+        final HostState state = hostKey != null ? hosts.get(hostKey) : null;
+        return state == null || state.reachable;
+    }
+
+    /**
+     * Records that a request to the host succeeded
+     */
+    public void markReachable(final URI serverUri) {
+        setState(serverUri, true);
+    }
+
+    /**
+     * Records that a request to the host could not connect, so other requests don't wait for it
+     */
+    public void markUnreachable(final URI serverUri) {
+        setState(serverUri, false);
+    }
+
+    /**
+     * Marks the host unreachable if the throwable (or one of its causes) shows that the request never reached it.
+     *
+     * @return true if the throwable was a connection failure
+     */
+    public boolean recordFailure(final URI serverUri, final Throwable throwable) {
+        if (!isConnectionFailure(throwable)) {
+            return false;
+        }
+        markUnreachable(serverUri);
+        return true;
+    }
+
+    /**
+     * Returns true if the throwable (or one of its causes) shows that the connection could not be opened. A timeout
+     * while waiting for the response doesn't count, the server was reached and is only slow.
+     */
+    public static boolean isConnectionFailure(final Throwable throwable) {
+        Throwable cause = throwable;
+        // Guard against cause cycles
+        for (int depth = 0; cause != null && depth < 20; depth++) {
+            if (cause instanceof ConnectException || cause instanceof UnknownHostException
+                    || cause instanceof NoRouteToHostException || cause instanceof ConnectTimeoutException) {
+                return true;
+            }
+            // Socket.connect times out with "connect timed out", reads with "Read timed out"
+            if (cause instanceof SocketTimeoutException && cause.getMessage() != null
+                    && cause.getMessage().toLowerCase(Locale.ROOT).contains("connect")) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    private void setState(final URI serverUri, final boolean reachable) {
+        final String hostKey = getHostKey(serverUri);
+        if (hostKey == null) {
+            return;
+        }
+
+        final boolean cameBack;
+        synchronized (this) {
+            final HostState previous = hosts.put(hostKey, new HostState(reachable, System.currentTimeMillis()));
+            cameBack = reachable && previous != null && !previous.reachable;
+        }
+
+        if (cameBack) {
+            logger.info("setState: " + hostKey + " can be reached again");
+            for (final Listener listener : new ArrayList<Listener>(listeners)) {
+                listener.reachable(serverUri);
+            }
+        } else if (!reachable) {
+            logger.info("setState: " + hostKey + " can't be reached");
+        }
+    }
+
+    /**
+     * Returns true if requests to the uri go through a proxy, either the one the clients are set up with or one the
+     * default ProxySelector picks (the IDE installs its own). A direct connection says nothing about those hosts.
+     */
+    public boolean usesProxy(final URI serverUri) {
+        if (ServerContext.isProxyConfigured()) {
+            return true;
+        }
+
+        final ProxySelector proxySelector = ProxySelector.getDefault();
+        if (proxySelector == null) {
+            return false;
+        }
+        try {
+            for (final Proxy proxy : proxySelector.select(serverUri)) {
+                if (proxy.type() != Proxy.Type.DIRECT) {
+                    return true;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("usesProxy: unable to select the proxy for " + serverUri, e);
+        }
+        return false;
+    }
+
+    /**
+     * Opens (and closes) a connection to the host to see if it can be reached.
+     */
+    protected boolean probe(final String host, final int port, final int timeoutMillis) {
+        final Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            return true;
+        } catch (IOException e) {
+            logger.info("probe: unable to connect to " + host + ":" + port, e);
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore and continue
+            }
+        }
+    }
+
+    private static String getHostKey(final URI serverUri) {
+        if (serverUri == null || StringUtils.isEmpty(serverUri.getHost())) {
+            return null;
+        }
+        return serverUri.getHost().toLowerCase(Locale.ROOT) + ":" + getPort(serverUri);
+    }
+
+    private static int getPort(final URI serverUri) {
+        if (serverUri.getPort() > 0) {
+            return serverUri.getPort();
+        }
+        return "http".equalsIgnoreCase(serverUri.getScheme()) ? 80 : 443;
+    }
+
+    protected String getProperty(final String key) {
+        return PluginServiceProvider.getInstance().isInitialized() ?
+                PluginServiceProvider.getInstance().getPropertyService().getProperty(key) : null;
+    }
+}
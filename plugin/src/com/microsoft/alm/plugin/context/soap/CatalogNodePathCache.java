@@ -0,0 +1,115 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context.soap;
+
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.services.PluginServiceProvider;
+import com.microsoft.alm.plugin.services.PropertyService;
+import org.apache.commons.lang.StringUtils;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is a singleton that remembers where the organizational root and the Team Foundation server instance
+ * are in the catalog of each TFS server. Those paths almost never change, so once they are known the project
+ * collections of a server can be read with a single catalog query.
+ * <p/>
+ * The paths are saved with the plugin properties (see PropertyService.PROP_CATALOG_NODE_PATHS_PREFIX) so they
+ * survive restarts. Callers remove the paths of a server when a query that used them fails.
+ * <p/>
+ * Thread-safety: Thread safe
+ */
+public class CatalogNodePathCache {
+    private static final String SEPARATOR = " ";
+
+    private final Map<String, NodePaths> nodePaths = new HashMap<String, NodePaths>();
+
+    /**
+     * The catalog paths of the organizational root and the server instance of one server.
+     */
+    public static class NodePaths {
+        private final String rootPath;
+        private final String instancePath;
+
+        public NodePaths(final String rootPath, final String instancePath) {
+            assert StringUtils.isNotEmpty(rootPath);
+            assert StringUtils.isNotEmpty(instancePath);
+            this.rootPath = rootPath;
+            this.instancePath = instancePath;
+        }
+
+        public String getRootPath() {
+            return rootPath;
+        }
+
+        public String getInstancePath() {
+            return instancePath;
+        }
+    }
+
+    private static class Holder {
+        private static CatalogNodePathCache INSTANCE = new CatalogNodePathCache();
+    }
+
+    public static CatalogNodePathCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Only tests should create their own cache.
+     */
+    protected CatalogNodePathCache() {
+    }
+
+    /**
+     * Returns the paths saved for the server, or null if they are not known.
+     */
+    public synchronized NodePaths get(final URI serverUri) {
+        final String key = ServerContext.getKey(serverUri);
+        if (!nodePaths.containsKey(key)) {
+            nodePaths.put(key, parse(getProperty(key)));
+        }
+        return nodePaths.get(key);
+    }
+
+    public synchronized void put(final URI serverUri, final NodePaths paths) {
+        assert paths != null;
+        final String key = ServerContext.getKey(serverUri);
+        nodePaths.put(key, paths);
+        setProperty(key, paths.getRootPath() + SEPARATOR + paths.getInstancePath());
+    }
+
+    public synchronized void remove(final URI serverUri) {
+        final String key = ServerContext.getKey(serverUri);
+        nodePaths.put(key, null);
+        setProperty(key, StringUtils.EMPTY);
+    }
+
+    private static NodePaths parse(final String value) {
+        final String[] paths = StringUtils.split(value, SEPARATOR);
+        if (paths == null || paths.length != 2) {
+            return null;
+        }
+        return new NodePaths(paths[0], paths[1]);
+    }
+
+    protected String getProperty(final String key) {
+        final PropertyService propertyService = getPropertyService();
+        return propertyService != null ? propertyService.getProperty(PropertyService.PROP_CATALOG_NODE_PATHS_PREFIX + key) : null;
+    }
+
+    protected void setProperty(final String key, final String value) {
+        final PropertyService propertyService = getPropertyService();
+        if (propertyService != null) {
+            propertyService.setProperty(PropertyService.PROP_CATALOG_NODE_PATHS_PREFIX + key, value);
+        }
+    }
+
+    private PropertyService getPropertyService() {
+        return PluginServiceProvider.getInstance().isInitialized() ?
+                PluginServiceProvider.getInstance().getPropertyService() : null;
+    }
+}
@@ -0,0 +1,254 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context.soap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+
+/**
+ * Reads the response to a catalog QueryNodes request as it arrives. Each catalog resource of one of the requested
+ * types is passed to the listener as soon as its element has been read. Everything else, including the resources
+ * of other types, is skipped without creating strings for it.
+ * <p/>
+ * Thread-safety: Thread safe
+ */
+class CatalogResponseReader {
+    private static final String SOAP = "http://www.w3.org/2003/05/soap-envelope"; //$NON-NLS-1$
+
+    private static final String QUERY_NODES_RESPONSE = "QueryNodesResponse"; //$NON-NLS-1$
+    private static final String QUERY_NODES_RESULT = "QueryNodesResult"; //$NON-NLS-1$
+    private static final String CATALOG_RESOURCES = "CatalogResources"; //$NON-NLS-1$
+    private static final String RESOURCE_TYPE_IDENTIFIER = "ResourceTypeIdentifier"; //$NON-NLS-1$
+    private static final String DISPLAY_NAME = "DisplayName"; //$NON-NLS-1$
+    private static final String PROPERTIES = "Properties"; //$NON-NLS-1$
+    private static final String NODE_REFERENCE_PATHS = "NodeReferencePaths"; //$NON-NLS-1$
+    private static final String KEY = "Key"; //$NON-NLS-1$
+    private static final String VALUE = "Value"; //$NON-NLS-1$
+    private static final String INSTANCE_ID = "InstanceId"; //$NON-NLS-1$
+
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+
+    static {
+        XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+        // Text is only read for the few values that are kept, so there is no need to coalesce all of it
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+    }
+
+    interface ResourceListener {
+        /**
+         * Called for each catalog resource of the requested types
+         *
+         * @param nodePath the first of the node reference paths of the resource
+         */
+        void resourceRead(String resourceType, String displayName, String instanceId, String nodePath);
+    }
+
+    private CatalogResponseReader() {
+    }
+
+    /**
+     * Reads the response and passes the resources of the given types to the listener.
+     *
+     * @return true if the response was a QueryNodes response
+     */
+    static boolean read(final InputStream stream, final String[] resourceTypes, final ResourceListener listener)
+            throws XMLStreamException {
+        final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(stream);
+        try {
+            if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !isSoapElement(reader, "Envelope")) { //$NON-NLS-1$
+                return false;
+            }
+
+            while (nextChild(reader) == XMLStreamConstants.START_ELEMENT) {
+                if (isSoapElement(reader, "Body")) { //$NON-NLS-1$
+                    if (nextChild(reader) == XMLStreamConstants.START_ELEMENT
+                            && QUERY_NODES_RESPONSE.equals(reader.getLocalName())) {
+                        readQueryNodesResponse(reader, resourceTypes, listener);
+                        return true;
+                    }
+                    return false;
+                }
+                // Ignore headers for now.
+                skipElement(reader);
+            }
+            return false;
+        } finally {
+            try {
+                reader.close();
+            } catch (final XMLStreamException e) {
+                // Ignore and continue
+            }
+        }
+    }
+
+    private static void readQueryNodesResponse(final XMLStreamReader reader, final String[] resourceTypes,
+                                               final ResourceListener listener) throws XMLStreamException {
+        while (nextChild(reader) == XMLStreamConstants.START_ELEMENT) {
+            if (!reader.getLocalName().equalsIgnoreCase(QUERY_NODES_RESULT)) {
+                skipElement(reader);
+                continue;
+            }
+
+            while (nextChild(reader) == XMLStreamConstants.START_ELEMENT) {
+                if (!reader.getLocalName().equalsIgnoreCase(CATALOG_RESOURCES)) {
+                    // The catalog nodes and location services are not needed
+                    skipElement(reader);
+                    continue;
+                }
+
+                while (nextChild(reader) == XMLStreamConstants.START_ELEMENT) {
+                    readCatalogResource(reader, resourceTypes, listener);
+                }
+            }
+        }
+    }
+
+    private static void readCatalogResource(final XMLStreamReader reader, final String[] resourceTypes,
+                                            final ResourceListener listener) throws XMLStreamException {
+        final String resourceType = getAttribute(reader, RESOURCE_TYPE_IDENTIFIER);
+        if (!isIncluded(resourceTypes, resourceType)) {
+            skipElement(reader);
+            return;
+        }
+
+        final String displayName = getAttribute(reader, DISPLAY_NAME);
+        String instanceId = null;
+        String nodePath = null;
+        while (nextChild(reader) == XMLStreamConstants.START_ELEMENT) {
+            final String localName = reader.getLocalName();
+            if (localName.equalsIgnoreCase(PROPERTIES)) {
+                instanceId = readInstanceId(reader);
+            } else if (localName.equalsIgnoreCase(NODE_REFERENCE_PATHS)) {
+                nodePath = readFirstString(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+
+        listener.resourceRead(resourceType, displayName, instanceId, nodePath);
+    }
+
+    /**
+     * Reads the properties of a resource and returns the value of the InstanceId property. The other values
+     * are skipped.
+     */
+    private static String readInstanceId(final XMLStreamReader reader) throws XMLStreamException {
+        String instanceId = null;
+        // Each property is a KeyValueOfStringString element
+        while (nextChild(reader) == XMLStreamConstants.START_ELEMENT) {
+            boolean isInstanceId = false;
+            while (nextChild(reader) == XMLStreamConstants.START_ELEMENT) {
+                final String localName = reader.getLocalName();
+                if (localName.equalsIgnoreCase(KEY)) {
+                    isInstanceId = textEqualsIgnoreCase(reader, INSTANCE_ID);
+                } else if (isInstanceId && instanceId == null && localName.equalsIgnoreCase(VALUE)) {
+                    instanceId = reader.getElementText();
+                } else {
+                    skipElement(reader);
+                }
+            }
+        }
+        return instanceId;
+    }
+
+    private static String readFirstString(final XMLStreamReader reader) throws XMLStreamException {
+        String first = null;
+        while (nextChild(reader) == XMLStreamConstants.START_ELEMENT) {
+            if (first == null) {
+                first = reader.getElementText();
+            } else {
+                skipElement(reader);
+            }
+        }
+        return first;
+    }
+
+    private static String getAttribute(final XMLStreamReader reader, final String localName) {
+        final int attributeCount = reader.getAttributeCount();
+        for (int i = 0; i < attributeCount; i++) {
+            if (localName.equalsIgnoreCase(reader.getAttributeLocalName(i))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isIncluded(final String[] resourceTypes, final String resourceType) {
+        for (final String included : resourceTypes) {
+            if (included.equalsIgnoreCase(resourceType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSoapElement(final XMLStreamReader reader, final String localName) {
+        return localName.equals(reader.getLocalName()) && SOAP.equals(reader.getNamespaceURI());
+    }
+
+    /**
+     * Moves to the next child element of the current element, or to the end of the current element if there are
+     * no more children. Returns the event the reader is on.
+     */
+    private static int nextChild(final XMLStreamReader reader) throws XMLStreamException {
+        while (true) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_ELEMENT
+                    || event == XMLStreamConstants.END_DOCUMENT) {
+                return event;
+            }
+        }
+    }
+
+    /**
+     * Compares the text of the current element to the value without creating a string for it, and moves to the
+     * end of the element.
+     */
+    private static boolean textEqualsIgnoreCase(final XMLStreamReader reader, final String value) throws XMLStreamException {
+        int matched = 0;
+        boolean equal = true;
+        int event;
+        while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                skipElement(reader);
+                equal = false;
+            } else if (equal && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                final char[] text = reader.getTextCharacters();
+                final int start = reader.getTextStart();
+                final int length = reader.getTextLength();
+                for (int i = 0; i < length && equal; i++) {
+                    equal = matched < value.length()
+                            && Character.toLowerCase(text[start + i]) == Character.toLowerCase(value.charAt(matched++));
+                }
+            }
+        }
+        return equal && matched == value.length();
+    }
+
+    /**
+     * Advances the {@link XMLStreamReader} until it has read the end of the
+     * current element. Useful when an element is encountered while reading a
+     * stream, and it should be skipped.
+     *
+     * @param reader the stream reader to read from (not null).
+     */
+    private static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+        /*
+         * The caller opened the element, so start at a depth of 1 and return
+         * once the end element that brings it back to 0 has been read.
+         */
+        int elementDepth = 1;
+        while (elementDepth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                elementDepth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                elementDepth--;
+            }
+        }
+    }
+}
@@ -9,5 +9,14 @@ import java.util.List;
 
 public interface CatalogService {
 
+    interface CollectionListener {
+        void collectionRead(TeamProjectCollectionReference collection);
+    }
+
     List<TeamProjectCollectionReference> getProjectCollections();
+
+    /**
+     * Reads the project collections, passing each one to the listener as soon as it has been read from the response
+     */
+    void getProjectCollections(CollectionListener listener);
 }
@@ -13,23 +13,23 @@ import org.apache.http.HttpStatus;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicHeader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.UUID;
 import java.util.zip.GZIPInputStream;
 
@@ -39,27 +39,35 @@ public class CatalogServiceImpl implements CatalogService {
     private final ServerContext context;
     private final URI endpointUri;
 
-    private final static String SOAP = "http://www.w3.org/2003/05/soap-envelope"; //$NON-NLS-1$
-
     private static final String ENDPOINT_PATH = "/TeamFoundation/Administration/v3.0/CatalogService.asmx"; //$NON-NLS-1$
 
     private static final int QUERY_OPTIONS_NONE = 0;
     private static final int QUERY_OPTIONS_EXPAND_DEPENDENCIES = 1;
 
     private static final String SINGLE_RECURSE_STAR = "*";
+    private static final String FULL_RECURSE_STARS = "**";
 
-    private static final String QUERY_NODE_RESPONSE = "QueryNodesResponse"; //$NON-NLS-1$
+    // The path of the organizational root is the same on every server
+    private static final String ORGANIZATIONAL_ROOT_PATH = "3eYRYkJOok6GHrKam0AcAA=="; //$NON-NLS-1$
 
     private static final String ORGANIZATIONAL_ROOT = "69A51C5E-C093-447e-A177-A09E47A60974"; //$NON-NLS-1$
     private static final String TEAM_FOUNDATION_SERVER_INSTANCE = "b36f1bda-df2d-482b-993a-f194a31a1fa2"; //$NON-NLS-1$
     private static final String PROJECT_COLLECTION = "26338D9E-D437-44aa-91F2-55880A328B54"; //$NON-NLS-1$
 
-    private static final XMLInputFactory XML_INPUT_FACTORY;
-
-    static {
-        XML_INPUT_FACTORY = XMLInputFactory.newInstance();
-        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
-    }
+    // The request envelope is written from these parts, which are only encoded once
+    private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+    private static final ContentType SOAP_CONTENT_TYPE = ContentType.create("application/soap+xml", UTF8); //$NON-NLS-1$
+    private static final byte[] QUERY_START = ("<?xml version='1.0' encoding='UTF-8'?>" //$NON-NLS-1$
+            + "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">" //$NON-NLS-1$
+            + "<soap:Body xmlns=\"http://microsoft.com/webservices/\">" //$NON-NLS-1$
+            + "<QueryNodes><pathSpecs><string>").getBytes(UTF8); //$NON-NLS-1$
+    private static final byte[] PATH_SPECS_END = "</string></pathSpecs>".getBytes(UTF8); //$NON-NLS-1$
+    private static final byte[] FILTERS_START = "<resourceTypeFilters>".getBytes(UTF8); //$NON-NLS-1$
+    private static final byte[] GUID_START = "<guid>".getBytes(UTF8); //$NON-NLS-1$
+    private static final byte[] GUID_END = "</guid>".getBytes(UTF8); //$NON-NLS-1$
+    private static final byte[] FILTERS_END = "</resourceTypeFilters>".getBytes(UTF8); //$NON-NLS-1$
+    private static final byte[] QUERY_OPTIONS_START = "<queryOptions>".getBytes(UTF8); //$NON-NLS-1$
+    private static final byte[] QUERY_END = "</queryOptions></QueryNodes></soap:Body></soap:Envelope>".getBytes(UTF8); //$NON-NLS-1$
 
     public CatalogServiceImpl(final ServerContext context) {
         assert context != null;
@@ -70,57 +78,219 @@ public class CatalogServiceImpl implements CatalogService {
     }
 
     public List<TeamProjectCollectionReference> getProjectCollections() {
+        final List<TeamProjectCollectionReference> projectCollections = new ArrayList<TeamProjectCollectionReference>();
+        getProjectCollections(new CollectionListener() {
+            @Override
+            public void collectionRead(final TeamProjectCollectionReference collection) {
+                projectCollections.add(collection);
+            }
+        });
+        return projectCollections;
+    }
+
+    /**
+     * Reads the project collections with a single query when the catalog paths of the server are known or can be
+     * found with one recursive query, and only walks the catalog one level at a time if neither works.
+     */
+    public void getProjectCollections(final CollectionListener listener) {
+        final CollectionReader collectionReader = new CollectionReader(listener);
+        final URI serverUri = context.getUri();
+        final CatalogNodePathCache.NodePaths savedPaths = CatalogNodePathCache.getInstance().get(serverUri);
+        if (savedPaths != null) {
+            try {
+                queryProjectCollections(savedPaths.getInstancePath(), collectionReader);
+                if (collectionReader.getCount() > 0) {
+                    return;
+                }
+                logger.info("getProjectCollections: no collections found with the saved catalog paths");
+            } catch (TeamServicesException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.info("getProjectCollections: query with the saved catalog paths failed", e);
+            }
+            // The paths have changed or the server is failing, find them again
+            CatalogNodePathCache.getInstance().remove(serverUri);
+        }
+
+        if (!queryProjectCollectionsRecursively(collectionReader)) {
+            queryProjectCollectionsByLevel(collectionReader);
+        }
+    }
+
+    /**
+     * Reads the server instance and its project collections with one query for everything under the
+     * organizational root. Returns false if the server didn't answer that query as expected.
+     */
+    private boolean queryProjectCollectionsRecursively(final CollectionReader collectionReader) {
+        final String[] instancePath = new String[1];
+        // Collections read before the instance they belong to (normally parents come first)
+        final List<CatalogResource> pending = new ArrayList<CatalogResource>();
+        final boolean answered;
+        try {
+            final QueryData query = new QueryData(ORGANIZATIONAL_ROOT_PATH + FULL_RECURSE_STARS, QUERY_OPTIONS_NONE,
+                    TEAM_FOUNDATION_SERVER_INSTANCE, PROJECT_COLLECTION);
+            query.filterOnServer = true;
+            answered = queryNodes(query, new CatalogResponseReader.ResourceListener() {
+                @Override
+                public void resourceRead(final String resourceType, final String displayName, final String instanceId, final String nodePath) {
+                    if (TEAM_FOUNDATION_SERVER_INSTANCE.equalsIgnoreCase(resourceType)) {
+                        if (instancePath[0] == null && nodePath != null) {
+                            instancePath[0] = nodePath;
+                            for (final CatalogResource collection : pending) {
+                                readCollectionUnderInstance(collectionReader, instancePath[0], collection.displayName, collection.instanceId, collection.nodePath);
+                            }
+                            pending.clear();
+                        }
+                    } else if (instancePath[0] != null) {
+                        readCollectionUnderInstance(collectionReader, instancePath[0], displayName, instanceId, nodePath);
+                    } else {
+                        pending.add(new CatalogResource(displayName, instanceId, nodePath));
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.info("queryProjectCollectionsRecursively: recursive query failed, querying each level", e);
+            return false;
+        }
+
+        if (!answered || instancePath[0] == null) {
+            return false;
+        }
+        CatalogNodePathCache.getInstance().put(context.getUri(), new CatalogNodePathCache.NodePaths(ORGANIZATIONAL_ROOT_PATH, instancePath[0]));
+        return true;
+    }
+
+    private static void readCollectionUnderInstance(final CollectionReader collectionReader, final String instancePath,
+                                                    final String displayName, final String instanceId, final String nodePath) {
+        if (nodePath != null && nodePath.startsWith(instancePath)) {
+            collectionReader.resourceRead(PROJECT_COLLECTION, displayName, instanceId, nodePath);
+        }
+    }
+
+    /**
+     * Reads the organizational root, then the server instance under it, then the project collections under that.
+     */
+    private void queryProjectCollectionsByLevel(final CollectionReader collectionReader) {
+        final CatalogResource organizationRoot = queryFirstNode(new QueryData(SINGLE_RECURSE_STAR, QUERY_OPTIONS_NONE, ORGANIZATIONAL_ROOT));
+        final CatalogResource foundationServer = queryFirstNode(new QueryData(organizationRoot.nodePath + SINGLE_RECURSE_STAR, QUERY_OPTIONS_EXPAND_DEPENDENCIES, TEAM_FOUNDATION_SERVER_INSTANCE));
+
+        queryProjectCollections(foundationServer.nodePath, collectionReader);
+        CatalogNodePathCache.getInstance().put(context.getUri(),
+                new CatalogNodePathCache.NodePaths(organizationRoot.nodePath, foundationServer.nodePath));
+    }
+
+    /**
+     * Reads the project collections under the server instance with the given catalog path.
+     */
+    private void queryProjectCollections(final String instancePath, final CollectionReader collectionReader) {
+        final QueryData queryForProjectCollections = new QueryData(instancePath + SINGLE_RECURSE_STAR, QUERY_OPTIONS_EXPAND_DEPENDENCIES, PROJECT_COLLECTION);
+        //If auth fails, nothing is read
+        if (!queryNodes(queryForProjectCollections, collectionReader)) {
+            logger.warn("queryProjectCollections no response");
+            throw new TeamServicesException(TeamServicesException.KEY_TFS_AUTH_FAILED);
+        }
+    }
 
-        final QueryData queryForOrganizationRoot = new QueryData(SINGLE_RECURSE_STAR, QUERY_OPTIONS_NONE, ORGANIZATIONAL_ROOT);
-        final CatalogData catalogDataOrganizationRoot = getCatalogDataFromServer(queryForOrganizationRoot);
+    /**
+     * Returns the first resource the query finds that has a node path.
+     */
+    private CatalogResource queryFirstNode(final QueryData queryData) {
+        final CatalogResource[] first = new CatalogResource[1];
+        final boolean answered = queryNodes(queryData, new CatalogResponseReader.ResourceListener() {
+            @Override
+            public void resourceRead(final String resourceType, final String displayName, final String instanceId, final String nodePath) {
+                if (first[0] == null && nodePath != null) {
+                    first[0] = new CatalogResource(displayName, instanceId, nodePath);
+                }
+            }
+        });
 
-        //If auth fails, you can get here and catalogDataOrganizationRoot is null
-        if (catalogDataOrganizationRoot == null) {
-            logger.warn("getProjectCollections catalogDataOrganizationRoot is null");
+        //If auth fails, you can get here without a response
+        if (!answered) {
+            logger.warn("queryFirstNode no response for " + queryData.pathSpecs);
             throw new TeamServicesException(TeamServicesException.KEY_TFS_AUTH_FAILED);
         }
+        if (first[0] == null) {
+            throw new RuntimeException("The catalog has no node of type " + queryData.filterOnResourceTypes[0]);
+        }
+        return first[0];
+    }
 
-        final CatalogResource organizationRoot = catalogDataOrganizationRoot.catalogResources.get(0);
+    /**
+     * Turns project collection resources into collection references for the listener, passing each collection
+     * only once even if more than one query reads it.
+     */
+    private class CollectionReader implements CatalogResponseReader.ResourceListener {
+        private final CollectionListener listener;
+        private final Set<String> instanceIds = new HashSet<String>();
 
-        final QueryData queryForFoundationServer = new QueryData(organizationRoot.nodeReferencePaths[0] + SINGLE_RECURSE_STAR, QUERY_OPTIONS_EXPAND_DEPENDENCIES, TEAM_FOUNDATION_SERVER_INSTANCE);
-        final CatalogData catalogDataFoundationServer = getCatalogDataFromServer(queryForFoundationServer);
-        final CatalogResource foundationServer = catalogDataFoundationServer.catalogResources.get(0);
+        CollectionReader(final CollectionListener listener) {
+            assert listener != null;
+            this.listener = listener;
+        }
 
-        final QueryData queryForProjectCollections = new QueryData(foundationServer.nodeReferencePaths[0] + SINGLE_RECURSE_STAR, QUERY_OPTIONS_EXPAND_DEPENDENCIES, PROJECT_COLLECTION);
-        final CatalogData catalogDataProjectCollections = getCatalogDataFromServer(queryForProjectCollections);
+        int getCount() {
+            return instanceIds.size();
+        }
+
+        @Override
+        public void resourceRead(final String resourceType, final String displayName, final String instanceId, final String nodePath) {
+            if (instanceId == null || !instanceIds.add(instanceId.toLowerCase(Locale.ROOT))) {
+                return;
+            }
 
-        final List<TeamProjectCollectionReference> projectCollections = new ArrayList<TeamProjectCollectionReference>(catalogDataProjectCollections.catalogResources.size());
-        for (CatalogResource catalogResource : catalogDataProjectCollections.catalogResources) {
             final TeamProjectCollectionReference collectionReference = new TeamProjectCollectionReference();
 
-            collectionReference.setId(UUID.fromString(catalogResource.instanceId));
+            collectionReference.setId(UUID.fromString(instanceId));
 
-            collectionReference.setName(catalogResource.displayName);
+            collectionReference.setName(displayName);
 
-            final String collectionPath = "_apis/projectCollections/" + catalogResource.instanceId; //$NON-NLS-1$
+            final String collectionPath = "_apis/projectCollections/" + instanceId; //$NON-NLS-1$
             final URI collectionUri = UrlHelper.resolveEndpointUri(context.getUri(), collectionPath);
             collectionReference.setUrl(collectionUri.toString());
 
-            projectCollections.add(collectionReference);
+            listener.collectionRead(collectionReference);
         }
-        return projectCollections;
     }
 
     private class QueryData {
         final String pathSpecs;
         final int queryOptions;
-        final String filterOnResourceType;
+        final String[] filterOnResourceTypes;
+        // If true the server is asked to return only the resource types, otherwise they are only filtered when read
+        boolean filterOnServer = false;
 
-        QueryData(final String pathSpecs, final int queryOptions, final String filterOnResourceType) {
+        QueryData(final String pathSpecs, final int queryOptions, final String... filterOnResourceTypes) {
             this.pathSpecs = pathSpecs;
             this.queryOptions = queryOptions;
-            this.filterOnResourceType = filterOnResourceType;
+            this.filterOnResourceTypes = filterOnResourceTypes;
         }
     }
 
-    private CatalogData getCatalogDataFromServer(final QueryData queryData) {
+    /**
+     * The parts of a catalog resource that are kept when it can't be passed on right away
+     */
+    private static class CatalogResource {
+        final String displayName;
+        final String instanceId;
+        final String nodePath;
+
+        CatalogResource(final String displayName, final String instanceId, final String nodePath) {
+            this.displayName = displayName;
+            this.instanceId = instanceId;
+            this.nodePath = nodePath;
+        }
+    }
+
+    /**
+     * Sends the query and passes the resources it finds to the listener while the response is read.
+     *
+     * @return false if the query could not be sent (no http client)
+     */
+    private boolean queryNodes(final QueryData queryData, final CatalogResponseReader.ResourceListener listener) {
         final HttpPost httpPost = new HttpPost(endpointUri.toString());
-        httpPost.setEntity(generateSoapQuery(queryData.pathSpecs, queryData.queryOptions));
+        httpPost.setEntity(generateSoapQuery(queryData.pathSpecs,
+                queryData.filterOnServer ? queryData.filterOnResourceTypes : null, queryData.queryOptions));
 
         httpPost.addHeader(new BasicHeader("Accept-Encoding", "gzip")); //$NON-NLS-1$ //$NON-NLS-2$
         httpPost.addHeader(new BasicHeader("Accept-Language", localeToRFC5646LanguageTag(Locale.getDefault()))); //$NON-NLS-1$
@@ -128,25 +298,23 @@ public class CatalogServiceImpl implements CatalogService {
 
         try {
             if (context.getHttpClient() == null) {
-                logger.warn("getCatalogDataFromServer context.getHttpClient() is null");
-                return null;
+                logger.warn("queryNodes context.getHttpClient() is null");
+                return false;
             }
             final HttpResponse httpResponse = context.getHttpClient().execute(httpPost);
             final int responseStatusCode = httpResponse.getStatusLine().getStatusCode();
 
-            CatalogData catalogData;
             if (responseStatusCode == HttpStatus.SC_OK) {
-                catalogData = new CatalogData(queryData.filterOnResourceType);
-                readResponse(httpResponse, catalogData);
+                readResponse(httpResponse, queryData.filterOnResourceTypes, listener);
+                return true;
             } else {
                 throw new HttpResponseException(responseStatusCode, httpResponse.getStatusLine().toString());
             }
-            return catalogData;
         } catch (ClientProtocolException e) {
-            logger.warn("getCatalogDataFromServer", e);
+            logger.warn("queryNodes", e);
             throw new RuntimeException(e);
         } catch (IOException e) {
-            logger.warn("getCatalogDataFromServer", e);
+            logger.warn("queryNodes", e);
             throw new RuntimeException(e);
         } finally {
             httpPost.releaseConnection();
@@ -170,7 +338,8 @@ public class CatalogServiceImpl implements CatalogService {
         return result;
     }
 
-    private void readResponse(final HttpResponse httpResponse, final ElementDeserializable readFromElement) {
+    private void readResponse(final HttpResponse httpResponse, final String[] resourceTypes,
+                                 final CatalogResponseReader.ResourceListener listener) {
 
         InputStream responseStream = null;
         try {
@@ -182,41 +351,12 @@ public class CatalogServiceImpl implements CatalogService {
             } else {
                 responseStream = httpResponse.getEntity().getContent();
             }
-            XMLStreamReader reader = null;
-            try {
-
-                reader = XML_INPUT_FACTORY.createXMLStreamReader(responseStream);
-
-                final QName envelopeQName = new QName(SOAP, "Envelope", "soap"); //$NON-NLS-1$ //$NON-NLS-2$
-                final QName headerQName = new QName(SOAP, "Header", "soap"); //$NON-NLS-1$ //$NON-NLS-2$
-                final QName bodyQName = new QName(SOAP, "Body", "soap"); //$NON-NLS-1$ //$NON-NLS-2$
-
-                // Read the envelope.
-                if (reader.nextTag() == XMLStreamConstants.START_ELEMENT && reader.getName().equals(envelopeQName)) {
-                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
-                        if (reader.getName().equals(headerQName)) {
-                            // Ignore headers for now.
-                            readUntilElementEnd(reader);
-                        } else if (reader.getName().equals(bodyQName)) {
-                            if (reader.nextTag() == XMLStreamConstants.START_ELEMENT && reader.getName().getLocalPart().equals(QUERY_NODE_RESPONSE)) {
-                                readFromElement.readFromElement(reader);
-                                return;
-                            }
-                        }
-                    }
-                }
-            } catch (final XMLStreamException e) {
-                logger.warn("readResponse", e);
-                throw new RuntimeException(e);
-            } finally {
-                if (reader != null) {
-                    try {
-                        reader.close();
-                    } catch (final XMLStreamException e) {
-                        // Ignore and continue
-                    }
-                }
+            if (!CatalogResponseReader.read(responseStream, resourceTypes, listener)) {
+                logger.warn("readResponse: the response is not a QueryNodes response");
             }
+        } catch (final XMLStreamException e) {
+            logger.warn("readResponse", e);
+            throw new RuntimeException(e);
         } catch (IOException e) {
             logger.warn("readResponse", e);
             throw new RuntimeException(e);
@@ -231,279 +371,28 @@ public class CatalogServiceImpl implements CatalogService {
         }
     }
 
-    private interface ElementDeserializable {
-        void readFromElement(final XMLStreamReader reader) throws XMLStreamException;
-    }
-
-    private class CatalogData implements ElementDeserializable {
-
-        private final String filterOnResourceType;
-
-        private final List<CatalogResource> catalogResources = new ArrayList<CatalogResource>();
-
-        private CatalogData(final String filterOnResourceType) {
-            this.filterOnResourceType = filterOnResourceType;
-        }
-
-        @Override
-        public void readFromElement(final XMLStreamReader reader) throws XMLStreamException {
-            String localName;
-            int event;
-
-            do {
-                event = reader.next();
-
-                if (event == XMLStreamConstants.START_ELEMENT) {
-                    localName = reader.getLocalName();
-
-                    if (localName.equalsIgnoreCase("QueryNodesResult")) { //$NON-NLS-1$
-
-                        String localName0;
-                        int event0;
-
-                        do {
-                            event0 = reader.next();
-                            if (event0 == XMLStreamConstants.START_ELEMENT) {
-                                localName0 = reader.getLocalName();
-
-                                if (localName0.equalsIgnoreCase("CatalogResources")) { //$NON-NLS-1$
-                                    int event1;
-
-                                    do {
-                                        event1 = reader.nextTag();
-
-                                        if (event1 == XMLStreamConstants.START_ELEMENT) {
-                                            CatalogResource catalogResource = new CatalogResource();
-                                            catalogResource.readFromElement(reader);
-                                            if (filterOnResourceType.equalsIgnoreCase(catalogResource.resourceTypeIdentifier)) {
-                                                catalogResources.add(catalogResource);
-                                            }
-                                        }
-                                    }
-                                    while (event1 != XMLStreamConstants.END_ELEMENT);
-                                } else {
-                                    // Read the unknown child element until its end
-                                    readUntilElementEnd(reader);
-                                }
-                            }
-                        }
-                        while (event0 != XMLStreamConstants.END_ELEMENT);
-                    } else {
-                        // Read the unknown child element until its end
-                        readUntilElementEnd(reader);
-                    }
-                }
-            }
-            while (event != XMLStreamConstants.END_ELEMENT);
-        }
-    }
-
-
-    private class CatalogResource implements ElementDeserializable {
-        String displayName;
-        String resourceTypeIdentifier;
-        boolean matchedQuery;
-
-        String instanceId;
-
-        String[] nodeReferencePaths;
-
-        public void readFromElement(final XMLStreamReader reader)
-                throws XMLStreamException {
-            String localName;
-
-            // Attributes
-            final int attributeCount = reader.getAttributeCount();
-            String attributeValue;
-
-            for (int i = 0; i < attributeCount; i++) {
-                localName = reader.getAttributeLocalName(i);
-                attributeValue = reader.getAttributeValue(i);
-
-                if (localName.equalsIgnoreCase("DisplayName")) { //$NON-NLS-1$
-                    this.displayName = attributeValue;
-                } else if (localName.equalsIgnoreCase("ResourceTypeIdentifier")) { //$NON-NLS-1$
-                    this.resourceTypeIdentifier = attributeValue;
-                } else if (localName.equalsIgnoreCase("MatchedQuery")) { //$NON-NLS-1$
-                    this.matchedQuery = Boolean.valueOf(attributeValue);
-                }
-                // Ignore unknown attributes.
-            }
-
-            // Elements
-            int event;
-
-            do {
-                event = reader.next();
-
-                if (event == XMLStreamConstants.START_ELEMENT) {
-                    localName = reader.getLocalName();
-
-                    if (localName.equalsIgnoreCase("Properties")) { //$NON-NLS-1$
-                    /*
-                     * The element type is an array.
-                     */
-                        int event0;
-
-                        do {
-                            event0 = reader.nextTag();
-
-                            if (event0 == XMLStreamConstants.START_ELEMENT) {
-                                KeyValueOfStringString keyValueOfStringString = new KeyValueOfStringString();
-                                keyValueOfStringString.readFromElement(reader);
-                                if (keyValueOfStringString.getKey().equalsIgnoreCase("InstanceId")) { //$NON-NLS-1$
-                                    instanceId = keyValueOfStringString.getValue();
-                                }
-                            }
-                        }
-                        while (event0 != XMLStreamConstants.END_ELEMENT);
-
-                    } else if (localName.equalsIgnoreCase("NodeReferencePaths")) { //$NON-NLS-1$
-                    /*
-                     * The element type is an array.
-                     */
-                        int event0;
-                        final List<String> list0 = new ArrayList<String>();
-
-                        do {
-                            event0 = reader.nextTag();
-
-                            if (event0 == XMLStreamConstants.START_ELEMENT) {
-                                list0.add(reader.getElementText());
-                            }
-                        }
-                        while (event0 != XMLStreamConstants.END_ELEMENT);
-
-                        this.nodeReferencePaths = list0.toArray(new String[list0.size()]);
-                    } else {
-                        // Read the unknown child element until its end
-                        readUntilElementEnd(reader);
-                    }
-                }
-            }
-            while (event != XMLStreamConstants.END_ELEMENT);
-        }
-    }
-
-    private class KeyValueOfStringString implements ElementDeserializable {
-        String key;
-        String value;
-
-        KeyValueOfStringString() {
-            super();
-        }
-
-        String getKey() {
-            return this.key;
-        }
-
-        String getValue() {
-            return this.value;
-        }
-
-        public void readFromElement(final XMLStreamReader reader)
-                throws XMLStreamException {
-            String localName;
-
-            // This object uses no attributes
-
-            // Elements
-            int event;
-
-            do {
-                event = reader.next();
-
-                if (event == XMLStreamConstants.START_ELEMENT) {
-                    localName = reader.getLocalName();
-
-                    if (localName.equalsIgnoreCase("Key")) { //$NON-NLS-1$
-                        this.key = reader.getElementText();
-                    } else if (localName.equalsIgnoreCase("Value")) { //$NON-NLS-1$
-                        this.value = reader.getElementText();
-                    } else {
-                        // Read the unknown child element until its end
-                        readUntilElementEnd(reader);
-                    }
-                }
+    private static ByteArrayEntity generateSoapQuery(final String pathSpecs, final String[] resourceTypeFilters, final int queryOptions) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream(QUERY_START.length + QUERY_END.length + 256);
+        write(stream, QUERY_START);
+        write(stream, pathSpecs.getBytes(UTF8));
+        write(stream, PATH_SPECS_END);
+        if (resourceTypeFilters != null) {
+            write(stream, FILTERS_START);
+            for (final String resourceTypeFilter : resourceTypeFilters) {
+                write(stream, GUID_START);
+                write(stream, resourceTypeFilter.getBytes(UTF8));
+                write(stream, GUID_END);
             }
-            while (event != XMLStreamConstants.END_ELEMENT);
+            write(stream, FILTERS_END);
         }
-    }
+        write(stream, QUERY_OPTIONS_START);
+        write(stream, Integer.toString(queryOptions).getBytes(UTF8));
+        write(stream, QUERY_END);
 
-    /**
-     * Advances the {@link XMLStreamReader} until it has read the end of the
-     * current element. Useful when an element is encountered while reading a
-     * stream, and it should be skipped.
-     *
-     * @param reader the stream reader to read from (not null).
-     */
-    private static void readUntilElementEnd(final XMLStreamReader reader)
-            throws XMLStreamException {
-        int event = reader.getEventType();
-
-        /*
-         * Start element depth at 1, increment when an element is started (not
-         * including the element that we start with), decrement when an element
-         * is ended, and when it goes to 0 we've read the end of the original
-         * reader's element.
-         */
-        int elementDepth = 1;
-
-        boolean firstTime = true;
-        while (true) {
-            switch (event) {
-                case XMLStreamConstants.START_ELEMENT:
-                    /*
-                     * Don't increment depth the first time through, because the
-                     * caller opened the element.
-                     */
-                    if (firstTime) {
-                        firstTime = false;
-                    } else {
-                        elementDepth++;
-                    }
-
-                    break;
-                case XMLStreamConstants.END_ELEMENT:
-                    elementDepth--;
-
-                    if (elementDepth < 1) {
-                        /*
-                         * We just read the end element for the original
-                         * element.
-                         */
-                        return;
-                    }
-
-                    break;
-                default:
-                    /*
-                     * Things like characters, comments, attributes, etc. Ignore
-                     * them all.
-                     */
-            }
-
-            event = reader.next();
-        }
+        return new ByteArrayEntity(stream.toByteArray(), SOAP_CONTENT_TYPE);
     }
 
-
-    private static StringEntity generateSoapQuery(final String pathSpecs, final int queryOptions) {
-        final StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append("<?xml version='1.0' encoding='UTF-8'?>"); //$NON-NLS-1$
-        stringBuilder.append("<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">");//$NON-NLS-1$
-        stringBuilder.append("<soap:Body xmlns=\"http://microsoft.com/webservices/\">");//$NON-NLS-1$
-        stringBuilder.append("<QueryNodes>");//$NON-NLS-1$
-        stringBuilder.append("<pathSpecs>");//$NON-NLS-1$
-        stringBuilder.append("<string>" + pathSpecs + "</string>");//$NON-NLS-1$ //$NON-NLS-2$
-        stringBuilder.append("</pathSpecs>");//$NON-NLS-1$
-        stringBuilder.append("<queryOptions>" + queryOptions + "</queryOptions>");//$NON-NLS-1$
-        stringBuilder.append("</QueryNodes>");//$NON-NLS-1$
-        stringBuilder.append("</soap:Body>");//$NON-NLS-1$
-        stringBuilder.append("</soap:Envelope>");//$NON-NLS-1$
-
-        final StringEntity stringEntity = new StringEntity(stringBuilder.toString(), ContentType.create("application/soap+xml", "utf-8"));//$NON-NLS-1$ //$NON-NLS-2$
-        return stringEntity;
+    private static void write(final ByteArrayOutputStream stream, final byte[] bytes) {
+        stream.write(bytes, 0, bytes.length);
     }
-
 }
@@ -9,12 +9,14 @@ import com.microsoft.alm.plugin.authentication.VsoAuthenticationProvider;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextBuilder;
 import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.plugin.context.ServerReachability;
 import com.microsoft.visualstudio.services.account.webapi.AccountHttpClient;
 import com.microsoft.visualstudio.services.account.webapi.model.Account;
 import com.microsoft.visualstudio.services.account.webapi.model.Profile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -51,6 +53,11 @@ public class AccountLookupOperation extends Operation {
                 return;
             }
 
+            final URI accountsUri = UrlHelper.createUri(VsoAuthenticationProvider.VSO_AUTH_URL);
+            if (!ServerReachability.getInstance().isReachable(accountsUri)) {
+                throw new TeamServicesException(TeamServicesException.KEY_SERVER_UNREACHABLE);
+            }
+
             final Profile me = VsoAuthenticationProvider.getInstance().getAuthenticatedUserProfile();
             final ServerContext vsoDeploymentContext = ServerContextManager.getInstance().get(VsoAuthenticationProvider.VSO_AUTH_URL);
             if (!VsoAuthenticationProvider.getInstance().isAuthenticated() ||
@@ -60,8 +67,7 @@ public class AccountLookupOperation extends Operation {
                 throw new TeamServicesException(TeamServicesException.KEY_VSO_AUTH_FAILED);
             }
 
-            final AccountHttpClient accountHttpClient = new AccountHttpClient(vsoDeploymentContext.getClient(),
-                    UrlHelper.createUri(VsoAuthenticationProvider.VSO_AUTH_URL));
+            final AccountHttpClient accountHttpClient = new AccountHttpClient(vsoDeploymentContext.getClient(), accountsUri);
             List<Account> accounts = accountHttpClient.getAccounts(me.getId());
             final AccountLookupResults results = new AccountLookupResults();
             for (final Account a : accounts) {
@@ -75,6 +81,10 @@ public class AccountLookupOperation extends Operation {
             onLookupResults(results);
             onLookupCompleted();
         } catch (Throwable ex) {
+            if (ServerReachability.getInstance().recordFailure(UrlHelper.createUri(VsoAuthenticationProvider.VSO_AUTH_URL), ex)) {
+                terminate(new TeamServicesException(TeamServicesException.KEY_SERVER_UNREACHABLE, ex));
+                return;
+            }
             terminate(ex);
         }
     }
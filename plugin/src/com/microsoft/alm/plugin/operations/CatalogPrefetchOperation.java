@@ -0,0 +1,169 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.common.utils.UrlHelper;
+import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
+import com.microsoft.alm.plugin.authentication.TfsAuthenticationProvider;
+import com.microsoft.alm.plugin.authentication.VsoAuthenticationProvider;
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextBuilder;
+import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.visualstudio.services.account.webapi.AccountHttpClient;
+import com.microsoft.visualstudio.services.account.webapi.model.Account;
+import com.microsoft.visualstudio.services.account.webapi.model.Profile;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Use this operation to fill the repository catalog ahead of time, so the checkout and import dialogs can show
+ * the user's repositories as soon as they open. It creates the clients for the saved server contexts, refreshes
+ * the account list of the signed in Team Services user and then refreshes the catalog for those accounts and
+ * for every TFS server the user has saved credentials for.
+ * <p/>
+ * The operation runs as BACKGROUND work. Unlike the dialogs it never signs the user out: if the saved
+ * credentials don't work, the catalog is simply left as it was.
+ */
+public class CatalogPrefetchOperation extends Operation {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogPrefetchOperation.class);
+
+    private volatile Operation activeOperation;
+
+    public CatalogPrefetchOperation() {
+        setPriority(Priority.BACKGROUND);
+    }
+
+    public void doWork(final Inputs inputs) {
+        onLookupStarted();
+
+        try {
+            final List<ServerContext> contexts = new ArrayList<ServerContext>();
+            final List<ServerContext> savedContexts = prepareSavedContexts();
+
+            final AuthenticationInfo vsoAuthenticationInfo = VsoAuthenticationProvider.getInstance().getAuthenticationInfo();
+            if (vsoAuthenticationInfo != null && !isCancelled()) {
+                contexts.addAll(lookupAccounts(vsoAuthenticationInfo));
+            }
+
+            contexts.addAll(getTfsServerContexts(savedContexts,
+                    TfsAuthenticationProvider.getInstance().getAuthenticationInfo()));
+
+            if (!contexts.isEmpty() && !isCancelled()) {
+                final ServerContextLookupOperation lookupOperation =
+                        new ServerContextLookupOperation(contexts, ServerContextLookupOperation.ContextScope.REPOSITORY);
+                lookupOperation.setUseCatalog(true);
+                lookupOperation.setPriority(Priority.BACKGROUND);
+                activeOperation = lookupOperation;
+                if (!isCancelled()) {
+                    lookupOperation.doWork(Operation.EMPTY_INPUTS);
+                }
+            }
+        } catch (Throwable t) {
+            // The dialogs will try again (and report the problem) when they are opened
+            logger.warn("doWork: unable to prefetch the repository catalog", t);
+        } finally {
+            activeOperation = null;
+        }
+
+        onLookupCompleted();
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+
+        final Operation operation = activeOperation;
+        if (operation != null) {
+            operation.cancel();
+        }
+    }
+
+    /**
+     * Loads the saved server contexts (and their credentials) and creates their clients, which is the slow part
+     * of the first request made with them.
+     */
+    private List<ServerContext> prepareSavedContexts() {
+        final List<ServerContext> savedContexts = new ArrayList<ServerContext>(ServerContextManager.getInstance().getAllServerContexts());
+        for (final ServerContext context : savedContexts) {
+            if (isCancelled()) {
+                break;
+            }
+            if (context.getAuthenticationInfo() != null) {
+                context.getClient();
+            }
+        }
+        return savedContexts;
+    }
+
+    /**
+     * Returns a server level context for each TFS server (and user) found in the saved contexts and for the server
+     * the TFS authentication provider is signed in to. The saved contexts usually point to a repository, so a new
+     * context for the root of the server is built from the credentials of each.
+     */
+    static List<ServerContext> getTfsServerContexts(final List<ServerContext> savedContexts,
+                                                    final AuthenticationInfo providerAuthenticationInfo) {
+        final List<AuthenticationInfo> authenticationInfos = new ArrayList<AuthenticationInfo>();
+        if (providerAuthenticationInfo != null) {
+            authenticationInfos.add(providerAuthenticationInfo);
+        }
+        for (final ServerContext context : savedContexts) {
+            if (context.getType() == ServerContext.Type.TFS && context.getAuthenticationInfo() != null) {
+                authenticationInfos.add(context.getAuthenticationInfo());
+            }
+        }
+
+        final Map<String, ServerContext> serverContexts = new LinkedHashMap<String, ServerContext>();
+        for (final AuthenticationInfo authenticationInfo : authenticationInfos) {
+            if (StringUtils.isEmpty(authenticationInfo.getServerUri())) {
+                continue;
+            }
+            final String key = StringUtils.defaultString(authenticationInfo.getUserName()).toLowerCase(Locale.ROOT)
+                    + "@" + ServerContext.getKey(authenticationInfo.getServerUri());
+            if (!serverContexts.containsKey(key)) {
+                serverContexts.put(key, new ServerContextBuilder().type(ServerContext.Type.TFS)
+                        .uri(authenticationInfo.getServerUri())
+                        .authentication(authenticationInfo)
+                        .build());
+            }
+        }
+        return new ArrayList<ServerContext>(serverContexts.values());
+    }
+
+    /**
+     * Returns a context for each account of the signed in user and saves the account list in the catalog.
+     */
+    private List<ServerContext> lookupAccounts(final AuthenticationInfo authenticationInfo) {
+        final ServerContext vsoDeploymentContext = ServerContextManager.getInstance().get(VsoAuthenticationProvider.VSO_AUTH_URL);
+        if (vsoDeploymentContext == null || vsoDeploymentContext.getType() == ServerContext.Type.TFS) {
+            return new ArrayList<ServerContext>();
+        }
+
+        final AccountHttpClient accountHttpClient = new AccountHttpClient(vsoDeploymentContext.getClient(),
+                UrlHelper.createUri(VsoAuthenticationProvider.VSO_AUTH_URL));
+        final Profile me = accountHttpClient.getMyProfile();
+        final List<Account> accounts = accountHttpClient.getAccounts(me.getId());
+
+        final List<ServerContext> accountContexts = new ArrayList<ServerContext>(accounts.size());
+        final List<URI> accountUris = new ArrayList<URI>(accounts.size());
+        for (final Account account : accounts) {
+            final ServerContext accountContext = new ServerContextBuilder().type(ServerContext.Type.VSO)
+                    .accountUri(account)
+                    .authentication(authenticationInfo)
+                    .build();
+            accountContexts.add(accountContext);
+            accountUris.add(accountContext.getUri());
+        }
+        RepositoryCatalog.getInstance().putAccounts(authenticationInfo.getUserName(), accountUris);
+        return accountContexts;
+    }
+}
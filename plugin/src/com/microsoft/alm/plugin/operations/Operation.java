@@ -15,6 +15,12 @@ public abstract class Operation {
 
     public enum State {NOT_STARTED, STARTED, CANCELLED, COMPLETED}
 
+    /**
+     * The priority class of an operation. Interactive operations are run by the executor ahead of
+     * any queued background operations (see OperationExecutor for how background work is aged).
+     */
+    public enum Priority {INTERACTIVE, BACKGROUND}
+
     public interface Listener {
         void notifyLookupStarted();
 
@@ -57,6 +63,7 @@ public abstract class Operation {
     private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
     private final UUID id;
     private State state;
+    private Priority priority = Priority.INTERACTIVE;
 
     // This constructor is protected to make sure users don't create one directly
     protected Operation() {
@@ -72,6 +79,18 @@ public abstract class Operation {
         return state;
     }
 
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Operations default to INTERACTIVE. Call this before starting the operation to run it as background work.
+     */
+    public void setPriority(final Priority priority) {
+        assert priority != null;
+        this.priority = priority;
+    }
+
     public boolean isFinished() {
         return state == State.COMPLETED || state == State.CANCELLED;
     }
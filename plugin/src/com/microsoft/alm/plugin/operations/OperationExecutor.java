@@ -9,14 +9,25 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Runs operations (and the smaller tasks they submit) on a shared pool of threads.
+ * <p/>
+ * Queued work is ordered by priority class: INTERACTIVE work is always taken ahead of BACKGROUND work that was
+ * queued at about the same time. To make sure background work is never starved, a background task is treated
+ * as if it had been queued BACKGROUND_AGING_MILLIS later than it really was. Once it has waited that long, it is
+ * ahead of any interactive work queued after it. Background tasks also run at the lowest thread priority, so
+ * they don't compete with the IDE for the CPU.
+ */
 public class OperationExecutor {
     private static final Logger logger = LoggerFactory.getLogger(OperationExecutor.class);
     final int THREAD_RECOVERY_TIMEOUT_SECONDS = 5;
@@ -26,11 +37,16 @@ public class OperationExecutor {
     final int CORE_THREADS = MAX_THREADS;
     //timeout for each task
     final long TASK_TIMEOUT_SECONDS = 120L;
+    // How long a background task can be passed over by newer interactive tasks
+    final static long BACKGROUND_AGING_MILLIS = 5000L;
 
-    // The number of items that can be in the Queue needs to be bigger than the number of threads (10x is somewhat arbitrary)
-    final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(MAX_THREADS * 10);
+    // The queue is ordered by PrioritizedTask.compareTo, so only PrioritizedTasks may be added to it
+    final BlockingQueue<Runnable> queue = new PriorityBlockingQueue<Runnable>(MAX_THREADS * 10);
     final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(CORE_THREADS, MAX_THREADS, THREAD_RECOVERY_TIMEOUT_SECONDS, TimeUnit.SECONDS, queue);
 
+    private final long backgroundAgingMillis;
+    private final AtomicLong sequence = new AtomicLong();
+
     private static class Holder {
         public final static OperationExecutor INSTANCE = new OperationExecutor();
     }
@@ -39,6 +55,18 @@ public class OperationExecutor {
         return Holder.INSTANCE;
     }
 
+    protected OperationExecutor() {
+        this(BACKGROUND_AGING_MILLIS);
+    }
+
+    /**
+     * This constructor is provided for tests that need a different aging interval.
+     */
+    protected OperationExecutor(final long backgroundAgingMillis) {
+        assert backgroundAgingMillis >= 0;
+        this.backgroundAgingMillis = backgroundAgingMillis;
+    }
+
     public UUID executeAsync(final Operation operation, final Operation.Inputs inputs) {
         execute(operation, inputs);
         return operation.getId();
@@ -49,7 +77,7 @@ public class OperationExecutor {
     }
 
     private synchronized void execute(final Operation operation, final Operation.Inputs inputs) {
-        threadPoolExecutor.execute(new Runnable() {
+        threadPoolExecutor.execute(new PrioritizedTask(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -61,11 +89,21 @@ public class OperationExecutor {
                     }
                 }
             }
-        });
+        }, operation.getPriority()));
     }
 
-    public Future submitOperationTask(Runnable task) {
-        return threadPoolExecutor.submit(task);
+    public Future submitOperationTask(final Runnable task) {
+        return submitOperationTask(task, Operation.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Operations that split their work into smaller tasks should pass their own priority here,
+     * so that the tasks are scheduled the same way as the operation that waits on them.
+     */
+    public Future submitOperationTask(final Runnable task, final Operation.Priority priority) {
+        final PrioritizedTask prioritizedTask = new PrioritizedTask(task, priority);
+        threadPoolExecutor.execute(prioritizedTask);
+        return prioritizedTask;
     }
 
     public void wait(List<Future> futures) {
@@ -90,4 +128,49 @@ public class OperationExecutor {
             throw new TeamServicesException(TeamServicesException.KEY_OPERATION_ERRORS, t);
         }
     }
+
+    /**
+     * A task that knows where it belongs in the queue. The sort key is fixed when the task is created,
+     * so the queue order never changes while the task is waiting.
+     */
+    private class PrioritizedTask extends FutureTask<Object> implements Comparable<PrioritizedTask> {
+        private final Operation.Priority priority;
+        private final long effectiveQueueTime;
+        private final long sequenceNumber;
+
+        PrioritizedTask(final Runnable runnable, final Operation.Priority priority) {
+            super(runnable, null);
+            this.priority = priority;
+            final long penalty = priority == Operation.Priority.BACKGROUND ? backgroundAgingMillis : 0L;
+            this.effectiveQueueTime = System.currentTimeMillis() + penalty;
+            this.sequenceNumber = sequence.getAndIncrement();
+        }
+
+        @Override
+        public void run() {
+            if (priority != Operation.Priority.BACKGROUND) {
+                super.run();
+                return;
+            }
+
+            // The pool threads are shared, so the thread priority only changes while this task runs
+            final Thread thread = Thread.currentThread();
+            final int threadPriority = thread.getPriority();
+            thread.setPriority(Thread.MIN_PRIORITY);
+            try {
+                super.run();
+            } finally {
+                thread.setPriority(threadPriority);
+            }
+        }
+
+        @Override
+        public int compareTo(final PrioritizedTask other) {
+            if (effectiveQueueTime != other.effectiveQueueTime) {
+                return effectiveQueueTime < other.effectiveQueueTime ? -1 : 1;
+            }
+            // FIFO within the same effective time
+            return sequenceNumber < other.sequenceNumber ? -1 : (sequenceNumber == other.sequenceNumber ? 0 : 1);
+        }
+    }
 }
@@ -0,0 +1,212 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.plugin.context.ServerReachability;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a singleton that holds changes to make on a server (like creating a repository) that were
+ * requested while the server couldn't be reached. Each change is run on a background task as soon as
+ * ServerReachability reports that its server can be reached again. While changes are queued their servers are
+ * probed again every REPROBE_INTERVAL_MILLIS, so they are sent even if nothing else talks to the server. A change
+ * that fails to connect again stays queued; any other outcome is passed to its listener.
+ * <p/>
+ * The queue lives in memory only, so changes that are still queued when the IDE exits are lost.
+ * <p/>
+ * Thread-safety: Thread safe
+ */
+public class PendingMutationQueue {
+    private static final Logger logger = LoggerFactory.getLogger(PendingMutationQueue.class);
+
+    public static final long REPROBE_INTERVAL_MILLIS = ServerReachability.RETRY_INTERVAL_MILLIS;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "PendingMutationQueue probe");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final ServerReachability reachability;
+    private final List<PendingMutation> pending = new ArrayList<PendingMutation>();
+    // Probes the servers of the pending changes, only scheduled while there are any
+    private Future<?> reprobeTask;
+
+    /**
+     * A change to make on the server. Runs on a background thread and only returns once the change has been made,
+     * throwing if it could not be.
+     */
+    public interface Mutation {
+        void run() throws Exception;
+    }
+
+    public interface MutationListener {
+        void confirmed(String description);
+
+        void failed(String description, Throwable throwable);
+    }
+
+    private static class PendingMutation {
+        private final URI serverUri;
+        private final String description;
+        private final Mutation mutation;
+        private final MutationListener listener;
+
+        PendingMutation(final URI serverUri, final String description, final Mutation mutation, final MutationListener listener) {
+            this.serverUri = serverUri;
+            this.description = description;
+            this.mutation = mutation;
+            this.listener = listener;
+        }
+    }
+
+    private static class Holder {
+        private static PendingMutationQueue INSTANCE = new PendingMutationQueue(ServerReachability.getInstance());
+    }
+
+    public static PendingMutationQueue getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Only tests should create their own queue.
+     */
+    protected PendingMutationQueue(final ServerReachability reachability) {
+        this.reachability = reachability;
+        reachability.addListener(new ServerReachability.Listener() {
+            @Override
+            public void reachable(final URI serverUri) {
+                runPending(serverUri);
+            }
+        });
+    }
+
+    public void enqueue(final URI serverUri, final String description, final Mutation mutation, final MutationListener listener) {
+        assert serverUri != null;
+        assert mutation != null;
+        assert listener != null;
+        logger.info("enqueue: " + description + " will be sent to " + serverUri + " when it can be reached");
+        addPending(new PendingMutation(serverUri, description, mutation, listener));
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Runs the queued changes for the host of the uri
+     */
+    public void runPending(final URI serverUri) {
+        final List<PendingMutation> ready = new ArrayList<PendingMutation>();
+        synchronized (this) {
+            for (final PendingMutation mutation : pending) {
+                if (serverUri.getHost() != null && serverUri.getHost().equalsIgnoreCase(mutation.serverUri.getHost())) {
+                    ready.add(mutation);
+                }
+            }
+            pending.removeAll(ready);
+        }
+
+        for (final PendingMutation mutation : ready) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    runMutation(mutation);
+                }
+            });
+        }
+    }
+
+    /**
+     * Probes the servers of the pending changes again and runs the changes of those that can be reached.
+     */
+    protected void reprobe() {
+        final Map<String, URI> servers = new LinkedHashMap<String, URI>();
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                stopReprobing();
+                return;
+            }
+            for (final PendingMutation mutation : pending) {
+                servers.put(StringUtils.lowerCase(mutation.serverUri.getHost()), mutation.serverUri);
+            }
+        }
+
+        for (final URI serverUri : servers.values()) {
+            // The listener runs them if the server just came back, runPending skips what it already ran
+            if (reachability.isReachable(serverUri)) {
+                runPending(serverUri);
+            }
+        }
+    }
+
+    /**
+     * Schedules reprobe every intervalMillis. Tests override this to call reprobe themselves.
+     */
+    protected Future<?> scheduleReprobe(final Runnable task, final long intervalMillis) {
+        return scheduler.scheduleWithFixedDelay(task, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void addPending(final PendingMutation mutation) {
+        pending.add(mutation);
+        if (reprobeTask == null) {
+            reprobeTask = scheduleReprobe(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        reprobe();
+                    } catch (Throwable t) {
+                        logger.warn("reprobe: unable to probe the servers of the pending changes", t);
+                    }
+                }
+            }, REPROBE_INTERVAL_MILLIS);
+        }
+    }
+
+    private synchronized void stopReprobing() {
+        if (reprobeTask != null) {
+            reprobeTask.cancel(false);
+            reprobeTask = null;
+        }
+    }
+
+    /**
+     * Submits the task that runs a change. Tests override this to run it right away.
+     */
+    protected void submit(final Runnable task) {
+        OperationExecutor.getInstance().submitOperationTask(task, Operation.Priority.BACKGROUND);
+    }
+
+    private void runMutation(final PendingMutation mutation) {
+        try {
+            mutation.mutation.run();
+        } catch (Throwable t) {
+            if (reachability.recordFailure(mutation.serverUri, t)) {
+                logger.info("runMutation: " + mutation.description + " stays queued, the server still can't be reached");
+                addPending(mutation);
+                return;
+            }
+            logger.warn("runMutation: " + mutation.description + " failed", t);
+            mutation.listener.failed(mutation.description, t);
+            return;
+        }
+        mutation.listener.confirmed(mutation.description);
+    }
+}
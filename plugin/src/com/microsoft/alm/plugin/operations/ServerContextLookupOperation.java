@@ -5,41 +5,142 @@ package com.microsoft.alm.plugin.operations;
 
 import com.microsoft.alm.common.utils.UrlHelper;
 import com.microsoft.alm.plugin.TeamServicesException;
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
+import com.microsoft.alm.plugin.context.RepositoryLookupCache;
 import com.microsoft.alm.plugin.context.ServerContext;
-import com.microsoft.alm.plugin.context.ServerContextBuilder;
+import com.microsoft.alm.plugin.context.ServerContextRow;
+import com.microsoft.alm.plugin.context.ServerReachability;
 import com.microsoft.alm.plugin.context.soap.CatalogService;
 import com.microsoft.teamfoundation.core.webapi.CoreHttpClient;
 import com.microsoft.teamfoundation.core.webapi.model.TeamProjectCollectionReference;
 import com.microsoft.teamfoundation.sourcecontrol.webapi.GitHttpClient;
 import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository;
 import com.microsoft.vss.client.core.model.VssResourceNotFoundException;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ServerContextLookupOperation extends Operation {
     private static final Logger logger = LoggerFactory.getLogger(ServerContextLookupOperation.class);
 
     public enum ContextScope {REPOSITORY, PROJECT}
 
+    public static final int DEFAULT_CHUNK_SIZE = 100;
+    public static final long DEFAULT_COLLECTIONS_MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    // The saved collections that are being read again in the background (compared by identity)
+    private static final Set<RepositoryCatalog.CollectionsEntry> REVALIDATING_COLLECTIONS =
+            Collections.synchronizedSet(new HashSet<RepositoryCatalog.CollectionsEntry>());
+
     private final List<ServerContext> contextList;
     private final ContextScope resultScope;
+    private boolean useCatalog = false;
+    private int chunkSize = 0;
+    private long collectionsMaxAgeMillis = DEFAULT_COLLECTIONS_MAX_AGE_MILLIS;
+    // What has been reported so far for each context in contextList (only used with the catalog)
+    private final Map<String, ContextLookup> contextLookups = new ConcurrentHashMap<String, ContextLookup>();
+    // The collections whose repositories have been added (see getCollectionKey), so a retry doesn't add them again
+    private final Set<String> addedCollections = Collections.synchronizedSet(new HashSet<String>());
+    // The tasks reporting the rest of the results chunk by chunk, which doWork waits for before it completes
+    private final List<Future> chunkTasks = Collections.synchronizedList(new ArrayList<Future>());
 
     public class ServerContextLookupResults extends ResultsImpl {
-        private final List<ServerContext> serverContexts = new ArrayList<ServerContext>();
+        private final List<ServerContextRow> rows = new ArrayList<ServerContextRow>();
+        private final List<ServerContextRow> removedRows = new ArrayList<ServerContextRow>();
+        private boolean fromCatalog = false;
+        private boolean offline = false;
+        private long catalogTime = 0L;
+        private long refreshDurationMillis = -1L;
+
+        public List<ServerContextRow> getRows() {
+            return Collections.unmodifiableList(rows);
+        }
+
+        /**
+         * Returns rows reported earlier by this operation that should no longer be shown, because the
+         * repository is gone or a row with its new name is part of these results.
+         */
+        public List<ServerContextRow> getRemovedRows() {
+            return Collections.unmodifiableList(removedRows);
+        }
 
+        /**
+         * Creates a full context for each row. Lookups can return a very large number of rows, so only use
+         * this when the results are known to be small.
+         */
         public List<ServerContext> getServerContexts() {
-            return Collections.unmodifiableList(serverContexts);
+            final List<ServerContext> serverContexts = new ArrayList<ServerContext>(getRows().size());
+            for (final ServerContextRow row : getRows()) {
+                serverContexts.add(row.toServerContext());
+            }
+            return serverContexts;
+        }
+
+        /**
+         * Returns true if these results tell how current the reported contexts are (see getCatalogTime).
+         */
+        public boolean hasCatalogStatus() {
+            return catalogTime > 0;
+        }
+
+        /**
+         * Returns true while the contexts shown come from the catalog and are still being refreshed.
+         */
+        public boolean isFromCatalog() {
+            return fromCatalog;
         }
 
+        /**
+         * Returns true if some of the servers could not be reached, so the contexts shown for them are the ones
+         * saved in the catalog at getCatalogTime.
+         */
+        public boolean isOffline() {
+            return offline;
+        }
+
+        /**
+         * The time (in milliseconds since the epoch) the reported contexts were read from the server
+         */
+        public long getCatalogTime() {
+            return catalogTime;
+        }
+
+        /**
+         * How long it took to read the reported contexts from the server, or -1 if unknown
+         */
+        public long getRefreshDurationMillis() {
+            return refreshDurationMillis;
+        }
+    }
+
+    /**
+     * Tracks the lookup of one context in contextList when the catalog is used.
+     */
+    private static class ContextLookup {
+        // The rows reported so far by result key (see getResultKey)
+        private final Map<String, ServerContextRow> reported = new HashMap<String, ServerContextRow>();
+        // The result keys of the rows reported from what the server returned, so each project is reported once
+        private final Set<String> found = new HashSet<String>();
+        // The repositories the server has returned so far, to replace the catalog entry with
+        private final List<RepositoryCatalog.Item> items = new ArrayList<RepositoryCatalog.Item>();
     }
 
     public ServerContextLookupOperation(final List<ServerContext> contextList, final ContextScope resultScope) {
@@ -52,12 +153,62 @@ public class ServerContextLookupOperation extends Operation {
         this.resultScope = resultScope;
     }
 
+    /**
+     * When the catalog is used, the repositories cached by the last lookup are reported first. The lookup then
+     * reports only what changed: new repositories, renamed ones (as a removed and an added context), and, once a
+     * server has been read completely, the ones that are gone. The catalog is updated with what was found.
+     */
+    public void setUseCatalog(final boolean useCatalog) {
+        this.useCatalog = useCatalog;
+    }
+
+    public boolean isUsingCatalog() {
+        return useCatalog;
+    }
+
+    /**
+     * Turns on the chunked lookup mode when the chunk size is greater than 0. In this mode a Team Services
+     * account whose collections are not known yet is read with one account level listing of its repositories,
+     * which is sent at the same time as the request for its collections instead of after it, so the first
+     * results arrive after a single round trip. Only accounts with more than one collection are then read one
+     * collection at a time.
+     * <p/>
+     * The first chunkSize results read from a server are reported right away and the rest are reported
+     * chunkSize at a time by a background task, so the first chunk can be shown while the others are added.
+     */
+    public void setChunkSize(final int chunkSize) {
+        this.chunkSize = Math.max(0, chunkSize);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets how long the project collections saved for a TFS server are used as they are. Older collections are
+     * still shown right away, but they are read from the server again in the background.
+     */
+    public void setCollectionsMaxAgeMillis(final long collectionsMaxAgeMillis) {
+        this.collectionsMaxAgeMillis = Math.max(0L, collectionsMaxAgeMillis);
+    }
+
+    public long getCollectionsMaxAgeMillis() {
+        return collectionsMaxAgeMillis;
+    }
+
     public void doWork(final Inputs inputs) {
         onLookupStarted();
 
         try {
+            final long startTime = System.currentTimeMillis();
+            if (useCatalog) {
+                reportCatalogContents();
+            }
+
             final boolean throwOnError = contextList.size() == 1;
             final List<Throwable> operationExceptions = new ArrayList<Throwable>();
+            // The oldest catalog entry shown for a server that couldn't be reached
+            final AtomicLong offlineCatalogTime = new AtomicLong(Long.MAX_VALUE);
 
             final List<Future> tasks = new ArrayList<Future>();
             for (final ServerContext context : contextList) {
@@ -70,12 +221,29 @@ public class ServerContextLookupOperation extends Operation {
                         }
 
                         try {
+                            if (!isReachable(context)) {
+                                final RepositoryCatalog.Entry entry = useCatalog ? RepositoryCatalog.getInstance().get(context) : null;
+                                if (entry == null) {
+                                    throw new TeamServicesException(TeamServicesException.KEY_SERVER_UNREACHABLE);
+                                }
+                                // The saved repositories have already been reported, leave them as they are
+                                logger.info("doWork: " + context.getUri() + " can't be reached, showing the saved repositories");
+                                updateMin(offlineCatalogTime, entry.getRefreshedAt());
+                                return;
+                            }
+
+                            final long contextStartTime = System.currentTimeMillis();
                             if (context.getType() == ServerContext.Type.TFS) {
                                 doSoapCollectionLookup(context);
                             } else { // VSO_DEPLOYMENT || VSO
                                 doRestCollectionLookup(context);
                             }
+                            if (useCatalog && !isCancelled()) {
+                                completeContextLookup(context, System.currentTimeMillis() - contextStartTime);
+                            }
                         } catch (Throwable t) {
+                            // Other lookups shouldn't wait for a server that can't be reached
+                            ServerReachability.getInstance().recordFailure(context.getUri(), t);
                             operationExceptions.add(t);
                             logger.error("doWork: Unable to do lookup on context: " + context.getUri().toString());
                             logger.warn("doWork: Exception", t);
@@ -87,14 +255,25 @@ public class ServerContextLookupOperation extends Operation {
                             }
                         }
                     }
-                }));
+                }, getPriority()));
             }
 
-            // wait for all tasks to complete
+            // wait for all tasks to complete, then for the chunks they left to the background
             OperationExecutor.getInstance().wait(tasks);
+            OperationExecutor.getInstance().wait(new ArrayList<Future>(chunkTasks));
 
             if (operationExceptions.size() > 0) {
                 terminate(new TeamServicesException(TeamServicesException.KEY_OPERATION_ERRORS));
+            } else if (useCatalog && !isCancelled()) {
+                final ServerContextLookupResults results = new ServerContextLookupResults();
+                if (offlineCatalogTime.get() != Long.MAX_VALUE) {
+                    results.offline = true;
+                    results.catalogTime = offlineCatalogTime.get();
+                } else {
+                    results.catalogTime = System.currentTimeMillis();
+                    results.refreshDurationMillis = results.catalogTime - startTime;
+                }
+                onLookupResults(results);
             }
 
             onLookupCompleted();
@@ -125,16 +304,195 @@ public class ServerContextLookupOperation extends Operation {
     }
 
 
+    /**
+     * Returns false if the server of the context is known to be down (or offline mode is on), without waiting
+     * for the timeouts of the clients.
+     */
+    protected boolean isReachable(final ServerContext context) {
+        return ServerReachability.getInstance().isReachable(context.getUri());
+    }
+
     protected void doRestCollectionLookup(final ServerContext context) {
-        final CoreHttpClient rootClient = new CoreHttpClient(context.getClient(), context.getUri());
-        final List<TeamProjectCollectionReference> collections = rootClient.getProjectCollections(null, null);
+        if (chunkSize > 0 && context.getType() == ServerContext.Type.VSO
+                && RepositoryLookupCache.getInstance().getCachedCollections(context) == null) {
+            doAccountLookup(context);
+            return;
+        }
+
+        final List<TeamProjectCollectionReference> collections = RepositoryLookupCache.getInstance().getCollections(context,
+                new Callable<List<TeamProjectCollectionReference>>() {
+                    @Override
+                    public List<TeamProjectCollectionReference> call() {
+                        return readRestCollections(context);
+                    }
+                });
         doLookup(context, collections);
     }
 
+    protected List<TeamProjectCollectionReference> readRestCollections(final ServerContext context) {
+        final CoreHttpClient rootClient = new CoreHttpClient(context.getClient(), context.getUri());
+        return rootClient.getProjectCollections(null, null);
+    }
+
+    /**
+     * Reads the collections of the account and all of its repositories at the same time. The repositories are
+     * used if the account has a single collection, otherwise each collection is read on its own.
+     */
+    protected void doAccountLookup(final ServerContext context) {
+        final FutureTask<List<TeamProjectCollectionReference>> collectionsTask = new FutureTask<List<TeamProjectCollectionReference>>(
+                new Callable<List<TeamProjectCollectionReference>>() {
+                    @Override
+                    public List<TeamProjectCollectionReference> call() {
+                        return RepositoryLookupCache.getInstance().getCollections(context,
+                                new Callable<List<TeamProjectCollectionReference>>() {
+                                    @Override
+                                    public List<TeamProjectCollectionReference> call() {
+                                        return readRestCollections(context);
+                                    }
+                                });
+                    }
+                });
+        OperationExecutor.getInstance().submitOperationTask(collectionsTask, getPriority());
+
+        final List<GitRepository> gitRepositories = readAccountRepositories(context);
+
+        // Run the task here if no thread has picked it up yet, so we never wait on a queued task
+        collectionsTask.run();
+        final List<TeamProjectCollectionReference> collections = getResult(collectionsTask);
+        if (isCancelled()) {
+            return;
+        }
+        if (collections.size() != 1) {
+            logger.info("doAccountLookup: account has " + collections.size() + " collections, reading each of them");
+            doLookup(context, collections);
+            return;
+        }
+
+        final TeamProjectCollectionReference collection = collections.get(0);
+        final List<RepositoryCatalog.Item> items = RepositoryLookupCache.getInstance().getRepositories(context, collection,
+                new Callable<List<RepositoryCatalog.Item>>() {
+                    @Override
+                    public List<RepositoryCatalog.Item> call() {
+                        return createItems(gitRepositories, collection);
+                    }
+                });
+        addItemResults(items, context);
+        addedCollections.add(getCollectionKey(context, collection));
+    }
+
+    /**
+     * Lists the repositories of every project on the account with a single request to the account URL.
+     */
+    protected List<GitRepository> readAccountRepositories(final ServerContext context) {
+        try {
+            final GitHttpClient gitClient = new GitHttpClient(context.getClient(), context.getUri());
+            return gitClient.getRepositories();
+        } catch (VssResourceNotFoundException e) {
+            logger.warn("readAccountRepositories: exception querying for Git repos", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> T getResult(final FutureTask<T> task) {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
     protected void doSoapCollectionLookup(final ServerContext context) {
+        final Callable<List<TeamProjectCollectionReference>> loader = new Callable<List<TeamProjectCollectionReference>>() {
+            @Override
+            public List<TeamProjectCollectionReference> call() {
+                return getSoapCollections(context);
+            }
+        };
+        final boolean savedCollections = RepositoryCatalog.getInstance().getCollections(context) != null;
+        try {
+            doLookup(context, RepositoryLookupCache.getInstance().getCollections(context, loader));
+        } catch (TeamServicesException e) {
+            if (!savedCollections || !(e.getCause() instanceof VssResourceNotFoundException)) {
+                throw e;
+            }
+            // A saved collection is gone from the server, doLookup has forgotten the saved ones so read them again.
+            // The collections whose repositories were added before the error are skipped.
+            logger.info("doSoapCollectionLookup: saved collections are out of date, reading them from the server");
+            doLookup(context, RepositoryLookupCache.getInstance().getCollections(context, loader));
+        }
+    }
+
+    /**
+     * Returns the collections saved in the RepositoryCatalog for the server and user of the context, and reads them
+     * again in the background if they are older than the freshness window. The collections are only read
+     * from the server right away if none were saved.
+     */
+    protected List<TeamProjectCollectionReference> getSoapCollections(final ServerContext context) {
+        final RepositoryCatalog.CollectionsEntry savedCollections = RepositoryCatalog.getInstance().getCollections(context);
+        if (savedCollections != null) {
+            if (savedCollections.getAgeMillis() > collectionsMaxAgeMillis) {
+                revalidateCollections(context, savedCollections);
+            }
+            return savedCollections.getCollections();
+        }
+
+        final List<TeamProjectCollectionReference> collections = readSoapCollections(context);
+        RepositoryCatalog.getInstance().putCollections(context, collections);
+        return collections;
+    }
+
+    protected List<TeamProjectCollectionReference> readSoapCollections(final ServerContext context) {
         final CatalogService catalogService = context.getSoapServices().getCatalogService();
-        final List<TeamProjectCollectionReference> collections = catalogService.getProjectCollections();
-        doLookup(context, collections);
+        return catalogService.getProjectCollections();
+    }
+
+    private void revalidateCollections(final ServerContext context, final RepositoryCatalog.CollectionsEntry savedCollections) {
+        if (!REVALIDATING_COLLECTIONS.add(savedCollections)) {
+            // Another lookup is already reading them
+            return;
+        }
+
+        OperationExecutor.getInstance().submitOperationTask(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final List<TeamProjectCollectionReference> collections = readSoapCollections(context);
+                    RepositoryCatalog.getInstance().putCollections(context, collections);
+                    if (!getCollectionIds(collections).equals(getCollectionIds(savedCollections.getCollections()))) {
+                        // The next lookup has to read the repositories of the new collections
+                        RepositoryLookupCache.getInstance().remove(context);
+                    }
+                } catch (Throwable t) {
+                    logger.warn("revalidateCollections: unable to read the collections of " + context.getUri(), t);
+                } finally {
+                    REVALIDATING_COLLECTIONS.remove(savedCollections);
+                }
+            }
+        }, Operation.Priority.BACKGROUND);
+    }
+
+    private static void updateMin(final AtomicLong value, final long candidate) {
+        long current;
+        while (candidate < (current = value.get()) && !value.compareAndSet(current, candidate)) {
+            // Another context updated it first, try again
+        }
+    }
+
+    private static Set<UUID> getCollectionIds(final List<TeamProjectCollectionReference> collections) {
+        final Set<UUID> ids = new HashSet<UUID>(collections.size());
+        for (final TeamProjectCollectionReference collection : collections) {
+            ids.add(collection.getId());
+        }
+        return ids;
     }
 
     protected void doLookup(final ServerContext context, final List<TeamProjectCollectionReference> collections) {
@@ -142,6 +500,10 @@ public class ServerContextLookupOperation extends Operation {
             if (isCancelled()) {
                 return;
             }
+            final String collectionKey = getCollectionKey(context, teamProjectCollectionReference);
+            if (addedCollections.contains(collectionKey)) {
+                continue;
+            }
 
             // --------- resultScope == ContextScope.PROJECT -------
             // Ideally, we would be using the following client to get the list of projects
@@ -150,16 +512,26 @@ public class ServerContextLookupOperation extends Operation {
             //final CoreHttpClient client = new CoreHttpClient(context.getClient(), collectionURI);
             //final List<TeamProjectReference> projects = client.getProjects();
             // -----------------------------------------------------
+            // Both scopes read the same repositories, so they share them through the RepositoryLookupCache
+            // and the PROJECT scope never has to ask the server for them again.
 
             try {
-                final URI collectionURI = UrlHelper.createUri(context.getUri().toString() + "/" + teamProjectCollectionReference.getName());
-                final GitHttpClient gitClient = new GitHttpClient(context.getClient(), collectionURI);
-                final List<GitRepository> gitRepositories = gitClient.getRepositories();
+                final List<RepositoryCatalog.Item> items = RepositoryLookupCache.getInstance().getRepositories(context,
+                        teamProjectCollectionReference, new Callable<List<RepositoryCatalog.Item>>() {
+                            @Override
+                            public List<RepositoryCatalog.Item> call() {
+                                return createItems(readRepositories(context, teamProjectCollectionReference), teamProjectCollectionReference);
+                            }
+                        });
 
-                addRepositoryResults(gitRepositories, context, teamProjectCollectionReference);
+                addItemResults(items, context);
+                addedCollections.add(collectionKey);
             } catch (VssResourceNotFoundException e) {
                 logger.warn("doLookup: exception querying for Git repos", e);
                 if (context.getType() == ServerContext.Type.TFS) {
+                    // The collection may have been removed, so don't trust the collections read earlier
+                    RepositoryCatalog.getInstance().removeCollections(context);
+                    RepositoryLookupCache.getInstance().remove(context);
                     throw new TeamServicesException(TeamServicesException.KEY_TFS_UNSUPPORTED_VERSION, e);
                 } else {
                     throw new RuntimeException(e);
@@ -168,32 +540,224 @@ public class ServerContextLookupOperation extends Operation {
         }
     }
 
+    protected List<GitRepository> readRepositories(final ServerContext context, final TeamProjectCollectionReference collection) {
+        final URI collectionURI = UrlHelper.createUri(context.getUri().toString() + "/" + collection.getName());
+        final GitHttpClient gitClient = new GitHttpClient(context.getClient(), collectionURI);
+        return gitClient.getRepositories();
+    }
+
+    private static String getCollectionKey(final ServerContext context, final TeamProjectCollectionReference collection) {
+        return context.getKey() + "/" + collection.getName();
+    }
+
+    /**
+     * Returns the first item of each project.
+     */
+    private static List<RepositoryCatalog.Item> getProjectItems(final List<RepositoryCatalog.Item> items) {
+        final List<RepositoryCatalog.Item> projectItems = new ArrayList<RepositoryCatalog.Item>();
+        final Set<UUID> includedProjects = new HashSet<UUID>();
+        for (final RepositoryCatalog.Item item : items) {
+            if (includedProjects.add(item.getProjectId())) {
+                projectItems.add(item);
+            }
+        }
+        return projectItems;
+    }
+
     protected void addRepositoryResults(final List<GitRepository> gitRepositories, final ServerContext context, final TeamProjectCollectionReference teamProjectCollectionReference) {
-        final List<ServerContext> serverContexts = new ArrayList<ServerContext>(gitRepositories.size());
-        final Set<UUID> includedContexts = new HashSet<UUID>(gitRepositories.size());
+        addItemResults(createItems(gitRepositories, teamProjectCollectionReference), context);
+    }
+
+    /**
+     * Reports the repositories the server returned. In the chunked mode only the first chunk is reported here,
+     * the rest is left to a background task.
+     */
+    private void addItemResults(final List<RepositoryCatalog.Item> items, final ServerContext context) {
+        final ContextLookup contextLookup = useCatalog ? contextLookups.get(context.getKey()) : null;
+        if (contextLookup != null) {
+            // All of them, so the catalog entry is complete even if the context is completed before the last chunk
+            synchronized (contextLookup) {
+                contextLookup.items.addAll(items);
+            }
+        }
 
+        // If we are just looking for projects, only get the unique ones (the catalog keeps track of them itself)
+        final List<RepositoryCatalog.Item> reportedItems = resultScope == ContextScope.PROJECT && contextLookup == null
+                ? getProjectItems(items) : items;
+        if (chunkSize <= 0 || reportedItems.size() <= chunkSize) {
+            reportFoundItems(contextLookup, context, reportedItems);
+            return;
+        }
+
+        reportFoundItems(contextLookup, context, new ArrayList<RepositoryCatalog.Item>(reportedItems.subList(0, chunkSize)));
+        chunkTasks.add(OperationExecutor.getInstance().submitOperationTask(new Runnable() {
+            @Override
+            public void run() {
+                for (int start = chunkSize; start < reportedItems.size(); start += chunkSize) {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    final int end = Math.min(start + chunkSize, reportedItems.size());
+                    reportFoundItems(contextLookup, context, new ArrayList<RepositoryCatalog.Item>(reportedItems.subList(start, end)));
+                }
+            }
+        }, Operation.Priority.BACKGROUND));
+    }
+
+    private void reportFoundItems(final ContextLookup contextLookup, final ServerContext context,
+                                  final List<RepositoryCatalog.Item> items) {
+        if (contextLookup != null) {
+            reportItems(contextLookup, context, items, true);
+            return;
+        }
+
+        final ServerContextLookupResults results = new ServerContextLookupResults();
+        for (final RepositoryCatalog.Item item : items) {
+            results.rows.add(new ServerContextRow(context, item));
+        }
+        super.onLookupResults(results);
+    }
+
+    /**
+     * Keeps only what the plugin needs from each repository.
+     */
+    private static List<RepositoryCatalog.Item> createItems(final List<GitRepository> gitRepositories,
+                                                            final TeamProjectCollectionReference teamProjectCollectionReference) {
+        final List<RepositoryCatalog.Item> items = new ArrayList<RepositoryCatalog.Item>(gitRepositories.size());
         for (final GitRepository gitRepository : gitRepositories) {
-            // If we are just looking for projects, only get the unique ones
-            if (resultScope == ContextScope.PROJECT) {
-                final UUID key = gitRepository.getProjectReference().getId();
-                if (includedContexts.contains(key)) {
+            items.add(new RepositoryCatalog.Item(teamProjectCollectionReference, gitRepository));
+        }
+        return items;
+    }
+
+    /**
+     * Reports the cached repositories of every context in contextList, followed by how old they are.
+     */
+    private void reportCatalogContents() {
+        long oldestRefresh = Long.MAX_VALUE;
+        long refreshDuration = -1L;
+        for (final ServerContext context : contextList) {
+            final ContextLookup contextLookup = new ContextLookup();
+            contextLookups.put(context.getKey(), contextLookup);
+
+            final RepositoryCatalog.Entry entry = RepositoryCatalog.getInstance().get(context);
+            if (entry == null) {
+                continue;
+            }
+
+            reportItems(contextLookup, context, entry.getItems(), false);
+
+            if (entry.getRefreshedAt() < oldestRefresh) {
+                oldestRefresh = entry.getRefreshedAt();
+                refreshDuration = entry.getRefreshDurationMillis();
+            }
+        }
+
+        if (oldestRefresh != Long.MAX_VALUE) {
+            final ServerContextLookupResults results = new ServerContextLookupResults();
+            results.fromCatalog = true;
+            results.catalogTime = oldestRefresh;
+            results.refreshDurationMillis = refreshDuration;
+            onLookupResults(results);
+        }
+    }
+
+    /**
+     * Reports the repositories that are new or changed since they were last reported for the context.
+     *
+     * @param found true if the repositories were just returned by the server, false if they come from the catalog
+     */
+    private void reportItems(final ContextLookup contextLookup, final ServerContext context,
+                             final List<RepositoryCatalog.Item> items, final boolean found) {
+        final ServerContextLookupResults results = new ServerContextLookupResults();
+        synchronized (contextLookup) {
+            for (final RepositoryCatalog.Item item : items) {
+                final String key = getResultKey(item);
+                final ServerContextRow reportedRow = contextLookup.reported.get(key);
+                if (found) {
+                    // If we are just looking for projects, only report each one once
+                    if (!contextLookup.found.add(key)) {
+                        continue;
+                    }
+                    if (reportedRow != null && isSameResult(reportedRow.getItem(), item)) {
+                        continue;
+                    }
+                } else if (reportedRow != null) {
                     continue;
-                } else {
-                    includedContexts.add(key);
                 }
+
+                final ServerContextRow row = new ServerContextRow(context, item);
+                if (reportedRow != null) {
+                    results.removedRows.add(reportedRow);
+                }
+                contextLookup.reported.put(key, row);
+                results.rows.add(row);
             }
+        }
+
+        if (!results.rows.isEmpty() || !results.removedRows.isEmpty()) {
+            super.onLookupResults(results);
+        }
+    }
 
-            final ServerContext gitServerContext = new ServerContextBuilder(context)
-                    .uri(gitRepository.getRemoteUrl())
-                    .repository(gitRepository)
-                    .teamProject(gitRepository.getProjectReference())
-                    .collection(teamProjectCollectionReference)
-                    .build();
-            serverContexts.add(gitServerContext);
+    /**
+     * Called once the server behind the context has been read completely. Reports the cached repositories the
+     * server no longer has and replaces the catalog entry.
+     */
+    private void completeContextLookup(final ServerContext context, final long durationMillis) {
+        final ContextLookup contextLookup = contextLookups.get(context.getKey());
+        if (contextLookup == null) {
+            return;
         }
 
         final ServerContextLookupResults results = new ServerContextLookupResults();
-        results.serverContexts.addAll(serverContexts);
-        super.onLookupResults(results);
+        final List<RepositoryCatalog.Item> items;
+        synchronized (contextLookup) {
+            // Some of the items may still be waiting for their chunk to be reported
+            final Set<String> foundKeys = new HashSet<String>();
+            for (final RepositoryCatalog.Item item : contextLookup.items) {
+                foundKeys.add(getResultKey(item));
+            }
+            final Iterator<Map.Entry<String, ServerContextRow>> iterator = contextLookup.reported.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<String, ServerContextRow> reported = iterator.next();
+                if (!foundKeys.contains(reported.getKey())) {
+                    results.removedRows.add(reported.getValue());
+                    iterator.remove();
+                }
+            }
+            items = new ArrayList<RepositoryCatalog.Item>(contextLookup.items);
+        }
+
+        if (!results.removedRows.isEmpty()) {
+            super.onLookupResults(results);
+        }
+        RepositoryCatalog.getInstance().put(context, items, durationMillis);
+    }
+
+    /**
+     * Returns the key that identifies the result for the repository: the project for the PROJECT scope and
+     * the repository itself for the REPOSITORY scope.
+     */
+    private String getResultKey(final RepositoryCatalog.Item item) {
+        if (resultScope == ContextScope.PROJECT) {
+            return String.valueOf(item.getProjectId());
+        }
+        return item.getRepositoryId() != null ? item.getRepositoryId().toString() : String.valueOf(item.getRemoteUrl());
+    }
+
+    /**
+     * Returns true if the reported item shows the same thing as a row for the new item would.
+     */
+    private boolean isSameResult(final RepositoryCatalog.Item reportedItem, final RepositoryCatalog.Item item) {
+        if (!StringUtils.equals(reportedItem.getProjectName(), item.getProjectName())
+                || !StringUtils.equals(reportedItem.getCollectionName(), item.getCollectionName())) {
+            return false;
+        }
+        if (resultScope == ContextScope.PROJECT) {
+            return true;
+        }
+        return StringUtils.equals(reportedItem.getRepositoryName(), item.getRepositoryName())
+                && StringUtils.equals(reportedItem.getRemoteUrl(), item.getRemoteUrl());
     }
 }
@@ -20,6 +20,7 @@ public class PluginServiceProvider {
     private ContextInitializer telemetryContextInitializer;
     private PropertyService propertyService;
     private LocalizationService localizationSerivce;
+    private RepositoryCatalogStore repositoryCatalogStore;
 
     private static class ProviderHolder {
         private static PluginServiceProvider INSTANCE = new PluginServiceProvider();
@@ -34,6 +35,7 @@ public class PluginServiceProvider {
                            final ContextInitializer telemetryContextInitializer,
                            final PropertyService propertyService,
                            final LocalizationService localizationService,
+                           final RepositoryCatalogStore repositoryCatalogStore,
                            final boolean insideIDE) {
         if (!initialized) {
             this.contextStore = contextStore;
@@ -41,6 +43,7 @@ public class PluginServiceProvider {
             this.telemetryContextInitializer = telemetryContextInitializer;
             this.propertyService = propertyService;
             this.localizationSerivce = localizationService;
+            this.repositoryCatalogStore = repositoryCatalogStore;
             this.insideIDE = insideIDE;
             initialized = true;
         }
@@ -88,4 +91,11 @@ public class PluginServiceProvider {
 
         return localizationSerivce;
     }
+
+    public RepositoryCatalogStore getRepositoryCatalogStore() {
+        assert initialized;
+        assert repositoryCatalogStore != null;
+
+        return repositoryCatalogStore;
+    }
 }
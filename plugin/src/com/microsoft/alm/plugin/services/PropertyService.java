@@ -4,8 +4,13 @@
 package com.microsoft.alm.plugin.services;
 
 public interface PropertyService {
+    String PROP_CATALOG_NODE_PATHS_PREFIX = "catalogNodePaths:";
+    String PROP_CATALOG_PREFETCH = "catalogPrefetch";
     String PROP_LAST_CONTEXT_KEY = "lastContextKey";
+    String PROP_LOOKUP_CHUNK_SIZE = "lookupChunkSize";
+    String PROP_OFFLINE_MODE = "offlineMode";
     String PROP_REPO_ROOT = "repoRoot";
+    String PROP_TFS_COLLECTIONS_MAX_AGE_HOURS = "tfsCollectionsMaxAgeHours";
 
     String getProperty(String propertyName);
 
@@ -0,0 +1,35 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.services;
+
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This interface represents the service that allows us to load/save the local copy of the repository catalog.
+ * Implementations may be called on any thread.
+ */
+public interface RepositoryCatalogStore {
+
+    /**
+     * Returns the saved catalog entries keyed by user and server
+     */
+    Map<String, RepositoryCatalog.Entry> restoreEntries();
+
+    /**
+     * Returns the saved account lists keyed by user
+     */
+    Map<String, List<URI>> restoreAccounts();
+
+    /**
+     * Returns the saved TFS project collections keyed by user and server
+     */
+    Map<String, RepositoryCatalog.CollectionsEntry> restoreCollections();
+
+    void save(final Map<String, RepositoryCatalog.Entry> entries, final Map<String, List<URI>> accounts,
+              final Map<String, RepositoryCatalog.CollectionsEntry> collections);
+}
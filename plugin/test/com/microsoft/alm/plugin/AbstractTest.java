@@ -6,6 +6,7 @@ package com.microsoft.alm.plugin;
 import com.microsoft.alm.plugin.mocks.MockCredentialsPrompt;
 import com.microsoft.alm.plugin.mocks.MockLocalizationService;
 import com.microsoft.alm.plugin.mocks.MockPropertyService;
+import com.microsoft.alm.plugin.mocks.MockRepositoryCatalogStore;
 import com.microsoft.alm.plugin.mocks.MockServerContextStore;
 import com.microsoft.alm.plugin.services.PluginServiceProvider;
 import com.microsoft.alm.plugin.telemetry.TfsTelemetryHelper;
@@ -35,7 +36,7 @@ public class AbstractTest {
             @Override
             public void initialize(TelemetryContext context) {
             }
-        }, new MockPropertyService(), new MockLocalizationService(), false);
+        }, new MockPropertyService(), new MockLocalizationService(), new MockRepositoryCatalogStore(), false);
     }
 
     public static void assertLogged(final String s) {
@@ -0,0 +1,107 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ConnectionWarmerTest {
+    private static class TestReachability extends ServerReachability {
+        int probes = 0;
+        boolean proxy = false;
+
+        @Override
+        protected boolean probe(final String host, final int port, final int timeoutMillis) {
+            probes++;
+            return true;
+        }
+
+        @Override
+        public boolean usesProxy(final URI serverUri) {
+            return proxy;
+        }
+
+        @Override
+        protected String getProperty(final String key) {
+            return null;
+        }
+    }
+
+    private static class TestWarmer extends ConnectionWarmer {
+        final List<String> handshakes = new ArrayList<String>();
+        boolean refuse = false;
+
+        TestWarmer(final ServerReachability reachability) {
+            super(reachability);
+        }
+
+        @Override
+        protected void submit(final Runnable task) {
+            task.run();
+        }
+
+        @Override
+        protected void handshake(final SSLContext sslContext, final String host, final int port) throws IOException {
+            if (refuse) {
+                throw new ConnectException("refused");
+            }
+            handshakes.add(host + ":" + port);
+        }
+    }
+
+    @Test
+    public void hostsAreWarmedUpOnce() {
+        final TestReachability reachability = new TestReachability();
+        final TestWarmer warmer = new TestWarmer(reachability);
+        warmer.warmUp(Arrays.asList(
+                URI.create("https://account1.visualstudio.com"),
+                URI.create("https://ACCOUNT1.visualstudio.com/DefaultCollection/_git/repo"),
+                null,
+                URI.create("https://server:8443/tfs"),
+                URI.create("http://server:8080/tfs"),
+                URI.create("https://account2.visualstudio.com"),
+                URI.create("https://account3.visualstudio.com")));
+
+        // Only the first MAX_HOSTS hosts are used, plain http is only probed
+        Assert.assertEquals(Arrays.asList("account1.visualstudio.com:443", "server:8443", "account2.visualstudio.com:443"),
+                warmer.handshakes);
+        Assert.assertEquals(1, reachability.probes);
+
+        // Hosts warmed up recently are skipped
+        warmer.warmUp(Arrays.asList(URI.create("https://account1.visualstudio.com"),
+                URI.create("https://account3.visualstudio.com")));
+        Assert.assertEquals(4, warmer.handshakes.size());
+        Assert.assertEquals("account3.visualstudio.com:443", warmer.handshakes.get(3));
+    }
+
+    @Test
+    public void failuresAreRecorded() {
+        final TestReachability reachability = new TestReachability();
+        final TestWarmer warmer = new TestWarmer(reachability);
+        final URI server = URI.create("https://server:8443/tfs");
+        warmer.refuse = true;
+
+        warmer.warmUp(Arrays.asList(server));
+        Assert.assertFalse(reachability.wasReachable(server));
+    }
+
+    @Test
+    public void hostsBehindAProxyAreNotWarmedUp() {
+        final TestReachability reachability = new TestReachability();
+        final TestWarmer warmer = new TestWarmer(reachability);
+        reachability.proxy = true;
+
+        warmer.warmUp(Arrays.asList(URI.create("https://account1.visualstudio.com"), URI.create("http://server:8080/tfs")));
+        Assert.assertTrue(warmer.handshakes.isEmpty());
+        Assert.assertEquals(0, reachability.probes);
+    }
+}
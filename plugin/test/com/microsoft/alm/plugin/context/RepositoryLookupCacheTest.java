@@ -0,0 +1,144 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context;
+
+import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
+import com.microsoft.teamfoundation.core.webapi.model.TeamProjectCollectionReference;
+import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RepositoryLookupCacheTest {
+    @Test
+    public void repositoriesAreReadOnce() {
+        final RepositoryLookupCache cache = new RepositoryLookupCache();
+        final ServerContext context = createContext("http://server", "user");
+        final TeamProjectCollectionReference collection = createCollection("collection");
+        final AtomicInteger calls = new AtomicInteger();
+        final Callable<List<RepositoryCatalog.Item>> loader = counter(calls);
+
+        final List<RepositoryCatalog.Item> first = cache.getRepositories(context, collection, loader);
+        final List<RepositoryCatalog.Item> second = cache.getRepositories(context, collection, loader);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, calls.get());
+
+        // Other collections, servers and users have their own results
+        cache.getRepositories(context, createCollection("other"), loader);
+        cache.getRepositories(createContext("http://server2", "user"), collection, loader);
+        cache.getRepositories(createContext("http://server", "user2"), collection, loader);
+        Assert.assertEquals(4, calls.get());
+
+        // Until they are removed
+        cache.remove(context);
+        cache.getRepositories(context, collection, loader);
+        Assert.assertEquals(5, calls.get());
+        cache.clear();
+        cache.getRepositories(context, collection, loader);
+        Assert.assertEquals(6, calls.get());
+    }
+
+    @Test
+    public void failuresAreNotKept() {
+        final RepositoryLookupCache cache = new RepositoryLookupCache();
+        final ServerContext context = createContext("http://server", "user");
+        final TeamProjectCollectionReference collection = createCollection("collection");
+        final IllegalStateException failure = new IllegalStateException();
+
+        try {
+            cache.getRepositories(context, collection, new Callable<List<RepositoryCatalog.Item>>() {
+                @Override
+                public List<RepositoryCatalog.Item> call() {
+                    throw failure;
+                }
+            });
+            Assert.fail("the loader's exception should be rethrown");
+        } catch (IllegalStateException e) {
+            Assert.assertSame(failure, e);
+        }
+
+        final AtomicInteger calls = new AtomicInteger();
+        cache.getRepositories(context, collection, counter(calls));
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void concurrentLookupsShareOneRequest() throws Exception {
+        final RepositoryLookupCache cache = new RepositoryLookupCache();
+        final ServerContext context = createContext("http://server", "user");
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<TeamProjectCollectionReference> collections = Collections.singletonList(createCollection("collection"));
+
+        final Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cache.getCollections(context, new Callable<List<TeamProjectCollectionReference>>() {
+                    @Override
+                    public List<TeamProjectCollectionReference> call() throws Exception {
+                        calls.incrementAndGet();
+                        loading.countDown();
+                        release.await();
+                        return collections;
+                    }
+                });
+            }
+        });
+        first.start();
+        Assert.assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        final List<List<TeamProjectCollectionReference>> results = Collections.synchronizedList(new ArrayList<List<TeamProjectCollectionReference>>());
+        final Thread second = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                results.add(cache.getCollections(context, new Callable<List<TeamProjectCollectionReference>>() {
+                    @Override
+                    public List<TeamProjectCollectionReference> call() {
+                        calls.incrementAndGet();
+                        return new ArrayList<TeamProjectCollectionReference>();
+                    }
+                }));
+            }
+        });
+        second.start();
+
+        release.countDown();
+        first.join(5000);
+        second.join(5000);
+        Assert.assertEquals(1, calls.get());
+        Assert.assertSame(collections, results.get(0));
+    }
+
+    private Callable<List<RepositoryCatalog.Item>> counter(final AtomicInteger calls) {
+        return new Callable<List<RepositoryCatalog.Item>>() {
+            @Override
+            public List<RepositoryCatalog.Item> call() {
+                calls.incrementAndGet();
+                return Collections.singletonList(new RepositoryCatalog.Item(null, new GitRepository()));
+            }
+        };
+    }
+
+    private ServerContext createContext(final String uri, final String user) {
+        return new ServerContextBuilder().type(ServerContext.Type.TFS)
+                .uri(URI.create(uri))
+                .authentication(new AuthenticationInfo(user, "", uri, user))
+                .build();
+    }
+
+    private TeamProjectCollectionReference createCollection(final String name) {
+        final TeamProjectCollectionReference collection = new TeamProjectCollectionReference();
+        collection.setName(name);
+        return collection;
+    }
+}
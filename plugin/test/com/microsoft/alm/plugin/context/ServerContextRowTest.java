@@ -0,0 +1,183 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context;
+
+import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
+import com.microsoft.teamfoundation.core.webapi.model.TeamProjectCollectionReference;
+import com.microsoft.teamfoundation.core.webapi.model.TeamProjectReference;
+import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+public class ServerContextRowTest {
+    @Test
+    public void createsTheContextForTheRow() {
+        final ServerContext rootContext = createRootContext();
+        final TeamProjectCollectionReference collection = createCollection();
+        final GitRepository repository = createRepository(createProject(1), 1);
+        final ServerContextRow row = new ServerContextRow(rootContext, new RepositoryCatalog.Item(collection, repository));
+
+        Assert.assertEquals("repo00001", row.getRepositoryName());
+        Assert.assertEquals("project1", row.getProjectName());
+        Assert.assertEquals("collection", row.getCollectionName());
+        Assert.assertEquals("account.visualstudio.com", row.getAccountName());
+
+        final ServerContext context = row.toServerContext();
+        Assert.assertEquals(repository.getId(), context.getGitRepository().getId());
+        Assert.assertEquals(repository.getName(), context.getGitRepository().getName());
+        Assert.assertEquals(repository.getRemoteUrl(), context.getGitRepository().getRemoteUrl());
+        Assert.assertEquals(URI.create(repository.getRemoteUrl()), context.getUri());
+        Assert.assertEquals(repository.getProjectReference().getId(), context.getTeamProjectReference().getId());
+        Assert.assertEquals("project1", context.getTeamProjectReference().getName());
+        Assert.assertSame(collection, context.getTeamProjectCollectionReference());
+        Assert.assertSame(rootContext.getAuthenticationInfo(), context.getAuthenticationInfo());
+
+        // Rows created from a context give that context back
+        Assert.assertSame(context, ServerContextRow.fromServerContext(context).toServerContext());
+    }
+
+    @Test
+    public void rowsRetainLessThanFullContexts() {
+        final ServerContext rootContext = createRootContext();
+        final TeamProjectCollectionReference collection = createCollection();
+        final TeamProjectReference project = createProject(1);
+        final List<ServerContext> contexts = new ArrayList<ServerContext>();
+        final List<ServerContextRow> rows = new ArrayList<ServerContextRow>();
+        for (int i = 0; i < 1000; i++) {
+            // Each repository comes with its own copy of the project, as the server returns them
+            final TeamProjectReference projectCopy = new TeamProjectReference();
+            projectCopy.setId(UUID.fromString(project.getId().toString()));
+            projectCopy.setName(new String(project.getName()));
+            final GitRepository repository = createRepository(projectCopy, i);
+
+            // A full context per repository is what the lookup used to keep
+            contexts.add(new ServerContextBuilder(rootContext)
+                    .uri(repository.getRemoteUrl())
+                    .repository(repository)
+                    .teamProject(projectCopy)
+                    .collection(collection)
+                    .build());
+            rows.add(new ServerContextRow(rootContext, new RepositoryCatalog.Item(collection, repository)));
+        }
+
+        // Arrays, since the JDK may not let the walk into the fields of its lists
+        final long contextsSize = estimateRetainedSize(contexts.toArray());
+        final long rowsSize = estimateRetainedSize(rows.toArray());
+        Assert.assertTrue("rows retain " + rowsSize + " bytes, contexts retain " + contextsSize + " bytes",
+                rowsSize * 3 < contextsSize * 2);
+    }
+
+    /**
+     * Estimates the bytes retained by an object by walking the objects it references (but not static fields or
+     * classes). Each object is counted once, with a 16 byte header and 8 bytes per reference, which is enough to
+     * compare two ways of keeping the same data. The fields of JDK objects that can't be made accessible are
+     * counted but not followed.
+     */
+    private static long estimateRetainedSize(final Object root) {
+        final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        final Deque<Object> pending = new ArrayDeque<Object>();
+        pending.push(root);
+        long size = 0;
+        while (!pending.isEmpty()) {
+            final Object object = pending.pop();
+            if (object instanceof Class || !seen.add(object)) {
+                continue;
+            }
+
+            size += 16;
+            if (object instanceof String || object instanceof URI) {
+                // Count the characters whether or not the JDK lets us look inside the string or URI
+                size += 16 + 2 * object.toString().length();
+                continue;
+            }
+            final Class<?> type = object.getClass();
+            if (type.isArray()) {
+                final int length = Array.getLength(object);
+                size += length * 8;
+                if (!type.getComponentType().isPrimitive()) {
+                    for (int i = 0; i < length; i++) {
+                        pushIfSet(pending, Array.get(object, i));
+                    }
+                }
+                continue;
+            }
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    size += 8;
+                    if (!field.getType().isPrimitive() && makeAccessible(field)) {
+                        try {
+                            pushIfSet(pending, field.get(object));
+                        } catch (IllegalAccessException e) {
+                            // counted but not followed
+                        }
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    private static boolean makeAccessible(final Field field) {
+        try {
+            field.setAccessible(true);
+            return true;
+        } catch (RuntimeException e) {
+            // Newer JDKs don't let tests look inside their own classes
+            return false;
+        }
+    }
+
+    private static void pushIfSet(final Deque<Object> pending, final Object value) {
+        if (value != null) {
+            pending.push(value);
+        }
+    }
+
+    private static ServerContext createRootContext() {
+        final URI uri = URI.create("https://account.visualstudio.com");
+        return new ServerContextBuilder().type(ServerContext.Type.VSO)
+                .uri(uri)
+                .authentication(new AuthenticationInfo("user", "", uri.toString(), "user"))
+                .build();
+    }
+
+    private static TeamProjectCollectionReference createCollection() {
+        final TeamProjectCollectionReference collection = new TeamProjectCollectionReference();
+        collection.setId(UUID.randomUUID());
+        collection.setName("collection");
+        return collection;
+    }
+
+    private static TeamProjectReference createProject(final int index) {
+        final TeamProjectReference project = new TeamProjectReference();
+        project.setId(UUID.randomUUID());
+        project.setName("project" + index);
+        return project;
+    }
+
+    private static GitRepository createRepository(final TeamProjectReference project, final int index) {
+        final GitRepository repository = new GitRepository();
+        repository.setId(UUID.randomUUID());
+        repository.setName(String.format("repo%05d", index));
+        repository.setProjectReference(project);
+        repository.setRemoteUrl("https://account.visualstudio.com/collection/_git/" + repository.getName());
+        return repository;
+    }
+}
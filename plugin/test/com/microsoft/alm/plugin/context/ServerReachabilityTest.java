@@ -0,0 +1,119 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context;
+
+import com.microsoft.alm.plugin.services.PropertyService;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ServerReachabilityTest {
+    private static final URI SERVER = URI.create("http://server:8080/tfs");
+
+    private static class TestReachability extends ServerReachability {
+        boolean reachable = true;
+        boolean offlineMode = false;
+        boolean proxy = false;
+        int probes = 0;
+        int lastPort = 0;
+
+        @Override
+        protected boolean probe(final String host, final int port, final int timeoutMillis) {
+            probes++;
+            lastPort = port;
+            return reachable;
+        }
+
+        @Override
+        public boolean usesProxy(final URI serverUri) {
+            return proxy;
+        }
+
+        @Override
+        protected String getProperty(final String key) {
+            return PropertyService.PROP_OFFLINE_MODE.equals(key) ? Boolean.toString(offlineMode) : null;
+        }
+    }
+
+    @Test
+    public void stateIsCachedPerHost() {
+        final TestReachability reachability = new TestReachability();
+        reachability.reachable = false;
+
+        Assert.assertFalse(reachability.isReachable(SERVER));
+        Assert.assertEquals(8080, reachability.lastPort);
+        // The circuit stays open, other urls on the same host don't probe again
+        reachability.reachable = true;
+        Assert.assertFalse(reachability.isReachable(URI.create("http://SERVER:8080/tfs/collection/_git/repo")));
+        Assert.assertEquals(1, reachability.probes);
+
+        // Other hosts and ports are probed on their own
+        Assert.assertTrue(reachability.isReachable(URI.create("https://account.visualstudio.com")));
+        Assert.assertEquals(443, reachability.lastPort);
+        Assert.assertEquals(2, reachability.probes);
+        Assert.assertTrue(reachability.wasReachable(URI.create("http://unknownserver")));
+    }
+
+    @Test
+    public void listenersHearWhenAHostComesBack() {
+        final TestReachability reachability = new TestReachability();
+        final List<URI> reachable = new ArrayList<URI>();
+        reachability.addListener(new ServerReachability.Listener() {
+            @Override
+            public void reachable(final URI serverUri) {
+                reachable.add(serverUri);
+            }
+        });
+
+        reachability.markReachable(SERVER);
+        Assert.assertTrue(reachable.isEmpty());
+
+        Assert.assertFalse(reachability.recordFailure(SERVER, new IOException("not a connection failure")));
+        Assert.assertTrue(reachability.wasReachable(SERVER));
+        Assert.assertTrue(reachability.recordFailure(SERVER, new RuntimeException(new ConnectException("refused"))));
+        Assert.assertFalse(reachability.wasReachable(SERVER));
+
+        reachability.markReachable(SERVER);
+        Assert.assertEquals(1, reachable.size());
+        Assert.assertTrue(reachability.isReachable(SERVER));
+        Assert.assertEquals(0, reachability.probes);
+    }
+
+    @Test
+    public void offlineModeReportsEveryHostUnreachable() {
+        final TestReachability reachability = new TestReachability();
+        reachability.offlineMode = true;
+        Assert.assertFalse(reachability.isReachable(SERVER));
+        Assert.assertFalse(reachability.wasReachable(SERVER));
+        Assert.assertEquals(0, reachability.probes);
+    }
+
+    @Test
+    public void hostsBehindAProxyAreNotProbed() {
+        final TestReachability reachability = new TestReachability();
+        reachability.reachable = false;
+        reachability.proxy = true;
+        Assert.assertTrue(reachability.isReachable(SERVER));
+        Assert.assertEquals(0, reachability.probes);
+
+        // A request that can't connect to the proxy still opens the circuit
+        Assert.assertTrue(reachability.recordFailure(SERVER, new ConnectException("refused")));
+        Assert.assertFalse(reachability.isReachable(SERVER));
+    }
+
+    @Test
+    public void onlyConnectTimeoutsAreConnectionFailures() {
+        Assert.assertTrue(ServerReachability.isConnectionFailure(new RuntimeException(new SocketTimeoutException("connect timed out"))));
+        Assert.assertTrue(ServerReachability.isConnectionFailure(new ConnectTimeoutException("Connect to server:8080 timed out")));
+        Assert.assertFalse(ServerReachability.isConnectionFailure(new RuntimeException(new SocketTimeoutException("Read timed out"))));
+        Assert.assertFalse(ServerReachability.isConnectionFailure(new SocketTimeoutException()));
+    }
+}
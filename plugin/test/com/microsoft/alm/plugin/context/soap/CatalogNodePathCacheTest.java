@@ -0,0 +1,63 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context.soap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CatalogNodePathCacheTest {
+    private static final URI SERVER = URI.create("http://server:8080/tfs");
+
+    /**
+     * Keeps the properties in a map that outlives the cache, like the saved plugin properties do
+     */
+    private static class TestCache extends CatalogNodePathCache {
+        private final Map<String, String> properties;
+
+        TestCache(final Map<String, String> properties) {
+            this.properties = properties;
+        }
+
+        @Override
+        protected String getProperty(final String key) {
+            return properties.get(key);
+        }
+
+        @Override
+        protected void setProperty(final String key, final String value) {
+            properties.put(key, value);
+        }
+    }
+
+    @Test
+    public void pathsAreSaved() {
+        final Map<String, String> properties = new HashMap<String, String>();
+        final CatalogNodePathCache cache = new TestCache(properties);
+        Assert.assertNull(cache.get(SERVER));
+
+        cache.put(SERVER, new CatalogNodePathCache.NodePaths("root==", "root==instance=="));
+
+        // A new session reads what the last one saved, the key ignores case and scheme
+        final CatalogNodePathCache.NodePaths paths = new TestCache(properties).get(URI.create("HTTPS://Server:8080/TFS"));
+        Assert.assertNotNull(paths);
+        Assert.assertEquals("root==", paths.getRootPath());
+        Assert.assertEquals("root==instance==", paths.getInstancePath());
+        Assert.assertNull(cache.get(URI.create("http://otherserver:8080/tfs")));
+    }
+
+    @Test
+    public void removedPathsAreForgotten() {
+        final Map<String, String> properties = new HashMap<String, String>();
+        final CatalogNodePathCache cache = new TestCache(properties);
+        cache.put(SERVER, new CatalogNodePathCache.NodePaths("root==", "root==instance=="));
+
+        cache.remove(SERVER);
+        Assert.assertNull(cache.get(SERVER));
+        Assert.assertNull(new TestCache(properties).get(SERVER));
+    }
+}
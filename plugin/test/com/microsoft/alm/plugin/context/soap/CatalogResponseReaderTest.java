@@ -0,0 +1,174 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context.soap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class CatalogResponseReaderTest {
+    private static final String INSTANCE = "b36f1bda-df2d-482b-993a-f194a31a1fa2";
+    private static final String COLLECTION = "26338D9E-D437-44aa-91F2-55880A328B54";
+    private static final String TEAM_PROJECT = "48577A4A-801E-412C-B8AE-CF7EF3529616";
+    private static final int COLLECTIONS = 5000;
+    private static final int RUNS = 20;
+
+    private static class Recorder implements CatalogResponseReader.ResourceListener {
+        final List<String[]> resources = new ArrayList<String[]>();
+
+        @Override
+        public void resourceRead(final String resourceType, final String displayName, final String instanceId, final String nodePath) {
+            resources.add(new String[]{resourceType, displayName, instanceId, nodePath});
+        }
+    }
+
+    @Test
+    public void readsRequestedResources() throws Exception {
+        final String collectionId = UUID.randomUUID().toString();
+        final StringBuilder resources = new StringBuilder();
+        resources.append(resource(INSTANCE, "Server", UUID.randomUUID().toString(), "root==instance=="));
+        resources.append("<CatalogResource ResourceTypeIdentifier=\"" + COLLECTION + "\" DisplayName=\"Collection&amp;1\">"
+                + "<Description>Skipped <b>nested</b> text</Description>"
+                + "<Properties>"
+                + "<KeyValueOfStringString><Key>InstanceIdentifier</Key><Value>not this one</Value></KeyValueOfStringString>"
+                + "<KeyValueOfStringString><Key>instanceid</Key><Value>" + collectionId + "</Value></KeyValueOfStringString>"
+                + "</Properties>"
+                + "<NodeReferencePaths><string>root==instance==first==</string><string>root==instance==second==</string></NodeReferencePaths>"
+                + "</CatalogResource>");
+        resources.append(resource(TEAM_PROJECT, "Project", UUID.randomUUID().toString(), "root==instance==first==project=="));
+
+        final Recorder recorder = new Recorder();
+        Assert.assertTrue(CatalogResponseReader.read(toStream(response(resources.toString())), new String[]{COLLECTION}, recorder));
+
+        Assert.assertEquals(1, recorder.resources.size());
+        Assert.assertArrayEquals(new String[]{COLLECTION, "Collection&1", collectionId, "root==instance==first=="},
+                recorder.resources.get(0));
+    }
+
+    @Test
+    public void ignoresOtherResponses() throws Exception {
+        final String fault = "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\"><soap:Body>"
+                + "<soap:Fault><soap:Reason><soap:Text>failed</soap:Text></soap:Reason></soap:Fault></soap:Body></soap:Envelope>";
+        final Recorder recorder = new Recorder();
+        Assert.assertFalse(CatalogResponseReader.read(toStream(fault), new String[]{COLLECTION}, recorder));
+        Assert.assertTrue(recorder.resources.isEmpty());
+    }
+
+    @Test
+    public void collectionsArePassedOnWhileReading() throws Exception {
+        final byte[] response = createLargeResponse();
+        final CountingInputStream stream = new CountingInputStream(new ByteArrayInputStream(response));
+        final long[] readAtFirstCollection = new long[]{-1};
+        final int[] count = new int[1];
+        CatalogResponseReader.read(stream, new String[]{COLLECTION}, new CatalogResponseReader.ResourceListener() {
+            @Override
+            public void resourceRead(final String resourceType, final String displayName, final String instanceId, final String nodePath) {
+                if (count[0]++ == 0) {
+                    readAtFirstCollection[0] = stream.count;
+                }
+            }
+        });
+
+        Assert.assertEquals(COLLECTIONS, count[0]);
+        // The first collection arrives long before the end of the response has been read
+        Assert.assertTrue(readAtFirstCollection[0] < response.length / 10);
+    }
+
+    /**
+     * Measures reading a response with 5,000 collections (each with a team project that is skipped).
+     */
+    @Test
+    public void benchmarkLargeResponse() throws Exception {
+        final byte[] response = createLargeResponse();
+        final String[] resourceTypes = new String[]{COLLECTION};
+
+        // Warm up
+        for (int i = 0; i < RUNS; i++) {
+            CatalogResponseReader.read(new ByteArrayInputStream(response), resourceTypes, new Recorder());
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            final Recorder recorder = new Recorder();
+            CatalogResponseReader.read(new ByteArrayInputStream(response), resourceTypes, recorder);
+            Assert.assertEquals(COLLECTIONS, recorder.resources.size());
+        }
+        final long averageMillis = (System.nanoTime() - start) / RUNS / 1000000;
+
+        Assert.assertTrue("reading " + COLLECTIONS + " collections (" + response.length / 1024 + " KB) took "
+                + averageMillis + " ms on average", averageMillis < 2000);
+    }
+
+    private static byte[] createLargeResponse() throws IOException {
+        final StringBuilder resources = new StringBuilder();
+        resources.append(resource(INSTANCE, "Server", UUID.randomUUID().toString(), "root==instance=="));
+        for (int i = 0; i < COLLECTIONS; i++) {
+            final String collectionPath = "root==instance==" + String.format("c%05d==", i);
+            resources.append(resource(COLLECTION, "Collection" + i, UUID.randomUUID().toString(), collectionPath));
+            resources.append(resource(TEAM_PROJECT, "Project" + i, UUID.randomUUID().toString(), collectionPath + "project=="));
+        }
+        return response(resources.toString()).getBytes("UTF-8");
+    }
+
+    private static String resource(final String type, final String name, final String instanceId, final String path) {
+        return "<CatalogResource Identifier=\"" + UUID.randomUUID() + "\" DisplayName=\"" + name + "\" ResourceTypeIdentifier=\"" + type
+                + "\" TempCorrelationId=\"" + UUID.randomUUID() + "\" ChangeType=\"0\" MatchedQuery=\"true\">"
+                + "<Description>Description of " + name + "</Description>"
+                + "<CatalogServiceReferences/>"
+                + "<Properties>"
+                + "<KeyValueOfStringString><Key>InstanceId</Key><Value>" + instanceId + "</Value></KeyValueOfStringString>"
+                + "<KeyValueOfStringString><Key>Owner</Key><Value>someone</Value></KeyValueOfStringString>"
+                + "</Properties>"
+                + "<NodeReferencePaths><string>" + path + "</string></NodeReferencePaths>"
+                + "</CatalogResource>";
+    }
+
+    private static String response(final String resources) {
+        return "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                + "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\">"
+                + "<soap:Header><ignored>header</ignored></soap:Header>"
+                + "<soap:Body><QueryNodesResponse xmlns=\"http://microsoft.com/webservices/\"><QueryNodesResult>"
+                + "<CatalogResources>" + resources + "</CatalogResources>"
+                + "<CatalogNodes><CatalogNode FullPath=\"root==\" default=\"false\"/></CatalogNodes>"
+                + "<LocationServiceLastChangeId>1</LocationServiceLastChangeId>"
+                + "</QueryNodesResult></QueryNodesResponse></soap:Body></soap:Envelope>";
+    }
+
+    private static InputStream toStream(final String xml) throws IOException {
+        return new ByteArrayInputStream(xml.getBytes("UTF-8"));
+    }
+
+    private static class CountingInputStream extends InputStream {
+        private final InputStream stream;
+        long count = 0;
+
+        CountingInputStream(final InputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = stream.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int read = stream.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.mocks;
+
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
+import com.microsoft.alm.plugin.services.RepositoryCatalogStore;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MockRepositoryCatalogStore implements RepositoryCatalogStore {
+    private Map<String, RepositoryCatalog.Entry> entries = new HashMap<String, RepositoryCatalog.Entry>();
+    private Map<String, List<URI>> accounts = new HashMap<String, List<URI>>();
+    private Map<String, RepositoryCatalog.CollectionsEntry> collections = new HashMap<String, RepositoryCatalog.CollectionsEntry>();
+    public int saveCount = 0;
+
+    @Override
+    public Map<String, RepositoryCatalog.Entry> restoreEntries() {
+        return entries;
+    }
+
+    @Override
+    public Map<String, List<URI>> restoreAccounts() {
+        return accounts;
+    }
+
+    @Override
+    public Map<String, RepositoryCatalog.CollectionsEntry> restoreCollections() {
+        return collections;
+    }
+
+    @Override
+    public void save(Map<String, RepositoryCatalog.Entry> entries, Map<String, List<URI>> accounts,
+                     Map<String, RepositoryCatalog.CollectionsEntry> collections) {
+        this.entries = new HashMap<String, RepositoryCatalog.Entry>(entries);
+        this.accounts = new HashMap<String, List<URI>>(accounts);
+        this.collections = new HashMap<String, RepositoryCatalog.CollectionsEntry>(collections);
+        saveCount++;
+    }
+}
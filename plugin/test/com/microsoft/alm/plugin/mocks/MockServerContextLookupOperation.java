@@ -15,6 +15,7 @@ public class MockServerContextLookupOperation extends ServerContextLookupOperati
     final List<TeamProjectCollectionReference> collections = new ArrayList<TeamProjectCollectionReference>();
     final List<GitRepository> gitRepositories = new ArrayList<GitRepository>();
     boolean cancelWhenStarted = false;
+    boolean reachable = true;
 
     public MockServerContextLookupOperation(List<ServerContext> contextList, ContextScope resultScope) {
         super(contextList, resultScope);
@@ -27,10 +28,23 @@ public class MockServerContextLookupOperation extends ServerContextLookupOperati
         gitRepositories.add(repository);
     }
 
+    public void clearRepositories() {
+        gitRepositories.clear();
+    }
+
+    public void setReachable(final boolean reachable) {
+        this.reachable = reachable;
+    }
+
     public void cancelWhenStarted() {
         cancelWhenStarted = true;
     }
 
+    @Override
+    protected boolean isReachable(final ServerContext context) {
+        return reachable;
+    }
+
     @Override
     protected void doLookup(final ServerContext context, final List<TeamProjectCollectionReference> collections) {
         for (final TeamProjectCollectionReference teamProjectCollectionReference : collections) {
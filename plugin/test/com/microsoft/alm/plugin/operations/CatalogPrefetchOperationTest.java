@@ -0,0 +1,54 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CatalogPrefetchOperationTest {
+    @Test
+    public void everySavedTfsServerIsRefreshed() {
+        final AuthenticationInfo server1User = new AuthenticationInfo("user", "", "http://server1:8080/tfs", "");
+        final AuthenticationInfo server2User = new AuthenticationInfo("user", "", "http://server2:8080/tfs", "");
+        final AuthenticationInfo server2OtherUser = new AuthenticationInfo("other", "", "http://server2:8080/tfs", "");
+        final List<ServerContext> savedContexts = Arrays.asList(
+                tfsContext(server1User, "http://server1:8080/tfs/collection/_git/repo1"),
+                tfsContext(server1User, "http://server1:8080/tfs/collection/_git/repo2"),
+                tfsContext(server2User, "http://server2:8080/tfs/collection/_git/repo"),
+                tfsContext(server2OtherUser, "http://server2:8080/tfs/collection/_git/repo"),
+                new ServerContextBuilder().type(ServerContext.Type.VSO)
+                        .authentication(new AuthenticationInfo("user", "", "https://account.visualstudio.com", ""))
+                        .uri("https://account.visualstudio.com/_git/repo").build());
+
+        final List<ServerContext> serverContexts = CatalogPrefetchOperation.getTfsServerContexts(savedContexts, server2User);
+
+        // One context per server and user, pointing to the root of the server; the provider's server comes first
+        Assert.assertEquals(3, serverContexts.size());
+        Assert.assertEquals(URI.create("http://server2:8080/tfs"), serverContexts.get(0).getUri());
+        Assert.assertSame(server2User, serverContexts.get(0).getAuthenticationInfo());
+        Assert.assertEquals(URI.create("http://server1:8080/tfs"), serverContexts.get(1).getUri());
+        Assert.assertSame(server2OtherUser, serverContexts.get(2).getAuthenticationInfo());
+        for (final ServerContext context : serverContexts) {
+            Assert.assertEquals(ServerContext.Type.TFS, context.getType());
+        }
+    }
+
+    @Test
+    public void nothingToRefreshWithoutTfsCredentials() {
+        Assert.assertTrue(CatalogPrefetchOperation.getTfsServerContexts(
+                Collections.<ServerContext>emptyList(), null).isEmpty());
+    }
+
+    private ServerContext tfsContext(final AuthenticationInfo authenticationInfo, final String uri) {
+        return new ServerContextBuilder().type(ServerContext.Type.TFS).authentication(authenticationInfo).uri(uri).build();
+    }
+}
@@ -0,0 +1,180 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class OperationExecutorTest {
+    private static final int BACKGROUND_TASKS = 20;
+
+    private final List<OperationExecutor> executors = new ArrayList<OperationExecutor>();
+
+    @After
+    public void tearDown() {
+        for (final OperationExecutor executor : executors) {
+            executor.threadPoolExecutor.shutdownNow();
+        }
+        executors.clear();
+    }
+
+    @Test
+    public void interactiveRunsAheadOfQueuedBackgroundWork() throws Exception {
+        final OperationExecutor executor = createExecutor(OperationExecutor.BACKGROUND_AGING_MILLIS);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        // Occupy every thread so that everything else has to be queued
+        final List<Future> blockers = new ArrayList<Future>();
+        final List<CountDownLatch> releases = occupyAllThreads(executor, blockers);
+
+        for (int i = 0; i < BACKGROUND_TASKS; i++) {
+            executor.submitOperationTask(recorder(order, "background"), Operation.Priority.BACKGROUND);
+        }
+        final Future interactive = executor.submitOperationTask(recorder(order, "interactive"), Operation.Priority.INTERACTIVE);
+        Assert.assertEquals(BACKGROUND_TASKS + 1, executor.getQueueSize());
+
+        // Free a single thread, it has to pick the interactive task first
+        releases.get(0).countDown();
+        interactive.get(5, TimeUnit.SECONDS);
+        releaseAll(releases);
+        executor.wait(blockers);
+
+        Assert.assertEquals("interactive", order.get(0));
+    }
+
+    @Test
+    public void interactiveIsNotQueuedBehindBackgroundLoad() throws Exception {
+        final OperationExecutor executor = createExecutor(OperationExecutor.BACKGROUND_AGING_MILLIS);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        final List<Future> blockers = new ArrayList<Future>();
+        final List<CountDownLatch> releases = occupyAllThreads(executor, blockers);
+
+        // Without priorities, the interactive task would wait behind all of the background work
+        final List<Future> background = new ArrayList<Future>();
+        for (int i = 0; i < BACKGROUND_TASKS * 5; i++) {
+            background.add(executor.submitOperationTask(recorder(order, "background"), Operation.Priority.BACKGROUND));
+        }
+        final Future interactive = executor.submitOperationTask(recorder(order, "interactive"), Operation.Priority.INTERACTIVE);
+
+        releaseAll(releases);
+        interactive.get(5, TimeUnit.SECONDS);
+        executor.wait(background);
+        executor.wait(blockers);
+
+        // The freed threads race for the queue, so at most one background task per other thread can start first
+        final int interactiveIndex = order.indexOf("interactive");
+        Assert.assertTrue("interactive ran at " + interactiveIndex, interactiveIndex < executor.MAX_THREADS);
+    }
+
+    @Test
+    public void backgroundWorkIsNotStarved() throws Exception {
+        // With no aging interval, background work queued first must run before interactive work queued later
+        final OperationExecutor executor = createExecutor(0);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        final List<Future> blockers = new ArrayList<Future>();
+        final List<CountDownLatch> releases = occupyAllThreads(executor, blockers);
+        final Future background = executor.submitOperationTask(recorder(order, "background"), Operation.Priority.BACKGROUND);
+        final Future interactive = executor.submitOperationTask(recorder(order, "interactive"), Operation.Priority.INTERACTIVE);
+
+        releases.get(0).countDown();
+        background.get(5, TimeUnit.SECONDS);
+        interactive.get(5, TimeUnit.SECONDS);
+        releaseAll(releases);
+        executor.wait(blockers);
+
+        Assert.assertEquals("background", order.get(0));
+    }
+
+    @Test
+    public void backgroundWorkRunsAtLowestThreadPriority() throws Exception {
+        final OperationExecutor executor = createExecutor(OperationExecutor.BACKGROUND_AGING_MILLIS);
+        final int[] priorities = new int[2];
+
+        executor.submitOperationTask(new Runnable() {
+            @Override
+            public void run() {
+                priorities[0] = Thread.currentThread().getPriority();
+            }
+        }, Operation.Priority.BACKGROUND).get(5, TimeUnit.SECONDS);
+        executor.submitOperationTask(new Runnable() {
+            @Override
+            public void run() {
+                priorities[1] = Thread.currentThread().getPriority();
+            }
+        }, Operation.Priority.INTERACTIVE).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(Thread.MIN_PRIORITY, priorities[0]);
+        // The thread gets its own priority back once the background task is done
+        Assert.assertTrue(priorities[1] > Thread.MIN_PRIORITY);
+    }
+
+    @Test
+    public void operationPriorityDefaultsToInteractive() {
+        final Operation operation = new Operation() {
+            @Override
+            public void doWork(final Inputs inputs) {
+            }
+        };
+        Assert.assertEquals(Operation.Priority.INTERACTIVE, operation.getPriority());
+        operation.setPriority(Operation.Priority.BACKGROUND);
+        Assert.assertEquals(Operation.Priority.BACKGROUND, operation.getPriority());
+    }
+
+    private OperationExecutor createExecutor(final long backgroundAgingMillis) {
+        final OperationExecutor executor = new OperationExecutor(backgroundAgingMillis);
+        executors.add(executor);
+        return executor;
+    }
+
+    /**
+     * Occupies every thread of the executor. Each thread is held until its own latch is released,
+     * so tests can free a single thread and observe the order in which queued work is picked up.
+     */
+    private List<CountDownLatch> occupyAllThreads(final OperationExecutor executor, final List<Future> blockers) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(executor.MAX_THREADS);
+        final List<CountDownLatch> releases = new ArrayList<CountDownLatch>();
+        for (int i = 0; i < executor.MAX_THREADS; i++) {
+            final CountDownLatch release = new CountDownLatch(1);
+            releases.add(release);
+            blockers.add(executor.submitOperationTask(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, Operation.Priority.INTERACTIVE));
+        }
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        return releases;
+    }
+
+    private void releaseAll(final List<CountDownLatch> releases) {
+        for (final CountDownLatch release : releases) {
+            release.countDown();
+        }
+    }
+
+    private Runnable recorder(final List<String> order, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+            }
+        };
+    }
+}
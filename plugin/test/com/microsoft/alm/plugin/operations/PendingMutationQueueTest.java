@@ -0,0 +1,166 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.plugin.context.ServerReachability;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+public class PendingMutationQueueTest {
+    private static final URI SERVER = URI.create("http://server:8080/tfs");
+
+    private static class TestQueue extends PendingMutationQueue {
+        int reprobesScheduled = 0;
+
+        TestQueue(final ServerReachability reachability) {
+            super(reachability);
+        }
+
+        @Override
+        protected void submit(final Runnable task) {
+            task.run();
+        }
+
+        @Override
+        protected Future<?> scheduleReprobe(final Runnable task, final long intervalMillis) {
+            reprobesScheduled++;
+            return new FutureTask<Object>(task, null);
+        }
+    }
+
+    private static class Recorder implements PendingMutationQueue.MutationListener {
+        final List<String> confirmed = new ArrayList<String>();
+        final List<String> failed = new ArrayList<String>();
+
+        @Override
+        public void confirmed(final String description) {
+            confirmed.add(description);
+        }
+
+        @Override
+        public void failed(final String description, final Throwable throwable) {
+            failed.add(description);
+        }
+    }
+
+    @Test
+    public void mutationsRunWhenTheServerComesBack() {
+        final ServerReachability reachability = new ServerReachability() {
+        };
+        final PendingMutationQueue queue = new TestQueue(reachability);
+        final Recorder recorder = new Recorder();
+        final int[] attempts = new int[1];
+        reachability.markUnreachable(SERVER);
+
+        queue.enqueue(SERVER, "create repo", new PendingMutationQueue.Mutation() {
+            @Override
+            public void run() throws Exception {
+                // The first attempt still can't connect
+                if (attempts[0]++ == 0) {
+                    throw new ConnectException("refused");
+                }
+            }
+        }, recorder);
+        queue.enqueue(URI.create("http://otherserver"), "other server", new PendingMutationQueue.Mutation() {
+            @Override
+            public void run() {
+                Assert.fail("other servers are not affected");
+            }
+        }, recorder);
+        Assert.assertEquals(2, queue.getPendingCount());
+
+        reachability.markReachable(SERVER);
+        Assert.assertEquals(1, attempts[0]);
+        Assert.assertEquals(2, queue.getPendingCount());
+        Assert.assertTrue(recorder.confirmed.isEmpty());
+
+        reachability.markReachable(SERVER);
+        Assert.assertEquals(2, attempts[0]);
+        Assert.assertEquals(1, queue.getPendingCount());
+        Assert.assertEquals(1, recorder.confirmed.size());
+        Assert.assertTrue(recorder.failed.isEmpty());
+    }
+
+    @Test
+    public void otherFailuresAreReported() {
+        final ServerReachability reachability = new ServerReachability() {
+        };
+        final PendingMutationQueue queue = new TestQueue(reachability);
+        final Recorder recorder = new Recorder();
+        queue.enqueue(SERVER, "create repo", new PendingMutationQueue.Mutation() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("name already exists");
+            }
+        }, recorder);
+
+        queue.runPending(SERVER);
+        Assert.assertEquals(0, queue.getPendingCount());
+        Assert.assertEquals(1, recorder.failed.size());
+    }
+
+    @Test
+    public void serversAreProbedAgainWhileChangesArePending() {
+        final boolean[] reachable = new boolean[1];
+        final int[] probes = new int[1];
+        final ServerReachability reachability = new ServerReachability() {
+            @Override
+            protected boolean probe(final String host, final int port, final int timeoutMillis) {
+                probes[0]++;
+                return reachable[0];
+            }
+
+            @Override
+            public boolean usesProxy(final URI serverUri) {
+                return false;
+            }
+
+            @Override
+            protected String getProperty(final String key) {
+                return null;
+            }
+        };
+        final TestQueue queue = new TestQueue(reachability);
+        final Recorder recorder = new Recorder();
+        final PendingMutationQueue.Mutation mutation = new PendingMutationQueue.Mutation() {
+            @Override
+            public void run() {
+            }
+        };
+
+        queue.enqueue(SERVER, "create repo", mutation, recorder);
+        queue.enqueue(URI.create("http://SERVER:8080/tfs/collection"), "create other repo", mutation, recorder);
+        Assert.assertEquals(1, queue.reprobesScheduled);
+
+        // Each server is probed once
+        queue.reprobe();
+        Assert.assertEquals(1, probes[0]);
+        Assert.assertEquals(2, queue.getPendingCount());
+
+        // Nothing else asks for the other server, the probe finds it and runs its change
+        reachable[0] = true;
+        queue.enqueue(URI.create("http://otherserver"), "other server", mutation, recorder);
+        queue.reprobe();
+        Assert.assertEquals(2, probes[0]);
+        Assert.assertEquals(2, queue.getPendingCount());
+        Assert.assertEquals(Arrays.asList("other server"), recorder.confirmed);
+
+        reachability.markReachable(SERVER);
+        Assert.assertEquals(0, queue.getPendingCount());
+        Assert.assertEquals(3, recorder.confirmed.size());
+
+        // Probing stops with the queue empty, and starts again with the next change
+        queue.reprobe();
+        queue.enqueue(SERVER, "create repo", mutation, recorder);
+        Assert.assertEquals(2, queue.reprobesScheduled);
+    }
+}
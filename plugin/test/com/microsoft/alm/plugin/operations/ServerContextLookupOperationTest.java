@@ -4,8 +4,10 @@
 package com.microsoft.alm.plugin.operations;
 
 import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
+import com.microsoft.alm.plugin.context.RepositoryCatalog;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextBuilder;
+import com.microsoft.alm.plugin.context.ServerContextRow;
 import com.microsoft.alm.plugin.mocks.MockServerContextLookupOperation;
 import com.microsoft.teamfoundation.core.webapi.model.TeamProjectCollectionReference;
 import com.microsoft.teamfoundation.core.webapi.model.TeamProjectReference;
@@ -17,8 +19,12 @@ import org.junit.Test;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ServerContextLookupOperationTest {
     @Test
@@ -104,9 +110,12 @@ public class ServerContextLookupOperationTest {
         // Verify results
         List<ServerContext> newContexts = results.get();
         Assert.assertEquals(3, newContexts.size());
-        Assert.assertEquals(repo1, newContexts.get(0).getGitRepository());
-        Assert.assertEquals(repo2, newContexts.get(1).getGitRepository());
-        Assert.assertEquals(repo3, newContexts.get(2).getGitRepository());
+        Assert.assertEquals(repo1.getName(), newContexts.get(0).getGitRepository().getName());
+        Assert.assertEquals(repo1.getRemoteUrl(), newContexts.get(0).getGitRepository().getRemoteUrl());
+        Assert.assertEquals(repo2.getName(), newContexts.get(1).getGitRepository().getName());
+        Assert.assertEquals(repo2.getRemoteUrl(), newContexts.get(1).getGitRepository().getRemoteUrl());
+        Assert.assertEquals(repo3.getName(), newContexts.get(2).getGitRepository().getName());
+        Assert.assertEquals(repo3.getRemoteUrl(), newContexts.get(2).getGitRepository().getRemoteUrl());
         Assert.assertTrue(startedCalled.get());
         Assert.assertTrue(completedCalled.get());
         Assert.assertFalse(canceledCalled.isDone());
@@ -165,9 +174,12 @@ public class ServerContextLookupOperationTest {
         // Verify results
         List<ServerContext> newContexts = results.get();
         Assert.assertEquals(3, newContexts.size());
-        Assert.assertEquals(repo1, newContexts.get(0).getGitRepository());
-        Assert.assertEquals(repo2, newContexts.get(1).getGitRepository());
-        Assert.assertEquals(repo3, newContexts.get(2).getGitRepository());
+        Assert.assertEquals(repo1.getName(), newContexts.get(0).getGitRepository().getName());
+        Assert.assertEquals(repo1.getRemoteUrl(), newContexts.get(0).getGitRepository().getRemoteUrl());
+        Assert.assertEquals(repo2.getName(), newContexts.get(1).getGitRepository().getName());
+        Assert.assertEquals(repo2.getRemoteUrl(), newContexts.get(1).getGitRepository().getRemoteUrl());
+        Assert.assertEquals(repo3.getName(), newContexts.get(2).getGitRepository().getName());
+        Assert.assertEquals(repo3.getRemoteUrl(), newContexts.get(2).getGitRepository().getRemoteUrl());
         Assert.assertTrue(startedCalled.get());
         Assert.assertTrue(completedCalled.get());
         Assert.assertFalse(canceledCalled.isDone());
@@ -206,6 +218,357 @@ public class ServerContextLookupOperationTest {
         results.cancel(true);
     }
 
+    @Test
+    public void catalogReportsCachedContextsThenChanges() {
+        // Create context (the server is only used by this test, so it has no catalog entry yet)
+        URI serverUri = URI.create("http://catalogserver");
+        AuthenticationInfo info = new AuthenticationInfo("", "", "", "");
+        TeamProjectCollectionReference collection = new TeamProjectCollectionReference();
+        collection.setName("collection");
+        ServerContext context = new ServerContextBuilder().type(ServerContext.Type.TFS).authentication(info).uri(serverUri).collection(collection).build();
+        TeamProjectReference project = new TeamProjectReference();
+        project.setName("project");
+        GitRepository repo1 = createRepository(project, "repo1");
+        GitRepository repo2 = createRepository(project, "repo2");
+
+        // The first lookup finds both repos and saves them in the catalog
+        MockServerContextLookupOperation operation = new MockServerContextLookupOperation(Collections.singletonList(context), ServerContextLookupOperation.ContextScope.REPOSITORY);
+        operation.setUseCatalog(true);
+        operation.addRepository(repo1);
+        operation.addRepository(repo2);
+        List<ServerContextLookupOperation.ServerContextLookupResults> results = collectResults(operation);
+        operation.doWork(Operation.EMPTY_INPUTS);
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(2, results.get(0).getRows().size());
+        Assert.assertTrue(results.get(1).hasCatalogStatus());
+        Assert.assertFalse(results.get(1).isFromCatalog());
+        Assert.assertEquals(2, RepositoryCatalog.getInstance().get(context).getItems().size());
+
+        // The server now has repo1 under a new name and repo3 instead of repo2
+        GitRepository repo1Renamed = createRepository(project, "repo1-renamed");
+        repo1Renamed.setId(repo1.getId());
+        GitRepository repo3 = createRepository(project, "repo3");
+        operation = new MockServerContextLookupOperation(Collections.singletonList(context), ServerContextLookupOperation.ContextScope.REPOSITORY);
+        operation.setUseCatalog(true);
+        operation.addRepository(repo1Renamed);
+        operation.addRepository(repo3);
+        results = collectResults(operation);
+        operation.doWork(Operation.EMPTY_INPUTS);
+
+        // The cached repos come first, followed by how old they are
+        Assert.assertEquals(2, results.get(0).getRows().size());
+        Assert.assertTrue(results.get(1).isFromCatalog());
+        Assert.assertTrue(results.get(1).getCatalogTime() > 0);
+
+        // After that only the changes are reported
+        final List<ServerContextRow> shown = new ArrayList<ServerContextRow>();
+        int added = 0;
+        for (ServerContextLookupOperation.ServerContextLookupResults result : results) {
+            shown.removeAll(result.getRemovedRows());
+            shown.addAll(result.getRows());
+            added += result.getRows().size();
+        }
+        Assert.assertEquals(4, added);
+        Assert.assertEquals(2, shown.size());
+        Assert.assertEquals("repo1-renamed", shown.get(0).getRepositoryName());
+        Assert.assertEquals("repo3", shown.get(1).getRepositoryName());
+        Assert.assertFalse(results.get(results.size() - 1).isFromCatalog());
+        Assert.assertTrue(results.get(results.size() - 1).getRefreshDurationMillis() >= 0);
+
+        // A lookup that finds nothing new reports only the cached repos
+        operation = new MockServerContextLookupOperation(Collections.singletonList(context), ServerContextLookupOperation.ContextScope.REPOSITORY);
+        operation.setUseCatalog(true);
+        operation.addRepository(repo1Renamed);
+        operation.addRepository(repo3);
+        results = collectResults(operation);
+        operation.doWork(Operation.EMPTY_INPUTS);
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(2, results.get(0).getRows().size());
+        Assert.assertTrue(results.get(1).isFromCatalog());
+        Assert.assertTrue(results.get(2).getRows().isEmpty());
+        Assert.assertTrue(results.get(2).getRemovedRows().isEmpty());
+
+        // Another account on the same server doesn't see the cached repos
+        final ServerContext otherUserContext = new ServerContextBuilder(context)
+                .authentication(new AuthenticationInfo("otheruser", "", "", "")).build();
+        Assert.assertNull(RepositoryCatalog.getInstance().get(otherUserContext));
+    }
+
+    @Test
+    public void unreachableServerShowsTheSavedList() {
+        URI serverUri = URI.create("http://offlineserver");
+        AuthenticationInfo info = new AuthenticationInfo("", "", "", "");
+        TeamProjectCollectionReference collection = new TeamProjectCollectionReference();
+        collection.setName("collection");
+        ServerContext context = new ServerContextBuilder().type(ServerContext.Type.TFS).authentication(info).uri(serverUri).collection(collection).build();
+        TeamProjectReference project = new TeamProjectReference();
+        project.setName("project");
+
+        // Without a saved list the lookup fails right away
+        MockServerContextLookupOperation operation = new MockServerContextLookupOperation(Collections.singletonList(context), ServerContextLookupOperation.ContextScope.REPOSITORY);
+        operation.setUseCatalog(true);
+        operation.setReachable(false);
+        List<ServerContextLookupOperation.ServerContextLookupResults> results = collectResults(operation);
+        operation.doWork(Operation.EMPTY_INPUTS);
+        Assert.assertTrue(results.get(results.size() - 1).hasError());
+
+        // Save a list while the server can be reached
+        operation = new MockServerContextLookupOperation(Collections.singletonList(context), ServerContextLookupOperation.ContextScope.REPOSITORY);
+        operation.setUseCatalog(true);
+        operation.addRepository(createRepository(project, "repo1"));
+        operation.doWork(Operation.EMPTY_INPUTS);
+
+        // Then it is shown as it is, without an error
+        operation = new MockServerContextLookupOperation(Collections.singletonList(context), ServerContextLookupOperation.ContextScope.REPOSITORY);
+        operation.setUseCatalog(true);
+        operation.setReachable(false);
+        results = collectResults(operation);
+        operation.doWork(Operation.EMPTY_INPUTS);
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals("repo1", results.get(0).getRows().get(0).getRepositoryName());
+        Assert.assertTrue(results.get(1).isFromCatalog());
+        Assert.assertFalse(results.get(2).hasError());
+        Assert.assertTrue(results.get(2).isOffline());
+        Assert.assertEquals(RepositoryCatalog.getInstance().get(context).getRefreshedAt(), results.get(2).getCatalogTime());
+    }
+
+    @Test
+    public void chunkedLookupReadsTheAccountAtOnce() {
+        final ServerContext context = new ServerContextBuilder().type(ServerContext.Type.VSO)
+                .authentication(new AuthenticationInfo("", "", "", "")).uri(URI.create("https://chunkedaccount.visualstudio.com")).build();
+        final TeamProjectCollectionReference collection = new TeamProjectCollectionReference();
+        collection.setName("DefaultCollection");
+        final List<TeamProjectReference> projects = new ArrayList<TeamProjectReference>();
+        final List<GitRepository> repositories = new ArrayList<GitRepository>();
+        for (int i = 0; i < 5; i++) {
+            final TeamProjectReference project = new TeamProjectReference();
+            project.setId(UUID.randomUUID());
+            project.setName("project" + i);
+            projects.add(project);
+            // Two repositories in each project
+            repositories.add(createRepository(project, "repo" + i + "a"));
+            repositories.add(createRepository(project, "repo" + i + "b"));
+        }
+        final AtomicInteger requests = new AtomicInteger();
+
+        ServerContextLookupOperation operation = createAccountOperation(context, ServerContextLookupOperation.ContextScope.REPOSITORY,
+                Collections.singletonList(collection), repositories, requests);
+        operation.setChunkSize(4);
+        List<ServerContextLookupOperation.ServerContextLookupResults> results = collectResults(operation);
+        operation.doWork(Operation.EMPTY_INPUTS);
+
+        // One request for the collections and one for the repositories of the whole account
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(4, results.get(0).getRows().size());
+        Assert.assertEquals(4, results.get(1).getRows().size());
+        Assert.assertEquals(2, results.get(2).getRows().size());
+        Assert.assertEquals("repo0a", results.get(0).getRows().get(0).getRepositoryName());
+        Assert.assertEquals("DefaultCollection", results.get(0).getRows().get(0).getCollectionName());
+
+        // The projects scope gets each project once, even though its repositories are in different chunks
+        operation = createAccountOperation(context, ServerContextLookupOperation.ContextScope.PROJECT,
+                Collections.singletonList(collection), repositories, requests);
+        operation.setChunkSize(3);
+        results = collectResults(operation);
+        operation.doWork(Operation.EMPTY_INPUTS);
+
+        // Both scopes share what was read
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals(2, results.size());
+        final Set<String> projectNames = new HashSet<String>();
+        for (final ServerContextLookupOperation.ServerContextLookupResults result : results) {
+            for (final ServerContextRow row : result.getRows()) {
+                Assert.assertTrue(projectNames.add(row.getProjectName()));
+            }
+        }
+        Assert.assertEquals(projects.size(), projectNames.size());
+    }
+
+    @Test
+    public void chunkedLookupReadsEachCollectionOfAnAccountWithMoreThanOne() {
+        final ServerContext context = new ServerContextBuilder().type(ServerContext.Type.VSO)
+                .authentication(new AuthenticationInfo("", "", "", "")).uri(URI.create("https://collectionsaccount.visualstudio.com")).build();
+        final List<TeamProjectCollectionReference> collections = new ArrayList<TeamProjectCollectionReference>();
+        for (int i = 0; i < 2; i++) {
+            final TeamProjectCollectionReference collection = new TeamProjectCollectionReference();
+            collection.setName("collection" + i);
+            collections.add(collection);
+        }
+        final TeamProjectReference project = new TeamProjectReference();
+        project.setId(UUID.randomUUID());
+        project.setName("project");
+        final AtomicInteger requests = new AtomicInteger();
+
+        final ServerContextLookupOperation operation = createAccountOperation(context, ServerContextLookupOperation.ContextScope.REPOSITORY,
+                collections, Collections.singletonList(createRepository(project, "accountrepo")), requests);
+        operation.setChunkSize(4);
+        final List<ServerContextLookupOperation.ServerContextLookupResults> results = collectResults(operation);
+        operation.doWork(Operation.EMPTY_INPUTS);
+
+        // The account listing can't tell the collections apart, so each collection is read on its own
+        Assert.assertEquals(4, requests.get());
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals("collection0-repo", results.get(0).getRows().get(0).getRepositoryName());
+        Assert.assertEquals("collection0", results.get(0).getRows().get(0).getCollectionName());
+        Assert.assertEquals("collection1-repo", results.get(1).getRows().get(0).getRepositoryName());
+    }
+
+    @Test
+    public void savedCollectionsAreReadAgainInTheBackground() throws InterruptedException {
+        final ServerContext context = new ServerContextBuilder().type(ServerContext.Type.TFS)
+                .authentication(new AuthenticationInfo("user", "", "", "")).uri(URI.create("http://collectionsserver:8080/tfs")).build();
+        final TeamProjectCollectionReference collection1 = new TeamProjectCollectionReference();
+        collection1.setId(UUID.randomUUID());
+        collection1.setName("collection1");
+        final TeamProjectCollectionReference collection2 = new TeamProjectCollectionReference();
+        collection2.setId(UUID.randomUUID());
+        collection2.setName("collection2");
+        final List<TeamProjectCollectionReference> serverCollections = new ArrayList<TeamProjectCollectionReference>();
+        serverCollections.add(collection1);
+        final AtomicInteger requests = new AtomicInteger();
+
+        // Nothing is saved yet, so the collections are read from the server and saved
+        ServerContextLookupOperation operation = createCollectionsOperation(context, serverCollections, requests);
+        Assert.assertEquals(1, operation.getSoapCollections(context).size());
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(1, RepositoryCatalog.getInstance().getCollections(context).getCollections().size());
+
+        // Fresh collections are used as they are
+        serverCollections.add(collection2);
+        operation = createCollectionsOperation(context, serverCollections, requests);
+        Assert.assertEquals(1, operation.getSoapCollections(context).size());
+        Assert.assertEquals(1, requests.get());
+
+        // Older ones are still returned right away, but they are read again in the background
+        operation = createCollectionsOperation(context, serverCollections, requests);
+        operation.setCollectionsMaxAgeMillis(0);
+        Thread.sleep(5);
+        Assert.assertEquals(1, operation.getSoapCollections(context).size());
+        for (int i = 0; i < 100 && RepositoryCatalog.getInstance().getCollections(context).getCollections().size() == 1; i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals(2, RepositoryCatalog.getInstance().getCollections(context).getCollections().size());
+
+        // They are kept for each user
+        final ServerContext otherUserContext = new ServerContextBuilder(context)
+                .authentication(new AuthenticationInfo("otheruser", "", "", "")).build();
+        Assert.assertNull(RepositoryCatalog.getInstance().getCollections(otherUserContext));
+
+        RepositoryCatalog.getInstance().removeCollections(context);
+        Assert.assertNull(RepositoryCatalog.getInstance().getCollections(context));
+    }
+
+    @Test
+    public void retriedLookupSkipsTheCollectionsAlreadyAdded() {
+        final ServerContext context = new ServerContextBuilder().type(ServerContext.Type.TFS)
+                .authentication(new AuthenticationInfo("user", "", "", "")).uri(URI.create("http://retryserver:8080/tfs")).build();
+        final TeamProjectCollectionReference collection1 = new TeamProjectCollectionReference();
+        collection1.setName("collection1");
+        final TeamProjectCollectionReference collection2 = new TeamProjectCollectionReference();
+        collection2.setName("collection2");
+        final TeamProjectReference project = new TeamProjectReference();
+        project.setId(UUID.randomUUID());
+        project.setName("project");
+        final ServerContextLookupOperation operation = new ServerContextLookupOperation(Collections.singletonList(context),
+                ServerContextLookupOperation.ContextScope.REPOSITORY) {
+            @Override
+            protected List<GitRepository> readRepositories(final ServerContext context, final TeamProjectCollectionReference collection) {
+                return Collections.singletonList(createRepository(project, collection.getName() + "-repo"));
+            }
+        };
+        final List<ServerContextLookupOperation.ServerContextLookupResults> results = collectResults(operation);
+
+        // The first attempt added collection1 before it failed, the retry reads the collections again
+        operation.doLookup(context, Collections.singletonList(collection1));
+        final List<TeamProjectCollectionReference> collections = new ArrayList<TeamProjectCollectionReference>();
+        collections.add(collection1);
+        collections.add(collection2);
+        operation.doLookup(context, collections);
+
+        final List<String> names = new ArrayList<String>();
+        for (final ServerContextLookupOperation.ServerContextLookupResults result : results) {
+            for (final ServerContextRow row : result.getRows()) {
+                names.add(row.getRepositoryName());
+            }
+        }
+        Assert.assertEquals(2, names.size());
+        Assert.assertEquals("collection1-repo", names.get(0));
+        Assert.assertEquals("collection2-repo", names.get(1));
+    }
+
+    private ServerContextLookupOperation createCollectionsOperation(final ServerContext context,
+                                                                    final List<TeamProjectCollectionReference> collections,
+                                                                    final AtomicInteger requests) {
+        return new ServerContextLookupOperation(Collections.singletonList(context), ServerContextLookupOperation.ContextScope.REPOSITORY) {
+            @Override
+            protected List<TeamProjectCollectionReference> readSoapCollections(final ServerContext context) {
+                requests.incrementAndGet();
+                return new ArrayList<TeamProjectCollectionReference>(collections);
+            }
+        };
+    }
+
+    private ServerContextLookupOperation createAccountOperation(final ServerContext context,
+                                                                final ServerContextLookupOperation.ContextScope scope,
+                                                                final List<TeamProjectCollectionReference> collections,
+                                                                final List<GitRepository> accountRepositories,
+                                                                final AtomicInteger requests) {
+        return new ServerContextLookupOperation(Collections.singletonList(context), scope) {
+            @Override
+            protected boolean isReachable(final ServerContext context) {
+                return true;
+            }
+
+            @Override
+            protected List<TeamProjectCollectionReference> readRestCollections(final ServerContext context) {
+                requests.incrementAndGet();
+                return collections;
+            }
+
+            @Override
+            protected List<GitRepository> readAccountRepositories(final ServerContext context) {
+                requests.incrementAndGet();
+                return accountRepositories;
+            }
+
+            @Override
+            protected List<GitRepository> readRepositories(final ServerContext context, final TeamProjectCollectionReference collection) {
+                requests.incrementAndGet();
+                return Collections.singletonList(createRepository(accountRepositories.get(0).getProjectReference(),
+                        collection.getName() + "-repo"));
+            }
+        };
+    }
+
+    private GitRepository createRepository(final TeamProjectReference project, final String name) {
+        GitRepository repository = new GitRepository();
+        repository.setId(UUID.randomUUID());
+        repository.setName(name);
+        repository.setProjectReference(project);
+        repository.setRemoteUrl("http://catalogserver/_git/" + name);
+        return repository;
+    }
+
+    private List<ServerContextLookupOperation.ServerContextLookupResults> collectResults(final ServerContextLookupOperation operation) {
+        final List<ServerContextLookupOperation.ServerContextLookupResults> results =
+                Collections.synchronizedList(new ArrayList<ServerContextLookupOperation.ServerContextLookupResults>());
+        operation.addListener(new Operation.Listener() {
+            public void notifyLookupStarted() {
+            }
+
+            public void notifyLookupCompleted() {
+            }
+
+            @Override
+            public void notifyLookupResults(Operation.Results lookupResults) {
+                results.add((ServerContextLookupOperation.ServerContextLookupResults) lookupResults);
+            }
+        });
+        return results;
+    }
+
     private void setupListener(MockServerContextLookupOperation operation, final SettableFuture<Boolean> startedCalled, final SettableFuture<Boolean> completedCalled, final SettableFuture<Boolean> canceledCalled, final SettableFuture<List<ServerContext>> results) {
         operation.addListener(new Operation.Listener() {
             public void notifyLookupStarted() {